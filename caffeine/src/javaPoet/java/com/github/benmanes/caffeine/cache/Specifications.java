@@ -92,6 +92,7 @@ public final class Specifications {
   public static final TypeName STATS_COUNTER =
       ClassName.get(PACKAGE_NAME + ".stats", "StatsCounter");
   public static final TypeName TICKER = ClassName.get(PACKAGE_NAME, "Ticker");
+  public static final TypeName PACER = ClassName.get(PACKAGE_NAME, "Pacer");
 
   public static final TypeName ACCESS_ORDER_DEQUE =
       ParameterizedTypeName.get(ClassName.get(PACKAGE_NAME, "AccessOrderDeque"), NODE);
@@ -108,6 +109,13 @@ public final class Specifications {
   public static final TypeName TIMER_WHEEL = ParameterizedTypeName.get(
       ClassName.get(PACKAGE_NAME, "TimerWheel"), kTypeVar, vTypeVar);
 
+  public static final ClassName REFRESH_BATCHER_TYPE =
+      ClassName.get(PACKAGE_NAME, "RefreshBatcher");
+  public static final TypeName REFRESH_BATCHER =
+      ParameterizedTypeName.get(REFRESH_BATCHER_TYPE, kTypeVar, vTypeVar);
+  public static final TypeName REFRESHER = ParameterizedTypeName.get(
+      ClassName.get(PACKAGE_NAME, "Refresher"), kTypeVar, vTypeVar);
+
   public static final TypeName FREQUENCY_SKETCH = ParameterizedTypeName.get(
       ClassName.get(PACKAGE_NAME, "FrequencySketch"), kTypeVar);
 
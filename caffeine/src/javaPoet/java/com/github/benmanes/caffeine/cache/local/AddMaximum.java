@@ -49,6 +49,7 @@ public final class AddMaximum extends LocalCacheRule {
     addWeightedSize("eden");
     addWeightedSize("mainProtected");
     addFrequencySketch();
+    addHillClimber();
   }
 
   private void addEvicts() {
@@ -97,7 +98,8 @@ public final class AddMaximum extends LocalCacheRule {
     context.cache.addField(FieldSpec.builder(
         FREQUENCY_SKETCH, "sketch", Modifier.FINAL).build());
     context.constructor.addCode(CodeBlock.builder()
-        .addStatement("this.sketch = new $T()", FREQUENCY_SKETCH)
+        .addStatement("this.sketch = FrequencySketch.newInstance($L, $L)",
+            "builder.getSketchLayout()", "builder.hasDoorkeeper()")
         .beginControlFlow("if (builder.hasInitialCapacity())")
             .addStatement("long capacity = Math.min($L, $L)",
                 "builder.getMaximum()", "builder.getInitialCapacity()")
@@ -109,4 +111,26 @@ public final class AddMaximum extends LocalCacheRule {
         .returns(FREQUENCY_SKETCH)
         .build());
   }
+
+  private void addHillClimber() {
+    addField(double.class, "stepSize");
+    addField(long.class, "adjustment");
+    addField(int.class, "hitsInSample");
+    addField(int.class, "missesInSample");
+    addField(double.class, "previousSampleHitRate");
+  }
+
+  private void addField(Class<?> type, String name) {
+    context.cache.addField(FieldSpec.builder(type, name).build());
+    context.cache.addMethod(MethodSpec.methodBuilder(name)
+        .addModifiers(context.protectedFinalModifiers())
+        .addStatement("return $N", name)
+        .returns(type)
+        .build());
+    context.cache.addMethod(MethodSpec.methodBuilder("set" + capitalize(name))
+        .addModifiers(context.protectedFinalModifiers())
+        .addStatement("this.$N = $N", name, name)
+        .addParameter(type, name)
+        .build());
+  }
 }
@@ -15,6 +15,10 @@
  */
 package com.github.benmanes.caffeine.cache.local;
 
+import static com.github.benmanes.caffeine.cache.Specifications.REFRESHER;
+import static com.github.benmanes.caffeine.cache.Specifications.REFRESH_BATCHER;
+import static com.github.benmanes.caffeine.cache.Specifications.REFRESH_BATCHER_TYPE;
+
 import javax.lang.model.element.Modifier;
 
 import com.github.benmanes.caffeine.cache.Feature;
@@ -52,5 +56,23 @@ public final class AddRefreshAfterWrite extends LocalCacheRule {
         .addParameter(long.class, "refreshAfterWriteNanos")
         .addModifiers(context.protectedFinalModifiers())
         .build());
+
+    context.constructor.addStatement("this.refreshBatcher = builder.coalescesRefreshes() "
+        + "? new $T<>(cacheLoader, builder) : null", REFRESH_BATCHER_TYPE);
+    context.cache.addField(FieldSpec.builder(REFRESH_BATCHER, "refreshBatcher",
+        Modifier.FINAL).build());
+    context.cache.addMethod(MethodSpec.methodBuilder("refreshBatcher")
+        .addModifiers(context.protectedFinalModifiers())
+        .addStatement("return refreshBatcher")
+        .returns(REFRESH_BATCHER)
+        .build());
+
+    context.constructor.addStatement("this.refresher = builder.getRefresher(isAsync)");
+    context.cache.addField(FieldSpec.builder(REFRESHER, "refresher", Modifier.FINAL).build());
+    context.cache.addMethod(MethodSpec.methodBuilder("refresher")
+        .addModifiers(context.protectedFinalModifiers())
+        .addStatement("return refresher")
+        .returns(REFRESHER)
+        .build());
   }
 }
@@ -79,6 +79,11 @@ public enum CacheType {
       return new CaffeineCache<>(maximumSize);
     }
   },
+  Caffeine_Sharded {
+    @Override public <K, V> BasicCache<K, V> create(int maximumSize) {
+      return new CaffeineCache<>(maximumSize, Runtime.getRuntime().availableProcessors());
+    }
+  },
   Collision {
     @Override public <K, V> BasicCache<K, V> create(int maximumSize) {
       return new Collision<>(maximumSize);
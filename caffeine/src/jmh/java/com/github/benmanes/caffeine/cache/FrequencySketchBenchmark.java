@@ -16,6 +16,7 @@
 package com.github.benmanes.caffeine.cache;
 
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -24,6 +25,8 @@ import com.yahoo.ycsb.generator.NumberGenerator;
 import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 
 /**
+ * A benchmark of the sketch's layouts when sized for large caches, where the table exceeds the
+ * processor's caches so that the cost is dominated by the memory accesses.
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=FrequencySketchBenchmark
  * }</pre>
@@ -34,7 +37,12 @@ import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 public class FrequencySketchBenchmark {
   private static final int SIZE = (2 << 14);
   private static final int MASK = SIZE - 1;
-  private static final int ITEMS = SIZE / 3;
+
+  @Param({"1000000", "100000000"})
+  int maximumSize;
+
+  @Param({"STANDARD", "BLOCKED"})
+  SketchLayout layout;
 
   int index = 0;
   Integer[] ints;
@@ -43,10 +51,10 @@ public class FrequencySketchBenchmark {
   @Setup
   public void setup() {
     ints = new Integer[SIZE];
-    sketch = new FrequencySketch<>();
-    sketch.ensureCapacity(ITEMS);
+    sketch = FrequencySketch.newInstance(layout, /* doorkeeper */ false);
+    sketch.ensureCapacity(maximumSize);
 
-    NumberGenerator generator = new ScrambledZipfianGenerator(ITEMS);
+    NumberGenerator generator = new ScrambledZipfianGenerator(maximumSize);
     for (int i = 0; i < SIZE; i++) {
       ints[i] = generator.nextValue().intValue();
       sketch.increment(i);
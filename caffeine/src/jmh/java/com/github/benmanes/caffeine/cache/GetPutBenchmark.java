@@ -33,6 +33,8 @@ import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 /**
  * A benchmark that evaluates the read/write performance of a cache. The cache is pre-populated for
  * a 100% hit rate and a Zipf distribution of keys is used to mimic application usage patterns.
+ * The write heavy groups use 32 and 64 threads to evaluate the contention on the eviction policy
+ * when run on a machine with many cores.
  * <p>
  * <pre>{@code
  *   ./gradlew jmh -PincludePattern=GetPutBenchmark
@@ -49,6 +51,7 @@ public class GetPutBenchmark {
   @Param({
     "LinkedHashMap_Lru",
     "Caffeine",
+    "Caffeine_Sharded",
     "ConcurrentLinkedHashMap",
     "Guava",
     "ElasticSearch",
@@ -117,4 +120,24 @@ public class GetPutBenchmark {
   public void readwrite_put(ThreadState threadState) {
     cache.put(ints[threadState.index++ & MASK], Boolean.TRUE);
   }
+
+  @Benchmark @Group("write_heavy_32") @GroupThreads(8)
+  public Boolean writeHeavy32_get(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("write_heavy_32") @GroupThreads(24)
+  public void writeHeavy32_put(ThreadState threadState) {
+    cache.put(ints[threadState.index++ & MASK], Boolean.TRUE);
+  }
+
+  @Benchmark @Group("write_heavy_64") @GroupThreads(16)
+  public Boolean writeHeavy64_get(ThreadState threadState) {
+    return cache.get(ints[threadState.index++ & MASK]);
+  }
+
+  @Benchmark @Group("write_heavy_64") @GroupThreads(48)
+  public void writeHeavy64_put(ThreadState threadState) {
+    cache.put(ints[threadState.index++ & MASK], Boolean.TRUE);
+  }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A benchmark of the latency distribution of a write when the cache's entries expire in bulk. The
+ * clock jumps forward after every {@code size} writes so that all of the entries written since the
+ * previous jump expire at once, and the bounded maintenance passes appear at the highest
+ * percentiles. When the maintenance is run on the same thread, the writer is penalized by the
+ * pass that it triggers.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=MassExpirationBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MassExpirationBenchmark {
+
+  @Param({"100000", "1000000"})
+  int size;
+
+  @Param({"true", "false"})
+  boolean sameThread;
+
+  final AtomicLong nanos = new AtomicLong();
+  Cache<Integer, Boolean> cache;
+  int key;
+
+  @Setup
+  public void setup() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .ticker(nanos::get);
+    if (sameThread) {
+      builder.executor(Runnable::run);
+    }
+    cache = builder.build();
+  }
+
+  @Benchmark
+  public void put() {
+    if ((++key % size) == 0) {
+      nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+    }
+    cache.put(key, Boolean.TRUE);
+  }
+}
@@ -21,6 +21,7 @@ import java.io.PrintStream;
 import java.math.RoundingMode;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -67,6 +68,7 @@ public final class MemoryBenchmark {
     maximumSize_expireAfterAccess();
     maximumSize_expireAfterWrite();
     maximumSize_refreshAfterWrite();
+    maximumSize_longKeys();
     maximumWeight();
     expireAfterAccess();
     expireAfterWrite();
@@ -144,6 +146,22 @@ public final class MemoryBenchmark {
     compare("Maximum Size & Refresh after Write", caffeine, guava);
   }
 
+  private void maximumSize_longKeys() {
+    Cache<Long, Integer> boxed = builder().maximumSize(MAXIMUM_SIZE).build();
+    LongCache<Integer> primitive = builder().maximumSize(MAXIMUM_SIZE).buildLong();
+    boxed.cleanUp();
+    primitive.cleanUp();
+
+    String label = "Maximum Size & Long Keys";
+    int leftPadded = Math.max((36 - label.length()) / 2 - 1, 1);
+    out.printf(" %2$-" + leftPadded + "s %s%n", label, " ");
+    String result = FlipTable.of(new String[] { "Cache", "Baseline", "Per Entry" },new String[][] {
+        evaluateLongKeys("Cache<Long, V>", boxed, boxed::put),
+        evaluateLongKeys("LongCache<V>", primitive, primitive::put)
+    });
+    out.println(result);
+  }
+
   private void expireAfterAccess() {
     Cache<Integer, Integer> caffeine = builder()
         .expireAfterAccess(1, TimeUnit.MINUTES).build();
@@ -227,6 +245,10 @@ public final class MemoryBenchmark {
 
     long populated = meter.measureDeep(map);
     long entryOverhead = 2 * FUZZY_SIZE * meter.measureDeep(workingSet.keySet().iterator().next());
+    return perEntry(label, base, populated, entryOverhead);
+  }
+
+  private String[] perEntry(String label, long base, long populated, long entryOverhead) {
     long perEntry = LongMath.divide(populated - entryOverhead - base,
         FUZZY_SIZE, RoundingMode.HALF_EVEN);
     perEntry += ((perEntry & 1) == 0) ? 0 : 1;
@@ -238,6 +260,16 @@ public final class MemoryBenchmark {
     };
   }
 
+  /** Evaluates the per-entry overhead, where a boxed key is counted against the cache. */
+  private String[] evaluateLongKeys(String label, Object cache, BiConsumer<Long, Integer> put) {
+    long base = meter.measureDeep(cache);
+    workingSet.forEach((key, value) -> put.accept(key.longValue(), value));
+
+    long populated = meter.measureDeep(cache);
+    long entryOverhead = FUZZY_SIZE * meter.measureDeep(workingSet.values().iterator().next());
+    return perEntry(label, base, populated, entryOverhead);
+  }
+
   public static void main(String[] args) throws Exception {
     new MemoryBenchmark().run();
   }
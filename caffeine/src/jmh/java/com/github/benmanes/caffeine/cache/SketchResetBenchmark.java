@@ -0,0 +1,67 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A benchmark of the latency distribution when incrementing a large frequency sketch, which
+ * compares aging the table in a single pass to an incremental sweep. The sampling period is
+ * shortened so that every iteration observes multiple aging passes, which appear as the outliers
+ * at the highest percentiles.
+ * <p>
+ * <pre>{@code
+ *   ./gradlew jmh -PincludePattern=SketchResetBenchmark
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SketchResetBenchmark {
+
+  @Param({"1000000", "10000000", "50000000"})
+  int maximumSize;
+
+  @Param({"false", "true"})
+  boolean incremental;
+
+  FrequencySketch<Integer> sketch;
+  int key;
+
+  @Setup
+  public void setup() {
+    sketch = new FrequencySketch<>();
+    sketch.ensureCapacity(maximumSize);
+    sketch.incrementalReset = incremental;
+    sketch.sampleSize = sketch.table.length;
+  }
+
+  @Benchmark
+  public void increment() {
+    sketch.increment(key++);
+  }
+}
@@ -29,10 +29,17 @@ public final class CaffeineCache<K, V> implements BasicCache<K, V> {
   private final Map<K, V> map;
 
   public CaffeineCache(int maximumSize) {
-    cache = Caffeine.newBuilder()
+    this(maximumSize, 1);
+  }
+
+  public CaffeineCache(int maximumSize, int shards) {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
         .initialCapacity(maximumSize)
-        .maximumSize(maximumSize)
-        .build();
+        .maximumSize(maximumSize);
+    if (shards > 1) {
+      builder.shards(shards);
+    }
+    cache = builder.build();
     map = cache.asMap();
   }
 
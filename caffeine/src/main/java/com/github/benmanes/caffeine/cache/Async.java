@@ -60,6 +60,17 @@ final class Async {
     }
   }
 
+  /** Completes the target with the source's result when the source completes. */
+  static <V> void propagate(CompletableFuture<V> source, CompletableFuture<V> target) {
+    source.whenComplete((value, error) -> {
+      if (error == null) {
+        target.complete(value);
+      } else {
+        target.completeExceptionally(error);
+      }
+    });
+  }
+
   /**
    * A removal listener that asynchronously forwards the value stored in a {@link CompletableFuture}
    * if successful to the user-supplied removal listener.
@@ -167,4 +178,54 @@ final class Async {
       return delegate;
     }
   }
+
+  /**
+   * A refresher for asynchronous computations. When the value is being loaded this refresher
+   * returns {@code Long.MAX_VALUE} to indicate that the entry should not be refreshed until the
+   * future has been completed. On completion the entry's refresh time is recalculated by the cache.
+   */
+  static final class AsyncRefresher<K, V>
+      implements Refresher<K, CompletableFuture<V>>, Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final Refresher<K, V> delegate;
+
+    AsyncRefresher(Refresher<K, V> delegate) {
+      this.delegate = requireNonNull(delegate);
+    }
+
+    @Override
+    public long refreshAfterCreate(K key, CompletableFuture<V> future, long currentTime) {
+      if (isReady(future)) {
+        long duration = delegate.refreshAfterCreate(key, future.join(), currentTime);
+        return Math.min(duration, MAXIMUM_EXPIRY);
+      }
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public long refreshAfterUpdate(K key, CompletableFuture<V> future,
+        long currentTime, long currentDuration) {
+      if (isReady(future)) {
+        long duration = delegate.refreshAfterUpdate(
+            key, future.join(), currentTime, currentDuration);
+        return Math.min(duration, MAXIMUM_EXPIRY);
+      }
+      return Long.MAX_VALUE;
+    }
+
+    @Override
+    public long refreshAfterRead(K key, CompletableFuture<V> future,
+        long currentTime, long currentDuration) {
+      if (isReady(future)) {
+        long duration = delegate.refreshAfterRead(key, future.join(), currentTime, currentDuration);
+        return Math.min(duration, MAXIMUM_EXPIRY);
+      }
+      return Long.MAX_VALUE;
+    }
+
+    Object writeReplace() {
+      return delegate;
+    }
+  }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link RemovalListener} that receives the notifications in batches. When configured on a
+ * size-bounded or expiring cache, the entries that are evicted, expired, or collected during the
+ * same maintenance pass are delivered as a single list by one task on the executor, rather than
+ * by a task per entry. This reduces the overhead of a large number of removals, such as after the
+ * maximum size is reduced, and allows the listener to perform its cleanup in bulk. The removals
+ * that are performed by a caller, such as an explicit invalidation or a replacement, are delivered
+ * as a batch of one.
+ * <p>
+ * An instance may be called concurrently by multiple threads to process different batches.
+ * Implementations of this interface should avoid performing blocking calls or synchronizing on
+ * shared resources.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the most general type of keys this listener can listen for; for example {@code Object}
+ *        if any key is acceptable
+ * @param <V> the most general type of values this listener can listen for; for example
+ *        {@code Object} if any value is acceptable
+ */
+@ThreadSafe
+@FunctionalInterface
+public interface BatchRemovalListener<K, V> extends RemovalListener<K, V> {
+
+  /**
+   * Notifies the listener that the removals occurred at some point in the past.
+   * <p>
+   * This does not always signify that the keys are now absent from the cache, as they may have
+   * already been re-added.
+   *
+   * @param notifications the unmodifiable list of removed entries, in the order of their removal
+   */
+  void onRemovals(@Nonnull List<RemovalNotification<K, V>> notifications);
+
+  @Override
+  default void onRemoval(@Nullable K key, @Nullable V value, @Nonnull RemovalCause cause) {
+    onRemovals(Collections.singletonList(new RemovalNotification<>(key, value, cause)));
+  }
+}
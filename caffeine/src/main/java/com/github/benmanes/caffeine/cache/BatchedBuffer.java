@@ -0,0 +1,244 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.github.benmanes.caffeine.base.UnsafeAccess;
+
+/**
+ * A non-blocking, bounded buffer that gathers the elements into batches that are striped across
+ * threads and published into a shared ring buffer with a single CAS.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <E> the type of elements maintained by this buffer
+ */
+final class BatchedBuffer<E> extends BatchedHeader.ReadAndWriteCounterRef implements Buffer<E> {
+  /*
+   * A producer selects a batch by its thread's probe, as the StripedBuffer does, and adds the
+   * element if it acquires the batch's try-lock. When the batch is full the producer tries once to
+   * CAS the write count forward by the batch's size. If successful then the producer lazily
+   * publishes the elements into the reserved range of slots. If the ring does not have enough
+   * capacity, or the CAS fails due to contention, then the batch is retained and publishing is
+   * attempted again on the next offer. The element is discarded if the batch is still full when it
+   * is offered, or if another thread holds the batch, in which case the producer rehashes to a
+   * different batch for its next offer. A producer that does not share its batch therefore loses
+   * no events unless the consumer falls behind by the ring's entire capacity.
+   *
+   * Because the producer writes a contiguous range of slots, the ring is not spaced to avoid false
+   * sharing as in the BoundedBuffer, which allows a much larger ring at the same footprint.
+   *
+   * The consumer takes the available elements from the ring, clearing them and lazily setting the
+   * next read count. It then publishes the partial batches that are not in use and takes those
+   * elements as well, so that an element is not retained beyond the next drain and a thread which
+   * both records and drains, such as when the cache's executor runs the maintenance work on the
+   * calling thread, observes all of its events.
+   */
+
+  /** The number of elements gathered into a batch before publishing them. */
+  static final int BATCH_SIZE = 16;
+
+  /** The number of batches, which is the same as the maximum number of the striped buffers. */
+  static final int BATCHES = StripedBuffer.MAXIMUM_TABLE_SIZE;
+  static final int BATCHES_MASK = BATCHES - 1;
+
+  /** The maximum number of elements in the ring buffer. */
+  static final int RING_SIZE = 1024;
+  static final int RING_MASK = RING_SIZE - 1;
+
+  final AtomicReferenceArray<E> buffer;
+  final Batch<E>[] batches;
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  BatchedBuffer() {
+    super(/* writeCounter */ 0L);
+    buffer = new AtomicReferenceArray<>(RING_SIZE);
+    batches = new Batch[BATCHES];
+    for (int i = 0; i < BATCHES; i++) {
+      batches[i] = new Batch<>();
+    }
+  }
+
+  @Override
+  public int offer(E e) {
+    int h = StripedBuffer.getProbe();
+    if (h == 0) {
+      ThreadLocalRandom.current(); // force initialization
+      h = StripedBuffer.getProbe();
+    }
+    Batch<E> batch = batches[h & BATCHES_MASK];
+    if (!batch.tryLock()) {
+      StripedBuffer.advanceProbe(h);
+      return Buffer.FAILED;
+    }
+    try {
+      if (batch.size == BATCH_SIZE) {
+        int result = publish(batch);
+        if (result != Buffer.SUCCESS) {
+          return result;
+        }
+      }
+      batch.elements[batch.size++] = e;
+      return (batch.size == BATCH_SIZE) ? publish(batch) : Buffer.SUCCESS;
+    } finally {
+      batch.unlock();
+    }
+  }
+
+  /** Attempts to publish the batch's elements into the ring buffer, while holding its lock. */
+  int publish(Batch<E> batch) {
+    long head = readCounter;
+    long tail = relaxedWriteCounter();
+    long size = (tail - head);
+    if (size > (RING_SIZE - batch.size)) {
+      return Buffer.FULL;
+    }
+    if (!casWriteCounter(tail, tail + batch.size)) {
+      return Buffer.FAILED;
+    }
+    for (int i = 0; i < batch.size; i++) {
+      int index = (int) ((tail + i) & RING_MASK);
+      buffer.lazySet(index, batch.elements[i]);
+      batch.elements[i] = null;
+    }
+    batch.size = 0;
+    return Buffer.SUCCESS;
+  }
+
+  @Override
+  public void drainTo(Consumer<E> consumer) {
+    drainRing(consumer);
+    if (flush()) {
+      drainRing(consumer);
+    }
+  }
+
+  /** Publishes the partial batches that are not in use and returns if any were published. */
+  boolean flush() {
+    boolean published = false;
+    for (Batch<E> batch : batches) {
+      if (batch.tryLock()) {
+        try {
+          if (batch.size != 0) {
+            published |= (publish(batch) == Buffer.SUCCESS);
+          }
+        } finally {
+          batch.unlock();
+        }
+      }
+    }
+    return published;
+  }
+
+  /** Drains the elements that were published into the ring buffer. */
+  void drainRing(Consumer<E> consumer) {
+    long head = readCounter;
+    long tail = relaxedWriteCounter();
+    long size = (tail - head);
+    if (size == 0) {
+      return;
+    }
+    do {
+      int index = (int) (head & RING_MASK);
+      E e = buffer.get(index);
+      if (e == null) {
+        // not published yet
+        break;
+      }
+      buffer.lazySet(index, null);
+      consumer.accept(e);
+      head++;
+    } while (head != tail);
+    lazySetReadCounter(head);
+  }
+
+  @Override
+  public int reads() {
+    return (int) readCounter;
+  }
+
+  @Override
+  public int writes() {
+    return (int) writeCounter;
+  }
+
+  /** The elements recorded by the threads that share this batch which have not been published. */
+  static final class Batch<E> extends AtomicBoolean {
+    private static final long serialVersionUID = 1L;
+
+    @SuppressWarnings("unchecked")
+    final E[] elements = (E[]) new Object[BATCH_SIZE];
+    int size;
+
+    boolean tryLock() {
+      return !get() && compareAndSet(false, true);
+    }
+
+    void unlock() {
+      lazySet(false);
+    }
+  }
+}
+
+/** The namespace for field padding through inheritance. */
+final class BatchedHeader {
+
+  @SuppressWarnings("PMD.AbstractClassWithoutAbstractMethod")
+  abstract static class PadReadCounter {
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+    long p10, p11, p12, p13, p14, p15, p16;
+  }
+
+  /** Enforces a memory layout to avoid false sharing by padding the read count. */
+  abstract static class ReadCounterRef extends PadReadCounter {
+    static final long READ_OFFSET =
+        UnsafeAccess.objectFieldOffset(ReadCounterRef.class, "readCounter");
+
+    volatile long readCounter;
+
+    void lazySetReadCounter(long count) {
+      UnsafeAccess.UNSAFE.putOrderedLong(this, READ_OFFSET, count);
+    }
+  }
+
+  abstract static class PadWriteCounter extends ReadCounterRef {
+    long p20, p21, p22, p23, p24, p25, p26, p27;
+    long p30, p31, p32, p33, p34, p35, p36;
+  }
+
+  /** Enforces a memory layout to avoid false sharing by padding the write count. */
+  abstract static class ReadAndWriteCounterRef extends PadWriteCounter {
+    static final long WRITE_OFFSET =
+        UnsafeAccess.objectFieldOffset(ReadAndWriteCounterRef.class, "writeCounter");
+
+    volatile long writeCounter;
+
+    ReadAndWriteCounterRef(long writeCounter) {
+      UnsafeAccess.UNSAFE.putOrderedLong(this, WRITE_OFFSET, writeCounter);
+    }
+
+    long relaxedWriteCounter() {
+      return UnsafeAccess.UNSAFE.getLong(this, WRITE_OFFSET);
+    }
+
+    boolean casWriteCounter(long expect, long update) {
+      return UnsafeAccess.UNSAFE.compareAndSwapLong(this, WRITE_OFFSET, expect, update);
+    }
+  }
+}
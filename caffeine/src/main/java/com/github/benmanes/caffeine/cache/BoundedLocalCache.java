@@ -50,7 +50,9 @@ import java.util.Spliterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
@@ -108,6 +110,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
    * buffers are drained asynchronously to minimize the request latency and uses a state machine to
    * determine when to schedule a task on an executor.
    *
+   * The work performed by a single maintenance pass is bounded so that a large backlog, such as due
+   * to a mass expiration or a reduction of the maximum size, does not hold the lock for a long
+   * duration or penalize the calling thread. When the pass exhausts its budget, the drain status is
+   * left as required and the remaining work is resumed by a subsequent execution. As the budget
+   * exceeds the capacity of the write buffer, the eviction of new entries keeps pace with their
+   * insertion so that the cache exceeds its maximum by only a bounded amount.
+   *
    * Due to a lack of a strict ordering guarantee, a task can be executed out-of-order, such as a
    * removal followed by its addition. The state of the entry is encoded using the key field to
    * avoid additional memory. An entry is "alive" if it is in both the hash table and the page
@@ -135,6 +144,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
    * The windowing allows the policy to have a high hit rate when entries exhibit a bursty (high
    * temporal, low frequency) access pattern. The eden space uses LRU and the main space uses
    * Segmented LRU.
+   *
+   * The relative sizes of the eden and main spaces are adapted at runtime using a hill climbing
+   * optimization. The hit rate is sampled over a period proportional to the maximum size and, if it
+   * improved since the prior sample, the previous adjustment is repeated in the same direction or
+   * otherwise it is reversed. A recency-skewed workload will grow the eden space and a
+   * frequency-skewed workload will shrink it, while the step size decays so that the configuration
+   * settles. A large change in the hit rate indicates a shift in the workload and restarts the
+   * climb with the initial step size.
    */
 
   static final Logger logger = Logger.getLogger(BoundedLocalCache.class.getName());
@@ -149,10 +166,22 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
   static final int WRITE_BUFFER_RETRIES = 100;
   /** The maximum weighted capacity of the map. */
   static final long MAXIMUM_CAPACITY = Long.MAX_VALUE - Integer.MAX_VALUE;
-  /** The percent of the maximum weighted capacity dedicated to the main space. */
+  /** The initial percent of the maximum weighted capacity dedicated to the main space. */
   static final double PERCENT_MAIN = 0.99d;
   /** The percent of the maximum weighted capacity dedicated to the main's protected space. */
   static final double PERCENT_MAIN_PROTECTED = 0.80d;
+  /** The difference in hit rates that restarts the climber. */
+  static final double HILL_CLIMBER_RESTART_THRESHOLD = 0.05d;
+  /** The percent of the total size to adapt the eden space by. */
+  static final double HILL_CLIMBER_STEP_PERCENT = 0.0625d;
+  /** The rate to decrease the step size to adapt by. */
+  static final double HILL_CLIMBER_STEP_DECAY_RATE = 0.98d;
+  /** The maximum number of entries that are expired or evicted by a single maintenance pass. */
+  static final int MAINTENANCE_WORK_MAX = 16 * WRITE_BUFFER_MAX;
+  /** The maximum number of entries that can be transfered between queues. */
+  static final int QUEUE_TRANSFER_THRESHOLD = 1_000;
+  /** The maximum number of victims whose frequencies are combined to admit a heavy candidate. */
+  static final int ADMIT_WEIGHTED_VICTIMS = 32;
   /** The maximum time window between entry updates before the expiration must be reordered. */
   static final long EXPIRE_WRITE_TOLERANCE = TimeUnit.SECONDS.toNanos(1);
 
@@ -163,30 +192,52 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
   final Buffer<Node<K, V>> readBuffer;
   final NodeFactory<K, V> nodeFactory;
   final ReentrantLock evictionLock;
+  final VictimCache<K, V> victimCache;
+  @Nullable final PolicyDiagnostics diagnostics;
   final CacheWriter<K, V> writer;
   final Weigher<K, V> weigher;
   final Executor executor;
+  final Executor listenerExecutor;
+  final Executor maintenanceExecutor;
+  final boolean batchesRemovalNotifications;
+  final boolean weightedAdmission;
   final boolean isAsync;
 
+  /** The remaining budget of the maintenance pass, which is negative if it was exhausted. */
+  @GuardedBy("evictionLock")
+  int maintenanceWork;
+
+  /** The removals during the maintenance pass that are delivered to the listener as a batch. */
+  @GuardedBy("evictionLock")
+  @Nullable List<RemovalNotification<K, V>> pendingNotifications;
+
   // The collection views
   @Nullable transient Set<K> keySet;
   @Nullable transient Collection<V> values;
   @Nullable transient Set<Entry<K, V>> entrySet;
+  @Nullable transient volatile ConcurrentMap<Object, CompletableFuture<?>> refreshes;
 
   /** Creates an instance based on the builder's configuration. */
   protected BoundedLocalCache(Caffeine<K, V> builder,
       @Nullable CacheLoader<K, V> cacheLoader, boolean isAsync) {
     this.isAsync = isAsync;
     this.cacheLoader = cacheLoader;
-    executor = builder.getExecutor();
+    executor = builder.getLoaderExecutor();
+    listenerExecutor = builder.getListenerExecutor();
+    maintenanceExecutor = builder.getMaintenanceExecutor();
+    batchesRemovalNotifications = !isAsync
+        && (builder.removalListener instanceof BatchRemovalListener<?, ?>);
     writer = builder.getCacheWriter();
+    victimCache = builder.getVictimCache();
     evictionLock = new ReentrantLock();
+    diagnostics = builder.isRecordingDiagnostics() ? new PolicyDiagnostics() : null;
     weigher = builder.getWeigher(isAsync);
+    weightedAdmission = builder.isWeightedAdmission();
     drainBuffersTask = new PerformCleanupTask();
     nodeFactory = NodeFactory.newFactory(builder, isAsync);
     data = new ConcurrentHashMap<>(builder.getInitialCapacity());
     readBuffer = evicts() || collectKeys() || collectValues() || expiresAfterAccess()
-        ? new BoundedBuffer<>()
+        ? newReadBuffer(builder.getReadBufferStrategy())
         : Buffer.disabled();
     accessPolicy = (evicts() || expiresAfterAccess()) ? this::onAccess : e -> {};
 
@@ -195,6 +246,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     }
   }
 
+  /** Returns a buffer that records the reads using the specified strategy. */
+  static <E> Buffer<E> newReadBuffer(ReadBufferStrategy strategy) {
+    return (strategy == ReadBufferStrategy.BATCHED)
+        ? new BatchedBuffer<>()
+        : new BoundedBuffer<>();
+  }
+
   static int ceilingPowerOfTwo(int x) {
     // From Hacker's Delight, Chapter 3, Harry S. Warren Jr.
     return 1 << -Integer.numberOfLeadingZeros(x - 1);
@@ -246,6 +304,56 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     return (writer != CacheWriter.disabledWriter());
   }
 
+  /* ---------------- Victim Cache Support -------------- */
+
+  /** Returns if the entries evicted due to the size constraint are retained by a victim cache. */
+  boolean hasVictimCache() {
+    return (victimCache != VictimCache.disabledVictimCache());
+  }
+
+  /**
+   * Retains the entry evicted due to the size constraint in the victim cache. This is called while
+   * the entry's mapping is locked, so the victim cache should defer any slow work.
+   */
+  void spill(K key, V value) {
+    try {
+      victimCache.put(key, value);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by victim cache", t);
+    }
+  }
+
+  /** Discards the victim cache's copy of the entry, as the mapping was created or removed. */
+  void invalidateVictim(Object key) {
+    try {
+      victimCache.invalidate(key);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by victim cache", t);
+    }
+  }
+
+  /**
+   * Returns the value retained by the victim cache, which is moved back into this cache, or null if
+   * absent.
+   */
+  @Nullable V promote(Object key) {
+    V value;
+    try {
+      value = victimCache.remove(key);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by victim cache", t);
+      return null;
+    }
+    if (value == null) {
+      return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    K castedKey = (K) key;
+    V current = put(castedKey, value, expiry(), /* notifyWriter */ false, /* onlyIfAbsent */ true);
+    return (current == null) ? value : current;
+  }
+
   /* ---------------- Stats Support -------------- */
 
   @Override
@@ -287,7 +395,32 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       }
     };
     try {
-      executor().execute(task);
+      listenerExecutor.execute(task);
+    } catch (Throwable t) {
+      logger.log(Level.SEVERE, "Exception thrown when submitting removal listener", t);
+      task.run();
+    }
+  }
+
+  /**
+   * Delivers the removals that occurred during a maintenance pass to the listener as a single
+   * batch.
+   *
+   * @param notifications the removed entries, in the order of their removal
+   */
+  @SuppressWarnings("unchecked")
+  void notifyRemovals(List<RemovalNotification<K, V>> notifications) {
+    BatchRemovalListener<K, V> listener = (BatchRemovalListener<K, V>) removalListener();
+    List<RemovalNotification<K, V>> batch = Collections.unmodifiableList(notifications);
+    Runnable task = () -> {
+      try {
+        listener.onRemovals(batch);
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown by removal listener", t);
+      }
+    };
+    try {
+      listenerExecutor.execute(task);
     } catch (Throwable t) {
       logger.log(Level.SEVERE, "Exception thrown when submitting removal listener", t);
       task.run();
@@ -365,6 +498,16 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     throw new UnsupportedOperationException();
   }
 
+  /** Returns the batcher that coalesces the automatic refreshes, or null if not configured. */
+  protected @Nullable RefreshBatcher<K, V> refreshBatcher() {
+    return null;
+  }
+
+  /** Returns the refresher for a variable refresh policy, or null if the policy is fixed. */
+  protected @Nullable Refresher<K, V> refresher() {
+    return null;
+  }
+
   @Override
   public boolean hasWriteTime() {
     return expiresAfterWrite() || refreshAfterWrite();
@@ -384,6 +527,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     throw new UnsupportedOperationException();
   }
 
+  /** Returns the pacer that schedules the maintenance work, or null if not configured. */
+  protected @Nullable Pacer pacer() {
+    return null;
+  }
+
   /* ---------------- Eviction Support -------------- */
 
   /** Returns if the cache evicts entries due to a maximum size or weight threshold. */
@@ -435,6 +583,61 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     throw new UnsupportedOperationException();
   }
 
+  /** Returns the amount to adapt the eden space by on the next maintenance cycle. */
+  @GuardedBy("evictionLock")
+  protected long adjustment() {
+    throw new UnsupportedOperationException();
+  }
+
+  @GuardedBy("evictionLock")
+  protected void setAdjustment(long amount) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns the amount, positive or negative, that the climber will next adapt by. */
+  @GuardedBy("evictionLock")
+  protected double stepSize() {
+    throw new UnsupportedOperationException();
+  }
+
+  @GuardedBy("evictionLock")
+  protected void setStepSize(double stepSize) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns the number of hits recorded by the policy in the current sample period. */
+  @GuardedBy("evictionLock")
+  protected int hitsInSample() {
+    throw new UnsupportedOperationException();
+  }
+
+  @GuardedBy("evictionLock")
+  protected void setHitsInSample(int hitCount) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns the number of misses recorded by the policy in the current sample period. */
+  @GuardedBy("evictionLock")
+  protected int missesInSample() {
+    throw new UnsupportedOperationException();
+  }
+
+  @GuardedBy("evictionLock")
+  protected void setMissesInSample(int missCount) {
+    throw new UnsupportedOperationException();
+  }
+
+  /** Returns the hit rate observed in the prior sample period. */
+  @GuardedBy("evictionLock")
+  protected double previousSampleHitRate() {
+    throw new UnsupportedOperationException();
+  }
+
+  @GuardedBy("evictionLock")
+  protected void setPreviousSampleHitRate(double hitRate) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Sets the maximum weighted size of the cache. The caller may need to perform a maintenance cycle
    * to eagerly evicts entries until the cache shrinks to the appropriate size.
@@ -451,6 +654,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     lazySetEdenMaximum(eden);
     lazySetMainProtectedMaximum(mainProtected);
 
+    setHitsInSample(0);
+    setMissesInSample(0);
+    setPreviousSampleHitRate(0.0);
+    setStepSize(-HILL_CLIMBER_STEP_PERCENT * max);
+
     if ((frequencySketch() != null) && !isWeighted() && (weightedSize() >= (max >>> 1))) {
       // Lazily initialize when close to the maximum size
       frequencySketch().ensureCapacity(max);
@@ -541,7 +749,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
    * The eden space candidates were previously placed in the MRU position and the eviction policy's
    * victim is at the LRU position. The two ends of the queue are evaluated while an eviction is
    * required. The number of remaining candidates is provided and decremented on eviction, so that
-   * when there are no more candidates the victim is evicted.
+   * when there are no more candidates the victim is evicted. Only the evictions are charged to the
+   * maintenance pass's budget, so that skipping over zero weight entries or advancing to the next
+   * queue does not prevent the pass from reaching an entry that can be evicted.
    *
    * @param candidates the number of candidate entries evicted from the eden space
    */
@@ -582,6 +792,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         continue;
       }
 
+      // Each of the remaining steps evicts an entry, so stop if the budget is exhausted
+      if (!consumeMaintenanceWork()) {
+        break;
+      }
+
       // Evict immediately if only one of the entries is present
       if (victim == null) {
         @SuppressWarnings("NullAway")
@@ -625,7 +840,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
       // Evict the entry with the lowest frequency
       candidates--;
-      if (admit(candidateKey, victimKey)) {
+      boolean admitted = admit(candidateKey, victimKey)
+          && (!weightedAdmission || admitByWeight(candidate, victim));
+      if (diagnostics != null) {
+        diagnostics.recordAdmission(admitted);
+      }
+      if (admitted) {
         Node<K, V> evict = victim;
         victim = victim.getNextInAccessOrder();
         evictEntry(evict, RemovalCause.SIZE, 0L);
@@ -661,7 +881,215 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       return false;
     }
     int random = ThreadLocalRandom.current().nextInt();
-    return ((random & 127) == 0);
+    boolean admit = ((random & 127) == 0);
+    if (admit && (diagnostics != null)) {
+      diagnostics.recordHashFloodProtection();
+    }
+    return admit;
+  }
+
+  /**
+   * Determines if the candidate should be accepted into the main space when it is heavier than the
+   * victim, as determined by its frequency relative to the combined frequency of the entries that
+   * would be evicted to make room for it. The victims are the entries that follow the eviction
+   * policy's victim in its queue, up to the lesser of the candidate's weight and the excess weight
+   * of the cache. At most {@link #ADMIT_WEIGHTED_VICTIMS} entries are considered so that the cost
+   * of evicting many light entries remains linear, as the subsequent victims are considered when
+   * the candidate is re-evaluated against the next one.
+   *
+   * @param candidate the entry being proposed for long term retention
+   * @param victim the entry chosen by the eviction policy for replacement
+   * @return if the candidate should be admitted and the victim ejected
+   */
+  @GuardedBy("evictionLock")
+  boolean admitByWeight(Node<K, V> candidate, Node<K, V> victim) {
+    long required = Math.min(candidate.getPolicyWeight(), weightedSize() - maximum());
+    if (victim.getPolicyWeight() >= required) {
+      return true;
+    }
+
+    int candidateFreq = frequencySketch().frequency(candidate.getKey());
+    int victimsFreq = 0;
+    long victimsWeight = 0;
+    Node<K, V> node = victim;
+    for (int i = 0; i < ADMIT_WEIGHTED_VICTIMS; i++) {
+      K key = node.getKey();
+      if (key != null) {
+        victimsFreq += frequencySketch().frequency(key);
+        if (victimsFreq >= candidateFreq) {
+          return false;
+        }
+      }
+      victimsWeight += node.getPolicyWeight();
+      node = node.getNextInAccessOrder();
+      if ((victimsWeight >= required) || (node == null) || (node == candidate)) {
+        break;
+      }
+    }
+    return true;
+  }
+
+  /** Adapts the eviction policy towards the optimal recency / frequency configuration. */
+  @GuardedBy("evictionLock")
+  void climb() {
+    if (!evicts()) {
+      return;
+    }
+
+    determineAdjustment();
+    demoteFromMainProtected();
+    long amount = adjustment();
+    if (amount == 0) {
+      return;
+    } else if (amount > 0) {
+      increaseEden();
+    } else {
+      decreaseEden();
+    }
+  }
+
+  /**
+   * Calculates the amount to adapt the eden space by and sets {@link #adjustment()} accordingly.
+   */
+  @GuardedBy("evictionLock")
+  void determineAdjustment() {
+    if (frequencySketch().isNotInitialized()) {
+      setPreviousSampleHitRate(0.0);
+      setMissesInSample(0);
+      setHitsInSample(0);
+      return;
+    }
+
+    int requestCount = hitsInSample() + missesInSample();
+    if (requestCount < frequencySketch().sampleSize) {
+      return;
+    }
+
+    double hitRate = (double) hitsInSample() / requestCount;
+    double hitRateChange = hitRate - previousSampleHitRate();
+    double amount = (hitRateChange >= 0) ? stepSize() : -stepSize();
+    double nextStepSize = (Math.abs(hitRateChange) >= HILL_CLIMBER_RESTART_THRESHOLD)
+        ? HILL_CLIMBER_STEP_PERCENT * maximum() * (amount >= 0 ? 1 : -1)
+        : HILL_CLIMBER_STEP_DECAY_RATE * amount;
+    setPreviousSampleHitRate(hitRate);
+    setAdjustment((long) amount);
+    setStepSize(nextStepSize);
+    setMissesInSample(0);
+    setHitsInSample(0);
+  }
+
+  /**
+   * Increases the size of the eden space and decreases the main space. The main's protected space
+   * is shrunk and its coldest entries, up to the adjustment's weight, are moved into the eden
+   * space. The remaining adjustment, if a transfer could not be fully performed, is retained so
+   * that it may be applied on a subsequent maintenance cycle.
+   */
+  @GuardedBy("evictionLock")
+  void increaseEden() {
+    if (mainProtectedMaximum() == 0) {
+      return;
+    }
+
+    long quota = Math.min(adjustment(), mainProtectedMaximum());
+    lazySetMainProtectedMaximum(mainProtectedMaximum() - quota);
+    lazySetEdenMaximum(edenMaximum() + quota);
+    demoteFromMainProtected();
+
+    for (int i = 0; i < QUEUE_TRANSFER_THRESHOLD; i++) {
+      Node<K, V> candidate = accessOrderProbationDeque().peek();
+      boolean probation = true;
+      if ((candidate == null) || (quota < candidate.getPolicyWeight())) {
+        candidate = accessOrderProtectedDeque().peek();
+        probation = false;
+      }
+      if (candidate == null) {
+        break;
+      }
+
+      int weight = candidate.getPolicyWeight();
+      if (quota < weight) {
+        break;
+      }
+
+      quota -= weight;
+      if (probation) {
+        accessOrderProbationDeque().remove(candidate);
+      } else {
+        lazySetMainProtectedWeightedSize(mainProtectedWeightedSize() - weight);
+        accessOrderProtectedDeque().remove(candidate);
+      }
+      lazySetEdenWeightedSize(edenWeightedSize() + weight);
+      accessOrderEdenDeque().add(candidate);
+      candidate.makeEden();
+    }
+
+    lazySetMainProtectedMaximum(mainProtectedMaximum() + quota);
+    lazySetEdenMaximum(edenMaximum() - quota);
+    setAdjustment(quota);
+  }
+
+  /**
+   * Decreases the size of the eden space and increases the main space. The eden's coldest entries,
+   * up to the adjustment's weight, are moved into the main's probation space. The remaining
+   * adjustment, if a transfer could not be fully performed, is retained so that it may be applied
+   * on a subsequent maintenance cycle.
+   */
+  @GuardedBy("evictionLock")
+  void decreaseEden() {
+    if (edenMaximum() <= 1) {
+      return;
+    }
+
+    long quota = Math.min(-adjustment(), Math.max(0, edenMaximum() - 1));
+    lazySetMainProtectedMaximum(mainProtectedMaximum() + quota);
+    lazySetEdenMaximum(edenMaximum() - quota);
+
+    for (int i = 0; i < QUEUE_TRANSFER_THRESHOLD; i++) {
+      Node<K, V> candidate = accessOrderEdenDeque().peek();
+      if (candidate == null) {
+        break;
+      }
+
+      int weight = candidate.getPolicyWeight();
+      if (quota < weight) {
+        break;
+      }
+
+      quota -= weight;
+      lazySetEdenWeightedSize(edenWeightedSize() - weight);
+      accessOrderEdenDeque().remove(candidate);
+      accessOrderProbationDeque().add(candidate);
+      candidate.makeMainProbation();
+    }
+
+    lazySetMainProtectedMaximum(mainProtectedMaximum() - quota);
+    lazySetEdenMaximum(edenMaximum() + quota);
+    setAdjustment(-quota);
+  }
+
+  /** Transfers the nodes from the protected to the probation space if it exceeds the maximum. */
+  @GuardedBy("evictionLock")
+  void demoteFromMainProtected() {
+    long mainProtectedMaximum = mainProtectedMaximum();
+    long mainProtectedWeightedSize = mainProtectedWeightedSize();
+    if (mainProtectedWeightedSize <= mainProtectedMaximum) {
+      return;
+    }
+
+    for (int i = 0; i < QUEUE_TRANSFER_THRESHOLD; i++) {
+      if (mainProtectedWeightedSize <= mainProtectedMaximum) {
+        break;
+      }
+
+      Node<K, V> demoted = accessOrderProtectedDeque().poll();
+      if (demoted == null) {
+        break;
+      }
+      demoted.makeMainProbation();
+      accessOrderProbationDeque().add(demoted);
+      mainProtectedWeightedSize -= demoted.getPolicyWeight();
+    }
+    lazySetMainProtectedWeightedSize(mainProtectedWeightedSize);
   }
 
   /** Expires entries that have expired by access, write, or variable. */
@@ -671,6 +1099,16 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     expireAfterAccessEntries(now);
     expireAfterWriteEntries(now);
     expireVariableEntries(now);
+
+    Pacer pacer = pacer();
+    if (pacer != null) {
+      long delay = getExpirationDelay(now);
+      if (delay == Long.MAX_VALUE) {
+        pacer.cancel();
+      } else {
+        pacer.schedule(maintenanceExecutor, drainBuffersTask, now, delay);
+      }
+    }
   }
 
   /** Expires entries in the access-order queue. */
@@ -693,7 +1131,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     long duration = expiresAfterAccessNanos();
     for (;;) {
       Node<K, V> node = accessOrderDeque.peekFirst();
-      if ((node == null) || ((now - node.getAccessTime()) < duration)) {
+      if ((node == null) || ((now - node.getAccessTime()) < duration)
+          || !consumeMaintenanceWork()) {
         return;
       }
       evictEntry(node, RemovalCause.EXPIRED, now);
@@ -709,7 +1148,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     long duration = expiresAfterWriteNanos();
     for (;;) {
       final Node<K, V> node = writeOrderDeque().peekFirst();
-      if ((node == null) || ((now - node.getWriteTime()) < duration)) {
+      if ((node == null) || ((now - node.getWriteTime()) < duration)
+          || !consumeMaintenanceWork()) {
         break;
       }
       evictEntry(node, RemovalCause.EXPIRED, now);
@@ -724,6 +1164,38 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     }
   }
 
+  /** Returns the duration until the next item expires, or {@link Long#MAX_VALUE} if none. */
+  @GuardedBy("evictionLock")
+  long getExpirationDelay(long now) {
+    long delay = Long.MAX_VALUE;
+    if (expiresAfterAccess()) {
+      delay = Math.min(delay, getExpirationDelay(accessOrderEdenDeque(), now));
+      if (evicts()) {
+        delay = Math.min(delay, getExpirationDelay(accessOrderProbationDeque(), now));
+        delay = Math.min(delay, getExpirationDelay(accessOrderProtectedDeque(), now));
+      }
+    }
+    if (expiresAfterWrite()) {
+      Node<K, V> node = writeOrderDeque().peekFirst();
+      if (node != null) {
+        delay = Math.min(delay, expiresAfterWriteNanos() - (now - node.getWriteTime()));
+      }
+    }
+    if (expiresVariable()) {
+      delay = Math.min(delay, timerWheel().getExpirationDelay());
+    }
+    return delay;
+  }
+
+  /** Returns the duration until the head of the access-order queue expires. */
+  @GuardedBy("evictionLock")
+  long getExpirationDelay(AccessOrderDeque<Node<K, V>> accessOrderDeque, long now) {
+    Node<K, V> node = accessOrderDeque.peekFirst();
+    return (node == null)
+        ? Long.MAX_VALUE
+        : expiresAfterAccessNanos() - (now - node.getAccessTime());
+  }
+
   /** Returns if the entry has expired. */
   boolean hasExpired(Node<K, V> node, long now) {
     if (isComputingAsync(node)) {
@@ -786,6 +1258,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         writer.delete(key, value[0], actualCause[0]);
         makeDead(n);
       }
+
+      // Spilled while the mapping is locked, so that a concurrent removal or replacement of the
+      // key invalidates the victim cache's copy afterwards rather than being overtaken by it
+      if ((actualCause[0] == RemovalCause.SIZE) && hasVictimCache()) {
+        spill(key, value[0]);
+      }
       removed[0] = true;
       return null;
     });
@@ -815,7 +1293,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
     if (removed[0]) {
       statsCounter().recordEviction(node.getWeight());
-      if (hasRemovalListener()) {
+      if (batchesRemovalNotifications) {
+        // Defer the notification so that the removals of the maintenance pass are delivered as a
+        // single batch when the pass completes
+        if (pendingNotifications == null) {
+          pendingNotifications = new ArrayList<>();
+        }
+        pendingNotifications.add(new RemovalNotification<>(key, value[0], actualCause[0]));
+      } else if (hasRemovalListener()) {
         // Notify the listener only if the entry was evicted. This must be performed as the last
         // step during eviction to safe guard against the executor rejecting the notification task.
         notifyRemoval(key, value[0], actualCause[0]);
@@ -842,6 +1327,9 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     }
 
     boolean delayable = skipReadBuffer() || (readBuffer.offer(node) != Buffer.FULL);
+    if (!delayable && (diagnostics != null)) {
+      diagnostics.recordReadBufferDrop();
+    }
     if (shouldDrainBuffers(delayable)) {
       scheduleDrainBuffers();
     }
@@ -866,34 +1354,61 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     }
     K key;
     V oldValue;
+    Refresher<K, V> refresher = refresher();
     long oldWriteTime = node.getWriteTime();
-    long refreshWriteTime = (now + Async.MAXIMUM_EXPIRY);
+    long refreshWriteTime = (refresher == null)
+        ? (now + Async.MAXIMUM_EXPIRY)
+        : (now + Long.MAX_VALUE);
     if (((now - oldWriteTime) > refreshAfterWriteNanos())
         && ((key = node.getKey()) != null) && ((oldValue = node.getValue()) != null)
         && node.casWriteTime(oldWriteTime, refreshWriteTime)) {
       try {
-        CompletableFuture<V> refreshFuture;
-        if (isAsync) {
-          @SuppressWarnings("unchecked")
-          CompletableFuture<V> future = (CompletableFuture<V>) oldValue;
-          if (Async.isReady(future)) {
-            @SuppressWarnings("NullAway")
-            CompletableFuture<V> refresh = future.thenCompose(value ->
-              cacheLoader.asyncReload(key, value, executor));
-            refreshFuture = refresh;
-          } else {
-            // no-op if load is pending
-            node.casWriteTime(refreshWriteTime, oldWriteTime);
-            return;
+        Object keyReference = referenceKey(key);
+        RefreshBatcher<K, V> batcher = refreshBatcher();
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<V>[] refreshFuture = new CompletableFuture[1];
+
+        // The loader is called outside of the map's lock, as it may block or access the cache, and
+        // only by the caller that registered the refresh
+        @SuppressWarnings("unchecked")
+        boolean ready = !isAsync || Async.isReady((CompletableFuture<V>) oldValue);
+        CompletableFuture<V> placeholder = new CompletableFuture<>();
+        if (ready && (refreshes().putIfAbsent(keyReference, placeholder) == null)) {
+          refreshFuture[0] = placeholder;
+          CompletableFuture<V> refresh;
+          try {
+            if (isAsync) {
+              @SuppressWarnings("unchecked")
+              CompletableFuture<V> future = (CompletableFuture<V>) oldValue;
+              @SuppressWarnings("NullAway")
+              CompletableFuture<V> reload = future.thenCompose(value -> (batcher == null)
+                  ? cacheLoader.asyncReload(key, value, executor)
+                  : batcher.reload(key));
+              refresh = reload;
+            } else {
+              @SuppressWarnings("NullAway")
+              CompletableFuture<V> reload = (batcher == null)
+                  ? cacheLoader.asyncReload(key, oldValue, executor)
+                  : batcher.reload(key);
+              refresh = reload;
+            }
+          } catch (Throwable t) {
+            refreshes().remove(keyReference, placeholder);
+            throw t;
           }
-        } else {
-          @SuppressWarnings("NullAway")
-          CompletableFuture<V> refresh = cacheLoader.asyncReload(key, oldValue, executor);
-          refreshFuture = refresh;
+          Async.propagate(refresh, placeholder);
         }
-        refreshFuture.whenComplete((newValue, error) -> {
+
+        if (refreshFuture[0] == null) {
+          // no-op if a load or refresh is pending
+          node.casWriteTime(refreshWriteTime, oldWriteTime);
+          return;
+        }
+
+        refreshFuture[0].whenComplete((newValue, error) -> {
           long loadTime = statsTicker().read() - now;
           if (error != null) {
+            refreshes().remove(keyReference, refreshFuture[0]);
             logger.log(Level.WARNING, "Exception thrown during refresh", error);
             node.casWriteTime(refreshWriteTime, oldWriteTime);
             statsCounter().recordLoadFailure(loadTime);
@@ -901,18 +1416,26 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
           }
 
           @SuppressWarnings("unchecked")
-          V value = (isAsync && (newValue != null)) ? (V) refreshFuture : newValue;
+          V value = (isAsync && (newValue != null)) ? (V) refreshFuture[0] : newValue;
 
           boolean[] discard = new boolean[1];
-          compute(key, (k, currentValue) -> {
-            if (currentValue == null) {
-              return value;
-            } else if ((currentValue == oldValue) && (node.getWriteTime() == refreshWriteTime)) {
-              return value;
-            }
-            discard[0] = true;
-            return currentValue;
-          }, /* recordMiss */ false, /* recordLoad */ false);
+          try {
+            compute(key, (k, currentValue) -> {
+              if (!refreshes().remove(keyReference, refreshFuture[0])) {
+                // discarded by an explicit invalidation
+                discard[0] = true;
+                return currentValue;
+              } else if (currentValue == null) {
+                return value;
+              } else if ((currentValue == oldValue) && (node.getWriteTime() == refreshWriteTime)) {
+                return value;
+              }
+              discard[0] = true;
+              return currentValue;
+            }, /* recordMiss */ false, /* recordLoad */ false);
+          } finally {
+            refreshes().remove(keyReference, refreshFuture[0]);
+          }
 
           if (discard[0] && hasRemovalListener()) {
             notifyRemoval(key, value, RemovalCause.REPLACED);
@@ -927,6 +1450,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         node.casWriteTime(refreshWriteTime, oldWriteTime);
         logger.log(Level.SEVERE, "Exception thrown when submitting refresh task", t);
       }
+    } else if (refresher != null) {
+      refreshAfterRead(node, refresher, oldWriteTime, now);
     }
   }
 
@@ -987,6 +1512,85 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     return 0L;
   }
 
+  /**
+   * Returns the write time for the entry after being created. If a variable refresh policy is used
+   * then the write time is the time at which the entry becomes eligible for refresh.
+   *
+   * @param key the key of the entry that was created
+   * @param value the value of the entry that was created
+   * @param now the current time, in nanoseconds
+   * @return the write time
+   */
+  long refreshAfterCreate(@Nullable K key, @Nullable V value, long now) {
+    Refresher<K, V> refresher = refresher();
+    if ((refresher != null) && (key != null) && (value != null)) {
+      long duration = refreshDuration(refresher.refreshAfterCreate(key, value, now));
+      return (now + duration);
+    }
+    return now;
+  }
+
+  /**
+   * Returns the write time for the entry after being updated. If a variable refresh policy is used
+   * then the write time is the time at which the entry becomes eligible for refresh. An entry that
+   * was being loaded or refreshed is evaluated as if it was created.
+   *
+   * @param node the entry in the page replacement policy
+   * @param key the key of the entry that was updated
+   * @param value the value of the entry that was updated
+   * @param now the current time, in nanoseconds
+   * @return the write time
+   */
+  long refreshAfterUpdate(Node<K, V> node, @Nullable K key, @Nullable V value, long now) {
+    Refresher<K, V> refresher = refresher();
+    if ((refresher != null) && (key != null) && (value != null)) {
+      long currentDuration = Math.max(1, node.getWriteTime() - now);
+      long duration = refreshDuration((currentDuration > Async.MAXIMUM_EXPIRY)
+          ? refresher.refreshAfterCreate(key, value, now)
+          : refresher.refreshAfterUpdate(key, value, now, currentDuration));
+      return (now + duration);
+    }
+    return now;
+  }
+
+  /**
+   * Adjusts the time at which the entry becomes eligible for refresh after it was read, unless the
+   * entry is stale or is being loaded or refreshed.
+   *
+   * @param node the entry in the page replacement policy
+   * @param refresher the calculator for the refresh time
+   * @param writeTime the entry's write time when it was read
+   * @param now the current time, in nanoseconds
+   */
+  void refreshAfterRead(Node<K, V> node, Refresher<K, V> refresher, long writeTime, long now) {
+    K key = node.getKey();
+    V value = node.getValue();
+    long currentDuration = (writeTime - now);
+    if ((key != null) && (value != null)
+        && (currentDuration > 0) && (currentDuration <= Async.MAXIMUM_EXPIRY)) {
+      long duration = refreshDuration(
+          refresher.refreshAfterRead(key, value, now, currentDuration));
+      if (duration != currentDuration) {
+        node.casWriteTime(writeTime, now + duration);
+      }
+    }
+  }
+
+  /**
+   * Returns the duration computed by the {@link Refresher}, capped at {@link Async#MAXIMUM_EXPIRY}
+   * so that a long duration is not mistaken for the write time of an in-flight refresh.
+   *
+   * @param duration the duration until the entry is eligible for refresh, in nanoseconds
+   * @return the duration, in nanoseconds
+   * @throws IllegalArgumentException if the duration is negative
+   */
+  static long refreshDuration(long duration) {
+    if (duration < 0) {
+      throw new IllegalArgumentException("refresh duration cannot be negative: " + duration);
+    }
+    return Math.min(duration, Async.MAXIMUM_EXPIRY);
+  }
+
   void setVariableTime(Node<K, V> node, long expirationTime) {
     if (expiresVariable()) {
       node.setVariableTime(expirationTime);
@@ -1017,8 +1621,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
           scheduleAfterWrite();
           return;
         }
+        if (diagnostics != null) {
+          diagnostics.recordWriteBufferRetry();
+        }
         scheduleDrainBuffers();
       }
+      if (diagnostics != null) {
+        diagnostics.recordWriteBufferExhausted();
+      }
 
       // The maintenance task may be scheduled but not running due to all of the executor's threads
       // being busy. If all of the threads are writing into the cache then no progress can be made
@@ -1077,7 +1687,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
           return;
         }
         lazySetDrainStatus(PROCESSING_TO_IDLE);
-        executor().execute(drainBuffersTask);
+        maintenanceExecutor.execute(drainBuffersTask);
       } catch (Throwable t) {
         logger.log(Level.WARNING, "Exception thrown when submitting maintenance task", t);
         maintenance(/* ignored */ null);
@@ -1090,7 +1700,21 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
   @Override
   public void cleanUp() {
     try {
-      performCleanUp(/* ignored */ null);
+      // Perform the bounded passes until the pending work is complete, releasing the lock between
+      // them so that other threads are not blocked for the entire duration. A pass that did not
+      // remove an entry, such as when every victim was resurrected, stops the loop rather than
+      // spinning, and its remaining work is left to a subsequent maintenance cycle.
+      boolean incomplete;
+      do {
+        evictionLock.lock();
+        try {
+          long size = data.mappingCount();
+          maintenance(/* ignored */ null);
+          incomplete = (maintenanceWork < 0) && (data.mappingCount() < size);
+        } finally {
+          evictionLock.unlock();
+        }
+      } while (incomplete);
     } catch (RuntimeException e) {
       logger.log(Level.SEVERE, "Exception thrown when performing the maintenance task", e);
     }
@@ -1109,18 +1733,60 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     } finally {
       evictionLock.unlock();
     }
+    rescheduleCleanUpIfIncomplete();
+  }
+
+  /**
+   * Schedules the maintenance task to resume the work that a pass was unable to complete within its
+   * budget. The task is scheduled immediately only on the default executor, as a custom executor
+   * may run it on the calling thread and exceed the penalty that the budget bounds. Otherwise the
+   * pending work is resumed by the scheduler, if configured, or by the next cache operation.
+   */
+  void rescheduleCleanUpIfIncomplete() {
+    if (drainStatus() != REQUIRED) {
+      return;
+    }
+    if (maintenanceExecutor == ForkJoinPool.commonPool()) {
+      scheduleDrainBuffers();
+      return;
+    }
+    Pacer pacer = pacer();
+    if ((pacer != null) && evictionLock.tryLock()) {
+      try {
+        if (drainStatus() == REQUIRED) {
+          pacer.schedule(maintenanceExecutor, drainBuffersTask,
+              expirationTicker().read(), Pacer.TOLERANCE);
+        }
+      } finally {
+        evictionLock.unlock();
+      }
+    }
+  }
+
+  /**
+   * Returns if the maintenance pass may perform another unit of work, an expiration or an eviction,
+   * and consumes it from the budget. This is called only when an entry is about to be removed.
+   */
+  @GuardedBy("evictionLock")
+  boolean consumeMaintenanceWork() {
+    return (--maintenanceWork >= 0);
   }
 
   /**
    * Performs the pending maintenance work and sets the state flags during processing to avoid
    * excess scheduling attempts. The read buffer, write buffer, and reference queues are
-   * drained, followed by expiration, and size-based eviction.
+   * drained, followed by expiration, and size-based eviction. The number of expirations and
+   * evictions is bounded by {@link #MAINTENANCE_WORK_MAX}, and if exhausted then the drain status
+   * is left as required so that the remaining work is performed by a subsequent pass. If the
+   * listener is a {@link BatchRemovalListener} then the pass's removals are delivered as a batch.
    *
    * @param task an additional pending task to run, or {@code null} if not present
    */
   @GuardedBy("evictionLock")
   void maintenance(@Nullable Runnable task) {
     lazySetDrainStatus(PROCESSING_TO_IDLE);
+    long startTime = (diagnostics == null) ? 0L : System.nanoTime();
+    maintenanceWork = MAINTENANCE_WORK_MAX;
 
     try {
       drainReadBuffer();
@@ -1135,10 +1801,21 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
       expireEntries();
       evictEntries();
+
+      climb();
     } finally {
-      if ((drainStatus() != PROCESSING_TO_IDLE) || !casDrainStatus(PROCESSING_TO_IDLE, IDLE)) {
+      if ((maintenanceWork < 0) || (drainStatus() != PROCESSING_TO_IDLE)
+          || !casDrainStatus(PROCESSING_TO_IDLE, IDLE)) {
         lazySetDrainStatus(REQUIRED);
       }
+      if (diagnostics != null) {
+        diagnostics.recordMaintenance(System.nanoTime() - startTime);
+      }
+      if (pendingNotifications != null) {
+        List<RemovalNotification<K, V>> notifications = pendingNotifications;
+        pendingNotifications = null;
+        notifyRemovals(notifications);
+      }
     }
   }
 
@@ -1198,6 +1875,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       } else {
         reorder(accessOrderProtectedDeque(), node);
       }
+      setHitsInSample(hitsInSample() + 1);
     } else if (expiresAfterAccess()) {
       reorder(accessOrderEdenDeque(), node);
     }
@@ -1229,7 +1907,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       }
       demoted.makeMainProbation();
       accessOrderProbationDeque().add(demoted);
-      mainProtectedWeightedSize -= node.getPolicyWeight();
+      mainProtectedWeightedSize -= demoted.getPolicyWeight();
     }
 
     lazySetMainProtectedWeightedSize(mainProtectedWeightedSize);
@@ -1318,6 +1996,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         if (key != null) {
           frequencySketch().increment(key);
         }
+        setMissesInSample(missesInSample() + 1);
       }
 
       // ignore out-of-order write operations
@@ -1335,6 +2014,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         if (expiresVariable()) {
           timerWheel().schedule(node);
         }
+        if (hasVictimCache()) {
+          K key = node.getKey();
+          if (key != null) {
+            invalidateVictim(key);
+          }
+        }
       }
 
       // Ensure that in-flight async computation cannot expire (reset on a completion callback)
@@ -1398,7 +2083,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         if (node.inEden()) {
           lazySetEdenWeightedSize(edenWeightedSize() + weightDifference);
         } else if (node.inMainProtected()) {
-          lazySetMainProtectedWeightedSize(mainProtectedMaximum() + weightDifference);
+          lazySetMainProtectedWeightedSize(mainProtectedWeightedSize() + weightDifference);
         }
         lazySetWeightedSize(weightedSize() + weightDifference);
         node.setPolicyWeight(node.getPolicyWeight() + weightDifference);
@@ -1431,6 +2116,39 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     return data.mappingCount();
   }
 
+  @Override
+  public Object referenceKey(K key) {
+    return nodeFactory.newLookupKey(key);
+  }
+
+  @Override
+  public ConcurrentMap<Object, CompletableFuture<?>> refreshes() {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    if (pending == null) {
+      synchronized (this) {
+        pending = refreshes;
+        if (pending == null) {
+          refreshes = pending = new ConcurrentHashMap<>();
+        }
+      }
+    }
+    return pending;
+  }
+
+  @Override
+  public long estimatedRefreshCount() {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    return (pending == null) ? 0L : pending.size();
+  }
+
+  /** Discards the in-flight refresh, if any, so that its result is not written into the cache. */
+  void discardRefresh(Object key) {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    if (pending != null) {
+      pending.remove(nodeFactory.newLookupKey(key));
+    }
+  }
+
   @Override
   @SuppressWarnings("FutureReturnValueIgnored")
   public void clear() {
@@ -1438,6 +2156,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     try {
       long now = expirationTicker().read();
 
+      // Discard all in-flight refreshes
+      ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+      if (pending != null) {
+        pending.clear();
+      }
+
       // Apply all pending writes
       Runnable task;
       while (buffersWrites() && (task = writeBuffer().poll()) != null) {
@@ -1448,6 +2172,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       for (Node<K, V> node : data.values()) {
         removeNode(node, now);
       }
+      if (hasVictimCache()) {
+        try {
+          victimCache.invalidateAll();
+        } catch (Throwable t) {
+          logger.log(Level.WARNING, "Exception thrown by victim cache", t);
+        }
+      }
 
       // Discard all pending reads
       readBuffer.drainTo(e -> {});
@@ -1534,18 +2265,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
   public @Nullable V getIfPresent(Object key, boolean recordStats) {
     Node<K, V> node = data.get(nodeFactory.newLookupKey(key));
     if (node == null) {
-      if (recordStats) {
-        statsCounter().recordMisses(1);
-      }
-      return null;
+      return getIfVictim(key, recordStats);
     }
     long now = expirationTicker().read();
     if (hasExpired(node, now)) {
-      if (recordStats) {
-        statsCounter().recordMisses(1);
-      }
       scheduleDrainBuffers();
-      return null;
+      return getIfVictim(key, recordStats);
     }
 
     @SuppressWarnings("unchecked")
@@ -1560,6 +2285,19 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     return value;
   }
 
+  /** Returns the value if retained by the victim cache, recording the lookup if requested. */
+  @Nullable V getIfVictim(Object key, boolean recordStats) {
+    V value = hasVictimCache() ? promote(key) : null;
+    if (recordStats) {
+      if (value == null) {
+        statsCounter().recordMisses(1);
+      } else {
+        statsCounter().recordHits(1);
+      }
+    }
+    return value;
+  }
+
   @Override
   public @Nullable V getIfPresentQuietly(Object key, long[/* 1 */] writeTime) {
     V value;
@@ -1609,11 +2347,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
   @Override
   public @Nullable V put(K key, V value) {
-    return put(key, value, expiry(), /* notifyWriter */ true, /* onlyIfAbsent */ false);
+    return put(key, value, /* notifyWriter */ true);
   }
 
   @Override
   public @Nullable V put(K key, V value, boolean notifyWriter) {
+    discardRefresh(key);
     return put(key, value, expiry(), notifyWriter, /* onlyIfAbsent */ false);
   }
 
@@ -1647,6 +2386,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
           node = nodeFactory.newNode(key, keyReferenceQueue(),
               value, valueReferenceQueue(), newWeight, now);
           setVariableTime(node, expireAfterCreate(key, value, expiry, now));
+          setWriteTime(node, refreshAfterCreate(key, value, now));
         }
         if (notifyWriter && hasWriter()) {
           Node<K, V> computed = node;
@@ -1670,6 +2410,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       V oldValue;
       long varTime;
       int oldWeight;
+      long writeTime = now;
       boolean expired = false;
       boolean mayUpdate = true;
       boolean withinTolerance = true;
@@ -1698,8 +2439,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         }
         if (mayUpdate) {
           withinTolerance = ((now - prior.getWriteTime()) > EXPIRE_WRITE_TOLERANCE);
+          writeTime = ((oldValue == null) || expired)
+              ? refreshAfterCreate(key, value, now)
+              : refreshAfterUpdate(prior, key, value, now);
 
-          setWriteTime(prior, now);
+          setWriteTime(prior, writeTime);
           prior.setWeight(newWeight);
           prior.setValue(value, valueReferenceQueue());
         }
@@ -1725,7 +2469,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         afterWrite(new UpdateTask(prior, weightedDifference));
       } else {
         if (mayUpdate) {
-          setWriteTime(prior, now);
+          setWriteTime(prior, writeTime);
         }
         afterRead(prior, now, /* recordHit */ false);
       }
@@ -1736,9 +2480,16 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
   @Override
   public @Nullable V remove(Object key) {
-    return hasWriter()
+    discardRefresh(key);
+    V oldValue = hasWriter()
         ? removeWithWriter(key)
         : removeNoWriter(key);
+
+    // Invalidated after the mapping was removed, as an eviction may spill it until then
+    if (hasVictimCache()) {
+      invalidateVictim(key);
+    }
+    return oldValue;
   }
 
   /**
@@ -1860,6 +2611,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     } else if (hasRemovalListener()) {
       notifyRemoval(oldKey[0], oldValue[0], cause[0]);
     }
+    discardRefresh(key);
     afterWrite(new RemovalTask(removed[0]));
     return (cause[0] == RemovalCause.EXPLICIT);
   }
@@ -1896,7 +2648,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
         setVariableTime(n, varTime);
         setAccessTime(n, now[0]);
-        setWriteTime(n, now[0]);
+        setWriteTime(n, refreshAfterUpdate(n, key, value, now[0]));
         return n;
       }
     });
@@ -1951,7 +2703,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
         setVariableTime(n, varTime);
         setAccessTime(n, now[0]);
-        setWriteTime(n, now[0]);
+        setWriteTime(n, refreshAfterUpdate(n, key, newValue, now[0]));
         replaced[0] = true;
       }
       return n;
@@ -2016,10 +2768,34 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     if (recordStats) {
       mappingFunction = statsAware(mappingFunction, recordLoad);
     }
+    if (hasVictimCache()) {
+      mappingFunction = victimAware(mappingFunction, recordStats);
+    }
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
     return doComputeIfAbsent(key, keyRef, mappingFunction, new long[] { now });
   }
 
+  /** Decorates the mapping function to first obtain the value from the victim cache, if present. */
+  Function<? super K, ? extends V> victimAware(
+      Function<? super K, ? extends V> mappingFunction, boolean recordStats) {
+    return key -> {
+      V value;
+      try {
+        value = victimCache.remove(key);
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown by victim cache", t);
+        value = null;
+      }
+      if (value == null) {
+        return mappingFunction.apply(key);
+      }
+      if (recordStats) {
+        statsCounter().recordHits(1);
+      }
+      return value;
+    };
+  }
+
   /** Returns the current value from a computeIfAbsent invocation. */
   @Nullable V doComputeIfAbsent(K key, Object keyRef,
       Function<? super K, ? extends V> mappingFunction, long[/* 1 */] now) {
@@ -2045,6 +2821,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         n = nodeFactory.newNode(key, keyReferenceQueue(),
             newValue[0], valueReferenceQueue(), weight[1], now[0]);
         setVariableTime(n, expireAfterCreate(key, newValue[0], expiry(), now[0]));
+        setWriteTime(n, refreshAfterCreate(key, newValue[0], now[0]));
         return n;
       }
 
@@ -2073,8 +2850,8 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
         now[0] = expirationTicker().read();
         setVariableTime(n, expireAfterCreate(key, newValue[0], expiry(), now[0]));
+        setWriteTime(n, refreshAfterCreate(key, newValue[0], now[0]));
         setAccessTime(n, now[0]);
-        setWriteTime(n, now[0]);
         return n;
       }
     });
@@ -2129,8 +2906,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
     BiFunction<? super K, ? super V, ? extends V> statsAwareRemappingFunction =
         statsAware(remappingFunction, /* recordMiss */ false, /* recordLoad */ true);
-    return remap(key, lookupKey, statsAwareRemappingFunction,
+    V value = remap(key, lookupKey, statsAwareRemappingFunction,
         new long[] { now }, /* computeIfAbsent */ false);
+    if (value == null) {
+      discardRefresh(key);
+    }
+    return value;
   }
 
   @Override
@@ -2143,7 +2924,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
     BiFunction<? super K, ? super V, ? extends V> statsAwareRemappingFunction =
         statsAware(remappingFunction, recordMiss, recordLoad);
-    return remap(key, keyRef, statsAwareRemappingFunction, now, /* computeIfAbsent */ true);
+    V value = remap(key, keyRef, statsAwareRemappingFunction, now, /* computeIfAbsent */ true);
+    if (value == null) {
+      discardRefresh(key);
+    }
+    return value;
   }
 
   @Override
@@ -2157,7 +2942,11 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     Object keyRef = nodeFactory.newReferenceKey(key, keyReferenceQueue());
     BiFunction<? super K, ? super V, ? extends V> mergeFunction = (k, oldValue) ->
         (oldValue == null) ? value : statsAware(remappingFunction).apply(oldValue, value);
-    return remap(key, keyRef, mergeFunction, now, /* computeIfAbsent */ true);
+    V newValue = remap(key, keyRef, mergeFunction, now, /* computeIfAbsent */ true);
+    if (newValue == null) {
+      discardRefresh(key);
+    }
+    return newValue;
   }
 
   /**
@@ -2205,6 +2994,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         n = nodeFactory.newNode(keyRef, newValue[0],
             valueReferenceQueue(), weight[1], now[0]);
         setVariableTime(n, expireAfterCreate(key, newValue[0], expiry(), now[0]));
+        setWriteTime(n, refreshAfterCreate(key, newValue[0], now[0]));
         return n;
       }
 
@@ -2244,13 +3034,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
             cause[0] = RemovalCause.REPLACED;
           }
           setVariableTime(n, expireAfterUpdate(n, key, newValue[0], expiry(), now[0]));
+          setWriteTime(n, refreshAfterUpdate(n, key, newValue[0], now[0]));
         } else {
           setVariableTime(n, expireAfterCreate(key, newValue[0], expiry(), now[0]));
+          setWriteTime(n, refreshAfterCreate(key, newValue[0], now[0]));
         }
         n.setValue(newValue[0], valueReferenceQueue());
         n.setWeight(weight[1]);
         setAccessTime(n, now[0]);
-        setWriteTime(n, now[0]);
         return n;
       }
     });
@@ -3001,6 +3792,15 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     proxy.weakValues = cache.nodeFactory.weakValues();
     proxy.softValues = cache.nodeFactory.softValues();
     proxy.isRecordingStats = cache.isRecordingStats();
+    proxy.isRecordingDiagnostics = (cache.diagnostics != null);
+    if (cache.readBuffer instanceof BatchedBuffer<?>) {
+      proxy.readBufferStrategy = ReadBufferStrategy.BATCHED;
+    }
+    if (cache.evicts() && (cache.frequencySketch() instanceof BlockedFrequencySketch<?>)) {
+      proxy.sketchLayout = SketchLayout.BLOCKED;
+    }
+    proxy.doorkeeper = cache.evicts() && cache.frequencySketch().hasDoorkeeper;
+    proxy.weightedAdmission = cache.weightedAdmission;
     proxy.removalListener = cache.removalListener();
     proxy.ticker = cache.expirationTicker();
     proxy.writer = cache.writer;
@@ -3085,6 +3885,12 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     @Override public boolean isRecordingStats() {
       return cache.isRecordingStats();
     }
+    @Override public long estimatedRefreshCount() {
+      return cache.estimatedRefreshCount();
+    }
+    @Override public Optional<Diagnostics> diagnostics() {
+      return Optional.ofNullable(cache.diagnostics);
+    }
     @Override public Optional<Eviction<K, V>> eviction() {
       return cache.evicts()
           ? (eviction == null) ? (eviction = Optional.of(new BoundedEviction())) : eviction
@@ -3115,7 +3921,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
           : variable;
     }
     @Override public Optional<Expiration<K, V>> refreshAfterWrite() {
-      if (!cache.refreshAfterWrite()) {
+      if (!cache.refreshAfterWrite() || (cache.refresher() != null)) {
         return Optional.empty();
       }
       return (refreshes == null)
@@ -3162,6 +3968,7 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         } finally {
           cache.evictionLock.unlock();
         }
+        cache.rescheduleCleanUpIfIncomplete();
       }
       @Override public Map<K, V> coldest(int limit) {
         return cache.evictionOrder(limit, transformer, /* hottest */ false);
@@ -3400,6 +4207,10 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       SerializationProxy<K, V> proxy = (SerializationProxy<K, V>) super.writeReplace();
       if (cache.refreshAfterWrite()) {
         proxy.refreshAfterWriteNanos = cache.refreshAfterWriteNanos();
+        proxy.refresher = cache.refresher();
+      }
+      if (cache.refreshBatcher() != null) {
+        proxy.coalesceRefreshNanos = cache.refreshBatcher().delayNanos;
       }
       proxy.loader = cache.cacheLoader;
       return proxy;
@@ -3408,6 +4219,45 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
 
   /* ---------------- Async Loading Cache -------------- */
 
+  static final class BoundedLocalAsyncCache<K, V>
+      extends LocalAsyncCache<BoundedLocalCache<K, CompletableFuture<V>>, K, V>
+      implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    final boolean isWeighted;
+    @Nullable Policy<K, V> policy;
+
+    @SuppressWarnings("unchecked")
+    BoundedLocalAsyncCache(Caffeine<K, V> builder) {
+      super((BoundedLocalCache<K, CompletableFuture<V>>) LocalCacheFactory.newBoundedLocalCache(
+          builder, /* loader */ null, /* async */ true));
+      isWeighted = builder.isWeighted();
+    }
+
+    @Override
+    protected Policy<K, V> policy() {
+      if (policy == null) {
+        @SuppressWarnings("unchecked")
+        BoundedLocalCache<K, V> castCache = (BoundedLocalCache<K, V>) cache;
+        Function<CompletableFuture<V>, V> transformer = Async::getIfReady;
+        @SuppressWarnings("unchecked")
+        Function<V, V> castTransformer = (Function<V, V>) transformer;
+        policy = new BoundedPolicy<>(castCache, castTransformer, isWeighted);
+      }
+      return policy;
+    }
+
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+      throw new InvalidObjectException("Proxy required");
+    }
+
+    Object writeReplace() {
+      SerializationProxy<K, V> proxy = makeSerializationProxy(cache, isWeighted);
+      proxy.async = true;
+      return proxy;
+    }
+  }
+
   static final class BoundedLocalAsyncLoadingCache<K, V>
       extends LocalAsyncLoadingCache<BoundedLocalCache<K, CompletableFuture<V>>, K, V>
       implements Serializable {
@@ -3419,13 +4269,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
     @SuppressWarnings("unchecked")
     BoundedLocalAsyncLoadingCache(Caffeine<K, V> builder, AsyncCacheLoader<? super K, V> loader) {
       super((BoundedLocalCache<K, CompletableFuture<V>>) LocalCacheFactory.newBoundedLocalCache(
-          builder, asyncLoader(loader, builder), /* async */ true), loader);
+          builder, asyncLoader(loader, builder), /* async */ true), loader, builder);
       isWeighted = builder.isWeighted();
     }
 
     private static <K, V> CacheLoader<K, V> asyncLoader(
         AsyncCacheLoader<? super K, V> loader, Caffeine<?, ?> builder) {
-      Executor executor = builder.getExecutor();
+      Executor executor = builder.getLoaderExecutor();
       return new CacheLoader<K, V>() {
         @Override public V load(K key) {
           @SuppressWarnings("unchecked")
@@ -3440,6 +4290,13 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
         @Override public CompletableFuture<V> asyncReload(K key, V oldValue, Executor executor) {
           return loader.asyncReload(key, oldValue, executor);
         }
+        @Override public CompletableFuture<Map<K, V>> asyncLoadAll(
+            Iterable<? extends K> keys, Executor executor) {
+          @SuppressWarnings("unchecked")
+          CompletableFuture<Map<K, V>> future = (CompletableFuture<Map<K, V>>)
+              (CompletableFuture<?>) loader.asyncLoadAll(keys, executor);
+          return future;
+        }
       };
     }
 
@@ -3464,6 +4321,14 @@ abstract class BoundedLocalCache<K, V> extends BLCHeader.DrainStatusRef<K, V>
       SerializationProxy<K, V> proxy = makeSerializationProxy(cache, isWeighted);
       if (cache.refreshAfterWrite()) {
         proxy.refreshAfterWriteNanos = cache.refreshAfterWriteNanos();
+        proxy.refresher = cache.refresher();
+      }
+      if (cache.refreshBatcher() != null) {
+        proxy.coalesceRefreshNanos = cache.refreshBatcher().delayNanos;
+      }
+      if (loadBatcher != null) {
+        proxy.coalesceLoadNanos = loadBatcher.delayNanos;
+        proxy.maximumLoadBatchSize = loadBatcher.maximumBatchSize;
       }
       proxy.loader = loader;
       proxy.async = true;
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.NCPU;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.PERCENT_MAIN;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.PERCENT_MAIN_PROTECTED;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.ceilingPowerOfTwo;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+/**
+ * A bounded {@link LongCache} that stores its entries in primitive arrays rather than as individual
+ * node objects. The table is split into independently locked segments, each of which maintains its
+ * own W-TinyLFU policy: an admission window, a segmented LRU main space, and a
+ * {@link FrequencySketch} that hashes the keys without boxing them.
+ * <p>
+ * Within a segment an entry is an index into parallel arrays for its key, value, hash chain, and
+ * access order links. A removed entry's slot is threaded onto a free list for reuse, so that the
+ * steady state does not allocate.
+ * <p>
+ * Reads do not acquire the segment's lock. A lookup is performed optimistically and validated
+ * against a sequence that writers advance, falling back to the lock only if a write interfered.
+ * The access is then recorded in a lossy ring buffer of keys that is replayed against the policy
+ * when the buffer is full or the lock is next acquired by a writer, similar to how
+ * {@link BoundedLocalCache} buffers its reads.
+ * <p>
+ * Unlike {@link BoundedLocalCache}, the admission window is fixed in size rather than adapted by a
+ * hill climber, and expiration is not supported.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <V> the type of mapped values
+ */
+final class BoundedLongCache<V> implements LongCache<V> {
+  /** The maximum number of segments. */
+  static final int MAXIMUM_SEGMENTS = 4 * ceilingPowerOfTwo(NCPU);
+  /** The minimum number of entries a segment should hold before the table is split further. */
+  static final int MINIMUM_SEGMENT_SIZE = 1 << 10;
+  /** The maximum number of entries that a single segment may hold. */
+  static final int MAXIMUM_SEGMENT_SIZE = 1 << 30;
+
+  final StatsCounter statsCounter;
+  final Segment<V>[] segments;
+  final int segmentShift;
+  final int segmentMask;
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  BoundedLongCache(Caffeine<?, ?> builder) {
+    long maximum = builder.getMaximum();
+    int count = 1;
+    while ((count < MAXIMUM_SEGMENTS) && ((maximum / (count << 1)) >= MINIMUM_SEGMENT_SIZE)) {
+      count <<= 1;
+    }
+    segments = new Segment[count];
+    segmentMask = count - 1;
+    segmentShift = Integer.numberOfLeadingZeros(segmentMask);
+
+    statsCounter = builder.getStatsCounterSupplier().get();
+    Ticker statsTicker = builder.isRecordingStats()
+        ? builder.getTicker()
+        : Ticker.disabledTicker();
+    for (int i = 0; i < count; i++) {
+      long share = (maximum / count) + ((i < (maximum % count)) ? 1 : 0);
+      int segmentMaximum = (int) Math.min(share, MAXIMUM_SEGMENT_SIZE);
+      FrequencySketch<?> sketch = FrequencySketch.newInstance(
+          builder.getSketchLayout(), builder.hasDoorkeeper());
+      segments[i] = new Segment<>(segmentMaximum, sketch, statsCounter, statsTicker);
+    }
+  }
+
+  /** Returns the hash of the key, which is well distributed across both the high and low bits. */
+  static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /** Returns the segment that the hash is assigned to, using the high bits. */
+  Segment<V> segmentFor(int hash) {
+    return (segmentMask == 0) ? segments[0] : segments[(hash >>> segmentShift) & segmentMask];
+  }
+
+  @Override
+  public @Nullable V getIfPresent(long key) {
+    int hash = hash(key);
+    return segmentFor(hash).getIfPresent(key, hash);
+  }
+
+  @Override
+  public @Nullable V get(long key, LongFunction<? extends V> mappingFunction) {
+    requireNonNull(mappingFunction);
+    int hash = hash(key);
+    return segmentFor(hash).get(key, hash, mappingFunction);
+  }
+
+  @Override
+  public void put(long key, V value) {
+    requireNonNull(value);
+    int hash = hash(key);
+    segmentFor(hash).put(key, hash, value);
+  }
+
+  @Override
+  public void invalidate(long key) {
+    int hash = hash(key);
+    segmentFor(hash).remove(key, hash);
+  }
+
+  @Override
+  public void invalidateAll() {
+    for (Segment<V> segment : segments) {
+      segment.clear();
+    }
+  }
+
+  @Override
+  public long estimatedSize() {
+    long size = 0L;
+    for (Segment<V> segment : segments) {
+      size += segment.size;
+    }
+    return size;
+  }
+
+  @Override
+  public CacheStats stats() {
+    return statsCounter.snapshot();
+  }
+
+  @Override
+  public void cleanUp() {
+    // All maintenance is performed eagerly while the segment's lock is held
+  }
+
+  /** A partition of the cache that is guarded by its own lock and eviction policy. */
+  @SuppressWarnings("serial")
+  static final class Segment<V> extends ReentrantLock {
+    static final int NIL = -1;
+    static final int INITIAL_CAPACITY = 16;
+
+    static final byte WINDOW = 0;
+    static final byte PROBATION = 1;
+    static final byte PROTECTED = 2;
+
+    /** The number of reads that may be buffered before they are replayed (must be power-of-two). */
+    static final int READ_BUFFER_SIZE = 64;
+    static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    /** The marker of an unused read buffer slot; an access to this key is not recorded. */
+    static final long EMPTY = Long.MIN_VALUE;
+
+    /** Validates the lock-free reads; advanced by writers while they hold the segment's lock. */
+    final StampedLock sequence;
+    final AtomicLongArray readBuffer;
+    final AtomicLong readBufferWriteCount;
+    volatile long readBufferReadCount;
+
+    final FrequencySketch<?> sketch;
+    final StatsCounter statsCounter;
+    final Ticker statsTicker;
+    final int maximum;
+    final int windowMaximum;
+    final int protectedMaximum;
+
+    final int[] heads;
+    final int[] tails;
+    final int[] sizes;
+
+    /** The head of each hash bucket's chain of entry indexes. */
+    int[] table;
+    long[] keys;
+    Object[] values;
+    /** The next entry in the hash bucket, or in the free list if the slot is unused. */
+    int[] chain;
+    int[] prev;
+    int[] next;
+    byte[] queue;
+    int allocated;
+    int free;
+    boolean computing;
+
+    volatile int size;
+
+    Segment(int maximum, FrequencySketch<?> sketch,
+        StatsCounter statsCounter, Ticker statsTicker) {
+      this.maximum = maximum;
+      this.statsTicker = statsTicker;
+      this.statsCounter = statsCounter;
+      this.windowMaximum = maximum - (int) (maximum * PERCENT_MAIN);
+      this.protectedMaximum = (int) ((maximum - windowMaximum) * PERCENT_MAIN_PROTECTED);
+      this.sketch = sketch;
+
+      long[] buffer = new long[READ_BUFFER_SIZE];
+      Arrays.fill(buffer, EMPTY);
+      readBuffer = new AtomicLongArray(buffer);
+      readBufferWriteCount = new AtomicLong();
+      sequence = new StampedLock();
+
+      heads = new int[] { NIL, NIL, NIL };
+      tails = new int[] { NIL, NIL, NIL };
+      sizes = new int[3];
+
+      int capacity = Math.min(INITIAL_CAPACITY, maximum + 1);
+      table = new int[INITIAL_CAPACITY];
+      Arrays.fill(table, NIL);
+      keys = new long[capacity];
+      values = new Object[capacity];
+      chain = new int[capacity];
+      prev = new int[capacity];
+      next = new int[capacity];
+      queue = new byte[capacity];
+      free = NIL;
+    }
+
+    @Nullable V getIfPresent(long key, int hash) {
+      Object value = read(key, hash);
+      if (value == null) {
+        statsCounter.recordMisses(1);
+        return null;
+      }
+      statsCounter.recordHits(1);
+      afterRead(key);
+      @SuppressWarnings("unchecked")
+      V castedValue = (V) value;
+      return castedValue;
+    }
+
+    @Nullable V get(long key, int hash, LongFunction<? extends V> mappingFunction) {
+      Object present = read(key, hash);
+      if (present != null) {
+        statsCounter.recordHits(1);
+        afterRead(key);
+        @SuppressWarnings("unchecked")
+        V castedValue = (V) present;
+        return castedValue;
+      }
+
+      lock();
+      try {
+        int index = indexOf(key, hash);
+        if (index != NIL) {
+          statsCounter.recordHits(1);
+          onAccess(index);
+          @SuppressWarnings("unchecked")
+          V value = (V) values[index];
+          return value;
+        }
+        statsCounter.recordMisses(1);
+        requireNotComputing();
+
+        V value;
+        long startTime = statsTicker.read();
+        computing = true;
+        try {
+          value = mappingFunction.apply(key);
+        } catch (RuntimeException | Error e) {
+          statsCounter.recordLoadFailure(statsTicker.read() - startTime);
+          throw e;
+        } finally {
+          computing = false;
+        }
+
+        long loadTime = statsTicker.read() - startTime;
+        if (value == null) {
+          statsCounter.recordLoadFailure(loadTime);
+          return null;
+        }
+        statsCounter.recordLoadSuccess(loadTime);
+        drainReadBuffer();
+        long stamp = sequence.writeLock();
+        try {
+          insert(key, hash, value);
+        } finally {
+          sequence.unlockWrite(stamp);
+        }
+        return value;
+      } finally {
+        unlock();
+      }
+    }
+
+    void put(long key, int hash, V value) {
+      lock();
+      try {
+        requireNotComputing();
+        drainReadBuffer();
+        long stamp = sequence.writeLock();
+        try {
+          int index = indexOf(key, hash);
+          if (index == NIL) {
+            insert(key, hash, value);
+          } else {
+            values[index] = value;
+            onAccess(index);
+          }
+        } finally {
+          sequence.unlockWrite(stamp);
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    void remove(long key, int hash) {
+      lock();
+      try {
+        requireNotComputing();
+        drainReadBuffer();
+        long stamp = sequence.writeLock();
+        try {
+          int index = indexOf(key, hash);
+          if (index != NIL) {
+            remove(index);
+          }
+        } finally {
+          sequence.unlockWrite(stamp);
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    void clear() {
+      lock();
+      try {
+        requireNotComputing();
+        drainReadBuffer();
+        long stamp = sequence.writeLock();
+        try {
+          Arrays.fill(table, NIL);
+          Arrays.fill(values, 0, allocated, null);
+          Arrays.fill(heads, NIL);
+          Arrays.fill(tails, NIL);
+          Arrays.fill(sizes, 0);
+          allocated = 0;
+          free = NIL;
+          size = 0;
+        } finally {
+          sequence.unlockWrite(stamp);
+        }
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Returns the value for the key without acquiring the lock, unless the optimistic lookup raced
+     * with a write, in which case the lookup is retried while holding the lock.
+     */
+    @Nullable Object read(long key, int hash) {
+      long stamp = sequence.tryOptimisticRead();
+      if (stamp != 0L) {
+        Object value = find(key, hash);
+        if (sequence.validate(stamp)) {
+          return value;
+        }
+      }
+
+      lock();
+      try {
+        int index = indexOf(key, hash);
+        return (index == NIL) ? null : values[index];
+      } finally {
+        unlock();
+      }
+    }
+
+    /**
+     * Returns the value for the key, or null if not found. This may observe the arrays while they
+     * are being modified, so the traversal is bounded and the result must be validated.
+     */
+    @Nullable Object find(long key, int hash) {
+      int[] table = this.table;
+      long[] keys = this.keys;
+      int[] chain = this.chain;
+      Object[] values = this.values;
+      int length = Math.min(keys.length, Math.min(chain.length, values.length));
+      int index = table[hash & (table.length - 1)];
+      for (int i = 0; (index >= 0) && (index < length) && (i < length); i++) {
+        if (keys[index] == key) {
+          return values[index];
+        }
+        index = chain[index];
+      }
+      return null;
+    }
+
+    /** Records the read, and replays the buffered reads if the buffer is full. */
+    void afterRead(long key) {
+      if (!offer(key) && tryLock()) {
+        try {
+          drainReadBuffer();
+        } finally {
+          unlock();
+        }
+      }
+    }
+
+    /** Adds the key to the read buffer, or returns false if the buffer is full. */
+    boolean offer(long key) {
+      if (key == EMPTY) {
+        return true;
+      }
+      long head = readBufferReadCount;
+      long tail = readBufferWriteCount.get();
+      if ((tail - head) >= READ_BUFFER_SIZE) {
+        return false;
+      }
+      if (readBufferWriteCount.compareAndSet(tail, tail + 1)) {
+        readBuffer.lazySet((int) tail & READ_BUFFER_MASK, key);
+      }
+      return true;
+    }
+
+    /** Replays the buffered reads against the policy. */
+    void drainReadBuffer() {
+      long head = readBufferReadCount;
+      long tail = readBufferWriteCount.get();
+      for (; head < tail; head++) {
+        int slot = (int) head & READ_BUFFER_MASK;
+        long key = readBuffer.get(slot);
+        if (key == EMPTY) {
+          // not yet published by the reader
+          break;
+        }
+        readBuffer.lazySet(slot, EMPTY);
+        int index = indexOf(key, hash(key));
+        if (index != NIL) {
+          onAccess(index);
+        }
+      }
+      readBufferReadCount = head;
+    }
+
+    /** Throws if the lock holder attempts to modify the segment while computing a value. */
+    void requireNotComputing() {
+      if (computing) {
+        throw new IllegalStateException("Recursive update");
+      }
+    }
+
+    /** Returns the index of the entry for the key, or {@link #NIL} if not present. */
+    int indexOf(long key, int hash) {
+      for (int i = table[hash & (table.length - 1)]; i != NIL; i = chain[i]) {
+        if (keys[i] == key) {
+          return i;
+        }
+      }
+      return NIL;
+    }
+
+    /** Adds the new entry to the admission window and evicts if the segment exceeds its bounds. */
+    void insert(long key, int hash, Object value) {
+      if (maximum == 0) {
+        statsCounter.recordEviction(1);
+        return;
+      }
+
+      int index = allocate();
+      keys[index] = key;
+      values[index] = value;
+      int bucket = hash & (table.length - 1);
+      chain[index] = table[bucket];
+      table[bucket] = index;
+      linkLast(WINDOW, index);
+
+      int newSize = size + 1;
+      size = newSize;
+      if (newSize >= (maximum >>> 1)) {
+        // Lazily initialize when close to the maximum size
+        sketch.ensureCapacity(maximum);
+      }
+      sketch.incrementLong(key);
+
+      if (newSize > ((table.length >>> 2) * 3)) {
+        resize();
+      }
+      evict();
+    }
+
+    /** Removes the entry from the table and the policy, and returns its slot to the free list. */
+    void remove(int index) {
+      int bucket = hash(keys[index]) & (table.length - 1);
+      if (table[bucket] == index) {
+        table[bucket] = chain[index];
+      } else {
+        int i = table[bucket];
+        while (chain[i] != index) {
+          i = chain[i];
+        }
+        chain[i] = chain[index];
+      }
+      unlink(index);
+
+      values[index] = null;
+      chain[index] = free;
+      free = index;
+      size = size - 1;
+    }
+
+    /** Updates the entry's position in the policy and records its popularity. */
+    void onAccess(int index) {
+      sketch.incrementLong(keys[index]);
+      if (queue[index] == PROBATION) {
+        unlink(index);
+        linkLast(PROTECTED, index);
+        while (sizes[PROTECTED] > protectedMaximum) {
+          int demoted = heads[PROTECTED];
+          unlink(demoted);
+          linkLast(PROBATION, demoted);
+        }
+      } else {
+        byte type = queue[index];
+        unlink(index);
+        linkLast(type, index);
+      }
+    }
+
+    /**
+     * Moves the entries that overflow the admission window into the main space and evicts until
+     * the segment is within its maximum size. A candidate from the window is only retained if its
+     * frequency is greater than that of the main space's victim.
+     */
+    void evict() {
+      int candidate = NIL;
+      while (sizes[WINDOW] > windowMaximum) {
+        candidate = heads[WINDOW];
+        unlink(candidate);
+        linkLast(PROBATION, candidate);
+      }
+      while (size > maximum) {
+        int victim = heads[PROBATION];
+        if (victim == NIL) {
+          victim = (heads[PROTECTED] == NIL) ? heads[WINDOW] : heads[PROTECTED];
+        }
+
+        int evict = victim;
+        if ((candidate != NIL) && (candidate != victim)) {
+          if (!admit(keys[candidate], keys[victim])) {
+            evict = candidate;
+          }
+          candidate = NIL;
+        }
+        remove(evict);
+        statsCounter.recordEviction(1);
+      }
+    }
+
+    /**
+     * Determines if the candidate should be accepted into the main space, as determined by its
+     * frequency relative to the victim. See {@link BoundedLocalCache#admit} for the rationale of
+     * the random acceptance of a warm candidate.
+     */
+    boolean admit(long candidateKey, long victimKey) {
+      int victimFreq = sketch.frequencyLong(victimKey);
+      int candidateFreq = sketch.frequencyLong(candidateKey);
+      if (candidateFreq > victimFreq) {
+        return true;
+      } else if (candidateFreq <= 5) {
+        return false;
+      }
+      int random = ThreadLocalRandom.current().nextInt();
+      return ((random & 127) == 0);
+    }
+
+    /** Returns an unused slot, growing the entry arrays if necessary. */
+    int allocate() {
+      if (free != NIL) {
+        int index = free;
+        free = chain[index];
+        return index;
+      }
+      if (allocated == keys.length) {
+        int capacity = (int) Math.min(2L * keys.length, maximum + 1L);
+        keys = Arrays.copyOf(keys, capacity);
+        values = Arrays.copyOf(values, capacity);
+        chain = Arrays.copyOf(chain, capacity);
+        prev = Arrays.copyOf(prev, capacity);
+        next = Arrays.copyOf(next, capacity);
+        queue = Arrays.copyOf(queue, capacity);
+      }
+      return allocated++;
+    }
+
+    /** Doubles the number of hash buckets and redistributes the entries. */
+    void resize() {
+      int[] buckets = new int[table.length << 1];
+      Arrays.fill(buckets, NIL);
+      int mask = buckets.length - 1;
+      for (int i = 0; i < allocated; i++) {
+        if (values[i] != null) {
+          int bucket = hash(keys[i]) & mask;
+          chain[i] = buckets[bucket];
+          buckets[bucket] = i;
+        }
+      }
+      table = buckets;
+    }
+
+    /** Appends the entry to the tail of the queue. */
+    void linkLast(byte type, int index) {
+      int last = tails[type];
+      queue[index] = type;
+      prev[index] = last;
+      next[index] = NIL;
+      if (last == NIL) {
+        heads[type] = index;
+      } else {
+        next[last] = index;
+      }
+      tails[type] = index;
+      sizes[type]++;
+    }
+
+    /** Removes the entry from its queue. */
+    void unlink(int index) {
+      byte type = queue[index];
+      int before = prev[index];
+      int after = next[index];
+      if (before == NIL) {
+        heads[type] = after;
+      } else {
+        next[before] = after;
+      }
+      if (after == NIL) {
+        tails[type] = before;
+      } else {
+        prev[after] = before;
+      }
+      sizes[type]--;
+    }
+  }
+}
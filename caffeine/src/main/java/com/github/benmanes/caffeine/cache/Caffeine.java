@@ -20,6 +20,7 @@ import static java.util.Objects.requireNonNull;
 
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
 import java.util.ConcurrentModificationException;
 import java.util.IdentityHashMap;
 import java.util.Map;
@@ -28,6 +29,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -38,8 +40,13 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import com.github.benmanes.caffeine.cache.Async.AsyncExpiry;
+import com.github.benmanes.caffeine.cache.Async.AsyncRefresher;
 import com.github.benmanes.caffeine.cache.Async.AsyncRemovalListener;
 import com.github.benmanes.caffeine.cache.Async.AsyncWeigher;
+import com.github.benmanes.caffeine.cache.OffHeap.ReleasingRemovalListener;
+import com.github.benmanes.caffeine.cache.OffHeap.SerializedRemovalListener;
+import com.github.benmanes.caffeine.cache.OffHeap.SerializedWeigher;
+import com.github.benmanes.caffeine.cache.OffHeap.SlabAllocator;
 import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.github.benmanes.caffeine.cache.stats.ConcurrentStatsCounter;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
@@ -144,25 +151,41 @@ public final class Caffeine<K, V> {
   static final int DEFAULT_REFRESH_NANOS = 0;
 
   boolean strictParsing = true;
+  boolean recordDiagnostics;
+  boolean doorkeeper;
+  boolean weightedAdmission;
+  boolean threadPerLoad;
 
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
   int initialCapacity = UNSET_INT;
+  int shards = UNSET_INT;
 
   long refreshNanos = UNSET_INT;
+  long coalesceRefreshNanos = UNSET_INT;
+  long coalesceLoadNanos = UNSET_INT;
+  int maximumLoadBatchSize = UNSET_INT;
   long expireAfterWriteNanos = UNSET_INT;
   long expireAfterAccessNanos = UNSET_INT;
 
   @Nullable RemovalListener<? super K, ? super V> removalListener;
   @Nullable Supplier<StatsCounter> statsCounterSupplier;
   @Nullable CacheWriter<? super K, ? super V> writer;
+  @Nullable VictimCache<?, ?> victimCache;
   @Nullable Weigher<? super K, ? super V> weigher;
   @Nullable Expiry<? super K, ? super V> expiry;
+  @Nullable Refresher<? super K, ? super V> refresher;
+  @Nullable Scheduler scheduler;
   @Nullable Executor executor;
+  @Nullable Executor loaderExecutor;
+  @Nullable Executor listenerExecutor;
+  @Nullable Executor maintenanceExecutor;
   @Nullable Ticker ticker;
 
   @Nullable Strength keyStrength;
   @Nullable Strength valueStrength;
+  @Nullable ReadBufferStrategy readBufferStrategy;
+  @Nullable SketchLayout sketchLayout;
 
   private Caffeine() {}
 
@@ -264,6 +287,8 @@ public final class Caffeine<K, V> {
    * when sending removal notifications, when asynchronous computations are performed by
    * {@link AsyncLoadingCache} or {@link LoadingCache#refresh} or {@link #refreshAfterWrite}, or
    * when performing periodic maintenance. By default, {@link ForkJoinPool#commonPool()} is used.
+   * These workloads may be isolated from each other by specifying the
+   * {@link #maintenanceExecutor}, {@link #loaderExecutor}, or {@link #listenerExecutor}.
    * <p>
    * The primary intent of this method is to facilitate testing of caches which have been
    * configured with {@link #removalListener} or utilize asynchronous computations. A test may
@@ -288,6 +313,147 @@ public final class Caffeine<K, V> {
     return (executor == null) ? ForkJoinPool.commonPool() : executor;
   }
 
+  /**
+   * Specifies the executor to use when performing the cache's maintenance work, such as applying
+   * the buffered reads and writes to the eviction policy and removing the expired entries. This
+   * work is brief and, if it is delayed, the writers are throttled once the write buffer is full.
+   * Isolating it from the executor used by slow loads or removal listeners ensures that it does not
+   * queue behind them. By default, the {@link #executor(Executor)} is used.
+   *
+   * @param maintenanceExecutor the executor to use for the maintenance work
+   * @return this builder instance
+   * @throws NullPointerException if the specified executor is null
+   * @throws IllegalStateException if a maintenance executor was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> maintenanceExecutor(@Nonnull Executor maintenanceExecutor) {
+    requireState(this.maintenanceExecutor == null,
+        "maintenance executor was already set to %s", this.maintenanceExecutor);
+    this.maintenanceExecutor = requireNonNull(maintenanceExecutor);
+    return this;
+  }
+
+  @Nonnull
+  Executor getMaintenanceExecutor() {
+    return (maintenanceExecutor == null) ? getExecutor() : maintenanceExecutor;
+  }
+
+  /**
+   * Specifies the executor to use when asynchronous computations are performed by
+   * {@link AsyncLoadingCache}, {@link LoadingCache#refresh}, or {@link #refreshAfterWrite}. The
+   * executor is passed to the {@link CacheLoader} and {@link AsyncCacheLoader} methods, so loads
+   * that block on I/O may use a larger pool without affecting the cache's other work. By default,
+   * the {@link #executor(Executor)} is used.
+   *
+   * @param loaderExecutor the executor to use for asynchronous loads and refreshes
+   * @return this builder instance
+   * @throws NullPointerException if the specified executor is null
+   * @throws IllegalStateException if a loader executor was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> loaderExecutor(@Nonnull Executor loaderExecutor) {
+    requireState(this.loaderExecutor == null,
+        "loader executor was already set to %s", this.loaderExecutor);
+    requireState(!threadPerLoad, "loader executor can not be combined with thread per load");
+    this.loaderExecutor = requireNonNull(loaderExecutor);
+    return this;
+  }
+
+  @Nonnull
+  Executor getLoaderExecutor() {
+    if (threadPerLoad) {
+      return ElasticExecutor.instance();
+    }
+    return (loaderExecutor == null) ? getExecutor() : loaderExecutor;
+  }
+
+  /**
+   * Specifies that each asynchronous load or refresh should run on its own thread, so that a large
+   * number of blocking loads may be in flight without sizing a thread pool. When the runtime
+   * supports virtual threads, a new virtual thread is started for each load. Otherwise the loads
+   * are run by a bounded pool of daemon threads that grows on demand and reclaims the threads that
+   * are idle. When that pool and its queue are saturated, a load is run by the thread that
+   * triggered it.
+   * <p>
+   * This is preferred when the {@link CacheLoader} blocks on I/O, as the default
+   * {@link CacheLoader#asyncLoad}, {@link CacheLoader#asyncLoadAll}, and
+   * {@link CacheLoader#asyncReload} run the blocking methods on the loader's executor, and would
+   * otherwise occupy the threads of the {@link #executor(Executor)}. The maintenance work and
+   * removal notifications continue to use their executors.
+   * <p>
+   * This feature cannot be used in conjunction with {@link #loaderExecutor}.
+   *
+   * @return this builder instance
+   * @throws IllegalStateException if thread per load or a loader executor was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> threadPerLoad() {
+    requireState(!threadPerLoad, "thread per load was already set");
+    requireState(loaderExecutor == null,
+        "thread per load can not be combined with loader executor %s", loaderExecutor);
+    threadPerLoad = true;
+    return this;
+  }
+
+  /**
+   * Specifies the executor to use when sending removal notifications to the
+   * {@link #removalListener}. By default, the {@link #executor(Executor)} is used.
+   *
+   * @param listenerExecutor the executor to use for removal notifications
+   * @return this builder instance
+   * @throws NullPointerException if the specified executor is null
+   * @throws IllegalStateException if a listener executor was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> listenerExecutor(@Nonnull Executor listenerExecutor) {
+    requireState(this.listenerExecutor == null,
+        "listener executor was already set to %s", this.listenerExecutor);
+    this.listenerExecutor = requireNonNull(listenerExecutor);
+    return this;
+  }
+
+  @Nonnull
+  Executor getListenerExecutor() {
+    return (listenerExecutor == null) ? getExecutor() : listenerExecutor;
+  }
+
+  /**
+   * Specifies the scheduler to use when scheduling routine maintenance based on an expiration
+   * event. This augments the periodic maintenance that occurs during normal cache operations to
+   * allow for the prompt removal of expired entries regardless of whether any cache activity is
+   * occurring at that time. By default, {@link Scheduler#disabledScheduler()} is used.
+   * <p>
+   * The scheduling between expiration events is paced to exploit batching and to minimize
+   * executions in short succession. This minimum difference between the scheduled executions is
+   * implementation-specific, currently at ~1 second (2^30 ns). In addition, the provided scheduler
+   * may not offer real-time guarantees (including {@link ScheduledThreadPoolExecutor}). The
+   * scheduling is best-effort and does not make any hard guarantees of when an expired entry will
+   * be removed.
+   *
+   * @param scheduler the scheduler that submits a task to the {@link #executor(Executor)} after a
+   *        given delay
+   * @return this builder instance
+   * @throws NullPointerException if the specified scheduler is null
+   */
+  @Nonnull
+  public Caffeine<K, V> scheduler(@Nonnull Scheduler scheduler) {
+    requireState(this.scheduler == null, "scheduler was already set to %s", this.scheduler);
+    this.scheduler = requireNonNull(scheduler);
+    return this;
+  }
+
+  boolean hasScheduler() {
+    return (scheduler != null) && (scheduler != Scheduler.disabledScheduler());
+  }
+
+  @Nonnull
+  Scheduler getScheduler() {
+    if ((scheduler == null) || (scheduler == Scheduler.disabledScheduler())) {
+      return Scheduler.disabledScheduler();
+    }
+    return Scheduler.guardedScheduler(scheduler);
+  }
+
   /**
    * Specifies the maximum number of entries the cache may contain. Note that the cache <b>may evict
    * an entry before this limit is exceeded or temporarily exceed the threshold while evicting</b>.
@@ -439,6 +605,7 @@ public final class Caffeine<K, V> {
   public Caffeine<K, V> weakKeys() {
     requireState(keyStrength == null, "Key strength was already set to %s", keyStrength);
     requireState(writer == null, "Weak keys may not be used with CacheWriter");
+    requireState(victimCache == null, "Weak keys may not be used with a victim cache");
 
     keyStrength = Strength.WEAK;
     return this;
@@ -531,6 +698,7 @@ public final class Caffeine<K, V> {
     requireState(expireAfterWriteNanos == UNSET_INT,
         "expireAfterWrite was already set to %s ns", expireAfterWriteNanos);
     requireState(expiry == null, "expireAfterAccess may not be used with variable expiration");
+    requireState(refresher == null, "expireAfterWrite may not be used with variable refresh");
     requireArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
     this.expireAfterWriteNanos = unit.toNanos(duration);
     return this;
@@ -649,6 +817,7 @@ public final class Caffeine<K, V> {
   public Caffeine<K, V> refreshAfterWrite(@Nonnegative long duration, @Nonnull TimeUnit unit) {
     requireNonNull(unit);
     requireState(refreshNanos == UNSET_INT, "refresh was already set to %s ns", refreshNanos);
+    requireState(refresher == null, "refreshAfterWrite may not be used with variable refresh");
     requireArgument(duration > 0, "duration must be positive: %s %s", duration, unit);
     this.refreshNanos = unit.toNanos(duration);
     return this;
@@ -656,11 +825,154 @@ public final class Caffeine<K, V> {
 
   @Nonnegative
   long getRefreshAfterWriteNanos() {
-    return refreshes() ? refreshNanos : DEFAULT_REFRESH_NANOS;
+    return (refreshNanos == UNSET_INT) ? DEFAULT_REFRESH_NANOS : refreshNanos;
   }
 
   boolean refreshes() {
-    return refreshNanos != UNSET_INT;
+    return (refreshNanos != UNSET_INT) || (refresher != null);
+  }
+
+  /**
+   * Specifies that active entries are eligible for automatic refresh once a duration has elapsed
+   * after the entry's creation, the most recent replacement of its value, or the adjustment made
+   * by its last read. This allows frequently changing entries to be refreshed sooner while stable
+   * entries are rarely reloaded. The semantics of refreshes are specified in
+   * {@link LoadingCache#refresh}, and are triggered by the first stale request for an entry as
+   * described by {@link #refreshAfterWrite}.
+   * <p>
+   * The refresh time is stored in place of the entry's write time, so a variable refresh policy
+   * may not be combined with {@link #expireAfterWrite}. A time-to-live may instead be specified by
+   * using {@link #expireAfter(Expiry)}.
+   * <p>
+   * <b>Note:</b> <i>all exceptions thrown during refresh will be logged and then swallowed</i>.
+   *
+   * @param refresher the refresher to use in calculating when cache entries become stale
+   * @param <K1> key type of the refresher
+   * @param <V1> value type of the refresher
+   * @return this builder instance
+   * @throws IllegalStateException if a refresh policy was already set or if the time to live was
+   *         set
+   */
+  @Nonnull
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> refreshAfter(
+      @Nonnull Refresher<? super K1, ? super V1> refresher) {
+    requireNonNull(refresher);
+    requireState(this.refresher == null, "Refresher was already set to %s", this.refresher);
+    requireState(this.refreshNanos == UNSET_INT,
+        "Refresher may not be used with refreshAfterWrite");
+    requireState(this.expireAfterWriteNanos == UNSET_INT,
+        "Refresher may not be used with expiresAfterWrite");
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.refresher = refresher;
+    return self;
+  }
+
+  boolean refreshesVariable() {
+    return refresher != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Nullable Refresher<K, V> getRefresher(boolean isAsync) {
+    return isAsync && (refresher != null)
+        ? (Refresher<K, V>) new AsyncRefresher<>(refresher)
+        : (Refresher<K, V>) refresher;
+  }
+
+  /**
+   * Specifies that the automatic refreshes triggered by {@link #refreshAfterWrite} are gathered
+   * into batches, and that each batch is reloaded by a single call to
+   * {@link CacheLoader#asyncLoadAll}. A batch collects the refreshes triggered within
+   * {@code duration} of the first one, which requires that a {@link #scheduler(Scheduler)} is
+   * configured. Otherwise the batch is submitted to the {@link #executor(Executor)} immediately and
+   * includes the refreshes that were triggered before the executor ran it.
+   * <p>
+   * This is useful when the {@link CacheLoader} implements {@link CacheLoader#loadAll} as a
+   * batched request, so that a burst of stale entries results in a few bulk calls instead of one
+   * call per entry. The loader must implement {@link CacheLoader#loadAll} or
+   * {@link AsyncCacheLoader#asyncLoadAll}, as the default implementations do not support bulk
+   * loading. A key that is absent from the loaded map is treated as if {@link CacheLoader#reload}
+   * returned {@code null}, so the entry is removed rather than retaining its old value. The
+   * reloaded values are only stored if the entry was not modified while the refresh was in-flight.
+   *
+   * @param duration the length of time to gather refreshes into a batch, or zero to not delay
+   * @param unit the unit that {@code duration} is expressed in
+   * @return this builder instance
+   * @throws IllegalArgumentException if {@code duration} is negative
+   * @throws IllegalStateException if the coalescing window was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> coalesceRefreshes(@Nonnegative long duration, @Nonnull TimeUnit unit) {
+    requireNonNull(unit);
+    requireState(coalesceRefreshNanos == UNSET_INT,
+        "coalesceRefreshes was already set to %s ns", coalesceRefreshNanos);
+    requireArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
+    this.coalesceRefreshNanos = unit.toNanos(duration);
+    return this;
+  }
+
+  @Nonnegative
+  long getCoalesceRefreshNanos() {
+    return coalescesRefreshes() ? coalesceRefreshNanos : 0L;
+  }
+
+  boolean coalescesRefreshes() {
+    return coalesceRefreshNanos != UNSET_INT;
+  }
+
+  /**
+   * Specifies that the loads performed by {@link AsyncLoadingCache#get} when an entry is absent are
+   * gathered into batches, and that each batch is loaded by a single call to
+   * {@link AsyncCacheLoader#asyncLoadAll}. A batch collects the misses that occur within
+   * {@code duration} of the first one, which requires that a {@link #scheduler(Scheduler)} is
+   * configured, or is loaded as soon as it holds {@code maximumBatchSize} keys. If a scheduler is
+   * not configured then the batch is submitted to the {@link #executor(Executor)} immediately and
+   * includes the misses that occurred before the executor ran it.
+   * <p>
+   * This is useful when concurrent callers request distinct keys and the {@link CacheLoader}
+   * implements {@link CacheLoader#loadAll} as a batched request, so that the misses result in a few
+   * bulk calls instead of one call per key. Each caller receives the future that is held by the
+   * cache for its key. A key that is absent from the loaded map is treated as if
+   * {@link CacheLoader#load} returned {@code null}, so the entry is removed.
+   * <p>
+   * This feature may only be used with {@link #buildAsync(AsyncCacheLoader)} and requires that the
+   * loader supports bulk loading.
+   *
+   * @param duration the length of time to gather misses into a batch, or zero to not delay
+   * @param unit the unit that {@code duration} is expressed in
+   * @param maximumBatchSize the maximum number of keys to load in a single batch
+   * @return this builder instance
+   * @throws IllegalArgumentException if {@code duration} is negative or {@code maximumBatchSize}
+   *         is not positive
+   * @throws IllegalStateException if the coalescing window was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> coalesceLoads(@Nonnegative long duration,
+      @Nonnull TimeUnit unit, @Nonnegative int maximumBatchSize) {
+    requireNonNull(unit);
+    requireState(coalesceLoadNanos == UNSET_INT,
+        "coalesceLoads was already set to %s ns", coalesceLoadNanos);
+    requireArgument(duration >= 0, "duration cannot be negative: %s %s", duration, unit);
+    requireArgument(maximumBatchSize > 0,
+        "maximum batch size must be positive: %s", maximumBatchSize);
+    this.coalesceLoadNanos = unit.toNanos(duration);
+    this.maximumLoadBatchSize = maximumBatchSize;
+    return this;
+  }
+
+  @Nonnegative
+  long getCoalesceLoadNanos() {
+    return coalescesLoads() ? coalesceLoadNanos : 0L;
+  }
+
+  @Nonnegative
+  int getMaximumLoadBatchSize() {
+    return coalescesLoads() ? maximumLoadBatchSize : Integer.MAX_VALUE;
+  }
+
+  boolean coalescesLoads() {
+    return coalesceLoadNanos != UNSET_INT;
   }
 
   /**
@@ -696,6 +1008,10 @@ public final class Caffeine<K, V> {
    * {@linkplain RemovalCause reason}. Each cache created by this builder will invoke this listener
    * as part of the routine maintenance described in the class documentation above.
    * <p>
+   * If the listener is a {@link BatchRemovalListener} and the cache is bounded, then the entries
+   * that are automatically removed during a maintenance cycle are delivered together as a single
+   * batch.
+   * <p>
    * <b>Warning:</b> after invoking this method, do not continue to use <i>this</i> cache builder
    * reference; instead use the reference this method <i>returns</i>. At runtime, these point to the
    * same instance, but only the returned reference has the correct generic type information so as
@@ -732,7 +1048,7 @@ public final class Caffeine<K, V> {
   @Nullable <K1 extends K, V1 extends V> RemovalListener<K1, V1> getRemovalListener(boolean async) {
     RemovalListener<K1, V1> castedListener = (RemovalListener<K1, V1>) removalListener;
     return async && (castedListener != null)
-        ? new AsyncRemovalListener(castedListener, getExecutor())
+        ? new AsyncRemovalListener(castedListener, getListenerExecutor())
         : castedListener;
   }
 
@@ -782,6 +1098,56 @@ public final class Caffeine<K, V> {
     return (castedWriter == null) ? CacheWriter.disabledWriter() : castedWriter;
   }
 
+  /**
+   * Specifies a victim cache that retains the entries which are evicted due to the size constraint.
+   * When a lookup by {@link Cache#getIfPresent}, {@link Cache#get}, or {@link LoadingCache#get}
+   * does not find the entry in the cache, the victim cache is consulted before the value is loaded.
+   * A value that is found is moved back into the cache. For example, a victim cache on a local disk
+   * can be created using {@link VictimCache#disk}.
+   * <p>
+   * <b>Warning:</b> after invoking this method, do not continue to use <i>this</i> cache builder
+   * reference; instead use the reference this method <i>returns</i>. At runtime, these point to the
+   * same instance, but only the returned reference has the correct generic type information so as
+   * to ensure type safety. For best results, use the standard method-chaining idiom illustrated in
+   * the class documentation above, configuring a builder and building your cache in a single
+   * statement. Failure to heed this advice can result in a {@link ClassCastException} being thrown
+   * by a cache operation at some <i>undefined</i> point in the future.
+   * <p>
+   * <b>Warning:</b> any exception thrown by the {@code victimCache} will be logged (using
+   * {@link java.util.logging.Logger}) and then swallowed.
+   * <p>
+   * This feature requires {@link #maximumSize} or {@link #maximumWeight} and cannot be used in
+   * conjunction with {@link #weakKeys()} or {@link #buildAsync}.
+   *
+   * @param victimCache the secondary tier to retain the evicted entries in
+   * @param <K1> the key type of the victim cache
+   * @param <V1> the value type of the victim cache
+   * @return the cache builder reference that should be used instead of {@code this} for any
+   *         remaining configuration and cache building
+   * @throws IllegalStateException if a victim cache was already set or if the key strength is weak
+   * @throws NullPointerException if the specified victim cache is null
+   */
+  @Nonnull
+  public <K1 extends K, V1 extends V> Caffeine<K1, V1> victimCache(
+      @Nonnull VictimCache<K1, V1> victimCache) {
+    requireState(this.victimCache == null,
+        "Victim cache was already set to %s", this.victimCache);
+    requireState(keyStrength == null, "Weak keys may not be used with a victim cache");
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    self.victimCache = requireNonNull(victimCache);
+    return self;
+  }
+
+  <K1 extends K, V1 extends V> VictimCache<K1, V1> getVictimCache() {
+    @SuppressWarnings("unchecked")
+    VictimCache<K1, V1> castedVictimCache = (VictimCache<K1, V1>) victimCache;
+    return (castedVictimCache == null)
+        ? VictimCache.disabledVictimCache()
+        : castedVictimCache;
+  }
+
   /**
    * Enables the accumulation of {@link CacheStats} during the operation of the cache. Without this
    * {@link Cache#stats} will return zero for all statistics. Note that recording statistics
@@ -820,6 +1186,208 @@ public final class Caffeine<K, V> {
     return (statsCounterSupplier != null);
   }
 
+  /**
+   * Enables the accumulation of the counters that describe the internal behavior of a bounded
+   * cache's policy, such as the read buffer's dropped events, the write buffer's back-pressure,
+   * the duration of the maintenance work, and the admission decisions. The counters are available
+   * through {@link Policy#diagnostics()} and are intended to guide the tuning of the cache. Note
+   * that recording the counters imposes a small performance penalty on cache operation.
+   *
+   * @return this builder instance
+   * @throws IllegalStateException if diagnostics recording was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> recordDiagnostics() {
+    requireState(!recordDiagnostics, "Diagnostics recording was already set");
+    recordDiagnostics = true;
+    return this;
+  }
+
+  boolean isRecordingDiagnostics() {
+    return recordDiagnostics;
+  }
+
+  /**
+   * Specifies the strategy used to record the reads that are replayed against a bounded cache's
+   * eviction and expiration policies. If not set then {@link ReadBufferStrategy#STRIPED} is used,
+   * which may discard reads when under a high load. The {@link ReadBufferStrategy#BATCHED} strategy
+   * records nearly every read, which keeps the hit rate independent of the number of threads, in
+   * exchange for a larger memory footprint.
+   *
+   * @param readBufferStrategy the strategy used to record reads
+   * @return this builder instance
+   * @throws NullPointerException if the specified strategy is null
+   * @throws IllegalStateException if a read buffer strategy was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> readBufferStrategy(@Nonnull ReadBufferStrategy readBufferStrategy) {
+    requireState(this.readBufferStrategy == null,
+        "read buffer strategy was already set to %s", this.readBufferStrategy);
+    this.readBufferStrategy = requireNonNull(readBufferStrategy);
+    return this;
+  }
+
+  @Nonnull
+  ReadBufferStrategy getReadBufferStrategy() {
+    return (readBufferStrategy == null) ? ReadBufferStrategy.STRIPED : readBufferStrategy;
+  }
+
+  /**
+   * Specifies the arrangement of the counters within the frequency sketch that a size-bounded cache
+   * uses to estimate the popularity of its entries. If not set then {@link SketchLayout#STANDARD}
+   * is used. The {@link SketchLayout#BLOCKED} layout incurs fewer cache misses when the sketch is
+   * large, such as for a cache with millions of entries, at the cost of a slightly lower accuracy.
+   *
+   * @param sketchLayout the arrangement of the sketch's counters
+   * @return this builder instance
+   * @throws NullPointerException if the specified layout is null
+   * @throws IllegalStateException if a sketch layout was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> sketchLayout(@Nonnull SketchLayout sketchLayout) {
+    requireState(this.sketchLayout == null,
+        "sketch layout was already set to %s", this.sketchLayout);
+    this.sketchLayout = requireNonNull(sketchLayout);
+    return this;
+  }
+
+  @Nonnull
+  SketchLayout getSketchLayout() {
+    return (sketchLayout == null) ? SketchLayout.STANDARD : sketchLayout;
+  }
+
+  /**
+   * Specifies that a size-bounded cache should place a doorkeeper in front of the frequency sketch
+   * that estimates the popularity of its entries. The doorkeeper is a Bloom filter that absorbs the
+   * first access to a key within the sketch's sampling period, so that the keys that are used only
+   * once do not consume the sketch's counters. This allows the sketch to use a quarter of the
+   * counters, reducing its footprint by half, while retaining a similar hit rate on workloads that
+   * include scans. This is preferred for very large caches.
+   *
+   * @return this builder instance
+   * @throws IllegalStateException if the doorkeeper was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> doorkeeper() {
+    requireState(!doorkeeper, "doorkeeper was already set");
+    doorkeeper = true;
+    return this;
+  }
+
+  boolean hasDoorkeeper() {
+    return doorkeeper;
+  }
+
+  /**
+   * Specifies that a weight-bounded cache should account for the weight of an entry when deciding
+   * whether to admit it. By default a candidate is admitted if it is used more frequently than the
+   * eviction policy's victim, so a single heavy candidate may displace many light entries that are
+   * each more popular. When enabled, a candidate that is heavier than the victim is admitted only
+   * if it is used more frequently than the victims that would be evicted to make room for it
+   * combined. This favors the byte hit rate over the hit rate, which is preferred when the weights
+   * vary by orders of magnitude, such as a cache of response bodies weighed by their size.
+   * <p>
+   * This feature requires {@link #maximumWeight}.
+   *
+   * @return this builder instance
+   * @throws IllegalStateException if weighted admission was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> weightedAdmission() {
+    requireState(!weightedAdmission, "weighted admission was already set");
+    weightedAdmission = true;
+    return this;
+  }
+
+  boolean isWeightedAdmission() {
+    return weightedAdmission;
+  }
+
+  /**
+   * Specifies that a size-bounded cache should partition its entries across independent shards,
+   * each with its own eviction policy, frequency sketch, and buffers. By default all of the entries
+   * are managed by a single policy whose maintenance work is serialized by a lock, which may become
+   * a bottleneck for write-heavy workloads on machines with many cores. When sharded, the keys are
+   * distributed by their hash, the maximum is divided evenly across the shards, and the maintenance
+   * of different shards is performed concurrently. The hit rate may be slightly lower because each
+   * shard makes its eviction decisions independently, and the ordered views of the
+   * {@link Cache#policy()} interleave the shards' orders.
+   * <p>
+   * Each shard is bounded by its portion of the maximum, which is not rebalanced when the keys are
+   * unevenly distributed. When a {@link #weigher} is used, an entry that is heavier than the
+   * maximum divided by the number of shards is evicted immediately, even though it would fit in an
+   * unsharded cache. A {@link #victimCache} is shared by the shards and must be thread-safe.
+   * <p>
+   * The number of shards is rounded up to a power of two. This feature requires
+   * {@link #maximumSize} or {@link #maximumWeight} and can only be used with {@link #build()}.
+   *
+   * @param shards the number of independent shards
+   * @return this builder instance
+   * @throws IllegalArgumentException if {@code shards} is not positive or exceeds 2^16
+   * @throws IllegalStateException if the number of shards was already set
+   */
+  @Nonnull
+  public Caffeine<K, V> shards(@Nonnegative int shards) {
+    requireState(this.shards == UNSET_INT, "shards was already set to %s", this.shards);
+    requireArgument((shards > 0) && (shards <= ShardedLocalCache.MAXIMUM_SHARDS),
+        "shards must be positive and at most %s", ShardedLocalCache.MAXIMUM_SHARDS);
+    this.shards = shards;
+    return this;
+  }
+
+  boolean hasShards() {
+    return (shards != UNSET_INT);
+  }
+
+  int getShards() {
+    return hasShards() ? shards : 1;
+  }
+
+  /**
+   * Returns a copy of this builder for one of the shards, which is bounded by its portion of the
+   * maximum and records into the shared statistics counter and victim cache.
+   */
+  Caffeine<K, V> shard(int count, long maximum,
+      StatsCounter statsCounter, VictimCache<K, V> victimCache) {
+    Caffeine<K, V> builder = new Caffeine<>();
+    builder.strictParsing = strictParsing;
+    builder.maximumSize = maximumSize;
+    builder.maximumWeight = maximumWeight;
+    if (isWeighted()) {
+      builder.maximumWeight = maximum;
+    } else {
+      builder.maximumSize = maximum;
+    }
+    if (initialCapacity != UNSET_INT) {
+      builder.initialCapacity = (initialCapacity + count - 1) / count;
+    }
+    builder.expireAfterWriteNanos = expireAfterWriteNanos;
+    builder.expireAfterAccessNanos = expireAfterAccessNanos;
+    if (statsCounterSupplier != null) {
+      builder.statsCounterSupplier = () -> statsCounter;
+    }
+    builder.recordDiagnostics = recordDiagnostics;
+    builder.readBufferStrategy = readBufferStrategy;
+    builder.sketchLayout = sketchLayout;
+    builder.doorkeeper = doorkeeper;
+    builder.weightedAdmission = weightedAdmission;
+    builder.removalListener = removalListener;
+    builder.victimCache = victimCache;
+    builder.keyStrength = keyStrength;
+    builder.valueStrength = valueStrength;
+    builder.scheduler = scheduler;
+    builder.executor = executor;
+    builder.loaderExecutor = loaderExecutor;
+    builder.threadPerLoad = threadPerLoad;
+    builder.listenerExecutor = listenerExecutor;
+    builder.maintenanceExecutor = maintenanceExecutor;
+    builder.weigher = weigher;
+    builder.writer = writer;
+    builder.expiry = expiry;
+    builder.ticker = ticker;
+    return builder;
+  }
+
   @Nonnull
   Supplier<StatsCounter> getStatsCounterSupplier() {
     return (statsCounterSupplier == null)
@@ -853,15 +1421,142 @@ public final class Caffeine<K, V> {
   @Nonnull
   public <K1 extends K, V1 extends V> Cache<K1, V1> build() {
     requireWeightWithWeigher();
+    requireMaximumWeightWithWeightedAdmission();
     requireNonLoadingCache();
+    requireMaximumWithVictimCache();
+    requireMaximumWithShards();
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    if (hasShards()) {
+      return new ShardedLocalCache<>(self);
+    }
     return isBounded() || refreshes()
         ? new BoundedLocalCache.BoundedLocalManualCache<>(self)
         : new UnboundedLocalCache.UnboundedLocalManualCache<>(self);
   }
 
+  /**
+   * Builds a cache keyed by primitive {@code long} values which does not automatically load values
+   * when keys are requested. The entries are stored in primitive arrays instead of as individual
+   * objects, which reduces the per-entry memory overhead and avoids boxing the key on a lookup.
+   * <p>
+   * This method does not alter the state of this {@code Caffeine} instance, so it can be invoked
+   * again to create multiple independent caches.
+   * <p>
+   * This construction requires {@link #maximumSize} and cannot be used with a {@link #weigher},
+   * expiration, refresh, {@link #weakKeys()}, {@link #weakValues()}, {@link #softValues()},
+   * {@link #writer}, or {@link #removalListener}. The eviction policy uses a fixed size admission
+   * window rather than adapting it to the workload, so the hit rate may be lower than that of a
+   * cache built by {@link #build()} when the workload is recency-biased.
+   *
+   * @param <V1> the value type of the cache
+   * @return a cache having the requested features
+   */
+  @Nonnull
+  public <V1 extends V> LongCache<V1> buildLong() {
+    requireState(maximumSize != UNSET_INT, "LongCache requires maximumSize");
+    requireState(weigher == null, "weigher can not be combined with LongCache");
+    requireState((expireAfterAccessNanos == UNSET_INT) && (expireAfterWriteNanos == UNSET_INT)
+        && (expiry == null), "Expiration can not be combined with LongCache");
+    requireState((keyStrength == null) && (valueStrength == null),
+        "Weak or soft references can not be combined with LongCache");
+    requireState(writer == null, "CacheWriter can not be combined with LongCache");
+    requireState(removalListener == null, "RemovalListener can not be combined with LongCache");
+    requireState(victimCache == null, "Victim cache can not be combined with LongCache");
+    requireState(!recordDiagnostics, "Diagnostics can not be recorded by LongCache");
+    requireState(readBufferStrategy == null, "Read buffer strategy can not be set for LongCache");
+    requireState(shards == UNSET_INT, "shards can not be combined with LongCache");
+    requireMaximumWeightWithWeightedAdmission();
+    requireNonLoadingCache();
+
+    return new BoundedLongCache<>(this);
+  }
+
+  /**
+   * Builds a cache which stores the serialized form of its values outside of the Java heap and does
+   * not automatically load values when keys are requested. The keys and the entry metadata remain
+   * on-heap, which reduces the garbage collector's work when the values are large object graphs.
+   * <p>
+   * If {@link #maximumWeight} is specified without a {@link #weigher} then an entry's weight is the
+   * size of its serialized value, in bytes. A configured weigher or removal listener receives the
+   * deserialized value.
+   * <p>
+   * The serialized values are allocated from large direct slabs that are owned by the cache, and a
+   * value's memory is reused once the entry is evicted, removed, or replaced. The slabs are not
+   * returned to the operating system, so the direct memory held is the cache's peak footprint.
+   * <p>
+   * This method does not alter the state of this {@code Caffeine} instance, so it can be invoked
+   * again to create multiple independent caches.
+   * <p>
+   * This construction cannot be used with {@link #weakValues()}, {@link #softValues()},
+   * {@link #expireAfter(Expiry)}, or {@link #writer}.
+   *
+   * @param serializer the serializer used to convert the values to and from their binary form
+   * @param <K1> the key type of the cache
+   * @param <V1> the value type of the cache
+   * @return a cache having the requested features
+   */
+  @Nonnull
+  public <K1 extends K, V1 extends V> OffHeapCache<K1, V1> buildOffHeap(
+      @Nonnull Serializer<V1> serializer) {
+    requireNonNull(serializer);
+    requireState(valueStrength == null, "Weak or soft values can not be combined with off-heap");
+    requireState(expiry == null, "Variable expiration can not be combined with off-heap");
+    requireState(writer == null, "CacheWriter can not be combined with off-heap");
+    requireState(victimCache == null, "Victim cache can not be combined with off-heap");
+    requireState(shards == UNSET_INT, "shards can not be combined with off-heap");
+    requireMaximumWeightWithWeightedAdmission();
+    requireNonLoadingCache();
+    if (weigher != null) {
+      requireWeightWithWeigher();
+    }
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    return new LocalOffHeapCache<>(self, serializer);
+  }
+
+  /**
+   * Returns a copy of this builder for a cache of serialized values, where the value-based settings
+   * are adapted to operate on the deserialized form and a removed buffer is returned to the
+   * allocator.
+   */
+  @SuppressWarnings("unchecked")
+  <K1 extends K, V1 extends V> Caffeine<K1, ByteBuffer> offHeap(
+      Serializer<V1> serializer, SlabAllocator allocator) {
+    Caffeine<K1, ByteBuffer> builder = new Caffeine<>();
+    builder.strictParsing = strictParsing;
+    builder.maximumSize = maximumSize;
+    builder.maximumWeight = maximumWeight;
+    builder.initialCapacity = initialCapacity;
+    builder.expireAfterWriteNanos = expireAfterWriteNanos;
+    builder.expireAfterAccessNanos = expireAfterAccessNanos;
+    builder.statsCounterSupplier = statsCounterSupplier;
+    builder.recordDiagnostics = recordDiagnostics;
+    builder.readBufferStrategy = readBufferStrategy;
+    builder.sketchLayout = sketchLayout;
+    builder.doorkeeper = doorkeeper;
+    builder.weightedAdmission = weightedAdmission;
+    builder.keyStrength = keyStrength;
+    builder.scheduler = scheduler;
+    builder.executor = executor;
+    builder.loaderExecutor = loaderExecutor;
+    builder.threadPerLoad = threadPerLoad;
+    builder.listenerExecutor = listenerExecutor;
+    builder.maintenanceExecutor = maintenanceExecutor;
+    builder.ticker = ticker;
+    if (maximumWeight != UNSET_INT) {
+      builder.weigher = (weigher == null)
+          ? OffHeap.byteSizeWeigher()
+          : new SerializedWeigher<>((Weigher<K1, V1>) weigher, serializer);
+    }
+    builder.removalListener = new ReleasingRemovalListener<K1>(allocator, (removalListener == null)
+        ? null
+        : new SerializedRemovalListener<>((RemovalListener<K1, V1>) removalListener, serializer));
+    return builder;
+  }
+
   /**
    * Builds a cache, which either returns an already-loaded value for a given key or atomically
    * computes or retrieves it using the supplied {@code CacheLoader}. If another thread is currently
@@ -880,6 +1575,12 @@ public final class Caffeine<K, V> {
   public <K1 extends K, V1 extends V> LoadingCache<K1, V1> build(
       @Nonnull CacheLoader<? super K1, V1> loader) {
     requireWeightWithWeigher();
+    requireMaximumWeightWithWeightedAdmission();
+    requireRefreshWhenCoalescing();
+    requireBulkLoaderWhenCoalescing(loader);
+    requireMaximumWithVictimCache();
+    requireState(!coalescesLoads(), "coalesceLoads requires an AsyncLoadingCache");
+    requireState(shards == UNSET_INT, "shards can not be combined with LoadingCache");
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
@@ -888,6 +1589,42 @@ public final class Caffeine<K, V> {
         : new UnboundedLocalCache.UnboundedLocalLoadingCache<>(self, loader);
   }
 
+  /**
+   * Builds a cache which does not automatically load values when keys are requested unless a
+   * mapping function is provided. If the asynchronous computation fails or computes a {@code null}
+   * value then the entry will be automatically removed. Note that multiple threads can
+   * concurrently load values for distinct keys.
+   * <p>
+   * Consider {@link #buildAsync(CacheLoader)} or {@link #buildAsync(AsyncCacheLoader)} instead, if
+   * it is feasible to implement an {@code CacheLoader} or {@code AsyncCacheLoader}.
+   * <p>
+   * This method does not alter the state of this {@code Caffeine} instance, so it can be invoked
+   * again to create multiple independent caches.
+   * <p>
+   * This construction cannot be used with {@link #weakValues()}, {@link #softValues()}, or
+   * {@link #writer}.
+   *
+   * @param <K1> the key type of the cache
+   * @param <V1> the value type of the cache
+   * @return a cache having the requested features
+   */
+  @Nonnull
+  public <K1 extends K, V1 extends V> AsyncCache<K1, V1> buildAsync() {
+    requireState(valueStrength == null, "Weak or soft values can not be combined with AsyncCache");
+    requireState(writer == null, "CacheWriter can not be combined with AsyncCache");
+    requireState(victimCache == null, "Victim cache can not be combined with AsyncCache");
+    requireState(shards == UNSET_INT, "shards can not be combined with AsyncCache");
+    requireWeightWithWeigher();
+    requireMaximumWeightWithWeightedAdmission();
+    requireNonLoadingCache();
+
+    @SuppressWarnings("unchecked")
+    Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
+    return isBounded()
+        ? new BoundedLocalCache.BoundedLocalAsyncCache<>(self)
+        : new UnboundedLocalCache.UnboundedLocalAsyncCache<>(self);
+  }
+
   /**
    * Builds a cache, which either returns a {@link CompletableFuture} already loaded or currently
    * computing the value for a given key, or atomically computes the value asynchronously through a
@@ -936,8 +1673,12 @@ public final class Caffeine<K, V> {
     requireState(valueStrength == null,
         "Weak or soft values can not be combined with AsyncLoadingCache");
     requireState(writer == null, "CacheWriter can not be combined with AsyncLoadingCache");
+    requireState(victimCache == null, "Victim cache can not be combined with AsyncLoadingCache");
+    requireState(shards == UNSET_INT, "shards can not be combined with AsyncLoadingCache");
     requireWeightWithWeigher();
-    requireNonNull(loader);
+    requireMaximumWeightWithWeightedAdmission();
+    requireRefreshWhenCoalescing();
+    requireBulkLoaderWhenCoalescing(requireNonNull(loader));
 
     @SuppressWarnings("unchecked")
     Caffeine<K1, V1> self = (Caffeine<K1, V1>) this;
@@ -948,6 +1689,33 @@ public final class Caffeine<K, V> {
 
   void requireNonLoadingCache() {
     requireState(refreshNanos == UNSET_INT, "refreshAfterWrite requires a LoadingCache");
+    requireState(refresher == null, "refreshAfter requires a LoadingCache");
+    requireState(coalesceRefreshNanos == UNSET_INT, "coalesceRefreshes requires a LoadingCache");
+    requireState(coalesceLoadNanos == UNSET_INT, "coalesceLoads requires an AsyncLoadingCache");
+  }
+
+  void requireMaximumWithVictimCache() {
+    requireState((victimCache == null) || evicts(),
+        "victimCache requires maximumSize or maximumWeight");
+  }
+
+  void requireMaximumWithShards() {
+    requireState((shards == UNSET_INT) || evicts(), "shards requires maximumSize or maximumWeight");
+  }
+
+  void requireRefreshWhenCoalescing() {
+    requireState(!coalescesRefreshes() || refreshes(),
+        "coalesceRefreshes requires refreshAfterWrite");
+  }
+
+  void requireBulkLoaderWhenCoalescing(AsyncCacheLoader<?, ?> loader) {
+    requireState(!coalescesRefreshes() || LocalAsyncLoadingCache.canBulkLoad(loader),
+        "coalesceRefreshes requires a loader that supports bulk loading");
+  }
+
+  void requireMaximumWeightWithWeightedAdmission() {
+    requireState(!weightedAdmission || (maximumWeight != UNSET_INT),
+        "weightedAdmission requires maximumWeight");
   }
 
   void requireWeightWithWeigher() {
@@ -978,6 +1746,9 @@ public final class Caffeine<K, V> {
     if (maximumWeight != UNSET_INT) {
       s.append("maximumWeight=").append(maximumWeight).append(", ");
     }
+    if (shards != UNSET_INT) {
+      s.append("shards=").append(shards).append(", ");
+    }
     if (expireAfterWriteNanos != UNSET_INT) {
       s.append("expireAfterWrite=").append(expireAfterWriteNanos).append("ns, ");
     }
@@ -990,6 +1761,16 @@ public final class Caffeine<K, V> {
     if (refreshNanos != UNSET_INT) {
       s.append("refreshNanos=").append(refreshNanos).append("ns, ");
     }
+    if (refresher != null) {
+      s.append("refresher, ");
+    }
+    if (coalesceRefreshNanos != UNSET_INT) {
+      s.append("coalesceRefreshNanos=").append(coalesceRefreshNanos).append("ns, ");
+    }
+    if (coalesceLoadNanos != UNSET_INT) {
+      s.append("coalesceLoadNanos=").append(coalesceLoadNanos).append("ns, ");
+      s.append("maximumLoadBatchSize=").append(maximumLoadBatchSize).append(", ");
+    }
     if (keyStrength != null) {
       s.append("keyStrength=").append(keyStrength.toString().toLowerCase(US)).append(", ");
     }
@@ -1002,6 +1783,31 @@ public final class Caffeine<K, V> {
     if (writer != null) {
       s.append("writer, ");
     }
+    if (victimCache != null) {
+      s.append("victimCache, ");
+    }
+    if (scheduler != null) {
+      s.append("scheduler, ");
+    }
+    if (recordDiagnostics) {
+      s.append("recordDiagnostics, ");
+    }
+    if (readBufferStrategy != null) {
+      s.append("readBufferStrategy=").append(readBufferStrategy.toString().toLowerCase(US))
+          .append(", ");
+    }
+    if (sketchLayout != null) {
+      s.append("sketchLayout=").append(sketchLayout.toString().toLowerCase(US)).append(", ");
+    }
+    if (doorkeeper) {
+      s.append("doorkeeper, ");
+    }
+    if (weightedAdmission) {
+      s.append("weightedAdmission, ");
+    }
+    if (threadPerLoad) {
+      s.append("threadPerLoad, ");
+    }
     if (s.length() > baseLength) {
       s.deleteCharAt(s.length() - 2);
     }
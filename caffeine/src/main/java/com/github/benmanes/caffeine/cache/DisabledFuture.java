@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A future that is returned when a task could not be scheduled, which is always done and never
+ * cancelled.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+enum DisabledFuture implements Future<Void> {
+  INSTANCE;
+
+  @Override public boolean isDone() {
+    return true;
+  }
+  @Override public boolean isCancelled() {
+    return false;
+  }
+  @Override public boolean cancel(boolean mayInterruptIfRunning) {
+    return false;
+  }
+  @Override public Void get() {
+    return null;
+  }
+  @Override public Void get(long timeout, TimeUnit unit) {
+    requireNonNull(unit);
+    return null;
+  }
+}
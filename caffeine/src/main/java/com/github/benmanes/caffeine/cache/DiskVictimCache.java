@@ -0,0 +1,358 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import com.github.benmanes.caffeine.base.UnsafeAccess;
+
+/**
+ * A {@link VictimCache} that stores the serialized values in an append-only log within a single
+ * memory-mapped file. The file is divided into fixed size segments that are reused in ring order,
+ * the location of each value is recorded by an in-memory index, and a removal only discards the
+ * index entry, leaving the bytes as garbage within the segment. When a new segment is required and
+ * the log is at its maximum size then the oldest segment is recycled along with any entries that
+ * it still holds, which evicts in first-in, first-out order and reclaims the garbage.
+ * <p>
+ * An entry is written asynchronously by a task on the executor, so that the caller, typically the
+ * cache's maintenance thread, does not perform the file I/O. Until it is written the value is held
+ * in a pending queue, which a removal or invalidation of the key consults or discards. A write
+ * that is superseded while in progress is not added to the index. The file is unmapped and deleted
+ * when the entries are invalidated, and is marked to be deleted when the virtual machine exits.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+final class DiskVictimCache<K, V> implements VictimCache<K, V> {
+  static final Logger logger = Logger.getLogger(DiskVictimCache.class.getName());
+  static final @Nullable Method INVOKE_CLEANER = invokeCleaner();
+
+  /** The maximum size of a segment. */
+  static final int MAXIMUM_SEGMENT_SIZE = 1 << 26;
+  /** The preferred number of segments, which bounds the amount of data discarded together. */
+  static final int SEGMENTS = 8;
+  /** The maximum number of entries waiting to be written, beyond which new entries are dropped. */
+  static final int MAXIMUM_PENDING = 1024;
+
+  @GuardedBy("this")
+  final Map<Object, Location> index;
+  @GuardedBy("this")
+  final Map<Object, V> pending;
+  @GuardedBy("this")
+  boolean releaseFile;
+  @GuardedBy("this")
+  boolean draining;
+
+  // Accessed only by the thread performing the drain
+  final ArrayDeque<Segment> segments;
+  @Nullable FileChannel channel;
+  @Nullable Path path;
+
+  final Serializer<V> serializer;
+  final int maximumSegments;
+  final Executor executor;
+  final int segmentSize;
+  final Path directory;
+
+  DiskVictimCache(Path directory, long maximumBytes,
+      Serializer<V> serializer, Executor executor) {
+    requireArgument(maximumBytes > 0);
+    this.executor = requireNonNull(executor);
+    this.directory = requireNonNull(directory);
+    this.serializer = requireNonNull(serializer);
+    this.segmentSize = (int) Math.min(MAXIMUM_SEGMENT_SIZE,
+        Math.max(1, maximumBytes / SEGMENTS));
+    this.maximumSegments = (int) Math.min(Integer.MAX_VALUE, maximumBytes / segmentSize);
+    this.segments = new ArrayDeque<>();
+    this.pending = new LinkedHashMap<>();
+    this.index = new HashMap<>();
+  }
+
+  @Override
+  public @Nullable V remove(Object key) {
+    byte[] bytes;
+    synchronized (this) {
+      V value = pending.remove(key);
+      Location location = index.remove(key);
+      if (value != null) {
+        return value;
+      } else if (location == null) {
+        return null;
+      }
+      // Copied while the segment cannot be recycled
+      bytes = location.copy();
+    }
+    return serializer.deserialize(ByteBuffer.wrap(bytes));
+  }
+
+  @Override
+  public void put(K key, V value) {
+    synchronized (this) {
+      index.remove(key);
+      pending.remove(key);
+      if (pending.size() >= MAXIMUM_PENDING) {
+        return;
+      }
+      pending.put(key, value);
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    scheduleDrain();
+  }
+
+  @Override
+  public synchronized void invalidate(Object key) {
+    pending.remove(key);
+    index.remove(key);
+  }
+
+  @Override
+  public void invalidateAll() {
+    synchronized (this) {
+      pending.clear();
+      index.clear();
+      releaseFile = true;
+      if (draining) {
+        return;
+      }
+      draining = true;
+    }
+    scheduleDrain();
+  }
+
+  /** Submits a task to write the pending entries, or performs it if the executor fails. */
+  void scheduleDrain() {
+    try {
+      executor.execute(this::drain);
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown when submitting the victim cache's task", t);
+      drain();
+    }
+  }
+
+  /** Writes the pending entries in insertion order and releases the file if requested. */
+  void drain() {
+    for (;;) {
+      boolean release;
+      Object key = null;
+      V value = null;
+      synchronized (this) {
+        release = releaseFile;
+        releaseFile = false;
+        if (!pending.isEmpty()) {
+          Map.Entry<Object, V> next = pending.entrySet().iterator().next();
+          key = next.getKey();
+          value = next.getValue();
+        } else if (!release) {
+          draining = false;
+          return;
+        }
+      }
+
+      try {
+        if (release) {
+          release();
+        }
+        if (key != null) {
+          write(key, value);
+        }
+      } catch (Throwable t) {
+        logger.log(Level.WARNING, "Exception thrown by the victim cache's task", t);
+        if (key != null) {
+          synchronized (this) {
+            if (pending.get(key) == value) {
+              pending.remove(key);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** Appends the value to the log and indexes it, unless it was superseded in the meantime. */
+  void write(Object key, V value) throws IOException {
+    int size = serializer.serializedSize(value);
+    Location location = null;
+    if (size <= segmentSize) {
+      Segment segment = segments.peekLast();
+      if ((segment == null) || (segment.remaining() < size)) {
+        segment = nextSegment();
+      }
+      location = append(segment, key, value, size);
+    }
+    synchronized (this) {
+      if (pending.get(key) == value) {
+        pending.remove(key);
+        if (location != null) {
+          index.put(key, location);
+        }
+      }
+    }
+  }
+
+  /** Serializes the value directly into the segment and returns its location. */
+  Location append(Segment segment, Object key, V value, int size) {
+    ByteBuffer target = segment.region.duplicate();
+    target.limit(segment.position + size).position(segment.position);
+    serializer.serialize(value, target);
+    if (target.position() != segment.position + size) {
+      throw new IllegalStateException(String.format("Serializer wrote %d bytes but reported a "
+          + "size of %d", target.position() - segment.position, size));
+    }
+    Location location = new Location(segment, segment.position, size);
+    segment.position += size;
+    segment.keys.add(key);
+    return location;
+  }
+
+  /**
+   * Returns the next segment to append to, which is either newly mapped from the file or is the
+   * oldest segment after its entries were removed from the index.
+   */
+  Segment nextSegment() throws IOException {
+    Segment segment;
+    if (segments.size() < maximumSegments) {
+      if (channel == null) {
+        path = Files.createTempFile(directory, "victim-", ".log");
+        path.toFile().deleteOnExit();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      long offset = (long) segments.size() * segmentSize;
+      segment = new Segment(channel.map(MapMode.READ_WRITE, offset, segmentSize));
+    } else {
+      segment = segments.removeFirst();
+      synchronized (this) {
+        for (Object key : segment.keys) {
+          Location location = index.get(key);
+          if ((location != null) && (location.segment == segment)) {
+            index.remove(key);
+          }
+        }
+      }
+      segment.keys.clear();
+      segment.position = 0;
+    }
+    segments.addLast(segment);
+    return segment;
+  }
+
+  /**
+   * Unmaps the segments and deletes the file. This is performed only after the index was cleared,
+   * so a reader can no longer observe the segments.
+   */
+  void release() throws IOException {
+    for (Segment segment : segments) {
+      unmap(segment.region);
+    }
+    segments.clear();
+    if (channel != null) {
+      channel.close();
+      Files.deleteIfExists(path);
+      channel = null;
+      path = null;
+    }
+  }
+
+  /**
+   * Releases the mapping eagerly rather than when the buffer is garbage collected, if supported by
+   * the runtime. Otherwise the file is deleted while mapped, which is permitted on most platforms
+   * and is retried when the virtual machine exits.
+   */
+  static void unmap(MappedByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UnsafeAccess.UNSAFE, buffer);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.log(Level.FINE, "Failed to unmap the victim cache's segment", e);
+    }
+  }
+
+  /** Returns {@code Unsafe.invokeCleaner(ByteBuffer)} if available (Java 9 and above). */
+  static @Nullable Method invokeCleaner() {
+    try {
+      return UnsafeAccess.UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (NoSuchMethodException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** A region of the memory-mapped file that is written to sequentially. */
+  static final class Segment {
+    final MappedByteBuffer region;
+    final List<Object> keys;
+
+    int position;
+
+    Segment(MappedByteBuffer region) {
+      this.keys = new ArrayList<>();
+      this.region = region;
+    }
+
+    int remaining() {
+      return region.capacity() - position;
+    }
+  }
+
+  /** The position of a serialized value within a segment. */
+  static final class Location {
+    final Segment segment;
+    final int offset;
+    final int length;
+
+    Location(Segment segment, int offset, int length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /** Returns a copy of the serialized value. */
+    byte[] copy() {
+      ByteBuffer view = segment.region.duplicate();
+      view.limit(offset + length).position(offset);
+      byte[] bytes = new byte[length];
+      view.get(bytes);
+      return bytes;
+    }
+  }
+}
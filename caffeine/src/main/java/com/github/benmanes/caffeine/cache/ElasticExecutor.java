@@ -0,0 +1,99 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * An executor that runs each blocking load on its own thread, so that the number of loads in
+ * flight is not limited by the size of a thread pool. On a runtime that supports virtual threads a
+ * new virtual thread is started for each task. Otherwise the tasks are run by a bounded pool of
+ * daemon platform threads that grows on demand and reclaims the threads that are idle. When all of
+ * the platform threads are busy the tasks wait in a bounded queue, and once that is full a task is
+ * run by the thread that submitted it, which slows the producer rather than exhausting the
+ * system's threads.
+ * <p>
+ * The virtual thread executor is obtained reflectively so that the library remains compatible
+ * with older runtimes. The executor is shared by all caches, as it does not retain idle threads.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class ElasticExecutor {
+  /** The duration that an idle platform thread is retained for. */
+  static final long KEEP_ALIVE_SECONDS = 60L;
+  /** The maximum number of platform threads. */
+  static final int MAXIMUM_THREADS = 256;
+  /** The maximum number of tasks waiting for a platform thread. */
+  static final int QUEUE_CAPACITY = 1024;
+
+  private ElasticExecutor() {}
+
+  /** Returns the executor that runs each task on its own thread. */
+  static Executor instance() {
+    return Holder.INSTANCE;
+  }
+
+  /** Returns an executor that uses virtual threads, if supported, or else platform threads. */
+  static Executor create() {
+    Executor executor = newVirtualThreadExecutor();
+    return (executor == null) ? newPlatformThreadExecutor() : executor;
+  }
+
+  /** Returns an executor that starts a virtual thread per task, or null if not supported. */
+  static @Nullable Executor newVirtualThreadExecutor() {
+    try {
+      Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (Executor) factory.invoke(/* static */ null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // Not available prior to JDK 21, or requires that preview features are enabled
+      return null;
+    }
+  }
+
+  /** Returns a bounded pool of daemon threads that are reclaimed when idle. */
+  static Executor newPlatformThreadExecutor() {
+    return newPlatformThreadExecutor(MAXIMUM_THREADS, QUEUE_CAPACITY);
+  }
+
+  /**
+   * Returns a pool of up to {@code maximumThreads} daemon threads that are reclaimed when idle. A
+   * thread is started for each task until the maximum is reached, after which the tasks are queued
+   * and, if the queue is full, run by the caller.
+   */
+  static Executor newPlatformThreadExecutor(int maximumThreads, int queueCapacity) {
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(maximumThreads, maximumThreads,
+        KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), task -> {
+          Thread thread = new Thread(task, "caffeine-loader-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  static final class Holder {
+    static final Executor INSTANCE = create();
+  }
+}
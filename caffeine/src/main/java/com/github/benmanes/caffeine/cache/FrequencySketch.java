@@ -17,6 +17,7 @@ package com.github.benmanes.caffeine.cache;
 
 import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
 
+import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
 
 import javax.annotation.Nonnegative;
@@ -31,7 +32,7 @@ import javax.annotation.concurrent.NotThreadSafe;
  * @author ben.manes@gmail.com (Ben Manes)
  */
 @NotThreadSafe
-final class FrequencySketch<E> {
+class FrequencySketch<E> {
 
   /*
    * This class maintains a 4-bit CountMinSketch [1] with periodic aging to provide the popularity
@@ -50,6 +51,23 @@ final class FrequencySketch<E> {
    * counters found. The O(n) cost of aging is amortized, ideal for hardware prefetching, and uses
    * inexpensive bit manipulations per array location.
    *
+   * For a large table a single aging pass causes a noticeable pause for the thread performing the
+   * cache's maintenance. In that case the aging is performed incrementally by halving a small slice
+   * of the table on every subsequent increment until the sweep completes, which is a tiny fraction
+   * of the sampling window. The counters not yet swept may be incremented prior to being halved,
+   * which slightly favors the recently used elements and is otherwise harmless.
+   *
+   * A doorkeeper [4] may be placed in front of the counters to absorb the first occurrence of an
+   * element within the sampling window. The doorkeeper is a Bloom filter that is cleared when the
+   * sketch is aged, so that only an element observed multiple times consumes the counters. Every
+   * insertion into the doorkeeper still counts toward the sampling window, as in TinyLFU, so that
+   * the filter is cleared before its false positive rate degrades. As most of the elements in a
+   * scan-heavy workload are seen only once, the counter matrix can be a quarter of its size. The
+   * doorkeeper is the same size as the matrix, which is sufficient for roughly three times the
+   * maximum number of entries to be inserted with a 10% false positive rate, so the sketch's
+   * footprint is halved overall. When present, the doorkeeper contributes one to the frequency of
+   * an element that it contains, up to the maximum (15).
+   *
    * A per instance smear is used to help protect against hash flooding [3], which would result
    * in the admission policy always rejecting new candidates. The use of a pseudo random hashing
    * function resolves the concern of a denial of service attack by exploiting the hash codes.
@@ -60,6 +78,8 @@ final class FrequencySketch<E> {
    * http://arxiv.org/pdf/1512.00727.pdf
    * [3] Denial of Service via Algorithmic Complexity Attack
    * https://www.usenix.org/legacy/events/sec03/tech/full_papers/crosby/crosby.pdf
+   * [4] TinyLFU: A Highly Efficient Cache Admission Policy, section 3.4.2
+   * http://arxiv.org/pdf/1512.00727.pdf
    */
 
   static final long[] SEED = new long[] { // A mixture of seeds from FNV-1a, CityHash, and Murmur3
@@ -67,6 +87,14 @@ final class FrequencySketch<E> {
   static final long RESET_MASK = 0x7777777777777777L;
   static final long ONE_MASK = 0x1111111111111111L;
 
+  /** The table length at which the aging process is performed incrementally. */
+  static final int INCREMENTAL_RESET_THRESHOLD = 1 << 16;
+  /** The number of table entries halved per increment during an incremental aging sweep. */
+  static final int RESET_SLICE = 16;
+  /** The number of bits set by the doorkeeper for each element. */
+  static final int DOORKEEPER_HASHES = 3;
+
+  final boolean hasDoorkeeper;
   final int randomSeed;
 
   int sampleSize;
@@ -74,16 +102,49 @@ final class FrequencySketch<E> {
   long[] table;
   int size;
 
+  boolean incrementalReset;
+  boolean resetting;
+  int resetCursor;
+  int resetCount;
+
+  long[] doorkeeper;
+  int doorkeeperMask;
+
   /**
    * Creates a lazily initialized frequency sketch, requiring {@link #ensureCapacity} be called
    * when the maximum size of the cache has been determined.
    */
-  @SuppressWarnings("NullAway.Init")
   public FrequencySketch() {
+    this(/* doorkeeper */ false);
+  }
+
+  /**
+   * Creates a lazily initialized frequency sketch, requiring {@link #ensureCapacity} be called
+   * when the maximum size of the cache has been determined.
+   *
+   * @param doorkeeper if a Bloom filter absorbs the first occurrence of an element
+   */
+  @SuppressWarnings("NullAway.Init")
+  FrequencySketch(boolean doorkeeper) {
+    this.hasDoorkeeper = doorkeeper;
     int seed = ThreadLocalRandom.current().nextInt();
     this.randomSeed = ((seed & 1) == 0) ? seed + 1 : seed;
   }
 
+  /**
+   * Returns a lazily initialized frequency sketch that arranges its counters using the specified
+   * layout.
+   *
+   * @param layout the arrangement of the counters within the table
+   * @param doorkeeper if a Bloom filter absorbs the first occurrence of an element
+   * @return a new, uninitialized frequency sketch
+   */
+  static <E> FrequencySketch<E> newInstance(SketchLayout layout, boolean doorkeeper) {
+    return (layout == SketchLayout.BLOCKED)
+        ? new BlockedFrequencySketch<>(doorkeeper)
+        : new FrequencySketch<>(doorkeeper);
+  }
+
   /**
    * Initializes and increases the capacity of this <tt>FrequencySketch</tt> instance, if necessary,
    * to ensure that it can accurately estimate the popularity of elements given the maximum size of
@@ -94,17 +155,28 @@ final class FrequencySketch<E> {
   public void ensureCapacity(@Nonnegative long maximumSize) {
     requireArgument(maximumSize >= 0);
     int maximum = (int) Math.min(maximumSize, Integer.MAX_VALUE >>> 1);
-    if ((table != null) && (table.length >= maximum)) {
+    int length = (maximum == 0) ? 1 : ceilingNextPowerOfTwo(maximum);
+    if (hasDoorkeeper) {
+      length = Math.max(1, length >>> 2);
+    }
+    if ((table != null) && (table.length >= length)) {
       return;
     }
 
-    table = new long[(maximum == 0) ? 1 : ceilingNextPowerOfTwo(maximum)];
+    table = new long[length];
+    if (hasDoorkeeper) {
+      doorkeeper = new long[length];
+      doorkeeperMask = (Long.SIZE * doorkeeper.length) - 1;
+    }
     tableMask = Math.max(0, table.length - 1);
     sampleSize = (maximumSize == 0) ? 10 : (10 * maximum);
     if (sampleSize <= 0) {
       sampleSize = Integer.MAX_VALUE;
     }
     size = 0;
+
+    incrementalReset = (table.length >= INCREMENTAL_RESET_THRESHOLD);
+    resetting = false;
   }
 
   /**
@@ -123,11 +195,37 @@ final class FrequencySketch<E> {
    */
   @Nonnegative
   public int frequency(@Nonnull E e) {
+    return frequencyOf(e.hashCode());
+  }
+
+  /**
+   * Returns the estimated number of occurrences of a primitive element, up to the maximum (15). The
+   * value is hashed directly so that it does not need to be boxed.
+   *
+   * @param e the element to count occurrences of
+   * @return the estimated number of occurrences of the element; possibly zero but never negative
+   */
+  @Nonnegative
+  public int frequencyLong(long e) {
+    return frequencyOf(Long.hashCode(e));
+  }
+
+  /** Returns the estimated number of occurrences of an element having the given hash code. */
+  int frequencyOf(int hashCode) {
     if (isNotInitialized()) {
       return 0;
     }
 
-    int hash = spread(e.hashCode());
+    int hash = spread(hashCode);
+    int frequency = countOf(hash);
+    if (hasDoorkeeper && (frequency < 15) && doorkeeperContains(hash)) {
+      frequency++;
+    }
+    return frequency;
+  }
+
+  /** Returns the minimum count of the element's counters. */
+  int countOf(int hash) {
     int start = (hash & 3) << 2;
     int frequency = Integer.MAX_VALUE;
     for (int i = 0; i < 4; i++) {
@@ -146,11 +244,41 @@ final class FrequencySketch<E> {
    * @param e the element to add
    */
   public void increment(@Nonnull E e) {
+    incrementOf(e.hashCode());
+  }
+
+  /**
+   * Increments the popularity of a primitive element if it does not exceed the maximum (15). The
+   * value is hashed directly so that it does not need to be boxed.
+   *
+   * @param e the element to add
+   */
+  public void incrementLong(long e) {
+    incrementOf(Long.hashCode(e));
+  }
+
+  /** Increments the popularity of an element having the given hash code. */
+  void incrementOf(int hashCode) {
     if (isNotInitialized()) {
       return;
     }
 
-    int hash = spread(e.hashCode());
+    int hash = spread(hashCode);
+    if (hasDoorkeeper && doorkeeperPut(hash)) {
+      // The first occurrence counts toward the sample, as in TinyLFU, so that the doorkeeper is
+      // cleared before a scan saturates it
+      onIncrement(/* added */ true);
+      return;
+    }
+    onIncrement(incrementCounters(hash));
+  }
+
+  /**
+   * Increments the element's counters that have not reached the maximum (15).
+   *
+   * @return if any of the counters were incremented
+   */
+  boolean incrementCounters(int hash) {
     int start = (hash & 3) << 2;
 
     // Loop unrolling improves throughput by 5m ops/s
@@ -163,7 +291,18 @@ final class FrequencySketch<E> {
     added |= incrementAt(index1, start + 1);
     added |= incrementAt(index2, start + 2);
     added |= incrementAt(index3, start + 3);
+    return added;
+  }
 
+  /**
+   * Advances the aging process after an element's counters were incremented.
+   *
+   * @param added if any of the counters were incremented
+   */
+  void onIncrement(boolean added) {
+    if (resetting) {
+      resetSlice();
+    }
     if (added && (++size == sampleSize)) {
       reset();
     }
@@ -186,16 +325,90 @@ final class FrequencySketch<E> {
     return false;
   }
 
-  /** Reduces every counter by half of its original value. */
+  /**
+   * Reduces every counter by half of its original value, either immediately or by starting an
+   * incremental sweep.
+   */
   void reset() {
+    if (!incrementalReset) {
+      resetAll();
+      return;
+    }
+    while (resetting) {
+      resetSlice();
+    }
+    resetting = true;
+    resetCursor = 0;
+    resetCount = 0;
+    size = (size >>> 1);
+  }
+
+  /** Halves the next slice of the table and completes the sweep when the end is reached. */
+  void resetSlice() {
+    int end = Math.min(resetCursor + RESET_SLICE, table.length);
+    for (int i = resetCursor; i < end; i++) {
+      resetCount += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    if (hasDoorkeeper && (resetCursor < doorkeeper.length)) {
+      Arrays.fill(doorkeeper, resetCursor, Math.min(end, doorkeeper.length), 0L);
+    }
+    resetCursor = end;
+    if (end == table.length) {
+      size = Math.max(0, size - (resetCount >>> 2));
+      resetting = false;
+    }
+  }
+
+  /** Reduces every counter by half of its original value in a single pass. */
+  void resetAll() {
     int count = 0;
     for (int i = 0; i < table.length; i++) {
       count += Long.bitCount(table[i] & ONE_MASK);
       table[i] = (table[i] >>> 1) & RESET_MASK;
     }
+    if (hasDoorkeeper) {
+      Arrays.fill(doorkeeper, 0L);
+    }
     size = (size >>> 1) - (count >>> 2);
   }
 
+  /** Returns if the doorkeeper may contain the element. */
+  boolean doorkeeperContains(int hash) {
+    int step = doorkeeperStep(hash);
+    for (int i = 0; i < DOORKEEPER_HASHES; i++) {
+      int bit = (hash + (i * step)) & doorkeeperMask;
+      if ((doorkeeper[bit >>> 6] & (1L << bit)) == 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the element to the doorkeeper.
+   *
+   * @return if the doorkeeper did not contain the element
+   */
+  boolean doorkeeperPut(int hash) {
+    int step = doorkeeperStep(hash);
+    boolean added = false;
+    for (int i = 0; i < DOORKEEPER_HASHES; i++) {
+      int bit = (hash + (i * step)) & doorkeeperMask;
+      long mask = (1L << bit);
+      if ((doorkeeper[bit >>> 6] & mask) == 0L) {
+        doorkeeper[bit >>> 6] |= mask;
+        added = true;
+      }
+    }
+    return added;
+  }
+
+  /** Returns the odd increment between the doorkeeper's probes, derived from the element's hash. */
+  static int doorkeeperStep(int hash) {
+    return (int) ((hash * 0x9e3779b97f4a7c15L) >>> 32) | 1;
+  }
+
   /**
    * Returns the table index for the counter at the specified depth.
    *
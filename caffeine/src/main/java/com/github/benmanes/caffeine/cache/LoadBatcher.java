@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Gathers the individual loads that miss the cache within a short window so that they are loaded
+ * by a single {@link AsyncCacheLoader#asyncLoadAll} call. The window starts when a key is added to
+ * an empty batch and the batch is flushed when either the scheduled task runs or the batch reaches
+ * its maximum size, whichever happens first.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+final class LoadBatcher<K, V> {
+  final AsyncCacheLoader<K, V> loader;
+  final int maximumBatchSize;
+  final Scheduler scheduler;
+  final Executor executor;
+  final long delayNanos;
+
+  @GuardedBy("this")
+  @Nullable Map<K, CompletableFuture<V>> pending;
+
+  @SuppressWarnings("unchecked")
+  LoadBatcher(AsyncCacheLoader<? super K, V> loader, Caffeine<?, ?> builder) {
+    this.loader = (AsyncCacheLoader<K, V>) requireNonNull(loader);
+    this.maximumBatchSize = builder.getMaximumLoadBatchSize();
+    this.delayNanos = builder.getCoalesceLoadNanos();
+    this.scheduler = builder.getScheduler();
+    this.executor = builder.getLoaderExecutor();
+  }
+
+  /**
+   * Returns the future of the loaded value, which completes when the batch that the key was added
+   * to has been loaded. A {@code null} value indicates that the loader did not return a mapping.
+   *
+   * @param key the key whose value should be loaded
+   * @return the future of the loaded value
+   */
+  public CompletableFuture<V> load(K key) {
+    Map<K, CompletableFuture<V>> started = null;
+    Map<K, CompletableFuture<V>> full = null;
+    CompletableFuture<V> future;
+    synchronized (this) {
+      if (pending == null) {
+        started = pending = new LinkedHashMap<>();
+      }
+      future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+      if (pending.size() >= maximumBatchSize) {
+        full = pending;
+        pending = null;
+      }
+    }
+
+    try {
+      if (full != null) {
+        Map<K, CompletableFuture<V>> batch = full;
+        executor.execute(() -> loadAll(batch));
+      } else if (started != null) {
+        Map<K, CompletableFuture<V>> batch = started;
+        if ((delayNanos == 0L) || (scheduler == Scheduler.disabledScheduler())) {
+          executor.execute(() -> flush(batch));
+        } else {
+          Future<?> task = scheduler.schedule(
+              executor, () -> flush(batch), delayNanos, TimeUnit.NANOSECONDS);
+          if (task == DisabledFuture.INSTANCE) {
+            // the scheduler failed, so flush now rather than leave the batch pending forever
+            executor.execute(() -> flush(batch));
+          }
+        }
+      }
+    } catch (Throwable t) {
+      Map<K, CompletableFuture<V>> batch = (full == null) ? takeBatch(started) : full;
+      if (batch != null) {
+        RefreshBatcher.complete(batch, /* result */ null, t);
+      }
+      throw t;
+    }
+    return future;
+  }
+
+  /** Loads the batch if it is still pending, as it may have been flushed after becoming full. */
+  void flush(Map<K, CompletableFuture<V>> batch) {
+    if (takeBatch(batch) != null) {
+      loadAll(batch);
+    }
+  }
+
+  /** Removes and returns the pending batch if it is the given one, or else returns null. */
+  synchronized @Nullable Map<K, CompletableFuture<V>> takeBatch(
+      @Nullable Map<K, CompletableFuture<V>> batch) {
+    if ((batch == null) || (pending != batch)) {
+      return null;
+    }
+    pending = null;
+    return batch;
+  }
+
+  /** Loads the batch and completes each of its futures with the result. */
+  void loadAll(Map<K, CompletableFuture<V>> batch) {
+    try {
+      loader.asyncLoadAll(batch.keySet(), executor).whenComplete((result, error) ->
+          RefreshBatcher.complete(batch, result, error));
+    } catch (Throwable t) {
+      RefreshBatcher.complete(batch, /* result */ null, t);
+    }
+  }
+}
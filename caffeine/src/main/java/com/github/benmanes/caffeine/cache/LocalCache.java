@@ -16,6 +16,7 @@
 package com.github.benmanes.caffeine.cache;
 
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
@@ -50,7 +51,7 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
   /** Asynchronously sends a removal notification to the listener. */
   void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause);
 
-  /** Returns the {@link Executor} used by this cache. */
+  /** Returns the {@link Executor} used by this cache to load and refresh entries. */
   @Nonnull
   Executor executor();
 
@@ -65,6 +66,21 @@ interface LocalCache<K, V> extends ConcurrentMap<K, V> {
   @Nonnull
   Ticker statsTicker();
 
+  /** Returns the key used to identify the entry in the map of in-flight refreshes. */
+  @Nonnull
+  Object referenceKey(@Nonnull K key);
+
+  /**
+   * Returns the in-flight refreshes, keyed by {@link #referenceKey}. A refresh is registered when
+   * it is triggered and unregistered when its result is written back or discarded.
+   */
+  @Nonnull
+  ConcurrentMap<Object, CompletableFuture<?>> refreshes();
+
+  /** Returns the number of in-flight refreshes. */
+  @Nonnegative
+  long estimatedRefreshCount();
+
   /** See {@link Cache#estimatedSize()}. */
   @Nonnegative
   long estimatedSize();
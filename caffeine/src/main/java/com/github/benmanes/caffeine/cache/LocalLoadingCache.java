@@ -154,33 +154,61 @@ interface LocalLoadingCache<C extends LocalCache<K, V>, K, V>
     long[] writeTime = new long[1];
     long startTime = cache().statsTicker().read();
     V oldValue = cache().getIfPresentQuietly(key, writeTime);
-    CompletableFuture<V> refreshFuture = (oldValue == null)
-        ? cacheLoader().asyncLoad(key, cache().executor())
-        : cacheLoader().asyncReload(key, oldValue, cache().executor());
-    refreshFuture.whenComplete((newValue, error) -> {
+    Object keyReference = cache().referenceKey(key);
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    CompletableFuture<V>[] refreshFuture = new CompletableFuture[1];
+    refreshFuture[0] = new CompletableFuture<>();
+    if (cache().refreshes().putIfAbsent(keyReference, refreshFuture[0]) != null) {
+      // joins the in-flight refresh
+      return;
+    }
+
+    // The loader is called outside of the map's lock, as it may block or access the cache, and
+    // only by the caller that registered the refresh
+    CompletableFuture<V> reload;
+    try {
+      reload = (oldValue == null)
+          ? cacheLoader().asyncLoad(key, cache().executor())
+          : cacheLoader().asyncReload(key, oldValue, cache().executor());
+    } catch (Throwable t) {
+      cache().refreshes().remove(keyReference, refreshFuture[0]);
+      throw t;
+    }
+    Async.propagate(reload, refreshFuture[0]);
+
+    refreshFuture[0].whenComplete((newValue, error) -> {
       long loadTime = cache().statsTicker().read() - startTime;
       if (error != null) {
+        cache().refreshes().remove(keyReference, refreshFuture[0]);
         logger.log(Level.WARNING, "Exception thrown during refresh", error);
         cache().statsCounter().recordLoadFailure(loadTime);
         return;
       }
 
       boolean[] discard = new boolean[1];
-      cache().compute(key, (k, currentValue) -> {
-        if (currentValue == null) {
-          return newValue;
-        } else if (currentValue == oldValue) {
-          long expectedWriteTime = writeTime[0];
-          if (cache().hasWriteTime()) {
-            cache().getIfPresentQuietly(key, writeTime);
-          }
-          if (writeTime[0] == expectedWriteTime) {
+      try {
+        cache().compute(key, (k, currentValue) -> {
+          if (!cache().refreshes().remove(keyReference, refreshFuture[0])) {
+            // discarded by an explicit invalidation
+            discard[0] = true;
+            return currentValue;
+          } else if (currentValue == null) {
             return newValue;
+          } else if (currentValue == oldValue) {
+            long expectedWriteTime = writeTime[0];
+            if (cache().hasWriteTime()) {
+              cache().getIfPresentQuietly(key, writeTime);
+            }
+            if (writeTime[0] == expectedWriteTime) {
+              return newValue;
+            }
           }
-        }
-        discard[0] = true;
-        return currentValue;
-      }, /* recordMiss */ false, /* recordLoad */ false);
+          discard[0] = true;
+          return currentValue;
+        }, /* recordMiss */ false, /* recordLoad */ false);
+      } finally {
+        cache().refreshes().remove(keyReference, refreshFuture[0]);
+      }
 
       if (discard[0] && cache().hasRemovalListener()) {
         cache().notifyRemoval(key, newValue, RemovalCause.REPLACED);
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.OffHeap.deserialize;
+import static com.github.benmanes.caffeine.cache.OffHeap.serialize;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.OffHeap.SlabAllocator;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * An {@link OffHeapCache} that stores each value's serialized form in a direct buffer. The entries
+ * are held by an on-heap {@link Cache} so that the eviction, expiration, and statistics features
+ * are shared with the standard implementations, while the garbage collector only traces the buffer
+ * handle instead of the value's object graph. The direct memory is allocated from slabs and is
+ * returned to the allocator when the entry's removal is notified, so a read that races with the
+ * removal validates that the buffer is still mapped after deserializing it.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+final class LocalOffHeapCache<K, V> implements OffHeapCache<K, V> {
+  final LocalCache<K, ByteBuffer> localCache;
+  final Serializer<V> serializer;
+  final SlabAllocator allocator;
+  final Cache<K, ByteBuffer> cache;
+
+  @SuppressWarnings("unchecked")
+  LocalOffHeapCache(Caffeine<K, V> builder, Serializer<V> serializer) {
+    this.allocator = new SlabAllocator();
+    this.serializer = requireNonNull(serializer);
+    this.cache = builder.offHeap(serializer, allocator).build();
+    this.localCache = ((LocalManualCache<LocalCache<K, ByteBuffer>, K, ByteBuffer>) cache).cache();
+  }
+
+  @Override
+  public @Nullable V getIfPresent(Object key) {
+    ByteBuffer buffer = cache.getIfPresent(key);
+    return (buffer == null) ? null : read(key, buffer);
+  }
+
+  @Override
+  public @Nullable ByteBuffer getBuffer(Object key) {
+    ByteBuffer buffer = cache.getIfPresent(key);
+    return (buffer == null) ? null : buffer.asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns the deserialized value if the buffer remained mapped while it was read, and otherwise
+   * retries with the current mapping. A buffer is only freed after it is unmapped and a reused slot
+   * is handed out as a new instance, so an identical mapping proves that the bytes were not
+   * overwritten during the read.
+   */
+  @Nullable V read(Object key, ByteBuffer buffer) {
+    long[] writeTime = new long[1];
+    for (ByteBuffer current = buffer;;) {
+      V value;
+      try {
+        value = deserialize(serializer, current);
+      } catch (RuntimeException | Error e) {
+        if (localCache.getIfPresentQuietly(key, writeTime) == current) {
+          throw e;
+        }
+        value = null;
+      }
+      ByteBuffer mapped = localCache.getIfPresentQuietly(key, writeTime);
+      if (mapped == current) {
+        return value;
+      } else if (mapped == null) {
+        return null;
+      }
+      current = mapped;
+    }
+  }
+
+  @Override
+  public @Nullable V get(K key, Function<? super K, ? extends V> mappingFunction) {
+    requireNonNull(mappingFunction);
+    @SuppressWarnings("unchecked")
+    V[] computed = (V[]) new Object[1];
+    ByteBuffer buffer = cache.get(key, k -> {
+      V value = mappingFunction.apply(k);
+      if (value == null) {
+        return null;
+      }
+      computed[0] = value;
+      return serialize(allocator, serializer, value);
+    });
+    if (buffer == null) {
+      return null;
+    }
+    return (computed[0] == null) ? read(key, buffer) : computed[0];
+  }
+
+  @Override
+  public void put(K key, V value) {
+    requireNonNull(value);
+    cache.put(key, serialize(allocator, serializer, value));
+  }
+
+  @Override
+  public void invalidate(Object key) {
+    cache.invalidate(key);
+  }
+
+  @Override
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return cache.estimatedSize();
+  }
+
+  @Override
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Override
+  public Policy<K, ByteBuffer> policy() {
+    return cache.policy();
+  }
+
+  @Override
+  public void cleanUp() {
+    cache.cleanUp();
+  }
+}
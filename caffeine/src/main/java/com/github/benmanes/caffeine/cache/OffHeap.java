@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Static utility methods and classes pertaining to storing values outside of the Java heap.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class OffHeap {
+
+  private OffHeap() {}
+
+  /**
+   * Returns a direct buffer containing the serialized form of the value, ready to be read. The
+   * buffer is allocated from the slabs and must be freed once it is no longer mapped.
+   */
+  static <V> ByteBuffer serialize(SlabAllocator allocator, Serializer<V> serializer, V value) {
+    int size = serializer.serializedSize(value);
+    ByteBuffer buffer = allocator.allocate(size);
+    try {
+      serializer.serialize(value, buffer);
+      if (buffer.position() != size) {
+        throw new IllegalStateException(String.format(
+            "Serializer wrote %d bytes but reported a size of %d", buffer.position(), size));
+      }
+    } catch (RuntimeException | Error e) {
+      allocator.free(buffer);
+      throw e;
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /** Returns the value read from the serialized form, without disturbing the shared buffer. */
+  static <V> V deserialize(Serializer<V> serializer, ByteBuffer buffer) {
+    return serializer.deserialize(buffer.duplicate());
+  }
+
+  /** Returns a weigher where an entry's weight is the size of its serialized value, in bytes. */
+  @SuppressWarnings("unchecked")
+  static <K> Weigher<K, ByteBuffer> byteSizeWeigher() {
+    return (Weigher<K, ByteBuffer>) ByteSizeWeigher.INSTANCE;
+  }
+
+  enum ByteSizeWeigher implements Weigher<Object, ByteBuffer> {
+    INSTANCE;
+
+    @Override
+    public int weigh(Object key, ByteBuffer buffer) {
+      return buffer.remaining();
+    }
+  }
+
+  /** A weigher that forwards the deserialized value to the user-supplied weigher. */
+  static final class SerializedWeigher<K, V> implements Weigher<K, ByteBuffer> {
+    final Serializer<V> serializer;
+    final Weigher<K, V> delegate;
+
+    SerializedWeigher(Weigher<K, V> delegate, Serializer<V> serializer) {
+      this.serializer = requireNonNull(serializer);
+      this.delegate = requireNonNull(delegate);
+    }
+
+    @Override
+    public int weigh(K key, ByteBuffer buffer) {
+      return delegate.weigh(key, deserialize(serializer, buffer));
+    }
+  }
+
+  /**
+   * A removal listener that returns the removed buffer to the allocator, after first forwarding the
+   * notification to the user-supplied listener, if any, so that it may still read the value.
+   */
+  static final class ReleasingRemovalListener<K> implements RemovalListener<K, ByteBuffer> {
+    final @Nullable RemovalListener<K, ByteBuffer> delegate;
+    final SlabAllocator allocator;
+
+    ReleasingRemovalListener(SlabAllocator allocator,
+        @Nullable RemovalListener<K, ByteBuffer> delegate) {
+      this.allocator = requireNonNull(allocator);
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void onRemoval(@Nullable K key, @Nullable ByteBuffer buffer, RemovalCause cause) {
+      try {
+        if (delegate != null) {
+          delegate.onRemoval(key, buffer, cause);
+        }
+      } finally {
+        if (buffer != null) {
+          allocator.free(buffer);
+        }
+      }
+    }
+  }
+
+  /** A removal listener that forwards the deserialized value to the user-supplied listener. */
+  static final class SerializedRemovalListener<K, V> implements RemovalListener<K, ByteBuffer> {
+    final RemovalListener<K, V> delegate;
+    final Serializer<V> serializer;
+
+    SerializedRemovalListener(RemovalListener<K, V> delegate, Serializer<V> serializer) {
+      this.serializer = requireNonNull(serializer);
+      this.delegate = requireNonNull(delegate);
+    }
+
+    @Override
+    public void onRemoval(@Nullable K key, @Nullable ByteBuffer buffer, RemovalCause cause) {
+      V value = (buffer == null) ? null : deserialize(serializer, buffer);
+      delegate.onRemoval(key, value, cause);
+    }
+  }
+
+  /**
+   * An allocator that carves the direct buffers out of large slabs, so that the memory is recycled
+   * explicitly rather than waiting for the garbage collector to discover an unreachable buffer. A
+   * request is rounded up to a power-of-two size class and served from that class's free list, or
+   * else from the unused tail of the current slab. A freed buffer's slot is pushed onto its free
+   * list for reuse by a later value. A request larger than the largest size class is given its own
+   * buffer, which is released by the garbage collector. The slabs are retained for the lifetime of
+   * the allocator, so the direct memory is bounded by the cache's peak footprint.
+   */
+  @ThreadSafe
+  static final class SlabAllocator {
+    static final int MIN_CLASS_SHIFT = 4;
+    static final int MAX_CLASS_SHIFT = 16;
+    static final int SLAB_SIZE = 1 << 20;
+
+    @GuardedBy("this")
+    final ArrayDeque<ByteBuffer>[] freeLists;
+    @GuardedBy("this")
+    @Nullable ByteBuffer slab;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    SlabAllocator() {
+      freeLists = new ArrayDeque[MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1];
+      for (int i = 0; i < freeLists.length; i++) {
+        freeLists[i] = new ArrayDeque<>();
+      }
+    }
+
+    /** Returns a direct buffer whose limit is the requested size, positioned at zero. */
+    synchronized ByteBuffer allocate(int size) {
+      if (size > (1 << MAX_CLASS_SHIFT)) {
+        return ByteBuffer.allocateDirect(size);
+      }
+      int shift = classShift(size);
+      ByteBuffer slot = freeLists[shift - MIN_CLASS_SHIFT].poll();
+      if (slot == null) {
+        if ((slab == null) || (slab.remaining() < (1 << shift))) {
+          if (slab != null) {
+            retire(slab);
+          }
+          slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        }
+        slot = carve(slab, 1 << shift);
+      }
+
+      // A distinct instance is handed out so that a stale reference is never identical to a later
+      // value that reuses the slot
+      ByteBuffer buffer = slot.duplicate();
+      buffer.limit(size);
+      return buffer;
+    }
+
+    /** Returns the buffer's slot to its free list, after which its contents may be overwritten. */
+    synchronized void free(ByteBuffer buffer) {
+      int capacity = buffer.capacity();
+      if (capacity > (1 << MAX_CLASS_SHIFT)) {
+        return;
+      }
+      ByteBuffer slot = buffer.duplicate();
+      slot.clear();
+      freeLists[classShift(capacity) - MIN_CLASS_SHIFT].push(slot);
+    }
+
+    /** Moves the unused tail of an exhausted slab onto the free lists. */
+    @GuardedBy("this")
+    void retire(ByteBuffer exhausted) {
+      for (int shift = MAX_CLASS_SHIFT; shift >= MIN_CLASS_SHIFT; shift--) {
+        while (exhausted.remaining() >= (1 << shift)) {
+          freeLists[shift - MIN_CLASS_SHIFT].push(carve(exhausted, 1 << shift));
+        }
+      }
+    }
+
+    /** Returns the log2 of the smallest size class that can hold the requested size. */
+    static int classShift(int size) {
+      int shift = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+      return Math.max(shift, MIN_CLASS_SHIFT);
+    }
+
+    /** Slices the next slot of the given capacity from the slab and advances past it. */
+    static ByteBuffer carve(ByteBuffer slab, int capacity) {
+      int start = slab.position();
+      slab.limit(start + capacity);
+      ByteBuffer slot = slab.slice();
+      slab.limit(slab.capacity()).position(start + capacity);
+      return slot;
+    }
+  }
+}
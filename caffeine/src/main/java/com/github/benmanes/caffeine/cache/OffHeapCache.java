@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.nio.ByteBuffer;
+import java.util.function.Function;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+/**
+ * A semi-persistent mapping from keys to values, where each value is stored in its serialized form
+ * outside of the Java heap. The entry's key and its policy metadata are retained on-heap, so that
+ * the garbage collector only traces a small buffer handle rather than the value's object graph.
+ * Cache entries are manually added using {@link #get(Object, Function)} or
+ * {@link #put(Object, Object)}, and are stored in the cache until either evicted or manually
+ * invalidated.
+ * <p>
+ * A value is deserialized by each call to {@link #getIfPresent}, so that the caller receives its
+ * own copy. The serialized form may instead be read without copying by using {@link #getBuffer}.
+ * <p>
+ * Implementations of this interface are expected to be thread-safe, and can be safely accessed by
+ * multiple concurrent threads.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+@ThreadSafe
+public interface OffHeapCache<K, V> {
+
+  /**
+   * Returns the value associated with the {@code key} in this cache, or {@code null} if there is no
+   * cached value for the {@code key}.
+   *
+   * @param key the key whose associated value is to be returned
+   * @return the deserialized value to which the specified key is mapped, or {@code null} if this
+   *         cache contains no mapping for the key
+   * @throws NullPointerException if the specified key is null
+   */
+  @Nullable
+  V getIfPresent(@Nonnull Object key);
+
+  /**
+   * Returns a read-only view of the serialized value associated with the {@code key} in this cache,
+   * or {@code null} if there is no cached value for the {@code key}. The view shares the off-heap
+   * memory and is only valid while the entry remains in the cache; once the entry is evicted,
+   * removed, or replaced the memory may be reused by another value, so a caller that retains the
+   * contents should copy them.
+   *
+   * @param key the key whose associated value is to be returned
+   * @return a read-only buffer whose remaining bytes are the serialized value, or {@code null} if
+   *         this cache contains no mapping for the key
+   * @throws NullPointerException if the specified key is null
+   */
+  @Nullable
+  ByteBuffer getBuffer(@Nonnull Object key);
+
+  /**
+   * Returns the value associated with the {@code key} in this cache, obtaining that value from the
+   * {@code mappingFunction} if necessary. The entire method invocation is performed atomically, so
+   * the function is applied at most once per key, as described by {@link Cache#get}.
+   *
+   * @param key the key with which the specified value is to be associated
+   * @param mappingFunction the function to compute a value
+   * @return the current (existing or computed) value associated with the specified key, or null if
+   *         the computed value is null
+   * @throws NullPointerException if the specified key or mappingFunction is null
+   * @throws RuntimeException or Error if the mappingFunction does so, in which case the mapping is
+   *         left unestablished
+   */
+  @Nullable
+  V get(@Nonnull K key, @Nonnull Function<? super K, ? extends V> mappingFunction);
+
+  /**
+   * Associates the {@code value} with the {@code key} in this cache. If the cache previously
+   * contained a value associated with the {@code key}, the old value is replaced by the new
+   * {@code value}.
+   *
+   * @param key the key with which the specified value is to be associated
+   * @param value value to be serialized and associated with the specified key
+   * @throws NullPointerException if the specified key or value is null
+   */
+  void put(@Nonnull K key, @Nonnull V value);
+
+  /**
+   * Discards any cached value for the {@code key}.
+   *
+   * @param key the key whose mapping is to be removed from the cache
+   * @throws NullPointerException if the specified key is null
+   */
+  void invalidate(@Nonnull Object key);
+
+  /** Discards all entries in the cache. */
+  void invalidateAll();
+
+  /**
+   * Returns the approximate number of entries in this cache.
+   *
+   * @return the estimated number of mappings
+   */
+  @Nonnegative
+  long estimatedSize();
+
+  /**
+   * Returns a current snapshot of this cache's cumulative statistics, as described by
+   * {@link Cache#stats}.
+   *
+   * @return the current snapshot of the statistics of this cache
+   */
+  @Nonnull
+  CacheStats stats();
+
+  /**
+   * Returns access to inspect and perform low-level operations on this cache based on its runtime
+   * characteristics. The policy operates on the serialized form of the values, so that the weighted
+   * size is the number of bytes stored off-heap when the default weigher is used.
+   *
+   * @return access to inspect and perform advanced operations based on the cache's characteristics
+   */
+  @Nonnull
+  Policy<K, ByteBuffer> policy();
+
+  /**
+   * Performs any pending maintenance operations needed by the cache. Exactly which activities are
+   * performed -- if any -- is implementation-dependent.
+   */
+  void cleanUp();
+}
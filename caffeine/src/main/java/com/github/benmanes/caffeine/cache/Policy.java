@@ -112,6 +112,34 @@ public interface Policy<K, V> {
   @Nonnull
   Optional<Expiration<K, V>> refreshAfterWrite();
 
+  /**
+   * Returns the approximate number of entries that are currently being reloaded. A refresh is
+   * in-flight from when it is triggered, either automatically or by {@link LoadingCache#refresh},
+   * until its result is written into the cache or is discarded. An explicit refresh of a key that
+   * is being reloaded joins the in-flight operation rather than starting a new one, and an explicit
+   * invalidation discards the in-flight result. If the implementation does not track refreshes
+   * then zero is returned.
+   *
+   * @return the estimated number of in-flight refreshes
+   */
+  @Nonnegative
+  default long estimatedRefreshCount() {
+    return 0L;
+  }
+
+  /**
+   * Returns access to the counters that describe the internal behavior of the cache's policy, such
+   * as the contention on its buffers and the decisions made by its admission filter. If the cache
+   * was not constructed with {@link Caffeine#recordDiagnostics()}, is not bounded, or the
+   * implementation does not record these counters, an empty {@link Optional} is returned.
+   *
+   * @return access to the policy's diagnostic counters if they are being recorded
+   */
+  @Nonnull
+  default Optional<Diagnostics> diagnostics() {
+    return Optional.empty();
+  }
+
   /** The low-level operations for a cache with a size-based eviction policy. */
   interface Eviction<K, V> {
 
@@ -377,4 +405,93 @@ public interface Policy<K, V> {
     @Nonnull
     Map<K, V> youngest(@Nonnegative int limit);
   }
+
+  /**
+   * The counters that describe the internal behavior of a cache's policy. The counters are read
+   * independently, so a set of values may be an inconsistent view if they are interleaved with
+   * update operations.
+   */
+  interface Diagnostics {
+
+    /**
+     * Returns the number of reads that were not recorded by the policy because the read buffer was
+     * full. A dropped read only loses the access history of the entry and may lead to the
+     * maintenance work being scheduled early.
+     *
+     * @return the number of reads that were dropped by the read buffer
+     */
+    @Nonnegative
+    long readBufferDropCount();
+
+    /**
+     * Returns the number of times that a write could not be added to the write buffer because it
+     * was full, causing the writer to wait on the maintenance work before trying again.
+     *
+     * @return the number of retries due to the write buffer being full
+     */
+    @Nonnegative
+    long writeBufferRetryCount();
+
+    /**
+     * Returns the number of times that a writer exhausted its retries to add to the write buffer
+     * and performed the maintenance work itself, blocking on the eviction lock.
+     *
+     * @return the number of writes that applied back-pressure by performing the maintenance work
+     */
+    @Nonnegative
+    long writeBufferExhaustedCount();
+
+    /**
+     * Returns the number of times that the maintenance work was performed.
+     *
+     * @return the number of drain cycles
+     */
+    @Nonnegative
+    long maintenanceCount();
+
+    /**
+     * Returns the total number of nanoseconds spent performing the maintenance work, during which
+     * the eviction lock was held.
+     *
+     * @return the total duration of the drain cycles
+     */
+    @Nonnegative
+    long totalMaintenanceTime();
+
+    /**
+     * Returns the longest duration, in nanoseconds, of a single execution of the maintenance work.
+     *
+     * @return the maximum duration of a drain cycle
+     */
+    @Nonnegative
+    long maximumMaintenanceTime();
+
+    /**
+     * Returns the number of times that the admission filter accepted the candidate entry and
+     * evicted the victim chosen by the eviction policy.
+     *
+     * @return the number of candidates admitted
+     */
+    @Nonnegative
+    long admissionAcceptCount();
+
+    /**
+     * Returns the number of times that the admission filter rejected the candidate entry in favor
+     * of retaining the victim chosen by the eviction policy.
+     *
+     * @return the number of candidates rejected
+     */
+    @Nonnegative
+    long admissionRejectCount();
+
+    /**
+     * Returns the number of times that a warm candidate was admitted at random, despite being less
+     * frequent than the victim, as a protection against a hash flooding attack. These admissions
+     * are also included in {@link #admissionAcceptCount()}.
+     *
+     * @return the number of candidates admitted by the hash flooding protection
+     */
+    @Nonnegative
+    long hashFloodProtectionCount();
+  }
 }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.github.benmanes.caffeine.cache.Policy.Diagnostics;
+
+/**
+ * Accumulates the counters that describe the internal behavior of a bounded cache's policy. The
+ * counters are striped so that recording from the read and write paths does not introduce a point
+ * of contention.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+final class PolicyDiagnostics implements Diagnostics {
+  final LongAdder readBufferDrops = new LongAdder();
+  final LongAdder writeBufferRetries = new LongAdder();
+  final LongAdder writeBufferExhaustions = new LongAdder();
+  final LongAdder maintenanceCount = new LongAdder();
+  final LongAdder maintenanceTime = new LongAdder();
+  final LongAccumulator maximumMaintenanceTime = new LongAccumulator(Math::max, 0L);
+  final LongAdder admissionAccepts = new LongAdder();
+  final LongAdder admissionRejects = new LongAdder();
+  final LongAdder hashFloodProtections = new LongAdder();
+
+  void recordReadBufferDrop() {
+    readBufferDrops.increment();
+  }
+
+  void recordWriteBufferRetry() {
+    writeBufferRetries.increment();
+  }
+
+  void recordWriteBufferExhausted() {
+    writeBufferExhaustions.increment();
+  }
+
+  void recordMaintenance(long duration) {
+    maintenanceCount.increment();
+    maintenanceTime.add(duration);
+    maximumMaintenanceTime.accumulate(duration);
+  }
+
+  void recordAdmission(boolean admitted) {
+    if (admitted) {
+      admissionAccepts.increment();
+    } else {
+      admissionRejects.increment();
+    }
+  }
+
+  void recordHashFloodProtection() {
+    hashFloodProtections.increment();
+  }
+
+  @Override
+  public long readBufferDropCount() {
+    return readBufferDrops.sum();
+  }
+
+  @Override
+  public long writeBufferRetryCount() {
+    return writeBufferRetries.sum();
+  }
+
+  @Override
+  public long writeBufferExhaustedCount() {
+    return writeBufferExhaustions.sum();
+  }
+
+  @Override
+  public long maintenanceCount() {
+    return maintenanceCount.sum();
+  }
+
+  @Override
+  public long totalMaintenanceTime() {
+    return maintenanceTime.sum();
+  }
+
+  @Override
+  public long maximumMaintenanceTime() {
+    return maximumMaintenanceTime.get();
+  }
+
+  @Override
+  public long admissionAcceptCount() {
+    return admissionAccepts.sum();
+  }
+
+  @Override
+  public long admissionRejectCount() {
+    return admissionRejects.sum();
+  }
+
+  @Override
+  public long hashFloodProtectionCount() {
+    return hashFloodProtections.sum();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "readBufferDropCount=" + readBufferDropCount() + ", "
+        + "writeBufferRetryCount=" + writeBufferRetryCount() + ", "
+        + "writeBufferExhaustedCount=" + writeBufferExhaustedCount() + ", "
+        + "maintenanceCount=" + maintenanceCount() + ", "
+        + "totalMaintenanceTime=" + totalMaintenanceTime() + ", "
+        + "maximumMaintenanceTime=" + maximumMaintenanceTime() + ", "
+        + "admissionAcceptCount=" + admissionAcceptCount() + ", "
+        + "admissionRejectCount=" + admissionRejectCount() + ", "
+        + "hashFloodProtectionCount=" + hashFloodProtectionCount()
+        + '}';
+  }
+}
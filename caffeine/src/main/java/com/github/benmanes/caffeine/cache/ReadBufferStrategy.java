@@ -0,0 +1,44 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+/**
+ * The strategy used by a bounded cache to record the reads that are replayed against its eviction
+ * and expiration policies.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public enum ReadBufferStrategy {
+
+  /**
+   * The reads are recorded into a set of small ring buffers that are striped across threads when
+   * contention is detected. A read is discarded if its buffer is full, which favors throughput
+   * under heavy concurrency at the cost of the policy's accuracy during bursts. This is the
+   * default strategy.
+   */
+  STRIPED,
+
+  /**
+   * The reads are gathered into small batches that are striped across threads and published into
+   * a single ring buffer of a fixed size (1024 elements) with one atomic operation per batch. The
+   * partial batches are published when the maintenance work is performed. A read is only discarded
+   * if the maintenance work falls behind by the ring's entire capacity or if threads collide on a
+   * batch, so the policy observes nearly every access regardless of how many threads are used. This
+   * is preferred for workloads with low to moderate contention that depend on the accuracy of the
+   * frequency estimates.
+   */
+  BATCHED,
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Gathers the automatic refreshes that are triggered within a short window so that they are
+ * reloaded by a single {@link AsyncCacheLoader#asyncLoadAll} call. The window starts when a key is
+ * added to an empty batch and the batch is flushed when the scheduled task runs. The builder
+ * requires that the loader supports bulk loading. A key that is absent from the loaded map is
+ * completed with {@code null}, which the cache treats as a removal of the entry.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+final class RefreshBatcher<K, V> {
+  final AsyncCacheLoader<K, V> loader;
+  final Scheduler scheduler;
+  final Executor executor;
+  final long delayNanos;
+
+  @GuardedBy("this")
+  @Nullable Map<K, CompletableFuture<V>> pending;
+
+  @SuppressWarnings("unchecked")
+  RefreshBatcher(AsyncCacheLoader<? super K, V> loader, Caffeine<?, ?> builder) {
+    this.loader = (AsyncCacheLoader<K, V>) requireNonNull(loader);
+    this.delayNanos = builder.getCoalesceRefreshNanos();
+    this.scheduler = builder.getScheduler();
+    this.executor = builder.getLoaderExecutor();
+  }
+
+  /**
+   * Returns the future of the reloaded value, which completes when the batch that the key was added
+   * to has been loaded. A {@code null} value indicates that the loader did not return a mapping.
+   *
+   * @param key the key whose value should be reloaded
+   * @return the future of the reloaded value
+   */
+  public CompletableFuture<V> reload(K key) {
+    boolean schedule;
+    CompletableFuture<V> future;
+    synchronized (this) {
+      schedule = (pending == null);
+      if (schedule) {
+        pending = new LinkedHashMap<>();
+      }
+      future = pending.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+    if (schedule) {
+      try {
+        if ((delayNanos == 0L) || (scheduler == Scheduler.disabledScheduler())) {
+          executor.execute(this::flush);
+        } else {
+          Future<?> task = scheduler.schedule(
+              executor, this::flush, delayNanos, TimeUnit.NANOSECONDS);
+          if (task == DisabledFuture.INSTANCE) {
+            // the scheduler failed, so flush now rather than leave the batch pending forever
+            executor.execute(this::flush);
+          }
+        }
+      } catch (Throwable t) {
+        Map<K, CompletableFuture<V>> batch = takeBatch();
+        if (batch != null) {
+          complete(batch, /* result */ null, t);
+        }
+        throw t;
+      }
+    }
+    return future;
+  }
+
+  /** Loads the pending batch, if any, and completes each of its futures with the result. */
+  void flush() {
+    Map<K, CompletableFuture<V>> batch = takeBatch();
+    if (batch == null) {
+      return;
+    }
+    try {
+      loader.asyncLoadAll(batch.keySet(), executor).whenComplete((result, error) ->
+          complete(batch, result, error));
+    } catch (Throwable t) {
+      complete(batch, /* result */ null, t);
+    }
+  }
+
+  /** Removes and returns the pending batch. */
+  synchronized @Nullable Map<K, CompletableFuture<V>> takeBatch() {
+    Map<K, CompletableFuture<V>> batch = pending;
+    pending = null;
+    return batch;
+  }
+
+  /** Completes the futures in the batch with the loaded values or the failure. */
+  @SuppressWarnings("NullAway")
+  static <K, V> void complete(Map<K, CompletableFuture<V>> batch,
+      @Nullable Map<? extends K, ? extends V> result, @Nullable Throwable error) {
+    if ((result == null) && (error == null)) {
+      error = new CompletionException("null map", null);
+    }
+    for (Map.Entry<K, CompletableFuture<V>> entry : batch.entrySet()) {
+      if (error == null) {
+        entry.getValue().complete(result.get(entry.getKey()));
+      } else {
+        entry.getValue().completeExceptionally(error);
+      }
+    }
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Calculates when cache entries become eligible for an automatic refresh. A single refresh time is
+ * retained so that the period may be extended or reduced by subsequent evaluations. An entry that
+ * is eligible is reloaded asynchronously when it is next read, as described by
+ * {@link Caffeine#refreshAfterWrite}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+public interface Refresher<K, V> {
+
+  /**
+   * Specifies that the entry should be eligible for refresh once the duration has elapsed after the
+   * entry's creation or after its value was reloaded. To indicate that the entry should not be
+   * refreshed it may be given an excessively long period, such as {@code Long#MAX_VALUE}, which is
+   * capped at approximately 150 years. A negative duration is rejected.
+   * <p>
+   * <b>Note:</b> The {@code currentTime} is supplied by the configured {@link Ticker} and by
+   * default does not relate to system or wall-clock time. When calculating the duration based on a
+   * time stamp, the current time should be obtained independently.
+   *
+   * @param key the key represented by this entry
+   * @param value the value represented by this entry
+   * @param currentTime the current time, in nanoseconds
+   * @return the length of time before the entry is eligible for refresh, in nanoseconds
+   */
+  long refreshAfterCreate(@Nonnull K key, @Nonnull V value, long currentTime);
+
+  /**
+   * Specifies that the entry should be eligible for refresh once the duration has elapsed after the
+   * replacement of its value. The {@code currentDuration} may be returned to not modify the refresh
+   * time. By default the duration is calculated as if the entry was created.
+   * <p>
+   * <b>Note:</b> The {@code currentTime} is supplied by the configured {@link Ticker} and by
+   * default does not relate to system or wall-clock time. When calculating the duration based on a
+   * time stamp, the current time should be obtained independently.
+   *
+   * @param key the key represented by this entry
+   * @param value the value represented by this entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the current duration, in nanoseconds
+   * @return the length of time before the entry is eligible for refresh, in nanoseconds
+   */
+  default long refreshAfterUpdate(@Nonnull K key, @Nonnull V value,
+      long currentTime, @Nonnegative long currentDuration) {
+    return refreshAfterCreate(key, value, currentTime);
+  }
+
+  /**
+   * Specifies that the entry should be eligible for refresh once the duration has elapsed after its
+   * last read. The {@code currentDuration} may be returned to not modify the refresh time, which is
+   * the default behavior.
+   * <p>
+   * <b>Note:</b> The {@code currentTime} is supplied by the configured {@link Ticker} and by
+   * default does not relate to system or wall-clock time. When calculating the duration based on a
+   * time stamp, the current time should be obtained independently.
+   *
+   * @param key the key represented by this entry
+   * @param value the value represented by this entry
+   * @param currentTime the current time, in nanoseconds
+   * @param currentDuration the current duration, in nanoseconds
+   * @return the length of time before the entry is eligible for refresh, in nanoseconds
+   */
+  default long refreshAfterRead(@Nonnull K key, @Nonnull V value,
+      long currentTime, @Nonnegative long currentDuration) {
+    return currentDuration;
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A notification of the removal of a single entry. The key and/or value may be null if they were
+ * already garbage collected.
+ * <p>
+ * Like other {@code Entry} instances associated with Caffeine, this class holds strong references
+ * to the key and value, regardless of the type of references the cache may be using.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of the key
+ * @param <V> the type of the value
+ */
+@Immutable
+public final class RemovalNotification<K, V> extends SimpleImmutableEntry<K, V> {
+  private static final long serialVersionUID = 1L;
+
+  private final RemovalCause cause;
+
+  /**
+   * Creates an entry representing the removal of a mapping from the key to the value.
+   *
+   * @param key the key represented by this entry, or {@code null} if collected
+   * @param value the value represented by this entry, or {@code null} if collected
+   * @param cause the reason for which the entry was removed
+   */
+  public RemovalNotification(@Nullable K key, @Nullable V value, @Nonnull RemovalCause cause) {
+    super(key, value);
+    this.cause = requireNonNull(cause);
+  }
+
+  /**
+   * Returns the reason for which the entry was removed.
+   *
+   * @return the cause for the removal
+   */
+  @Nonnull
+  public RemovalCause getCause() {
+    return cause;
+  }
+
+  /**
+   * Returns {@code true} if there was an automatic removal due to eviction (the cause is neither
+   * {@link RemovalCause#EXPLICIT} nor {@link RemovalCause#REPLACED}).
+   *
+   * @return if the entry was automatically removed due to eviction
+   */
+  public boolean wasEvicted() {
+    return cause.wasEvicted();
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A scheduler that submits a task to an executor after a given delay.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+@FunctionalInterface
+public interface Scheduler {
+
+  /**
+   * Returns a future that will submit the task to the given executor after the given delay.
+   *
+   * @param executor the executor to run the task
+   * @param command the runnable task to schedule
+   * @param delay how long to delay, in units of {@code unit}
+   * @param unit a {@code TimeUnit} determining how to interpret the {@code delay} parameter
+   * @return a scheduled future representing pending submission of the task
+   */
+  @Nonnull
+  Future<?> schedule(@Nonnull Executor executor,
+      @Nonnull Runnable command, long delay, @Nonnull TimeUnit unit);
+
+  /**
+   * Returns a scheduler that always returns a successfully completed future.
+   *
+   * @return a scheduler that always returns a successfully completed future
+   */
+  static @Nonnull Scheduler disabledScheduler() {
+    return DisabledScheduler.INSTANCE;
+  }
+
+  /**
+   * Returns a scheduler that delegates to a {@link ScheduledExecutorService}. The executor
+   * should be shared by many caches so that a dedicated thread is not required per cache.
+   *
+   * @param scheduledExecutorService the executor to schedule on
+   * @return a scheduler that delegates to a {@link ScheduledExecutorService}
+   */
+  static @Nonnull Scheduler forScheduledExecutorService(
+      @Nonnull ScheduledExecutorService scheduledExecutorService) {
+    return new ExecutorServiceScheduler(scheduledExecutorService);
+  }
+
+  /**
+   * Returns a scheduler that suppresses and logs any exception thrown by the delegate
+   * {@code scheduler}.
+   *
+   * @param scheduler the scheduler to delegate to
+   * @return a scheduler that suppresses and logs any exception thrown by the delegate
+   */
+  static @Nonnull Scheduler guardedScheduler(@Nonnull Scheduler scheduler) {
+    return (scheduler instanceof GuardedScheduler) ? scheduler : new GuardedScheduler(scheduler);
+  }
+}
+
+enum DisabledScheduler implements Scheduler {
+  INSTANCE;
+
+  @Override
+  public Future<Void> schedule(Executor executor, Runnable command, long delay, TimeUnit unit) {
+    requireNonNull(executor);
+    requireNonNull(command);
+    requireNonNull(unit);
+    return DisabledFuture.INSTANCE;
+  }
+}
+
+final class ExecutorServiceScheduler implements Scheduler {
+  final ScheduledExecutorService scheduledExecutorService;
+
+  ExecutorServiceScheduler(ScheduledExecutorService scheduledExecutorService) {
+    this.scheduledExecutorService = requireNonNull(scheduledExecutorService);
+  }
+
+  @Override
+  public Future<?> schedule(Executor executor, Runnable command, long delay, TimeUnit unit) {
+    requireNonNull(executor);
+    requireNonNull(command);
+    requireNonNull(unit);
+
+    if (scheduledExecutorService.isShutdown()) {
+      return DisabledFuture.INSTANCE;
+    }
+    return scheduledExecutorService.schedule(() -> executor.execute(command), delay, unit);
+  }
+}
+
+final class GuardedScheduler implements Scheduler {
+  static final Logger logger = Logger.getLogger(GuardedScheduler.class.getName());
+
+  final Scheduler delegate;
+
+  GuardedScheduler(Scheduler delegate) {
+    this.delegate = requireNonNull(delegate);
+  }
+
+  @Override
+  public Future<?> schedule(Executor executor, Runnable command, long delay, TimeUnit unit) {
+    try {
+      Future<?> future = delegate.schedule(executor, command, delay, unit);
+      return (future == null) ? DisabledFuture.INSTANCE : future;
+    } catch (Throwable t) {
+      logger.log(Level.WARNING, "Exception thrown by scheduler; discarded task", t);
+      return DisabledFuture.INSTANCE;
+    }
+  }
+}
@@ -24,8 +24,8 @@ import javax.annotation.Nullable;
 
 /**
  * Serializes the configuration of the cache, reconsitituting it as a {@link Cache},
- * {@link LoadingCache}, or {@link AsyncLoadingCache} using {@link Caffeine} upon
- * deserialization. The data held by the cache is not retained.
+ * {@link LoadingCache}, {@link AsyncCache}, or {@link AsyncLoadingCache} using {@link Caffeine}
+ * upon deserialization. The data held by the cache is not retained.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
@@ -38,14 +38,24 @@ final class SerializationProxy<K, V> implements Serializable {
   boolean weakValues;
   boolean softValues;
   boolean isRecordingStats;
+  boolean isRecordingDiagnostics;
+  boolean doorkeeper;
+  boolean weightedAdmission;
   long refreshAfterWriteNanos;
+  long coalesceRefreshNanos = UNSET_INT;
+  long coalesceLoadNanos = UNSET_INT;
+  int maximumLoadBatchSize = UNSET_INT;
   long expiresAfterWriteNanos;
   long expiresAfterAccessNanos;
   long maximumSize = UNSET_INT;
   long maximumWeight = UNSET_INT;
+  int shards = UNSET_INT;
 
   @Nullable Ticker ticker;
+  @Nullable ReadBufferStrategy readBufferStrategy;
+  @Nullable SketchLayout sketchLayout;
   @Nullable Expiry<?, ?> expiry;
+  @Nullable Refresher<?, ?> refresher;
   @Nullable Weigher<?, ?> weigher;
   @Nullable CacheWriter<?, ?> writer;
   @Nullable AsyncCacheLoader<?, ?> loader;
@@ -60,12 +70,27 @@ final class SerializationProxy<K, V> implements Serializable {
     if (isRecordingStats) {
       builder.recordStats();
     }
+    if (isRecordingDiagnostics) {
+      builder.recordDiagnostics();
+    }
+    if (readBufferStrategy != null) {
+      builder.readBufferStrategy(readBufferStrategy);
+    }
+    if (sketchLayout != null) {
+      builder.sketchLayout(sketchLayout);
+    }
+    if (doorkeeper) {
+      builder.doorkeeper();
+    }
     if (maximumSize != UNSET_INT) {
       builder.maximumSize(maximumSize);
     }
     if (weigher != null) {
       builder.maximumWeight(maximumWeight);
       builder.weigher((Weigher<Object, Object>) weigher);
+      if (weightedAdmission) {
+        builder.weightedAdmission();
+      }
     }
     if (expiry != null) {
       builder.expireAfter(expiry);
@@ -79,6 +104,15 @@ final class SerializationProxy<K, V> implements Serializable {
     if (refreshAfterWriteNanos > 0) {
       builder.refreshAfterWrite(refreshAfterWriteNanos, TimeUnit.NANOSECONDS);
     }
+    if (refresher != null) {
+      builder.refreshAfter(refresher);
+    }
+    if (coalesceRefreshNanos != UNSET_INT) {
+      builder.coalesceRefreshes(coalesceRefreshNanos, TimeUnit.NANOSECONDS);
+    }
+    if (coalesceLoadNanos != UNSET_INT) {
+      builder.coalesceLoads(coalesceLoadNanos, TimeUnit.NANOSECONDS, maximumLoadBatchSize);
+    }
     if (weakKeys) {
       builder.weakKeys();
     }
@@ -94,17 +128,23 @@ final class SerializationProxy<K, V> implements Serializable {
     if ((writer != null) && (writer != CacheWriter.disabledWriter())) {
       builder.writer((CacheWriter<Object, Object>) writer);
     }
+    if (shards != UNSET_INT) {
+      builder.shards(shards);
+    }
     return builder;
   }
 
   Object readResolve() {
     Caffeine<Object, Object> builder = recreateCaffeine();
-    if (loader == null) {
-      return builder.build();
-    } else if (async) {
+    if (async) {
+      if (loader == null) {
+        return builder.buildAsync();
+      }
       @SuppressWarnings("unchecked")
       AsyncCacheLoader<K, V> cacheLoader = (AsyncCacheLoader<K, V>) loader;
       return builder.buildAsync(cacheLoader);
+    } else if (loader == null) {
+      return builder.build();
     } else {
       @SuppressWarnings("unchecked")
       CacheLoader<K, V> cacheLoader = (CacheLoader<K, V>) loader;
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.nio.ByteBuffer;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Converts a value to and from the binary form that is stored outside of the Java heap by an
+ * {@link OffHeapCache}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <V> the type of values
+ */
+@ThreadSafe
+public interface Serializer<V> {
+
+  /**
+   * Returns the number of bytes that {@link #serialize} will write for the value.
+   *
+   * @param value the value to be serialized
+   * @return the exact size of the serialized form, in bytes
+   */
+  @Nonnegative
+  int serializedSize(@Nonnull V value);
+
+  /**
+   * Writes the value into the buffer, starting at its current position. Exactly
+   * {@link #serializedSize} bytes must be written.
+   *
+   * @param value the value to be serialized
+   * @param buffer the buffer to write into
+   */
+  void serialize(@Nonnull V value, @Nonnull ByteBuffer buffer);
+
+  /**
+   * Reads the value from the buffer, starting at its current position. The buffer's remaining
+   * bytes are the serialized form that was written by {@link #serialize}.
+   *
+   * @param buffer the buffer to read from
+   * @return the deserialized value
+   */
+  @Nonnull
+  V deserialize(@Nonnull ByteBuffer buffer);
+}
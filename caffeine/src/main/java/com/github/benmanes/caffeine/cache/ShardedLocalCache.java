@@ -0,0 +1,784 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.ceilingPowerOfTwo;
+import static com.github.benmanes.caffeine.cache.BoundedLocalCache.makeSerializationProxy;
+import static com.github.benmanes.caffeine.cache.Caffeine.requireArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.BoundedLocalCache.BoundedLocalManualCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.github.benmanes.caffeine.cache.stats.StatsCounter;
+
+/**
+ * A {@link Cache} that partitions its keys across independent, size-bounded shards. Each shard is
+ * a complete cache with its own eviction lock, buffers, policy deques, frequency sketch, and timer
+ * wheel, so that the maintenance work of different shards may be performed concurrently. The
+ * maximum size is divided evenly across the shards, which share the statistics counter, the
+ * builder's listeners, and the victim cache.
+ * <p>
+ * The shards make their eviction decisions independently, so the hit rate may be slightly lower
+ * than a single cache of the same total size when the keys are unevenly distributed. The maximum
+ * is not rebalanced, so each shard is bounded by its own portion rather than by the total. When a
+ * weigher is used, an entry whose weight exceeds its shard's portion is evicted immediately even
+ * though it would fit within the total maximum. The ordered snapshots returned by the
+ * {@link Policy} interleave the shards' orderings, as there is no total order across them.
+ * <p>
+ * The victim cache is invoked concurrently by the shards, each for its own keys, and is only
+ * invalidated in full when every shard is cleared.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys maintained by this cache
+ * @param <V> the type of mapped values
+ */
+final class ShardedLocalCache<K, V> implements Cache<K, V>, Serializable {
+  private static final long serialVersionUID = 1;
+
+  /** The maximum number of shards. */
+  static final int MAXIMUM_SHARDS = 1 << 16;
+
+  final VictimCache<K, V> victimCache;
+  final Cache<K, V>[] shards;
+  final boolean isWeighted;
+  final int shardShift;
+
+  @Nullable ConcurrentMap<K, V> mapView;
+  @Nullable Policy<K, V> policy;
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  ShardedLocalCache(Caffeine<K, V> builder) {
+    int count = ceilingPowerOfTwo(builder.getShards());
+    shards = new Cache[count];
+    shardShift = Integer.SIZE - Integer.numberOfTrailingZeros(count);
+
+    isWeighted = builder.isWeighted();
+    victimCache = builder.getVictimCache();
+    VictimCache<K, V> sharedVictimCache = (victimCache == VictimCache.disabledVictimCache())
+        ? victimCache
+        : new SharedVictimCache<>(victimCache);
+    StatsCounter statsCounter = builder.getStatsCounterSupplier().get();
+    long maximum = builder.getMaximum();
+    for (int i = 0; i < count; i++) {
+      shards[i] = builder.shard(count, share(maximum, i), statsCounter, sharedVictimCache).build();
+    }
+  }
+
+  /** Returns the portion of the maximum that is assigned to the shard. */
+  long share(long maximum, int index) {
+    return (maximum / shards.length) + ((index < (maximum % shards.length)) ? 1 : 0);
+  }
+
+  /** Returns the index of the shard that the key is assigned to. */
+  int indexOf(Object key) {
+    if (shards.length == 1) {
+      return 0;
+    }
+    // Use the upper bits so that the selection is independent of the shard's hash table index
+    int hash = key.hashCode() * 0x9E3779B9;
+    return hash >>> shardShift;
+  }
+
+  /** Returns the shard that the key is assigned to. */
+  Cache<K, V> shardFor(Object key) {
+    return shards[indexOf(key)];
+  }
+
+  @Override
+  public @Nullable V getIfPresent(Object key) {
+    return shardFor(key).getIfPresent(key);
+  }
+
+  @Override
+  public @Nullable V get(K key, Function<? super K, ? extends V> mappingFunction) {
+    return shardFor(key).get(key, mappingFunction);
+  }
+
+  @Override
+  public Map<K, V> getAllPresent(Iterable<?> keys) {
+    Map<K, V> result = new LinkedHashMap<>();
+    for (Object key : keys) {
+      V value = shardFor(key).getIfPresent(key);
+      if (value != null) {
+        @SuppressWarnings("unchecked")
+        K castKey = (K) key;
+        result.put(castKey, value);
+      }
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  @Override
+  public void put(K key, V value) {
+    shardFor(key).put(key, value);
+  }
+
+  @Override
+  public void putAll(Map<? extends K, ? extends V> map) {
+    map.forEach(this::put);
+  }
+
+  @Override
+  public void invalidate(Object key) {
+    shardFor(key).invalidate(key);
+  }
+
+  @Override
+  public void invalidateAll(Iterable<?> keys) {
+    for (Object key : keys) {
+      invalidate(key);
+    }
+  }
+
+  @Override
+  public void invalidateAll() {
+    for (Cache<K, V> shard : shards) {
+      shard.invalidateAll();
+    }
+    victimCache.invalidateAll();
+  }
+
+  @Override
+  public long estimatedSize() {
+    return sum(Cache::estimatedSize);
+  }
+
+  @Override
+  public CacheStats stats() {
+    // The shards share the same statistics counter
+    return shards[0].stats();
+  }
+
+  @Override
+  public ConcurrentMap<K, V> asMap() {
+    return (mapView == null) ? (mapView = new ShardedMapView()) : mapView;
+  }
+
+  @Override
+  public void cleanUp() {
+    for (Cache<K, V> shard : shards) {
+      shard.cleanUp();
+    }
+  }
+
+  @Override
+  public Policy<K, V> policy() {
+    return (policy == null) ? (policy = new ShardedPolicy()) : policy;
+  }
+
+  private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+    throw new InvalidObjectException("Proxy required");
+  }
+
+  Object writeReplace() {
+    BoundedLocalManualCache<?, ?> shard = (BoundedLocalManualCache<?, ?>) shards[0];
+    SerializationProxy<K, V> proxy = makeSerializationProxy(shard.cache, isWeighted);
+    long maximum = policy().eviction().get().getMaximum();
+    if (isWeighted) {
+      proxy.maximumWeight = maximum;
+    } else {
+      proxy.maximumSize = maximum;
+    }
+    proxy.shards = shards.length;
+    return proxy;
+  }
+
+  /** Returns the sum of the shards' values. */
+  long sum(ToLongFunction<Cache<K, V>> function) {
+    long sum = 0L;
+    for (Cache<K, V> shard : shards) {
+      sum += function.applyAsLong(shard);
+    }
+    return sum;
+  }
+
+  /** Returns the features of the shards' policies, which are all configured identically. */
+  <T> List<T> features(Function<Policy<K, V>, Optional<T>> feature) {
+    List<T> features = new ArrayList<>(shards.length);
+    for (Cache<K, V> shard : shards) {
+      feature.apply(shard.policy()).ifPresent(features::add);
+    }
+    return features;
+  }
+
+  /**
+   * Returns an unmodifiable map that interleaves the ordered snapshots of each shard, in a round
+   * robin order, up to the limit.
+   */
+  static <K, V> Map<K, V> interleave(List<Map<K, V>> snapshots, int limit) {
+    requireArgument(limit >= 0);
+    List<Iterator<Map.Entry<K, V>>> iterators = new ArrayList<>(snapshots.size());
+    for (Map<K, V> snapshot : snapshots) {
+      iterators.add(snapshot.entrySet().iterator());
+    }
+
+    Map<K, V> result = new LinkedHashMap<>();
+    boolean advanced = true;
+    while (advanced && (result.size() < limit)) {
+      advanced = false;
+      for (Iterator<Map.Entry<K, V>> iterator : iterators) {
+        if ((result.size() < limit) && iterator.hasNext()) {
+          Map.Entry<K, V> entry = iterator.next();
+          result.put(entry.getKey(), entry.getValue());
+          advanced = true;
+        }
+      }
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * A view of the victim cache that is shared by the shards. A shard's keys are disjoint from the
+   * others', so the shard's operations are delegated, but clearing a shard must not discard the
+   * entries of the other shards. The victim cache is instead invalidated by the sharded cache after
+   * all of the shards are cleared.
+   */
+  static final class SharedVictimCache<K, V> implements VictimCache<K, V> {
+    final VictimCache<K, V> delegate;
+
+    SharedVictimCache(VictimCache<K, V> delegate) {
+      this.delegate = requireNonNull(delegate);
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+      return delegate.remove(key);
+    }
+
+    @Override
+    public void put(K key, V value) {
+      delegate.put(key, value);
+    }
+
+    @Override
+    public void invalidate(Object key) {
+      delegate.invalidate(key);
+    }
+
+    @Override
+    public void invalidateAll() {}
+  }
+
+  /** A view of the shards as a single map, where each key's operation is atomic in its shard. */
+  final class ShardedMapView extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    @Nullable Set<Entry<K, V>> entrySet;
+
+    ConcurrentMap<K, V> mapFor(Object key) {
+      return shardFor(requireNonNull(key)).asMap();
+    }
+
+    @Override
+    public int size() {
+      return (int) Math.min(sum(shard -> shard.asMap().size()), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+      for (Cache<K, V> shard : shards) {
+        if (!shard.asMap().isEmpty()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public void clear() {
+      for (Cache<K, V> shard : shards) {
+        shard.asMap().clear();
+      }
+      victimCache.invalidateAll();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return mapFor(key).containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+      for (Cache<K, V> shard : shards) {
+        if (shard.asMap().containsValue(value)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+      return mapFor(key).get(key);
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+      return mapFor(key).put(key, value);
+    }
+
+    @Override
+    public @Nullable V putIfAbsent(K key, V value) {
+      return mapFor(key).putIfAbsent(key, value);
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+      return mapFor(key).remove(key);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+      return mapFor(key).remove(key, value);
+    }
+
+    @Override
+    public @Nullable V replace(K key, V value) {
+      return mapFor(key).replace(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+      return mapFor(key).replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public @Nullable V computeIfAbsent(K key,
+        Function<? super K, ? extends V> mappingFunction) {
+      return mapFor(key).computeIfAbsent(key, mappingFunction);
+    }
+
+    @Override
+    public @Nullable V computeIfPresent(K key,
+        BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+      return mapFor(key).computeIfPresent(key, remappingFunction);
+    }
+
+    @Override
+    public @Nullable V compute(K key,
+        BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+      return mapFor(key).compute(key, remappingFunction);
+    }
+
+    @Override
+    public @Nullable V merge(K key, V value,
+        BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+      return mapFor(key).merge(key, value, remappingFunction);
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+      return (entrySet == null) ? (entrySet = new EntrySetView()) : entrySet;
+    }
+
+    /** A view of the entries of every shard. */
+    final class EntrySetView extends AbstractSet<Entry<K, V>> {
+      @Override
+      public int size() {
+        return ShardedMapView.this.size();
+      }
+
+      @Override
+      public void clear() {
+        ShardedMapView.this.clear();
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Entry<?, ?>)) {
+          return false;
+        }
+        Entry<?, ?> entry = (Entry<?, ?>) o;
+        Object key = entry.getKey();
+        return (key != null) && mapFor(key).entrySet().contains(entry);
+      }
+
+      @Override
+      public boolean remove(Object o) {
+        if (!(o instanceof Entry<?, ?>)) {
+          return false;
+        }
+        Entry<?, ?> entry = (Entry<?, ?>) o;
+        Object key = entry.getKey();
+        return (key != null) && mapFor(key).entrySet().remove(entry);
+      }
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+    }
+
+    /** An iterator that traverses the entries of each shard in turn. */
+    final class EntryIterator implements Iterator<Entry<K, V>> {
+      @Nullable Iterator<Entry<K, V>> current;
+      @Nullable Iterator<Entry<K, V>> last;
+      int index;
+
+      @Override
+      public boolean hasNext() {
+        while ((current == null) || !current.hasNext()) {
+          if (index == shards.length) {
+            return false;
+          }
+          current = shards[index++].asMap().entrySet().iterator();
+        }
+        return true;
+      }
+
+      @Override
+      public Entry<K, V> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = current;
+        return current.next();
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) {
+          throw new IllegalStateException();
+        }
+        last.remove();
+        last = null;
+      }
+    }
+  }
+
+  /** The policy of the shards, which aggregates their state or routes by the key. */
+  final class ShardedPolicy implements Policy<K, V> {
+    @Nullable Optional<Eviction<K, V>> eviction;
+    @Nullable Optional<Expiration<K, V>> afterWrite;
+    @Nullable Optional<Expiration<K, V>> afterAccess;
+    @Nullable Optional<Expiration<K, V>> refreshAfterWrite;
+    @Nullable Optional<VarExpiration<K, V>> variable;
+    @Nullable Optional<Diagnostics> diagnostics;
+
+    @Override
+    public boolean isRecordingStats() {
+      return shards[0].policy().isRecordingStats();
+    }
+
+    @Override
+    public Optional<Eviction<K, V>> eviction() {
+      return (eviction == null)
+          ? (eviction = Optional.of(new ShardedEviction()))
+          : eviction;
+    }
+
+    @Override
+    public Optional<Expiration<K, V>> expireAfterAccess() {
+      return (afterAccess == null)
+          ? (afterAccess = expiration(Policy::expireAfterAccess))
+          : afterAccess;
+    }
+
+    @Override
+    public Optional<Expiration<K, V>> expireAfterWrite() {
+      return (afterWrite == null)
+          ? (afterWrite = expiration(Policy::expireAfterWrite))
+          : afterWrite;
+    }
+
+    @Override
+    public Optional<VarExpiration<K, V>> expireVariably() {
+      if (variable == null) {
+        List<VarExpiration<K, V>> features = features(Policy::expireVariably);
+        variable = features.isEmpty()
+            ? Optional.empty()
+            : Optional.of(new ShardedVarExpiration(features));
+      }
+      return variable;
+    }
+
+    @Override
+    public Optional<Expiration<K, V>> refreshAfterWrite() {
+      return (refreshAfterWrite == null)
+          ? (refreshAfterWrite = expiration(Policy::refreshAfterWrite))
+          : refreshAfterWrite;
+    }
+
+    @Override
+    public long estimatedRefreshCount() {
+      return sum(shard -> shard.policy().estimatedRefreshCount());
+    }
+
+    @Override
+    public Optional<Diagnostics> diagnostics() {
+      if (diagnostics == null) {
+        List<Diagnostics> features = features(Policy::diagnostics);
+        diagnostics = features.isEmpty()
+            ? Optional.empty()
+            : Optional.of(new ShardedDiagnostics(features));
+      }
+      return diagnostics;
+    }
+
+    Optional<Expiration<K, V>> expiration(
+        Function<Policy<K, V>, Optional<Expiration<K, V>>> feature) {
+      List<Expiration<K, V>> features = features(feature);
+      return features.isEmpty()
+          ? Optional.empty()
+          : Optional.of(new ShardedExpiration(features));
+    }
+  }
+
+  /** The shards' size-based eviction policies, which share the maximum. */
+  final class ShardedEviction implements Policy.Eviction<K, V> {
+    final List<Policy.Eviction<K, V>> evictions = features(Policy::eviction);
+
+    @Override
+    public boolean isWeighted() {
+      return evictions.get(0).isWeighted();
+    }
+
+    @Override
+    public OptionalInt weightOf(K key) {
+      return shardFor(key).policy().eviction().get().weightOf(key);
+    }
+
+    @Override
+    public OptionalLong weightedSize() {
+      if (!isWeighted()) {
+        return OptionalLong.empty();
+      }
+      long weightedSize = 0L;
+      for (Policy.Eviction<K, V> eviction : evictions) {
+        weightedSize += eviction.weightedSize().orElse(0L);
+      }
+      return OptionalLong.of(weightedSize);
+    }
+
+    @Override
+    public long getMaximum() {
+      long maximum = 0L;
+      for (Policy.Eviction<K, V> eviction : evictions) {
+        maximum += eviction.getMaximum();
+      }
+      return maximum;
+    }
+
+    @Override
+    public void setMaximum(long maximum) {
+      requireArgument(maximum >= 0, "maximum must not be negative");
+      for (int i = 0; i < evictions.size(); i++) {
+        evictions.get(i).setMaximum(share(maximum, i));
+      }
+    }
+
+    @Override
+    public Map<K, V> coldest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(evictions.size());
+      for (Policy.Eviction<K, V> eviction : evictions) {
+        snapshots.add(eviction.coldest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+
+    @Override
+    public Map<K, V> hottest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(evictions.size());
+      for (Policy.Eviction<K, V> eviction : evictions) {
+        snapshots.add(eviction.hottest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+  }
+
+  /** The shards' fixed expiration policies, which share the duration. */
+  final class ShardedExpiration implements Policy.Expiration<K, V> {
+    final List<Policy.Expiration<K, V>> expirations;
+
+    ShardedExpiration(List<Policy.Expiration<K, V>> expirations) {
+      this.expirations = expirations;
+    }
+
+    @Override
+    public OptionalLong ageOf(K key, TimeUnit unit) {
+      return expirations.get(indexOf(key)).ageOf(key, unit);
+    }
+
+    @Override
+    public long getExpiresAfter(TimeUnit unit) {
+      return expirations.get(0).getExpiresAfter(unit);
+    }
+
+    @Override
+    public void setExpiresAfter(long duration, TimeUnit unit) {
+      for (Policy.Expiration<K, V> expiration : expirations) {
+        expiration.setExpiresAfter(duration, unit);
+      }
+    }
+
+    @Override
+    public Map<K, V> oldest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(expirations.size());
+      for (Policy.Expiration<K, V> expiration : expirations) {
+        snapshots.add(expiration.oldest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+
+    @Override
+    public Map<K, V> youngest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(expirations.size());
+      for (Policy.Expiration<K, V> expiration : expirations) {
+        snapshots.add(expiration.youngest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+  }
+
+  /** The shards' variable expiration policies, where each entry is managed by its shard. */
+  final class ShardedVarExpiration implements Policy.VarExpiration<K, V> {
+    final List<Policy.VarExpiration<K, V>> expirations;
+
+    ShardedVarExpiration(List<Policy.VarExpiration<K, V>> expirations) {
+      this.expirations = expirations;
+    }
+
+    Policy.VarExpiration<K, V> expirationFor(K key) {
+      return expirations.get(indexOf(key));
+    }
+
+    @Override
+    public OptionalLong getExpiresAfter(K key, TimeUnit unit) {
+      return expirationFor(key).getExpiresAfter(key, unit);
+    }
+
+    @Override
+    public void setExpiresAfter(K key, long duration, TimeUnit unit) {
+      expirationFor(key).setExpiresAfter(key, duration, unit);
+    }
+
+    @Override
+    public boolean putIfAbsent(K key, V value, long duration, TimeUnit unit) {
+      return expirationFor(key).putIfAbsent(key, value, duration, unit);
+    }
+
+    @Override
+    public void put(K key, V value, long duration, TimeUnit unit) {
+      expirationFor(key).put(key, value, duration, unit);
+    }
+
+    @Override
+    public Map<K, V> oldest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(expirations.size());
+      for (Policy.VarExpiration<K, V> expiration : expirations) {
+        snapshots.add(expiration.oldest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+
+    @Override
+    public Map<K, V> youngest(int limit) {
+      List<Map<K, V>> snapshots = new ArrayList<>(expirations.size());
+      for (Policy.VarExpiration<K, V> expiration : expirations) {
+        snapshots.add(expiration.youngest(limit));
+      }
+      return interleave(snapshots, limit);
+    }
+  }
+
+  /** The sum of the shards' diagnostic counters. */
+  static final class ShardedDiagnostics implements Policy.Diagnostics {
+    final List<Policy.Diagnostics> diagnostics;
+
+    ShardedDiagnostics(List<Policy.Diagnostics> diagnostics) {
+      this.diagnostics = diagnostics;
+    }
+
+    long sum(ToLongFunction<Policy.Diagnostics> counter) {
+      long sum = 0L;
+      for (Policy.Diagnostics shard : diagnostics) {
+        sum += counter.applyAsLong(shard);
+      }
+      return sum;
+    }
+
+    @Override
+    public long readBufferDropCount() {
+      return sum(Policy.Diagnostics::readBufferDropCount);
+    }
+
+    @Override
+    public long writeBufferRetryCount() {
+      return sum(Policy.Diagnostics::writeBufferRetryCount);
+    }
+
+    @Override
+    public long writeBufferExhaustedCount() {
+      return sum(Policy.Diagnostics::writeBufferExhaustedCount);
+    }
+
+    @Override
+    public long maintenanceCount() {
+      return sum(Policy.Diagnostics::maintenanceCount);
+    }
+
+    @Override
+    public long totalMaintenanceTime() {
+      return sum(Policy.Diagnostics::totalMaintenanceTime);
+    }
+
+    @Override
+    public long maximumMaintenanceTime() {
+      long maximum = 0L;
+      for (Policy.Diagnostics shard : diagnostics) {
+        maximum = Math.max(maximum, shard.maximumMaintenanceTime());
+      }
+      return maximum;
+    }
+
+    @Override
+    public long admissionAcceptCount() {
+      return sum(Policy.Diagnostics::admissionAcceptCount);
+    }
+
+    @Override
+    public long admissionRejectCount() {
+      return sum(Policy.Diagnostics::admissionRejectCount);
+    }
+
+    @Override
+    public long hashFloodProtectionCount() {
+      return sum(Policy.Diagnostics::hashFloodProtectionCount);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+/**
+ * The arrangement of the counters within the frequency sketch that is used by a size-bounded cache
+ * to estimate the popularity of its entries.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public enum SketchLayout {
+
+  /**
+   * Each of an element's four counters is located at an independent, pseudo-randomly selected
+   * position in the table. This provides the best accuracy for a given table size, but the
+   * counters are likely to reside in different cache lines so that an update may incur up to four
+   * cache misses. This is the default layout.
+   */
+  STANDARD,
+
+  /**
+   * All of an element's counters are located within a single 64-byte block of the table. This
+   * reduces the number of cache misses when updating the sketch to one or two, depending on the
+   * array's alignment, at the cost of slightly more collisions. This is preferred for very large
+   * caches whose sketch does not fit in the processor's caches.
+   */
+  BLOCKED,
+}
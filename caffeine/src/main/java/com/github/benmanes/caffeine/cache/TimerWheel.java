@@ -233,6 +233,32 @@ final class TimerWheel<K, V> {
     }
   }
 
+  /**
+   * Returns the duration until the next bucket expires, or {@link Long#MAX_VALUE} if none. The
+   * earliest non-empty bucket in each wheel is considered, so the delay may be shorter than the
+   * entry's expiration time when it resides in a coarse bucket that will be cascaded.
+   *
+   * @return the delay, in nanoseconds, until the next expiration event
+   */
+  public long getExpirationDelay() {
+    long delay = Long.MAX_VALUE;
+    for (int i = 0; i < SHIFT.length; i++) {
+      Node<K, V>[] timerWheel = wheel[i];
+      long ticks = (nanos >>> SHIFT[i]);
+      int mask = timerWheel.length - 1;
+      for (int j = 0; j < timerWheel.length; j++) {
+        Node<K, V> sentinel = timerWheel[(int) ((ticks + j) & mask)];
+        if (sentinel.getNextInVariableOrder() != sentinel) {
+          // the current bucket is expired when the wheel next turns
+          long fireTime = (ticks + Math.max(j, 1)) << SHIFT[i];
+          delay = Math.min(delay, fireTime - nanos);
+          break;
+        }
+      }
+    }
+    return delay;
+  }
+
   /**
    * Returns an unmodifiable snapshot map roughly ordered by the expiration time. The wheels are
    * evaluated in order, but the timers that fall within the bucket's range are not sorted. Beware
@@ -34,6 +34,7 @@ import java.util.Spliterator;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
@@ -58,11 +59,13 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   final boolean isRecordingStats;
   final CacheWriter<K, V> writer;
   final Executor executor;
+  final Executor listenerExecutor;
   final Ticker ticker;
 
   transient @Nullable Set<K> keySet;
   transient @Nullable Collection<V> values;
   transient @Nullable Set<Entry<K, V>> entrySet;
+  transient volatile @Nullable ConcurrentMap<Object, CompletableFuture<?>> refreshes;
 
   UnboundedLocalCache(Caffeine<? super K, ? super V> builder, boolean async) {
     this.data = new ConcurrentHashMap<>(builder.getInitialCapacity());
@@ -70,7 +73,8 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     this.removalListener = builder.getRemovalListener(async);
     this.isRecordingStats = builder.isRecordingStats();
     this.writer = builder.getCacheWriter();
-    this.executor = builder.getExecutor();
+    this.executor = builder.getLoaderExecutor();
+    this.listenerExecutor = builder.getListenerExecutor();
     this.ticker = builder.getTicker();
   }
 
@@ -105,6 +109,39 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     return data.mappingCount();
   }
 
+  @Override
+  public Object referenceKey(K key) {
+    return key;
+  }
+
+  @Override
+  public ConcurrentMap<Object, CompletableFuture<?>> refreshes() {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    if (pending == null) {
+      synchronized (this) {
+        pending = refreshes;
+        if (pending == null) {
+          refreshes = pending = new ConcurrentHashMap<>();
+        }
+      }
+    }
+    return pending;
+  }
+
+  @Override
+  public long estimatedRefreshCount() {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    return (pending == null) ? 0L : pending.size();
+  }
+
+  /** Discards the in-flight refresh, if any, so that its result is not written into the cache. */
+  void discardRefresh(Object key) {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    if (pending != null) {
+      pending.remove(key);
+    }
+  }
+
   @Override
   public Map<K, V> getAllPresent(Iterable<?> keys) {
     Set<Object> uniqueKeys = new HashSet<>();
@@ -152,7 +189,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   @Override
   public void notifyRemoval(@Nullable K key, @Nullable V value, RemovalCause cause) {
     requireNonNull(removalListener(), "Notification should be guarded with a check");
-    executor.execute(() -> removalListener().onRemoval(key, value, cause));
+    listenerExecutor.execute(() -> removalListener().onRemoval(key, value, cause));
   }
 
   @Override
@@ -268,6 +305,9 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
       return newValue;
     });
+    if (cause[0] == RemovalCause.EXPLICIT) {
+      discardRefresh(key);
+    }
     if (oldValue[0] != null) {
       notifyRemoval(key, oldValue[0], cause[0]);
     }
@@ -315,6 +355,9 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
       return newValue;
     });
+    if (cause[0] == RemovalCause.EXPLICIT) {
+      discardRefresh(key);
+    }
     if (oldValue[0] != null) {
       notifyRemoval(key, oldValue[0], cause[0]);
     }
@@ -335,6 +378,10 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
   @Override
   public void clear() {
+    ConcurrentMap<Object, CompletableFuture<?>> pending = refreshes;
+    if (pending != null) {
+      pending.clear();
+    }
     if (!hasRemovalListener() && (writer == CacheWriter.disabledWriter())) {
       data.clear();
       return;
@@ -367,6 +414,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
   @Override
   public @Nullable V put(K key, V value, boolean notifyWriter) {
     requireNonNull(value);
+    discardRefresh(key);
 
     // ensures that the removal notification is processed after the removal has completed
     @SuppressWarnings({"unchecked", "rawtypes"})
@@ -419,6 +467,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     @SuppressWarnings({"unchecked", "rawtypes"})
     V[] oldValue = (V[]) new Object[1];
 
+    discardRefresh(key);
     if (writer == CacheWriter.disabledWriter()) {
       oldValue[0] = data.remove(key);
     } else {
@@ -458,6 +507,9 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     });
 
     boolean removed = (oldValue[0] != null);
+    if (removed) {
+      discardRefresh(key);
+    }
     if (hasRemovalListener() && removed) {
       notifyRemoval(castKey, oldValue[0], RemovalCause.EXPLICIT);
     }
@@ -869,7 +921,7 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
     @Override
     public Policy<K, V> policy() {
-      return (policy == null) ? (policy = new UnboundedPolicy<>(cache.isRecordingStats)) : policy;
+      return (policy == null) ? (policy = new UnboundedPolicy<>(cache)) : policy;
     }
 
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
@@ -888,13 +940,16 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
   /** An eviction policy that supports no boundings. */
   static final class UnboundedPolicy<K, V> implements Policy<K, V> {
-    private final boolean isRecordingStats;
+    private final UnboundedLocalCache<?, ?> cache;
 
-    UnboundedPolicy(boolean isRecordingStats) {
-      this.isRecordingStats = isRecordingStats;
+    UnboundedPolicy(UnboundedLocalCache<?, ?> cache) {
+      this.cache = cache;
     }
     @Override public boolean isRecordingStats() {
-      return isRecordingStats;
+      return cache.isRecordingStats;
+    }
+    @Override public long estimatedRefreshCount() {
+      return cache.estimatedRefreshCount();
     }
     @Override public Optional<Eviction<K, V>> eviction() {
       return Optional.empty();
@@ -968,6 +1023,39 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
 
   /* ---------------- Async Loading Cache -------------- */
 
+  static final class UnboundedLocalAsyncCache<K, V>
+      extends LocalAsyncCache<UnboundedLocalCache<K, CompletableFuture<V>>, K, V>
+      implements Serializable {
+    private static final long serialVersionUID = 1;
+
+    @Nullable Policy<K, V> policy;
+
+    @SuppressWarnings("unchecked")
+    UnboundedLocalAsyncCache(Caffeine<K, V> builder) {
+      super(new UnboundedLocalCache<>(
+          (Caffeine<K, CompletableFuture<V>>) builder, /* async */ true));
+    }
+
+    @Override
+    protected Policy<K, V> policy() {
+      return (policy == null) ? (policy = new UnboundedPolicy<>(cache)) : policy;
+    }
+
+    private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+      throw new InvalidObjectException("Proxy required");
+    }
+
+    Object writeReplace() {
+      SerializationProxy<K, V> proxy = new SerializationProxy<>();
+      proxy.isRecordingStats = cache.isRecordingStats;
+      proxy.removalListener = cache.removalListener;
+      proxy.ticker = cache.ticker;
+      proxy.writer = cache.writer;
+      proxy.async = true;
+      return proxy;
+    }
+  }
+
   static final class UnboundedLocalAsyncLoadingCache<K, V>
       extends LocalAsyncLoadingCache<UnboundedLocalCache<K, CompletableFuture<V>>, K, V>
       implements Serializable {
@@ -978,12 +1066,12 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
     @SuppressWarnings("unchecked")
     UnboundedLocalAsyncLoadingCache(Caffeine<K, V> builder, AsyncCacheLoader<? super K, V> loader) {
       super(new UnboundedLocalCache<>(
-          (Caffeine<K, CompletableFuture<V>>) builder, /* async */ true), loader);
+          (Caffeine<K, CompletableFuture<V>>) builder, /* async */ true), loader, builder);
     }
 
     @Override
     protected Policy<K, V> policy() {
-      return (policy == null) ? (policy = new UnboundedPolicy<>(cache.isRecordingStats)) : policy;
+      return (policy == null) ? (policy = new UnboundedPolicy<>(cache)) : policy;
     }
 
     private void readObject(ObjectInputStream stream) throws InvalidObjectException {
@@ -996,6 +1084,10 @@ final class UnboundedLocalCache<K, V> implements LocalCache<K, V> {
       proxy.removalListener = cache.removalListener;
       proxy.ticker = cache.ticker;
       proxy.writer = cache.writer;
+      if (loadBatcher != null) {
+        proxy.coalesceLoadNanos = loadBatcher.delayNanos;
+        proxy.maximumLoadBatchSize = loadBatcher.maximumBatchSize;
+      }
       proxy.loader = loader;
       proxy.async = true;
       return proxy;
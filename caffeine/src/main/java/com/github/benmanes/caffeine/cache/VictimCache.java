@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A secondary tier that retains the entries which were evicted from the cache due to its size
+ * constraint. A lookup that misses the cache consults the victim cache before the value is loaded,
+ * and a value that is found is moved back into the cache. An entry resides in at most one tier, so
+ * the victim cache is told to discard its copy whenever the cache creates or removes the mapping.
+ * <p>
+ * The victim cache is evaluated by {@link Cache#getIfPresent}, {@link Cache#get}, and
+ * {@link LoadingCache#get}. Other operations, such as the {@link Cache#asMap()} compute methods,
+ * do not consult it.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+@ThreadSafe
+public interface VictimCache<K, V> {
+
+  /**
+   * Removes and returns the value associated with the {@code key}, or {@code null} if there is no
+   * retained value for the {@code key}.
+   *
+   * @param key the key whose associated value is to be returned
+   * @return the retained value, or {@code null} if absent
+   */
+  @Nullable
+  V remove(@Nonnull Object key);
+
+  /**
+   * Retains the entry that was evicted from the cache due to its size constraint. The victim cache
+   * may discard the entry at any time, such as if it exceeds its own capacity.
+   *
+   * @param key the key of the evicted entry
+   * @param value the value of the evicted entry
+   */
+  void put(@Nonnull K key, @Nonnull V value);
+
+  /**
+   * Discards any retained value for the {@code key}.
+   *
+   * @param key the key whose retained value is to be discarded
+   */
+  void invalidate(@Nonnull Object key);
+
+  /** Discards all of the retained entries. */
+  void invalidateAll();
+
+  /**
+   * Returns a victim cache that stores the serialized values in a memory-mapped file under the
+   * {@code directory}. The file is an append-only log of fixed size segments with an in-memory
+   * index of the keys. When the log exceeds the {@code maximumBytes} then the oldest segment is
+   * reused, so that the entries are evicted in first-in, first-out order. The entries are written
+   * by the {@link ForkJoinPool#commonPool()}.
+   *
+   * @param directory the directory to create the file in
+   * @param maximumBytes the maximum size of the file
+   * @param serializer the serializer used to convert the values to and from their binary form
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @return a victim cache that retains the values on local disk
+   * @throws IllegalArgumentException if {@code maximumBytes} is not positive
+   */
+  static @Nonnull <K, V> VictimCache<K, V> disk(@Nonnull Path directory,
+      @Nonnegative long maximumBytes, @Nonnull Serializer<V> serializer) {
+    return disk(directory, maximumBytes, serializer, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Returns a victim cache that stores the serialized values in a memory-mapped file under the
+   * {@code directory}, as described by {@link #disk(Path, long, Serializer)}. The entries are
+   * written asynchronously by the {@code executor}, so that the file I/O is not performed by the
+   * cache's maintenance work. The file is deleted when the victim cache is invalidated or when the
+   * virtual machine exits.
+   *
+   * @param directory the directory to create the file in
+   * @param maximumBytes the maximum size of the file
+   * @param serializer the serializer used to convert the values to and from their binary form
+   * @param executor the executor that writes the entries to the file
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @return a victim cache that retains the values on local disk
+   * @throws IllegalArgumentException if {@code maximumBytes} is not positive
+   */
+  static @Nonnull <K, V> VictimCache<K, V> disk(@Nonnull Path directory,
+      @Nonnegative long maximumBytes, @Nonnull Serializer<V> serializer,
+      @Nonnull Executor executor) {
+    return new DiskVictimCache<>(directory, maximumBytes, serializer, executor);
+  }
+
+  /**
+   * Returns a victim cache that retains nothing.
+   *
+   * @param <K> the type of keys
+   * @param <V> the type of values
+   * @return a victim cache that performs no operations
+   */
+  static @Nonnull <K, V> VictimCache<K, V> disabledVictimCache() {
+    @SuppressWarnings("unchecked")
+    VictimCache<K, V> victimCache = (VictimCache<K, V>) DisabledVictimCache.INSTANCE;
+    return victimCache;
+  }
+}
+
+enum DisabledVictimCache implements VictimCache<Object, Object> {
+  INSTANCE;
+
+  @Override
+  public @Nullable Object remove(Object key) {
+    return null;
+  }
+
+  @Override
+  public void put(Object key, Object value) {}
+
+  @Override
+  public void invalidate(Object key) {}
+
+  @Override
+  public void invalidateAll() {}
+}
@@ -15,6 +15,8 @@
  */
 package com.github.benmanes.caffeine.cache.stats;
 
+import static java.util.Objects.requireNonNull;
+
 import java.util.Objects;
 
 import javax.annotation.Nonnegative;
@@ -45,6 +47,8 @@ import com.github.benmanes.caffeine.cache.LoadingCache;
  *       {@code loadSuccessCount} or {@code loadFailureCount} is incremented.
  *   <li>When an entry is evicted from the cache, {@code evictionCount} is incremented and the
  *       weight added to {@code evictionWeight}.
+ *   <li>When the {@link StatsCounter} records a latency histogram, such as
+ *       {@link HistogramStatsCounter}, the loading time is also recorded into {@code loadLatency}.
  *   <li>No stats are modified when a cache entry is invalidated or manually removed.
  *   <li>No stats are modified by non-computing operations invoked on the
  *       {@linkplain Cache#asMap asMap} view of the cache.
@@ -67,6 +71,7 @@ public final class CacheStats {
   private final long totalLoadTime;
   private final long evictionCount;
   private final long evictionWeight;
+  private final LatencyStats loadLatency;
 
   /**
    * Constructs a new {@code CacheStats} instance.
@@ -104,6 +109,26 @@ public final class CacheStats {
       @Nonnegative long loadSuccessCount, @Nonnegative long loadFailureCount,
       @Nonnegative long totalLoadTime, @Nonnegative long evictionCount,
       @Nonnegative long evictionWeight) {
+    this(hitCount, missCount, loadSuccessCount, loadFailureCount,
+        totalLoadTime, evictionCount, evictionWeight, LatencyStats.empty());
+  }
+
+  /**
+   * Constructs a new {@code CacheStats} instance.
+   *
+   * @param hitCount the number of cache hits
+   * @param missCount the number of cache misses
+   * @param loadSuccessCount the number of successful cache loads
+   * @param loadFailureCount the number of failed cache loads
+   * @param totalLoadTime the total load time (success and failure)
+   * @param evictionCount the number of entries evicted from the cache
+   * @param evictionWeight the sum of weights of entries evicted from the cache
+   * @param loadLatency the distribution of the load times (success and failure)
+   */
+  public CacheStats(@Nonnegative long hitCount, @Nonnegative long missCount,
+      @Nonnegative long loadSuccessCount, @Nonnegative long loadFailureCount,
+      @Nonnegative long totalLoadTime, @Nonnegative long evictionCount,
+      @Nonnegative long evictionWeight, @Nonnull LatencyStats loadLatency) {
     if ((hitCount < 0) || (missCount < 0) || (loadSuccessCount < 0) || (loadFailureCount < 0)
         || (totalLoadTime < 0) || (evictionCount < 0) || (evictionWeight < 0)) {
       throw new IllegalArgumentException();
@@ -115,6 +140,7 @@ public final class CacheStats {
     this.totalLoadTime = totalLoadTime;
     this.evictionCount = evictionCount;
     this.evictionWeight = evictionWeight;
+    this.loadLatency = requireNonNull(loadLatency);
   }
 
   /**
@@ -273,6 +299,18 @@ public final class CacheStats {
         : (double) totalLoadTime / totalLoadCount;
   }
 
+  /**
+   * Returns the distribution of the time spent loading new values. This is empty unless the cache
+   * was configured with a {@link StatsCounter} that records a latency histogram, such as
+   * {@link HistogramStatsCounter}.
+   *
+   * @return the distribution of the time spent loading new values
+   */
+  @Nonnull
+  public LatencyStats loadLatency() {
+    return loadLatency;
+  }
+
   /**
    * Returns the number of times an entry has been evicted. This count does not include manual
    * {@linkplain Cache#invalidate invalidations}.
@@ -312,7 +350,8 @@ public final class CacheStats {
         Math.max(0L, loadFailureCount - other.loadFailureCount),
         Math.max(0L, totalLoadTime - other.totalLoadTime),
         Math.max(0L, evictionCount - other.evictionCount),
-        Math.max(0L, evictionWeight - other.evictionWeight));
+        Math.max(0L, evictionWeight - other.evictionWeight),
+        loadLatency.minus(other.loadLatency));
   }
 
   /**
@@ -331,13 +370,14 @@ public final class CacheStats {
         loadFailureCount + other.loadFailureCount,
         totalLoadTime + other.totalLoadTime,
         evictionCount + other.evictionCount,
-        evictionWeight + other.evictionWeight);
+        evictionWeight + other.evictionWeight,
+        loadLatency.plus(other.loadLatency));
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(hitCount, missCount, loadSuccessCount,
-        loadFailureCount, totalLoadTime, evictionCount, evictionWeight);
+        loadFailureCount, totalLoadTime, evictionCount, evictionWeight, loadLatency);
   }
 
   @Override
@@ -354,7 +394,8 @@ public final class CacheStats {
         && loadFailureCount == other.loadFailureCount
         && totalLoadTime == other.totalLoadTime
         && evictionCount == other.evictionCount
-        && evictionWeight == other.evictionWeight;
+        && evictionWeight == other.evictionWeight
+        && loadLatency.equals(other.loadLatency);
   }
 
   @Override
@@ -367,6 +408,7 @@ public final class CacheStats {
         + "totalLoadTime=" + totalLoadTime + ", "
         + "evictionCount=" + evictionCount + ", "
         + "evictionWeight=" + evictionWeight
+        + ((loadLatency.count() == 0) ? "" : ", loadLatency=" + loadLatency)
         + '}';
   }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * A thread-safe {@link StatsCounter} implementation that also records the distribution of the load
+ * times into a {@link LatencyHistogram}, so that the tail latencies are reported by
+ * {@link CacheStats#loadLatency()}. This may be enabled by using
+ * {@code Caffeine.recordStats(HistogramStatsCounter::new)}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ * @see Caffeine#recordStats(java.util.function.Supplier)
+ * @see Cache#stats()
+ */
+public final class HistogramStatsCounter implements StatsCounter {
+  private final ConcurrentStatsCounter counter;
+  private final LatencyHistogram loadLatency;
+
+  /**
+   * Constructs an instance with all counts initialized to zero.
+   */
+  public HistogramStatsCounter() {
+    counter = new ConcurrentStatsCounter();
+    loadLatency = new LatencyHistogram();
+  }
+
+  @Override
+  public void recordHits(@Nonnegative int count) {
+    counter.recordHits(count);
+  }
+
+  @Override
+  public void recordMisses(@Nonnegative int count) {
+    counter.recordMisses(count);
+  }
+
+  @Override
+  public void recordLoadSuccess(@Nonnegative long loadTime) {
+    counter.recordLoadSuccess(loadTime);
+    loadLatency.record(loadTime);
+  }
+
+  @Override
+  public void recordLoadFailure(@Nonnegative long loadTime) {
+    counter.recordLoadFailure(loadTime);
+    loadLatency.record(loadTime);
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public void recordEviction() {
+    counter.recordEviction();
+  }
+
+  @Override
+  public void recordEviction(int weight) {
+    counter.recordEviction(weight);
+  }
+
+  @Override
+  @Nonnull
+  public CacheStats snapshot() {
+    CacheStats stats = counter.snapshot();
+    return new CacheStats(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(),
+        stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount(),
+        stats.evictionWeight(), loadLatency.snapshot());
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+}
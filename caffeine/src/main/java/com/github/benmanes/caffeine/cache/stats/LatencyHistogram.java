@@ -0,0 +1,97 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A lock-free histogram of latencies, in nanoseconds, that is recorded into logarithmic buckets.
+ * Each power of two is divided into {@code 8} linear sub-buckets, so a recorded value is reported
+ * with a relative error of at most {@code 12.5%}. Recording a value does not allocate and performs
+ * a single atomic increment.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+  static final int SUB_BUCKET_BITS = 3;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray counts;
+
+  /**
+   * Constructs an instance with all counts initialized to zero.
+   */
+  public LatencyHistogram() {
+    counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Records the duration of an operation. A negative duration, such as due to a non-monotonic
+   * clock, is recorded as zero.
+   *
+   * @param nanos the number of nanoseconds that the operation took
+   */
+  public void record(long nanos) {
+    counts.incrementAndGet(indexOf(Math.max(0L, nanos)));
+  }
+
+  /**
+   * Returns a snapshot of this histogram's counts. Note that this may be an inconsistent view, as
+   * it may be interleaved with update operations.
+   *
+   * @return a snapshot of this histogram's counts
+   */
+  @Nonnull
+  public LatencyStats snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return new LatencyStats(snapshot);
+  }
+
+  /** Returns the bucket that the non-negative value is counted in. */
+  static int indexOf(@Nonnegative long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return ((exponent - SUB_BUCKET_BITS + 1) << SUB_BUCKET_BITS) + subBucket;
+  }
+
+  /** Returns the largest value that is counted in the bucket. */
+  static long highestValueOf(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = (index >>> SUB_BUCKET_BITS) + SUB_BUCKET_BITS - 1;
+    long subBucket = SUB_BUCKETS + (index & (SUB_BUCKETS - 1));
+    int shift = exponent - SUB_BUCKET_BITS;
+    return (subBucket << shift) + ((1L << shift) - 1);
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static com.github.benmanes.caffeine.cache.stats.LatencyHistogram.highestValueOf;
+
+import java.util.Arrays;
+
+import javax.annotation.Nonnegative;
+import javax.annotation.Nonnull;
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * A snapshot of a {@link LatencyHistogram} that reports the distribution of the recorded
+ * latencies. A percentile is reported as the largest value that is equivalent, within the
+ * histogram's precision, to the recorded value at that rank.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class LatencyStats {
+  private static final LatencyStats EMPTY_STATS = new LatencyStats(new long[0]);
+
+  private final long[] counts;
+  private final long count;
+
+  LatencyStats(long[] counts) {
+    this.count = Arrays.stream(counts).sum();
+    this.counts = counts;
+  }
+
+  /**
+   * Returns a statistics instance where no latencies have been recorded.
+   *
+   * @return an empty statistics instance
+   */
+  @Nonnull
+  public static LatencyStats empty() {
+    return EMPTY_STATS;
+  }
+
+  /**
+   * Returns the number of latencies that were recorded.
+   *
+   * @return the number of latencies that were recorded
+   */
+  @Nonnegative
+  public long count() {
+    return count;
+  }
+
+  /**
+   * Returns the latency, in nanoseconds, at or below which the {@code percentile} of the recorded
+   * latencies fall, or {@code 0} if no latencies were recorded.
+   *
+   * @param percentile the fraction of recorded latencies, in the range {@code [0.0, 1.0]}
+   * @return the latency at the given percentile
+   * @throws IllegalArgumentException if {@code percentile} is not in the range {@code [0.0, 1.0]}
+   */
+  @Nonnegative
+  public long percentile(double percentile) {
+    if (!((percentile >= 0.0) && (percentile <= 1.0))) {
+      throw new IllegalArgumentException("percentile must be in [0.0, 1.0]: " + percentile);
+    }
+    if (count == 0) {
+      return 0L;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(percentile * count));
+    long seen = 0L;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return highestValueOf(i);
+      }
+    }
+    throw new AssertionError();
+  }
+
+  /**
+   * Returns the median latency, in nanoseconds.
+   *
+   * @return the 50th percentile latency
+   */
+  @Nonnegative
+  public long p50() {
+    return percentile(0.50);
+  }
+
+  /**
+   * Returns the 99th percentile latency, in nanoseconds.
+   *
+   * @return the 99th percentile latency
+   */
+  @Nonnegative
+  public long p99() {
+    return percentile(0.99);
+  }
+
+  /**
+   * Returns the 99.9th percentile latency, in nanoseconds.
+   *
+   * @return the 99.9th percentile latency
+   */
+  @Nonnegative
+  public long p999() {
+    return percentile(0.999);
+  }
+
+  /**
+   * Returns a new {@code LatencyStats} representing the difference between this
+   * {@code LatencyStats} and {@code other}. Negative counts will be rounded up to zero.
+   *
+   * @param other the statistics to subtract with
+   * @return the difference between this instance and {@code other}
+   */
+  @Nonnull
+  public LatencyStats minus(@Nonnull LatencyStats other) {
+    long[] result = Arrays.copyOf(counts, counts.length);
+    for (int i = 0; i < Math.min(result.length, other.counts.length); i++) {
+      result[i] = Math.max(0L, result[i] - other.counts[i]);
+    }
+    return new LatencyStats(result);
+  }
+
+  /**
+   * Returns a new {@code LatencyStats} representing the sum of this {@code LatencyStats} and
+   * {@code other}.
+   *
+   * @param other the statistics to add with
+   * @return the sum of the statistics
+   */
+  @Nonnull
+  public LatencyStats plus(@Nonnull LatencyStats other) {
+    long[] result = Arrays.copyOf(counts, Math.max(counts.length, other.counts.length));
+    for (int i = 0; i < other.counts.length; i++) {
+      result[i] += other.counts[i];
+    }
+    return new LatencyStats(result);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(trimmed());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof LatencyStats)) {
+      return false;
+    }
+    LatencyStats other = (LatencyStats) o;
+    return (count == other.count) && Arrays.equals(trimmed(), other.trimmed());
+  }
+
+  /** Returns the counts without the trailing empty buckets. */
+  private long[] trimmed() {
+    int length = counts.length;
+    while ((length > 0) && (counts[length - 1] == 0)) {
+      length--;
+    }
+    return (length == counts.length) ? counts : Arrays.copyOf(counts, length);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + '{'
+        + "count=" + count + ", "
+        + "p50=" + p50() + ", "
+        + "p99=" + p99() + ", "
+        + "p999=" + p999()
+        + '}';
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.testing.IsFutureValue.futureOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.testing.SerializableTester;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * The tests for a manually populated {@link AsyncCache}. The behavior shared with the
+ * {@link AsyncLoadingCache} is covered by {@link AsyncLoadingCacheTest}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class AsyncCacheTest {
+
+  @Test(dataProvider = "caches")
+  public void getIfPresent_absent(AsyncCache<Integer, Integer> cache) {
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+    assertThat(cache.synchronous().stats().missCount(), is(1L));
+  }
+
+  @Test(dataProvider = "caches")
+  public void get_absent(AsyncCache<Integer, Integer> cache) {
+    assertThat(cache.get(1, key -> -key), is(futureOf(-1)));
+    assertThat(cache.get(1, key -> key), is(futureOf(-1)));
+    assertThat(cache.synchronous().getIfPresent(1), is(-1));
+  }
+
+  @Test(dataProvider = "caches")
+  public void get_failure(AsyncCache<Integer, Integer> cache) {
+    CompletableFuture<Integer> failed = new CompletableFuture<>();
+    failed.completeExceptionally(new IllegalStateException());
+    cache.get(1, (key, executor) -> failed);
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+    assertThat(cache.synchronous().stats().loadFailureCount(), is(1L));
+  }
+
+  @Test(dataProvider = "caches")
+  public void put(AsyncCache<Integer, Integer> cache) {
+    CompletableFuture<Integer> future = CompletableFuture.completedFuture(2);
+    cache.put(1, future);
+    assertThat(cache.getIfPresent(1), is(sameInstance(future)));
+    assertThat(cache.synchronous().asMap().get(1), is(2));
+  }
+
+  @Test(dataProvider = "caches")
+  public void synchronous(AsyncCache<Integer, Integer> cache) {
+    Cache<Integer, Integer> view = cache.synchronous();
+    assertThat(view, is(sameInstance(cache.synchronous())));
+
+    view.put(1, 2);
+    assertThat(cache.getIfPresent(1), is(futureOf(2)));
+    assertThat(view.get(3, key -> -key), is(-3));
+
+    view.invalidateAll();
+    assertThat(view.estimatedSize(), is(0L));
+  }
+
+  @Test(dataProvider = "caches")
+  public void serialize(AsyncCache<Integer, Integer> cache) {
+    cache.put(1, CompletableFuture.completedFuture(2));
+    AsyncCache<Integer, Integer> copy = SerializableTester.reserialize(cache);
+    assertThat(copy.getIfPresent(1), is(nullValue()));
+    assertThat(copy.getClass(), is(sameInstance(cache.getClass())));
+    assertThat(copy.synchronous().policy().isRecordingStats(), is(true));
+  }
+
+  @DataProvider(name = "caches")
+  public Object[][] providesCaches() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .executor(MoreExecutors.directExecutor())
+        .recordStats();
+    return new Object[][] {
+      { builder.buildAsync() },
+      { builder.maximumSize(100).buildAsync() },
+    };
+  }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * The tests cases for the {@link BatchedBuffer}.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class BatchedBufferTest {
+  static final String DUMMY = "test";
+
+  @DataProvider
+  public Object[][] buffer() {
+    return new Object[][] {{ new BatchedBuffer<String>() }};
+  }
+
+  @Test(dataProvider = "buffer")
+  public void offer(BatchedBuffer<String> buffer) {
+    ConcurrentTestHarness.timeTasks(10, () -> {
+      for (int i = 0; i < 100; i++) {
+        buffer.offer(DUMMY);
+      }
+    });
+    assertThat(buffer.writes(), is(greaterThan(0)));
+    assertThat(buffer.writes() % BatchedBuffer.BATCH_SIZE, is(0));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void offer_batched(BatchedBuffer<String> buffer) {
+    for (int i = 1; i < BatchedBuffer.BATCH_SIZE; i++) {
+      assertThat(buffer.offer(DUMMY), is(Buffer.SUCCESS));
+    }
+    assertThat(buffer.writes(), is(0));
+
+    assertThat(buffer.offer(DUMMY), is(Buffer.SUCCESS));
+    assertThat(buffer.writes(), is(BatchedBuffer.BATCH_SIZE));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void offer_full(BatchedBuffer<String> buffer) {
+    for (int i = 0; i < BatchedBuffer.RING_SIZE; i++) {
+      assertThat(buffer.offer(DUMMY), is(Buffer.SUCCESS));
+    }
+    for (int i = 1; i < BatchedBuffer.BATCH_SIZE; i++) {
+      assertThat(buffer.offer(DUMMY), is(Buffer.SUCCESS));
+    }
+    assertThat(buffer.offer(DUMMY), is(Buffer.FULL));
+    assertThat(buffer.offer(DUMMY), is(Buffer.FULL));
+
+    int[] read = new int[1];
+    buffer.drainTo(e -> read[0]++);
+    assertThat(read[0], is(BatchedBuffer.RING_SIZE + BatchedBuffer.BATCH_SIZE));
+    assertThat(buffer.offer(DUMMY), is(Buffer.SUCCESS));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void drain(BatchedBuffer<String> buffer) {
+    List<String> elements = new ArrayList<>();
+    for (int i = 0; i < BatchedBuffer.RING_SIZE; i++) {
+      String e = Integer.toString(i);
+      elements.add(e);
+      buffer.offer(e);
+    }
+    List<String> drained = new ArrayList<>();
+    buffer.drainTo(drained::add);
+    assertThat(drained, is(elements));
+    assertThat(drained.size(), is(buffer.reads()));
+    assertThat(drained.size(), is(buffer.writes()));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void drain_partialBatch(BatchedBuffer<String> buffer) {
+    buffer.offer(DUMMY);
+    int[] read = new int[1];
+    buffer.drainTo(e -> read[0]++);
+    assertThat(read[0], is(1));
+    assertThat(buffer.reads(), is(1));
+    assertThat(buffer.writes(), is(1));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void drain_otherThread(BatchedBuffer<String> buffer) {
+    ConcurrentTestHarness.timeTasks(1, () -> {
+      for (int i = 0; i < 3; i++) {
+        buffer.offer(DUMMY);
+      }
+    });
+    int[] read = new int[1];
+    buffer.drainTo(e -> read[0]++);
+    assertThat(read[0], is(3));
+    for (BatchedBuffer.Batch<String> batch : buffer.batches) {
+      assertThat(batch.size, is(0));
+    }
+  }
+
+  @Test(dataProvider = "buffer")
+  public void offer_contended(BatchedBuffer<String> buffer) {
+    buffer.offer(DUMMY);
+    BatchedBuffer.Batch<String> batch =
+        buffer.batches[StripedBuffer.getProbe() & BatchedBuffer.BATCHES_MASK];
+    assertThat(batch.tryLock(), is(true));
+    assertThat(buffer.offer(DUMMY), is(Buffer.FAILED));
+    batch.unlock();
+
+    int[] read = new int[1];
+    buffer.drainTo(e -> read[0]++);
+    assertThat(read[0], is(1));
+  }
+
+  @Test(dataProvider = "buffer")
+  public void offerAndDrain(BatchedBuffer<String> buffer) {
+    Lock lock = new ReentrantLock();
+    AtomicInteger reads = new AtomicInteger();
+    ConcurrentTestHarness.timeTasks(10, () -> {
+      for (int i = 0; i < 1000; i++) {
+        boolean shouldDrain = (buffer.offer(DUMMY) == Buffer.FULL);
+        if (shouldDrain && lock.tryLock()) {
+          buffer.drainTo(e -> reads.incrementAndGet());
+          lock.unlock();
+        }
+        Thread.yield();
+      }
+    });
+    buffer.drainTo(e -> reads.incrementAndGet());
+    assertThat(reads.intValue(), is(buffer.reads()));
+    assertThat(reads.intValue(), is(buffer.writes()));
+  }
+}
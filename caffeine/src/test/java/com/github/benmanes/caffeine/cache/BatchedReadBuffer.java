@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * An adapter that exposes the cache's {@link BatchedBuffer} as a read buffer strategy.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class BatchedReadBuffer<E> extends ReadBuffer<E> {
+  final BatchedBuffer<E> buffer = new BatchedBuffer<>();
+
+  @Override
+  public int offer(E e) {
+    return buffer.offer(e);
+  }
+
+  @Override
+  public void drainTo(Consumer<E> consumer) {
+    buffer.drainTo(consumer);
+  }
+
+  @Override
+  public int reads() {
+    return buffer.reads();
+  }
+
+  @Override
+  public int writes() {
+    return buffer.writes();
+  }
+
+  @Override
+  public int capacity() {
+    return BatchedBuffer.RING_SIZE;
+  }
+}
@@ -24,18 +24,25 @@ import static com.github.benmanes.caffeine.cache.testing.HasStats.hasEvictionCou
 import static com.github.benmanes.caffeine.testing.Awaits.await;
 import static java.util.Arrays.asList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
@@ -67,7 +74,10 @@ import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.testing.FakeTicker;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yahoo.ycsb.generator.NumberGenerator;
+import com.yahoo.ycsb.generator.ScrambledZipfianGenerator;
 
 /**
  * The test cases for the implementation details of {@link BoundedLocalCache}.
@@ -133,6 +143,142 @@ public final class BoundedLocalCacheTest {
     cache.put(context.absentKey(), context.absentValue());
   }
 
+  @Test
+  public void climb_increaseEden() {
+    BoundedLocalCache<Integer, Integer> cache = newClimbingCache();
+    long edenMaximum = cache.edenMaximum();
+    long mainProtectedMaximum = cache.mainProtectedMaximum();
+    int edenSize = cache.accessOrderEdenDeque().size();
+
+    cache.evictionLock.lock();
+    try {
+      cache.setAdjustment(10);
+      cache.climb();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+
+    assertThat(cache.adjustment(), is(0L));
+    assertThat(cache.edenMaximum(), is(edenMaximum + 10));
+    assertThat(cache.mainProtectedMaximum(), is(mainProtectedMaximum - 10));
+    assertThat(cache.accessOrderEdenDeque().size(), is(edenSize + 10));
+    assertThat(cache.edenWeightedSize(), is((long) cache.accessOrderEdenDeque().size()));
+  }
+
+  @Test
+  public void climb_decreaseEden() {
+    BoundedLocalCache<Integer, Integer> cache = newClimbingCache();
+    cache.evictionLock.lock();
+    try {
+      cache.setAdjustment(10);
+      cache.climb();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+    long edenMaximum = cache.edenMaximum();
+    long mainProtectedMaximum = cache.mainProtectedMaximum();
+    int edenSize = cache.accessOrderEdenDeque().size();
+
+    cache.evictionLock.lock();
+    try {
+      cache.setAdjustment(-5);
+      cache.climb();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+
+    assertThat(cache.adjustment(), is(0L));
+    assertThat(cache.edenMaximum(), is(edenMaximum - 5));
+    assertThat(cache.mainProtectedMaximum(), is(mainProtectedMaximum + 5));
+    assertThat(cache.accessOrderEdenDeque().size(), is(edenSize - 5));
+    assertThat(cache.edenWeightedSize(), is((long) cache.accessOrderEdenDeque().size()));
+  }
+
+  @Test
+  public void climb_determineAdjustment() {
+    BoundedLocalCache<Integer, Integer> cache = newClimbingCache();
+    int sampleSize = cache.frequencySketch().sampleSize;
+    double stepSize = cache.stepSize();
+
+    cache.evictionLock.lock();
+    try {
+      cache.setHitsInSample(sampleSize / 2);
+      cache.setMissesInSample(sampleSize / 2);
+      cache.determineAdjustment();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+
+    assertThat(cache.hitsInSample(), is(0));
+    assertThat(cache.missesInSample(), is(0));
+    assertThat(cache.previousSampleHitRate(), is(0.5));
+    assertThat(cache.adjustment(), is((long) stepSize));
+    assertThat(cache.stepSize(), is(BoundedLocalCache.HILL_CLIMBER_STEP_PERCENT
+        * cache.maximum() * Math.signum(stepSize)));
+  }
+
+  @Test
+  public void climb_notInitialized() {
+    BoundedLocalCache<Integer, Integer> cache = asBoundedLocalCache(Caffeine.newBuilder()
+        .executor(CacheExecutor.DIRECT.create())
+        .maximumSize(1_000)
+        .build());
+    long edenMaximum = cache.edenMaximum();
+
+    cache.evictionLock.lock();
+    try {
+      cache.setHitsInSample(Integer.MAX_VALUE);
+      cache.climb();
+    } finally {
+      cache.evictionLock.unlock();
+    }
+
+    assertThat(cache.hitsInSample(), is(0));
+    assertThat(cache.edenMaximum(), is(edenMaximum));
+  }
+
+  @Test
+  public void scheduleCleanUp_expiration() {
+    List<Long> delays = new ArrayList<>();
+    FakeTicker ticker = new FakeTicker();
+    BoundedLocalCache<Integer, Integer> cache = asBoundedLocalCache(Caffeine.newBuilder()
+        .scheduler((executor, task, delay, unit) -> {
+          delays.add(unit.toNanos(delay));
+          return DisabledFuture.INSTANCE;
+        })
+        .executor(CacheExecutor.DIRECT.create())
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .ticker(ticker::read)
+        .build());
+
+    cache.put(1, 1);
+    ticker.advance(30, TimeUnit.SECONDS);
+    cache.put(2, 2);
+    assertThat(delays, is(ImmutableList.of(TimeUnit.MINUTES.toNanos(1))));
+
+    ticker.advance(1, TimeUnit.MINUTES);
+    cache.cleanUp();
+    assertThat(cache.size(), is(0));
+    assertThat(cache.pacer().future, is(nullValue()));
+  }
+
+  /** Returns a full cache whose main space holds the majority of the entries. */
+  private static BoundedLocalCache<Integer, Integer> newClimbingCache() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(CacheExecutor.DIRECT.create())
+        .maximumSize(1_000)
+        .build();
+    for (int i = 0; i < 1_000; i++) {
+      cache.put(i, -i);
+    }
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(cache);
+    for (int i = 0; i < 1_000; i += 2) {
+      cache.getIfPresent(i);
+    }
+    localCache.cleanUp();
+    return localCache;
+  }
+
   @Test
   public void putWeighted_noOverflow() {
     Cache<Integer, Integer> cache = Caffeine.newBuilder()
@@ -563,6 +709,292 @@ public final class BoundedLocalCacheTest {
         policy -> policy.setMaximum(0L)));
   }
 
+  @Test
+  public void diagnostics_disabled() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder().maximumSize(10).build();
+    assertThat(cache.policy().diagnostics().isPresent(), is(false));
+  }
+
+  @Test
+  public void diagnostics_readBufferDrop() {
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(Caffeine.newBuilder()
+        .executor(Runnable::run).maximumSize(10).recordDiagnostics().build());
+    Node<Integer, Integer> dummy = localCache.nodeFactory.newNode(
+        new WeakKeyReference<>(null, null), null, null, 1, 0);
+    localCache.frequencySketch().ensureCapacity(1);
+
+    Buffer<Node<Integer, Integer>> buffer = localCache.readBuffer;
+    for (int i = 0; i < BoundedBuffer.BUFFER_SIZE; i++) {
+      buffer.offer(dummy);
+    }
+    localCache.afterRead(dummy, 0, /* recordHit */ false);
+    assertThat(localCache.diagnostics.readBufferDropCount(), is(1L));
+  }
+
+  @Test
+  public void diagnostics_writeBuffer() {
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(Caffeine.newBuilder()
+        .executor(Runnable::run).maximumSize(10).recordDiagnostics().build());
+    localCache.drainStatus = PROCESSING_TO_IDLE;
+    while (localCache.writeBuffer().offer(() -> {})) {}
+
+    localCache.afterWrite(() -> {});
+    Policy.Diagnostics diagnostics = localCache.diagnostics;
+    assertThat(diagnostics.writeBufferRetryCount(),
+        is((long) BoundedLocalCache.WRITE_BUFFER_RETRIES));
+    assertThat(diagnostics.writeBufferExhaustedCount(), is(1L));
+    assertThat(diagnostics.maintenanceCount(), is(1L));
+    assertThat(diagnostics.maximumMaintenanceTime(),
+        is(lessThanOrEqualTo(diagnostics.totalMaintenanceTime())));
+  }
+
+  @Test
+  public void doorkeeper_scan() {
+    int[] trace = new int[200_000];
+    NumberGenerator generator = new ScrambledZipfianGenerator(10_000);
+    for (int i = 0; i < trace.length; i++) {
+      trace[i] = generator.nextValue().intValue();
+    }
+    double expected = scanHitRate(Caffeine.newBuilder(), trace);
+    double actual = scanHitRate(Caffeine.newBuilder().doorkeeper(), trace);
+    assertThat(actual, is(closeTo(expected, 0.01)));
+  }
+
+  /** Returns the hit rate of a Zipf-distributed workload that is interrupted by scans. */
+  private static double scanHitRate(Caffeine<Object, Object> builder, int[] trace) {
+    Cache<Integer, Integer> cache = builder
+        .executor(Runnable::run)
+        .maximumSize(500)
+        .recordStats()
+        .build();
+    int scanKey = -1;
+    for (int i = 0; i < trace.length; i++) {
+      if ((i % 1_000) == 0) {
+        for (int j = 0; j < 1_000; j++) {
+          cache.get(scanKey--, key -> key);
+        }
+      }
+      cache.get(trace[i], key -> key);
+    }
+    return cache.stats().hitRate();
+  }
+
+  @Test
+  public void weightedAdmission_disabled() {
+    Cache<Integer, Integer> cache = heavyCandidate(Caffeine.newBuilder());
+    assertThat(cache.getIfPresent(1_000), is(50));
+    assertThat(cache.estimatedSize(), is(lessThanOrEqualTo(51L)));
+  }
+
+  @Test
+  public void weightedAdmission_rejectsHeavyCandidate() {
+    Cache<Integer, Integer> cache = heavyCandidate(Caffeine.newBuilder().weightedAdmission());
+    assertThat(cache.getIfPresent(1_000), is(nullValue()));
+    assertThat(cache.estimatedSize(), is(100L));
+  }
+
+  /**
+   * Returns a cache filled with light entries that are each used less frequently than a heavy
+   * candidate, but more frequently when combined, after the candidate was inserted.
+   */
+  private static Cache<Integer, Integer> heavyCandidate(Caffeine<Object, Object> builder) {
+    Cache<Integer, Integer> cache = builder
+        .weigher((Integer key, Integer value) -> value)
+        .executor(Runnable::run)
+        .maximumWeight(100)
+        .build();
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(cache);
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, 1);
+    }
+    for (int i = 0; i < 100; i++) {
+      localCache.frequencySketch().increment(i);
+      localCache.frequencySketch().increment(i);
+    }
+    for (int i = 0; i < 10; i++) {
+      localCache.frequencySketch().increment(1_000);
+    }
+    cache.put(1_000, 50);
+    return cache;
+  }
+
+  /* ---------------- maintenance -------------- */
+
+  @Test
+  public void maintenance_boundedEviction() {
+    int size = 2 * BoundedLocalCache.MAINTENANCE_WORK_MAX;
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(size)
+        .build();
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(cache);
+    for (int i = 0; i < size; i++) {
+      cache.put(i, i);
+    }
+
+    localCache.evictionLock.lock();
+    try {
+      localCache.setMaximum(0);
+      localCache.maintenance(/* ignored */ null);
+    } finally {
+      localCache.evictionLock.unlock();
+    }
+    assertThat(cache.estimatedSize(), is(greaterThan(0L)));
+    assertThat(localCache.drainStatus, is(REQUIRED));
+
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is(0L));
+    assertThat(localCache.drainStatus, is(IDLE));
+  }
+
+  @Test
+  public void maintenance_skipsZeroWeightVictims() {
+    int pinned = 2 * BoundedLocalCache.MAINTENANCE_WORK_MAX;
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .weigher((Integer key, Integer value) -> value)
+        .maximumWeight(2 * pinned)
+        .executor(Runnable::run)
+        .build();
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(cache);
+    cache.put(-1, 1);
+    for (int i = 0; i < pinned; i++) {
+      cache.put(i, 1);
+    }
+
+    // Reweighing promotes the pinned entries to the protected queue ahead of the weighted entry
+    for (int i = 0; i < pinned; i++) {
+      cache.put(i, 0);
+    }
+    assertThat(cache.getIfPresent(-1), is(1));
+    cache.cleanUp();
+
+    localCache.evictionLock.lock();
+    try {
+      localCache.setMaximum(0);
+      localCache.maintenance(/* ignored */ null);
+    } finally {
+      localCache.evictionLock.unlock();
+    }
+    assertThat(localCache.drainStatus, is(IDLE));
+    assertThat(cache.getIfPresent(-1), is(nullValue()));
+    assertThat(cache.estimatedSize(), is((long) pinned));
+
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is((long) pinned));
+  }
+
+  @Test
+  public void maintenance_isolatedFromExecutor() {
+    Executor starved = task -> {};
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maintenanceExecutor(Runnable::run)
+        .executor(starved)
+        .maximumSize(10)
+        .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    assertThat(cache.estimatedSize(), is(10L));
+  }
+
+  @Test
+  public void maintenance_boundedExpiration() {
+    FakeTicker ticker = new FakeTicker();
+    int size = 2 * BoundedLocalCache.MAINTENANCE_WORK_MAX;
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build();
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(cache);
+    for (int i = 0; i < size; i++) {
+      cache.put(i, i);
+    }
+
+    ticker.advance(2, TimeUnit.MINUTES);
+    localCache.performCleanUp(/* ignored */ null);
+    assertThat(cache.estimatedSize(), is((long) size - BoundedLocalCache.MAINTENANCE_WORK_MAX));
+    assertThat(localCache.drainStatus, is(REQUIRED));
+
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is(0L));
+    assertThat(localCache.drainStatus, is(IDLE));
+  }
+
+  @Test
+  public void batchRemovalListener_evictions() {
+    List<List<RemovalNotification<Integer, Integer>>> batches = new ArrayList<>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .removalListener((BatchRemovalListener<Integer, Integer>) batches::add)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+    assertThat(batches, is(ImmutableList.of()));
+
+    cache.policy().eviction().get().setMaximum(0);
+    assertThat(batches.size(), is(1));
+    assertThat(batches.get(0).size(), is(10));
+    for (RemovalNotification<Integer, Integer> notification : batches.get(0)) {
+      assertThat(notification.getCause(), is(RemovalCause.SIZE));
+      assertThat(notification.getValue(), is(notification.getKey()));
+    }
+  }
+
+  @Test
+  public void batchRemovalListener_explicit() {
+    List<List<RemovalNotification<Integer, Integer>>> batches = new ArrayList<>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .removalListener((BatchRemovalListener<Integer, Integer>) batches::add)
+        .executor(Runnable::run)
+        .maximumSize(10)
+        .build();
+    cache.put(1, 2);
+    cache.invalidate(1);
+
+    assertThat(batches.size(), is(1));
+    assertThat(batches.get(0), is(ImmutableList.of(
+        new RemovalNotification<>(1, 2, RemovalCause.EXPLICIT))));
+  }
+
+  @Test
+  public void diagnostics_admission() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .executor(Runnable::run).maximumSize(10).recordDiagnostics().build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    Policy.Diagnostics diagnostics = cache.policy().diagnostics().get();
+    assertThat(diagnostics.admissionAcceptCount() + diagnostics.admissionRejectCount(),
+        is(greaterThan(0L)));
+    assertThat(diagnostics.maintenanceCount(), is(greaterThan(0L)));
+    assertThat(diagnostics.readBufferDropCount(), is(0L));
+    assertThat(diagnostics, hasToString(containsString("admissionAcceptCount")));
+  }
+
+  @Test
+  public void diagnostics_hashFloodProtection() {
+    BoundedLocalCache<Integer, Integer> localCache = asBoundedLocalCache(Caffeine.newBuilder()
+        .executor(Runnable::run).maximumSize(10).recordDiagnostics().build());
+    localCache.frequencySketch().ensureCapacity(10);
+    for (int i = 0; i < 15; i++) {
+      localCache.frequencySketch().increment(1);
+      if (i < 6) {
+        localCache.frequencySketch().increment(2);
+      }
+    }
+    int admitted = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (localCache.admit(2, 1)) {
+        admitted++;
+      }
+    }
+    assertThat(admitted, is(greaterThan(0)));
+    assertThat(localCache.diagnostics.hashFloodProtectionCount(), is((long) admitted));
+  }
+
   void checkDrainBlocks(BoundedLocalCache<Integer, Integer> localCache, Runnable task) {
     AtomicBoolean done = new AtomicBoolean();
     ReentrantLock lock = localCache.evictionLock;
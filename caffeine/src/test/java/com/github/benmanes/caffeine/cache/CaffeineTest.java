@@ -16,12 +16,14 @@
 package com.github.benmanes.caffeine.cache;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.Mockito.verify;
 
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 
@@ -35,6 +37,7 @@ import com.github.benmanes.caffeine.cache.Policy.Eviction;
 import com.github.benmanes.caffeine.cache.Policy.Expiration;
 import com.github.benmanes.caffeine.cache.stats.StatsCounter;
 import com.google.common.testing.FakeTicker;
+import com.google.common.testing.SerializableTester;
 import com.google.common.util.concurrent.MoreExecutors;
 
 /**
@@ -45,6 +48,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 public final class CaffeineTest {
   @Mock StatsCounter statsCounter;
   @Mock Expiry<Object, Object> expiry;
+  @Mock Refresher<Object, Object> refresher;
   @Mock CacheLoader<Object, Object> loader;
   @Mock CacheWriter<Object, Object> writer;
 
@@ -57,6 +61,7 @@ public final class CaffeineTest {
   public void unconfigured() {
     assertThat(Caffeine.newBuilder().build(), is(not(nullValue())));
     assertThat(Caffeine.newBuilder().build(loader), is(not(nullValue())));
+    assertThat(Caffeine.newBuilder().buildAsync(), is(not(nullValue())));
     assertThat(Caffeine.newBuilder().buildAsync(loader), is(not(nullValue())));
     assertThat(Caffeine.newBuilder().toString(), is(Caffeine.newBuilder().toString()));
   }
@@ -149,6 +154,65 @@ public final class CaffeineTest {
     Caffeine.newBuilder().writer(writer).buildAsync(loader);
   }
 
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void asyncManual_weakValues() {
+    Caffeine.newBuilder().weakValues().buildAsync();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void asyncManual_softValues() {
+    Caffeine.newBuilder().softValues().buildAsync();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void asyncManual_writer() {
+    Caffeine.newBuilder().writer(writer).buildAsync();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void asyncManual_refreshAfterWrite() {
+    Caffeine.newBuilder().refreshAfterWrite(1, TimeUnit.SECONDS).buildAsync();
+  }
+
+  /* ---------------- buildLong -------------- */
+
+  @Test
+  public void buildLong() {
+    LongCache<Object> cache = Caffeine.newBuilder().maximumSize(1).recordStats().buildLong();
+    assertThat(cache, is(not(nullValue())));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_unbounded() {
+    Caffeine.newBuilder().buildLong();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_weigher() {
+    // the spec allows the weigher to be combined with maximumSize, so only buildLong rejects it
+    Caffeine.from("maximumSize=1").weigher((k, v) -> 1).buildLong();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_expireAfterAccess() {
+    Caffeine.newBuilder().maximumSize(1).expireAfterAccess(1, TimeUnit.SECONDS).buildLong();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_weakValues() {
+    Caffeine.newBuilder().maximumSize(1).weakValues().buildLong();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_removalListener() {
+    Caffeine.newBuilder().maximumSize(1).removalListener((k, v, c) -> {}).buildLong();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildLong_refreshAfterWrite() {
+    Caffeine.newBuilder().maximumSize(1).refreshAfterWrite(1, TimeUnit.SECONDS).buildLong();
+  }
+
   /* ---------------- initialCapacity -------------- */
 
   @Test(expectedExceptions = IllegalArgumentException.class)
@@ -415,6 +479,52 @@ public final class CaffeineTest {
     builder.build(k -> k);
   }
 
+  /* ---------------- refresher -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void refreshAfter_null() {
+    Caffeine.newBuilder().refreshAfter(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshAfter_twice() {
+    Caffeine.newBuilder().refreshAfter(refresher).refreshAfter(refresher);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshAfter_refreshAfterWrite() {
+    Caffeine.newBuilder().refreshAfterWrite(1, TimeUnit.MILLISECONDS).refreshAfter(refresher);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshAfterWrite_refresher() {
+    Caffeine.newBuilder().refreshAfter(refresher).refreshAfterWrite(1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshAfter_expireAfterWrite() {
+    Caffeine.newBuilder().expireAfterWrite(1, TimeUnit.MILLISECONDS).refreshAfter(refresher);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void expireAfterWrite_refresher() {
+    Caffeine.newBuilder().refreshAfter(refresher).expireAfterWrite(1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void refreshAfter_noCacheLoader() {
+    Caffeine.newBuilder().refreshAfter(refresher).build();
+  }
+
+  @Test
+  public void refreshAfter() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().refreshAfter(refresher);
+    assertThat(builder.refresher, is(refresher));
+    assertThat(builder.getRefreshAfterWriteNanos(), is(0L));
+    builder.build(loader);
+    builder.buildAsync(loader);
+  }
+
   /* ---------------- weakKeys -------------- */
 
   @Test(expectedExceptions = IllegalStateException.class)
@@ -476,6 +586,236 @@ public final class CaffeineTest {
     builder.build();
   }
 
+  @Test
+  public void executor_isolated() {
+    Executor loaderExecutor = task -> {};
+    Executor listenerExecutor = task -> {};
+    Executor maintenanceExecutor = MoreExecutors.directExecutor();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .maintenanceExecutor(maintenanceExecutor)
+        .listenerExecutor(listenerExecutor)
+        .loaderExecutor(loaderExecutor);
+    assertThat(builder.getMaintenanceExecutor(), is(maintenanceExecutor));
+    assertThat(builder.getListenerExecutor(), is(listenerExecutor));
+    assertThat(builder.getLoaderExecutor(), is(loaderExecutor));
+
+    Cache<Object, Object> cache = builder.maximumSize(10).build();
+    BoundedLocalCache<?, ?> localCache = boundedLocalCache(cache);
+    assertThat(localCache.maintenanceExecutor, is(maintenanceExecutor));
+    assertThat(localCache.listenerExecutor, is(listenerExecutor));
+    assertThat(localCache.executor(), is(loaderExecutor));
+  }
+
+  /* ---------------- maintenanceExecutor -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void maintenanceExecutor_null() {
+    Caffeine.newBuilder().maintenanceExecutor(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void maintenanceExecutor_twice() {
+    Caffeine.newBuilder().maintenanceExecutor(MoreExecutors.directExecutor())
+        .maintenanceExecutor(MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void maintenanceExecutor_default() {
+    Caffeine<?, ?> builder = Caffeine.newBuilder().executor(MoreExecutors.directExecutor());
+    assertThat(builder.getMaintenanceExecutor(), is(MoreExecutors.directExecutor()));
+  }
+
+  /* ---------------- loaderExecutor -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void loaderExecutor_null() {
+    Caffeine.newBuilder().loaderExecutor(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void loaderExecutor_twice() {
+    Caffeine.newBuilder().loaderExecutor(MoreExecutors.directExecutor())
+        .loaderExecutor(MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void loaderExecutor_default() {
+    Caffeine<?, ?> builder = Caffeine.newBuilder().executor(MoreExecutors.directExecutor());
+    assertThat(builder.getLoaderExecutor(), is(MoreExecutors.directExecutor()));
+  }
+
+  /* ---------------- threadPerLoad -------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void threadPerLoad_twice() {
+    Caffeine.newBuilder().threadPerLoad().threadPerLoad();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void threadPerLoad_loaderExecutor() {
+    Caffeine.newBuilder().loaderExecutor(MoreExecutors.directExecutor()).threadPerLoad();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void loaderExecutor_threadPerLoad() {
+    Caffeine.newBuilder().threadPerLoad().loaderExecutor(MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void threadPerLoad() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .executor(MoreExecutors.directExecutor())
+        .threadPerLoad();
+    assertThat(builder.getLoaderExecutor(), is(ElasticExecutor.instance()));
+    assertThat(builder.getMaintenanceExecutor(), is(MoreExecutors.directExecutor()));
+    assertThat(builder.getListenerExecutor(), is(MoreExecutors.directExecutor()));
+
+    AsyncLoadingCache<Object, Object> cache = builder.buildAsync(key -> Thread.currentThread());
+    assertThat(cache.synchronous().get(1), is(not(Thread.currentThread())));
+  }
+
+  /* ---------------- listenerExecutor -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void listenerExecutor_null() {
+    Caffeine.newBuilder().listenerExecutor(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void listenerExecutor_twice() {
+    Caffeine.newBuilder().listenerExecutor(MoreExecutors.directExecutor())
+        .listenerExecutor(MoreExecutors.directExecutor());
+  }
+
+  @Test
+  public void listenerExecutor_default() {
+    Caffeine<?, ?> builder = Caffeine.newBuilder().executor(MoreExecutors.directExecutor());
+    assertThat(builder.getListenerExecutor(), is(MoreExecutors.directExecutor()));
+  }
+
+  /* ---------------- coalesceRefreshes -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void coalesceRefreshes_nullTimeUnit() {
+    Caffeine.newBuilder().coalesceRefreshes(0, null);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void coalesceRefreshes_negative() {
+    Caffeine.newBuilder().coalesceRefreshes(-1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceRefreshes_twice() {
+    Caffeine.newBuilder().coalesceRefreshes(1, TimeUnit.MILLISECONDS)
+        .coalesceRefreshes(1, TimeUnit.MILLISECONDS);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceRefreshes_noRefresh() {
+    Caffeine.newBuilder().coalesceRefreshes(1, TimeUnit.MILLISECONDS).build(loader);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceRefreshes_noCacheLoader() {
+    Caffeine.newBuilder().coalesceRefreshes(1, TimeUnit.MILLISECONDS).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceRefreshes_noBulkLoader() {
+    CacheLoader<Object, Object> singleLoader = key -> key;
+    Caffeine.newBuilder().refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(1, TimeUnit.MILLISECONDS).build(singleLoader);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceRefreshes_noBulkLoader_async() {
+    CacheLoader<Object, Object> singleLoader = key -> key;
+    Caffeine.newBuilder().refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(1, TimeUnit.MILLISECONDS).buildAsync(singleLoader);
+  }
+
+  @Test
+  public void coalesceRefreshes() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(1, TimeUnit.MILLISECONDS);
+    assertThat(builder.getCoalesceRefreshNanos(), is(TimeUnit.MILLISECONDS.toNanos(1)));
+    builder.build(new RefreshBatcherTest.BulkLoader());
+    builder.buildAsync(new RefreshBatcherTest.BulkLoader());
+  }
+
+  /* ---------------- coalesceLoads -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void coalesceLoads_nullTimeUnit() {
+    Caffeine.newBuilder().coalesceLoads(0, null, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void coalesceLoads_negative() {
+    Caffeine.newBuilder().coalesceLoads(-1, TimeUnit.MILLISECONDS, 1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void coalesceLoads_zeroBatchSize() {
+    Caffeine.newBuilder().coalesceLoads(1, TimeUnit.MILLISECONDS, 0);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceLoads_twice() {
+    Caffeine.newBuilder().coalesceLoads(1, TimeUnit.MILLISECONDS, 1)
+        .coalesceLoads(1, TimeUnit.MILLISECONDS, 1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceLoads_loadingCache() {
+    Caffeine.newBuilder().coalesceLoads(1, TimeUnit.MILLISECONDS, 1).build(loader);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void coalesceLoads_noCacheLoader() {
+    Caffeine.newBuilder().coalesceLoads(1, TimeUnit.MILLISECONDS, 1).buildAsync();
+  }
+
+  @Test
+  public void coalesceLoads() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .coalesceLoads(1, TimeUnit.MILLISECONDS, 10);
+    assertThat(builder.getCoalesceLoadNanos(), is(TimeUnit.MILLISECONDS.toNanos(1)));
+    assertThat(builder.getMaximumLoadBatchSize(), is(10));
+    builder.buildAsync(new RefreshBatcherTest.BulkLoader());
+  }
+
+  /* ---------------- scheduler -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void scheduler_null() {
+    Caffeine.newBuilder().scheduler(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void scheduler_twice() {
+    Caffeine.newBuilder().scheduler(Scheduler.disabledScheduler())
+        .scheduler(Scheduler.disabledScheduler());
+  }
+
+  @Test
+  public void scheduler_disabled() {
+    Caffeine<?, ?> builder = Caffeine.newBuilder().scheduler(Scheduler.disabledScheduler());
+    assertThat(builder.hasScheduler(), is(false));
+    assertThat(builder.getScheduler(), is(Scheduler.disabledScheduler()));
+  }
+
+  @Test
+  public void scheduler_custom() {
+    Scheduler scheduler = (executor, task, delay, unit) -> DisabledFuture.INSTANCE;
+    Caffeine<?, ?> builder = Caffeine.newBuilder().scheduler(scheduler);
+    assertThat(builder.hasScheduler(), is(true));
+    assertThat(((GuardedScheduler) builder.getScheduler()).delegate, is(scheduler));
+    builder.expireAfterWrite(1, TimeUnit.MINUTES).build();
+  }
+
   /* ---------------- ticker -------------- */
 
   @Test(expectedExceptions = NullPointerException.class)
@@ -579,4 +919,252 @@ public final class CaffeineTest {
     assertThat(builder.getCacheWriter(), is(writer));
     builder.build();
   }
+
+  /* ---------------- recordDiagnostics -------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordDiagnostics_twice() {
+    Caffeine.newBuilder().recordDiagnostics().recordDiagnostics();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void recordDiagnostics_longCache() {
+    Caffeine.newBuilder().maximumSize(1).recordDiagnostics().buildLong();
+  }
+
+  @Test
+  public void recordDiagnostics() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().recordDiagnostics();
+    assertThat(builder.isRecordingDiagnostics(), is(true));
+    assertThat(builder.build().policy().diagnostics().isPresent(), is(false));
+    assertThat(builder.maximumSize(1).build().policy().diagnostics().isPresent(), is(true));
+  }
+
+  /* ---------------- readBufferStrategy -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void readBufferStrategy_null() {
+    Caffeine.newBuilder().readBufferStrategy(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void readBufferStrategy_twice() {
+    Caffeine.newBuilder()
+        .readBufferStrategy(ReadBufferStrategy.BATCHED)
+        .readBufferStrategy(ReadBufferStrategy.STRIPED);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void readBufferStrategy_longCache() {
+    Caffeine.newBuilder().maximumSize(1)
+        .readBufferStrategy(ReadBufferStrategy.BATCHED).buildLong();
+  }
+
+  @Test
+  public void readBufferStrategy_default() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(1);
+    assertThat(builder.getReadBufferStrategy(), is(ReadBufferStrategy.STRIPED));
+    assertThat(readBuffer(builder.build()), is(instanceOf(BoundedBuffer.class)));
+  }
+
+  @Test
+  public void readBufferStrategy_batched() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .readBufferStrategy(ReadBufferStrategy.BATCHED).maximumSize(1);
+    assertThat(builder.getReadBufferStrategy(), is(ReadBufferStrategy.BATCHED));
+
+    Cache<Object, Object> cache = builder.build();
+    assertThat(readBuffer(cache), is(instanceOf(BatchedBuffer.class)));
+    assertThat(readBuffer(SerializableTester.reserialize(cache)),
+        is(instanceOf(BatchedBuffer.class)));
+  }
+
+  private static Buffer<?> readBuffer(Cache<?, ?> cache) {
+    return ((BoundedLocalCache.BoundedLocalManualCache<?, ?>) cache).cache.readBuffer;
+  }
+
+  /* ---------------- sketchLayout -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void sketchLayout_null() {
+    Caffeine.newBuilder().sketchLayout(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void sketchLayout_twice() {
+    Caffeine.newBuilder().sketchLayout(SketchLayout.BLOCKED).sketchLayout(SketchLayout.STANDARD);
+  }
+
+  @Test
+  public void sketchLayout_default() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(1);
+    assertThat(builder.getSketchLayout(), is(SketchLayout.STANDARD));
+    assertThat(frequencySketch(builder.build()).getClass(), is(FrequencySketch.class));
+  }
+
+  @Test
+  public void sketchLayout_blocked() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .sketchLayout(SketchLayout.BLOCKED).maximumSize(1);
+    assertThat(builder.getSketchLayout(), is(SketchLayout.BLOCKED));
+
+    Cache<Object, Object> cache = builder.build();
+    assertThat(frequencySketch(cache), is(instanceOf(BlockedFrequencySketch.class)));
+    assertThat(frequencySketch(SerializableTester.reserialize(cache)),
+        is(instanceOf(BlockedFrequencySketch.class)));
+  }
+
+  @Test
+  public void sketchLayout_longCache() {
+    LongCache<Object> cache = Caffeine.newBuilder()
+        .sketchLayout(SketchLayout.BLOCKED).maximumSize(1).buildLong();
+    assertThat(((BoundedLongCache<?>) cache).segments[0].sketch,
+        is(instanceOf(BlockedFrequencySketch.class)));
+  }
+
+  /* ---------------- doorkeeper -------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void doorkeeper_twice() {
+    Caffeine.newBuilder().doorkeeper().doorkeeper();
+  }
+
+  @Test
+  public void doorkeeper() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().doorkeeper().maximumSize(1);
+    assertThat(builder.hasDoorkeeper(), is(true));
+
+    Cache<Object, Object> cache = builder.build();
+    assertThat(frequencySketch(cache).hasDoorkeeper, is(true));
+    assertThat(frequencySketch(SerializableTester.reserialize(cache)).hasDoorkeeper, is(true));
+    assertThat(frequencySketch(Caffeine.newBuilder().maximumSize(1).build()).hasDoorkeeper,
+        is(false));
+  }
+
+  @Test
+  public void doorkeeper_longCache() {
+    LongCache<Object> cache = Caffeine.newBuilder().doorkeeper().maximumSize(1).buildLong();
+    assertThat(((BoundedLongCache<?>) cache).segments[0].sketch.hasDoorkeeper, is(true));
+  }
+
+  /* ---------------- weightedAdmission -------------- */
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void weightedAdmission_twice() {
+    Caffeine.newBuilder().weightedAdmission().weightedAdmission();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void weightedAdmission_noMaximumWeight() {
+    Caffeine.newBuilder().weightedAdmission().maximumSize(1).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void weightedAdmission_longCache() {
+    Caffeine.newBuilder().weightedAdmission().maximumSize(1).buildLong();
+  }
+
+  @Test
+  public void weightedAdmission() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().weightedAdmission()
+        .maximumWeight(1).weigher(Weigher.singletonWeigher());
+    assertThat(builder.isWeightedAdmission(), is(true));
+
+    Cache<Object, Object> cache = builder.build();
+    assertThat(boundedLocalCache(cache).weightedAdmission, is(true));
+    assertThat(boundedLocalCache(SerializableTester.reserialize(cache)).weightedAdmission,
+        is(true));
+  }
+
+  /* ---------------- shards -------------- */
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shards_zero() {
+    Caffeine.newBuilder().shards(0);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void shards_excessive() {
+    Caffeine.newBuilder().shards(ShardedLocalCache.MAXIMUM_SHARDS + 1);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_twice() {
+    Caffeine.newBuilder().shards(2).shards(2);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_unbounded() {
+    Caffeine.newBuilder().shards(2).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_loading() {
+    Caffeine.newBuilder().shards(2).maximumSize(10).build(key -> key);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_async() {
+    Caffeine.newBuilder().shards(2).maximumSize(10).buildAsync();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void shards_longCache() {
+    Caffeine.newBuilder().shards(2).maximumSize(10).buildLong();
+  }
+
+  @Test
+  public void shards() {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().shards(3).maximumSize(10);
+    assertThat(builder.getShards(), is(3));
+
+    ShardedLocalCache<?, ?> cache = (ShardedLocalCache<?, ?>) builder.build();
+    assertThat(cache.shards.length, is(4));
+    assertThat(cache.policy().eviction().get().getMaximum(), is(10L));
+  }
+
+  private static BoundedLocalCache<?, ?> boundedLocalCache(Cache<?, ?> cache) {
+    return ((BoundedLocalCache.BoundedLocalManualCache<?, ?>) cache).cache;
+  }
+
+  private static FrequencySketch<?> frequencySketch(Cache<?, ?> cache) {
+    return ((BoundedLocalCache.BoundedLocalManualCache<?, ?>) cache).cache.frequencySketch();
+  }
+
+  /* ---------------- victimCache -------------- */
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void victimCache_null() {
+    Caffeine.newBuilder().victimCache(null);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void victimCache_twice() {
+    VictimCache<Object, Object> victimCache = VictimCache.disabledVictimCache();
+    Caffeine.newBuilder().victimCache(victimCache).victimCache(victimCache);
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void victimCache_weakKeys() {
+    Caffeine.newBuilder().victimCache(VictimCache.disabledVictimCache()).weakKeys();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void victimCache_unbounded() {
+    Caffeine.newBuilder().victimCache(VictimCache.disabledVictimCache()).build();
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void victimCache_async() {
+    Caffeine.newBuilder().maximumSize(1)
+        .victimCache(VictimCache.disabledVictimCache()).buildAsync();
+  }
+
+  @Test
+  public void victimCache() {
+    VictimCache<Object, Object> victimCache = VictimCache.disabledVictimCache();
+    Caffeine<?, ?> builder = Caffeine.newBuilder().maximumSize(1).victimCache(victimCache);
+    assertThat(builder.getVictimCache(), is(victimCache));
+    builder.build();
+  }
 }
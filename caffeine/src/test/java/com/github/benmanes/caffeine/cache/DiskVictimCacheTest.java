@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.OffHeapCacheTest.StringSerializer;
+import com.github.benmanes.caffeine.cache.RefreshBatcherTest.QueuedExecutor;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Test(singleThreaded = true)
+public final class DiskVictimCacheTest {
+  Path directory;
+
+  @BeforeMethod
+  public void before() throws IOException {
+    directory = Files.createTempDirectory("victim");
+  }
+
+  @AfterMethod
+  public void after() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      for (Path path : (Iterable<Path>) files::iterator) {
+        Files.delete(path);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void disk_zero() {
+    VictimCache.disk(directory, 0, new StringSerializer());
+  }
+
+  @Test
+  public void remove() {
+    VictimCache<Integer, String> victims = newVictimCache(1024);
+    assertThat(victims.remove(1), is(nullValue()));
+
+    victims.put(1, "a");
+    victims.put(2, "bc");
+    assertThat(victims.remove(2), is("bc"));
+    assertThat(victims.remove(2), is(nullValue()));
+    assertThat(victims.remove(1), is("a"));
+  }
+
+  @Test
+  public void put_replace() {
+    VictimCache<Integer, String> victims = newVictimCache(1024);
+    victims.put(1, "a");
+    victims.put(1, "b");
+    assertThat(victims.remove(1), is("b"));
+  }
+
+  @Test
+  public void put_tooLarge() {
+    VictimCache<Integer, String> victims = newVictimCache(64);
+    victims.put(1, "a");
+    victims.put(1, "abcdefghijklmnopqrstuvwxyz");
+    assertThat(victims.remove(1), is(nullValue()));
+  }
+
+  @Test
+  public void invalidate() {
+    VictimCache<Integer, String> victims = newVictimCache(1024);
+    victims.put(1, "a");
+    victims.invalidate(1);
+    assertThat(victims.remove(1), is(nullValue()));
+  }
+
+  @Test
+  public void invalidateAll() throws IOException {
+    VictimCache<Integer, String> victims = newVictimCache(1024);
+    for (int i = 0; i < 10; i++) {
+      victims.put(i, Integer.toString(i));
+    }
+    assertThat(listFiles().isEmpty(), is(false));
+
+    victims.invalidateAll();
+    assertThat(listFiles().isEmpty(), is(true));
+    for (int i = 0; i < 10; i++) {
+      assertThat(victims.remove(i), is(nullValue()));
+    }
+  }
+
+  @Test
+  public void evict_fifo() throws IOException {
+    DiskVictimCache<Integer, String> victims = newVictimCache(64);
+    assertThat(victims.segmentSize, is(8));
+    assertThat(victims.maximumSegments, is(8));
+
+    for (int i = 0; i < 16; i++) {
+      victims.put(i, "abcdefgh");
+    }
+    assertThat(listFiles().size(), is(1));
+    for (int i = 0; i < 8; i++) {
+      assertThat(victims.remove(i), is(nullValue()));
+    }
+    for (int i = 8; i < 16; i++) {
+      assertThat(victims.remove(i), is("abcdefgh"));
+    }
+  }
+
+  @Test
+  public void put_async() {
+    QueuedExecutor executor = new QueuedExecutor();
+    DiskVictimCache<Integer, String> victims = newVictimCache(1024, executor);
+    victims.put(1, "a");
+    victims.put(2, "b");
+    victims.put(3, "c");
+    assertThat(executor.tasks.size(), is(1));
+
+    victims.invalidate(2);
+    assertThat(victims.remove(3), is("c"));
+    executor.runAll();
+    assertThat(victims.pending.isEmpty(), is(true));
+    assertThat(victims.index.keySet(), contains(1));
+    assertThat(victims.remove(1), is("a"));
+  }
+
+  @Test
+  public void put_supersededWhileWriting() {
+    QueuedExecutor executor = new QueuedExecutor();
+    DiskVictimCache<Integer, String> victims = newVictimCache(1024, executor);
+    victims.put(1, "a");
+    executor.runAll();
+
+    victims.put(1, "b");
+    victims.invalidate(1);
+    executor.runAll();
+    assertThat(victims.remove(1), is(nullValue()));
+  }
+
+  @Test
+  public void put_rejected() {
+    DiskVictimCache<Integer, String> victims = newVictimCache(1024, task -> {
+      throw new RejectedExecutionException();
+    });
+    victims.put(1, "a");
+    assertThat(victims.pending.isEmpty(), is(true));
+    assertThat(victims.remove(1), is("a"));
+  }
+
+  @Test
+  public void invalidateAll_async() throws IOException {
+    QueuedExecutor executor = new QueuedExecutor();
+    DiskVictimCache<Integer, String> victims = newVictimCache(1024, executor);
+    victims.put(1, "a");
+    executor.runAll();
+    assertThat(listFiles().size(), is(1));
+
+    victims.invalidateAll();
+    victims.put(2, "b");
+    assertThat(victims.remove(1), is(nullValue()));
+    executor.runAll();
+    assertThat(listFiles().size(), is(1));
+    assertThat(victims.remove(2), is("b"));
+  }
+
+  private DiskVictimCache<Integer, String> newVictimCache(long maximumBytes) {
+    return newVictimCache(maximumBytes, Runnable::run);
+  }
+
+  private DiskVictimCache<Integer, String> newVictimCache(long maximumBytes, Executor executor) {
+    return (DiskVictimCache<Integer, String>) VictimCache.<Integer, String>disk(
+        directory, maximumBytes, new StringSerializer(), executor);
+  }
+
+  private List<Path> listFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      List<Path> paths = new ArrayList<>();
+      files.forEach(paths::add);
+      return paths;
+    }
+  }
+}
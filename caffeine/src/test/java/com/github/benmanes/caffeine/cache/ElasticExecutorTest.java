@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ElasticExecutorTest {
+
+  @Test
+  public void instance() {
+    assertThat(ElasticExecutor.instance(), is(sameInstance(ElasticExecutor.instance())));
+  }
+
+  @Test
+  public void blockingTasks_default() throws InterruptedException {
+    // The runtime may not support virtual threads, so only the platform threads are in flight
+    assertConcurrent(ElasticExecutor.create(), ElasticExecutor.MAXIMUM_THREADS);
+  }
+
+  @Test
+  public void blockingTasks_platformThreads() throws InterruptedException {
+    assertConcurrent(ElasticExecutor.newPlatformThreadExecutor(), ElasticExecutor.MAXIMUM_THREADS);
+  }
+
+  @Test
+  public void platformThreads_daemon() throws InterruptedException {
+    boolean[] daemon = new boolean[1];
+    CountDownLatch done = new CountDownLatch(1);
+    ElasticExecutor.newPlatformThreadExecutor().execute(() -> {
+      daemon[0] = Thread.currentThread().isDaemon();
+      done.countDown();
+    });
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    assertThat(daemon[0], is(true));
+  }
+
+  @Test
+  public void platformThreads_saturated() throws InterruptedException {
+    Executor executor = ElasticExecutor.newPlatformThreadExecutor(1, 1);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(2);
+    Runnable blocked = () -> {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      done.countDown();
+    };
+    executor.execute(blocked);
+    assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+    executor.execute(blocked);
+
+    Thread[] runner = new Thread[1];
+    executor.execute(() -> runner[0] = Thread.currentThread());
+    assertThat(runner[0], is(Thread.currentThread()));
+
+    release.countDown();
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  /** Asserts that all of the tasks are in flight at once, as each blocks until the others start. */
+  private static void assertConcurrent(Executor executor, int tasks) throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(tasks);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch done = new CountDownLatch(tasks);
+    for (int i = 0; i < tasks; i++) {
+      executor.execute(() -> {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        done.countDown();
+      });
+    }
+    assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+    release.countDown();
+    assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+  }
+}
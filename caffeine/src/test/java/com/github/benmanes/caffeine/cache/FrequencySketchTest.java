@@ -18,8 +18,8 @@ package com.github.benmanes.caffeine.cache;
 import static com.github.benmanes.caffeine.cache.RandomSeedEnforcer.ensureRandomSeed;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
-import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 
 import java.util.concurrent.ThreadLocalRandom;
 
@@ -61,6 +61,39 @@ public final class FrequencySketchTest {
     assertThat(sketch.sampleSize, is(10 * 2 * size));
   }
 
+  @Test
+  public void ensureCapacity_blocked() {
+    BlockedFrequencySketch<Integer> sketch = new BlockedFrequencySketch<>(false);
+    sketch.ensureCapacity(1);
+    assertThat(sketch.table.length, is(BlockedFrequencySketch.BLOCK_LENGTH));
+    assertThat(sketch.blockMask, is(0));
+
+    sketch.ensureCapacity(512);
+    assertThat(sketch.table.length, is(512));
+    assertThat(sketch.blockMask, is((512 / BlockedFrequencySketch.BLOCK_LENGTH) - 1));
+  }
+
+  @Test
+  public void increment_blocked() {
+    BlockedFrequencySketch<Integer> sketch = new BlockedFrequencySketch<>(false);
+    sketch.ensureCapacity(512);
+    sketch.increment(item);
+
+    int block = (sketch.spread(item.hashCode()) & sketch.blockMask)
+        * BlockedFrequencySketch.BLOCK_LENGTH;
+    for (int i = 0; i < sketch.table.length; i++) {
+      boolean inBlock = (i >= block) && (i < block + BlockedFrequencySketch.BLOCK_LENGTH);
+      if (!inBlock) {
+        assertThat(sketch.table[i], is(0L));
+      }
+    }
+    int counters = 0;
+    for (int i = block; i < block + BlockedFrequencySketch.BLOCK_LENGTH; i++) {
+      counters += Long.bitCount(sketch.table[i]);
+    }
+    assertThat(counters, is(4));
+  }
+
   @Test(dataProvider = "sketch")
   public void increment_once(FrequencySketch<Integer> sketch) {
     sketch.increment(item);
@@ -84,6 +117,15 @@ public final class FrequencySketchTest {
     assertThat(sketch.frequency(item + 2), is(0));
   }
 
+  @Test(dataProvider = "sketch")
+  public void incrementLong(FrequencySketch<Integer> sketch) {
+    long key = (long) item << 32;
+    sketch.incrementLong(key);
+    sketch.incrementLong(key);
+    assertThat(sketch.frequencyLong(key), is(2));
+    assertThat(sketch.frequencyLong(key + 1), is(0));
+  }
+
   @Test
   public void reset() {
     boolean reset = false;
@@ -102,8 +144,133 @@ public final class FrequencySketchTest {
   }
 
   @Test
-  public void heavyHitters() {
-    FrequencySketch<Double> sketch = makeSketch(512);
+  public void reset_incremental() {
+    FrequencySketch<Integer> expected = makeSketch(SketchLayout.STANDARD, 64);
+    FrequencySketch<Integer> sketch = makeSketch(SketchLayout.STANDARD, 64);
+    assertThat(sketch.incrementalReset, is(false));
+    sketch.incrementalReset = true;
+
+    for (int i = 1; i < expected.sampleSize; i++) {
+      expected.increment(i);
+      sketch.increment(i);
+    }
+    assertThat(sketch.table, is(expected.table));
+
+    expected.increment(0);
+    sketch.increment(0);
+    assertThat(sketch.resetting, is(true));
+    assertThat(sketch.size, lessThanOrEqualTo(sketch.sampleSize / 2));
+
+    int slices = 0;
+    while (sketch.resetting) {
+      sketch.resetSlice();
+      slices++;
+    }
+    assertThat(slices, is(sketch.table.length / FrequencySketch.RESET_SLICE));
+    assertThat(sketch.table, is(expected.table));
+    assertThat(sketch.size, is(expected.size));
+  }
+
+  @Test
+  public void reset_incrementalThreshold() {
+    FrequencySketch<Integer> sketch = new FrequencySketch<>();
+    sketch.ensureCapacity(FrequencySketch.INCREMENTAL_RESET_THRESHOLD);
+    assertThat(sketch.incrementalReset, is(true));
+
+    int increments = 0;
+    for (int i = 0; !sketch.resetting; i++) {
+      sketch.increment(i);
+    }
+    while (sketch.resetting) {
+      sketch.increment(item);
+      increments++;
+    }
+    assertThat(increments, is(sketch.table.length / FrequencySketch.RESET_SLICE));
+  }
+
+  @Test
+  public void ensureCapacity_doorkeeper() {
+    FrequencySketch<Integer> sketch = new FrequencySketch<>(true);
+    sketch.ensureCapacity(512);
+    assertThat(sketch.table.length, is(512 / 4));
+    assertThat(sketch.doorkeeper.length, is(512 / 4));
+    assertThat(sketch.sampleSize, is(10 * 512));
+
+    long[] table = sketch.table;
+    sketch.ensureCapacity(512);
+    assertThat(sketch.table, is(sameInstance(table)));
+  }
+
+  @Test(dataProvider = "doorkeeper")
+  public void increment_doorkeeper(FrequencySketch<Integer> sketch) {
+    sketch.increment(item);
+    assertThat(sketch.frequency(item), is(1));
+    assertThat(sketch.size, is(1));
+    for (long word : sketch.table) {
+      assertThat(word, is(0L));
+    }
+
+    sketch.increment(item);
+    assertThat(sketch.frequency(item), is(2));
+    assertThat(sketch.size, is(2));
+  }
+
+  @Test(dataProvider = "doorkeeper")
+  public void increment_doorkeeperSample(FrequencySketch<Integer> sketch) {
+    boolean reset = false;
+    for (int i = 0; !reset && (i < 2 * sketch.sampleSize); i++) {
+      int size = sketch.size;
+      sketch.increment(i);
+      reset = (sketch.size < size);
+    }
+    assertThat(reset, is(true));
+    for (long word : sketch.doorkeeper) {
+      assertThat(word, is(0L));
+    }
+  }
+
+  @Test(dataProvider = "doorkeeper")
+  public void increment_doorkeeperMax(FrequencySketch<Integer> sketch) {
+    for (int i = 0; i < 20; i++) {
+      sketch.increment(item);
+    }
+    assertThat(sketch.frequency(item), is(15));
+  }
+
+  @Test(dataProvider = "doorkeeper")
+  public void reset_doorkeeper(FrequencySketch<Integer> sketch) {
+    sketch.increment(item);
+    sketch.reset();
+    assertThat(sketch.frequency(item), is(0));
+    for (long word : sketch.doorkeeper) {
+      assertThat(word, is(0L));
+    }
+  }
+
+  @Test
+  public void reset_incrementalDoorkeeper() {
+    FrequencySketch<Integer> sketch = new FrequencySketch<>(true);
+    sketch.ensureCapacity(512);
+    sketch.incrementalReset = true;
+    for (int i = 0; i < 100; i++) {
+      sketch.increment(i);
+    }
+    sketch.reset();
+    while (sketch.resetting) {
+      sketch.resetSlice();
+    }
+    for (long word : sketch.doorkeeper) {
+      assertThat(word, is(0L));
+    }
+  }
+
+  @Test(dataProvider = "doorkeeper")
+  public void heavyHitters_doorkeeper(FrequencySketch<Double> sketch) {
+    heavyHitters(sketch);
+  }
+
+  @Test(dataProvider = "sketch")
+  public void heavyHitters(FrequencySketch<Double> sketch) {
     for (int i = 100; i < 100_000; i++) {
       sketch.increment((double) i);
     }
@@ -133,11 +300,27 @@ public final class FrequencySketchTest {
 
   @DataProvider(name = "sketch")
   public Object[][] providesSketch() {
-    return new Object[][] {{ makeSketch(512) }};
+    return new Object[][] {
+        { makeSketch(SketchLayout.STANDARD, 512) },
+        { makeSketch(SketchLayout.BLOCKED, 512) },
+    };
+  }
+
+  @DataProvider(name = "doorkeeper")
+  public Object[][] providesDoorkeeper() {
+    return new Object[][] {
+        { makeSketch(SketchLayout.STANDARD, /* doorkeeper */ true, 512) },
+        { makeSketch(SketchLayout.BLOCKED, /* doorkeeper */ true, 512) },
+    };
+  }
+
+  private static <E> FrequencySketch<E> makeSketch(SketchLayout layout, long maximumSize) {
+    return makeSketch(layout, /* doorkeeper */ false, maximumSize);
   }
 
-  private static <E> FrequencySketch<E> makeSketch(long maximumSize) {
-    FrequencySketch<E> sketch = new FrequencySketch<>();
+  private static <E> FrequencySketch<E> makeSketch(
+      SketchLayout layout, boolean doorkeeper, long maximumSize) {
+    FrequencySketch<E> sketch = FrequencySketch.newInstance(layout, doorkeeper);
     sketch.ensureCapacity(maximumSize);
     ensureRandomSeed(sketch);
     return sketch;
@@ -112,11 +112,11 @@ public final class IsCacheReserializable<T> extends TypeSafeDiagnosingMatcher<T>
           (UnboundedLocalCache.UnboundedLocalLoadingCache<K, V>) original,
           (UnboundedLocalCache.UnboundedLocalLoadingCache<K, V>) copy, desc);
     }
-    if (original instanceof LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) {
-      LocalAsyncLoadingCache<?, ?, ?> originalOuter =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) original).getOuter();
-      LocalAsyncLoadingCache<?, ?, ?> copyOuter =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) copy).getOuter();
+    if (original instanceof LocalAsyncCache<?, ?, ?>.AbstractCacheView) {
+      LocalAsyncCache<?, ?, ?> originalOuter =
+          ((LocalAsyncCache<?, ?, ?>.AbstractCacheView) original).getOuter();
+      LocalAsyncCache<?, ?, ?> copyOuter =
+          ((LocalAsyncCache<?, ?, ?>.AbstractCacheView) copy).getOuter();
       if (originalOuter instanceof UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<?, ?>) {
         checkUnboundedAsyncLocalLoadingCache(
             (UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K, V>) originalOuter,
@@ -175,11 +175,11 @@ public final class IsCacheReserializable<T> extends TypeSafeDiagnosingMatcher<T>
       checkBoundedLocalLoadingCache((BoundedLocalCache.BoundedLocalLoadingCache<K, V>) original,
           (BoundedLocalCache.BoundedLocalLoadingCache<K, V>) copy, desc);
     }
-    if (original instanceof LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) {
-      LocalAsyncLoadingCache<?, ?, ?> originalOuter =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) original).getOuter();
-      LocalAsyncLoadingCache<?, ?, ?> copyOuter =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) copy).getOuter();
+    if (original instanceof LocalAsyncCache<?, ?, ?>.AbstractCacheView) {
+      LocalAsyncCache<?, ?, ?> originalOuter =
+          ((LocalAsyncCache<?, ?, ?>.AbstractCacheView) original).getOuter();
+      LocalAsyncCache<?, ?, ?> copyOuter =
+          ((LocalAsyncCache<?, ?, ?>.AbstractCacheView) copy).getOuter();
       if (originalOuter instanceof BoundedLocalCache.BoundedLocalAsyncLoadingCache<?, ?>) {
         checkBoundedAsyncLocalLoadingCache(
             (BoundedLocalCache.BoundedLocalAsyncLoadingCache<K, V>) originalOuter,
@@ -217,7 +217,6 @@ public final class IsCacheReserializable<T> extends TypeSafeDiagnosingMatcher<T>
         copy.nodeFactory, instanceOf(original.nodeFactory.getClass()));
     if (original.evicts()) {
       desc.expectThat("same maximumWeight", copy.maximum(), is(original.maximum()));
-      desc.expectThat("same maximumEdenWeight", copy.edenMaximum(), is(original.edenMaximum()));
     }
 
     if (original.expiresVariable()) {
@@ -20,9 +20,6 @@ import java.util.concurrent.CompletableFuture;
 import org.hamcrest.Description;
 import org.hamcrest.TypeSafeDiagnosingMatcher;
 
-import com.github.benmanes.caffeine.cache.BoundedLocalCache.BoundedLocalAsyncLoadingCache;
-import com.github.benmanes.caffeine.cache.UnboundedLocalCache.UnboundedLocalAsyncLoadingCache;
-
 /**
  * A matcher that evaluates a {@link Cache} to determine if it is in a valid state.
  *
@@ -49,12 +46,12 @@ public final class IsValidCache<K, V>
       BoundedLocalCache.BoundedLocalManualCache<K, V> local =
           (BoundedLocalCache.BoundedLocalManualCache<K, V>) cache;
       return IsValidBoundedLocalCache.<K, V>valid().matchesSafely(local.cache, description);
-    } else if (cache instanceof LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) {
-      LocalAsyncLoadingCache<?, ?, ?> async =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) cache).getOuter();
-      if (async instanceof BoundedLocalAsyncLoadingCache<?, ?>) {
+    } else if (cache instanceof LocalAsyncCache<?, ?, ?>.AbstractCacheView) {
+      LocalAsyncCache<?, K, V> async =
+          ((LocalAsyncCache<?, K, V>.AbstractCacheView) cache).getOuter();
+      if (async.cache instanceof BoundedLocalCache<?, ?>) {
         return IsValidBoundedLocalCache.<K, CompletableFuture<V>>valid().matchesSafely(
-            ((BoundedLocalAsyncLoadingCache<K, V>) async).cache, description);
+            (BoundedLocalCache<K, CompletableFuture<V>>) async.cache, description);
       }
     }
 
@@ -62,18 +59,11 @@ public final class IsValidCache<K, V>
       UnboundedLocalCache.UnboundedLocalManualCache<K, V> local =
           (UnboundedLocalCache.UnboundedLocalManualCache<K, V>) cache;
       return IsValidUnboundedLocalCache.<K, V>valid().matchesSafely(local.cache, description);
-    } else if (cache instanceof LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) {
-      LocalAsyncLoadingCache<?, ?, ?> async =
-          ((LocalAsyncLoadingCache<?, ?, ?>.LoadingCacheView) cache).getOuter();
-      if (async instanceof UnboundedLocalAsyncLoadingCache<?, ?>) {
-        return IsValidUnboundedLocalCache.<K, CompletableFuture<V>>valid().matchesSafely(
-            ((UnboundedLocalAsyncLoadingCache<K, V>) async).cache, description);
-      }
-
-      UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K, V>.LoadingCacheView local =
-          (UnboundedLocalCache.UnboundedLocalAsyncLoadingCache<K, V>.LoadingCacheView) cache;
+    } else if (cache instanceof LocalAsyncCache<?, ?, ?>.AbstractCacheView) {
+      LocalAsyncCache<?, K, V> async =
+          ((LocalAsyncCache<?, K, V>.AbstractCacheView) cache).getOuter();
       return IsValidUnboundedLocalCache.<K, CompletableFuture<V>>valid().matchesSafely(
-          local.getOuter().cache, description);
+          (UnboundedLocalCache<K, CompletableFuture<V>>) async.cache, description);
     }
 
     return true;
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.testing.IsFutureValue.futureOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.RefreshBatcherTest.BulkLoader;
+import com.github.benmanes.caffeine.cache.RefreshBatcherTest.QueuedExecutor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class LoadBatcherTest {
+
+  @Test
+  public void load_batched() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    LoadBatcher<Integer, Integer> batcher = newBatcher(loader, executor, Integer.MAX_VALUE);
+
+    CompletableFuture<Integer> first = batcher.load(1);
+    CompletableFuture<Integer> second = batcher.load(2);
+    assertThat(batcher.load(1), is(first));
+    assertThat(executor.tasks.size(), is(1));
+
+    executor.runAll();
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(1, 2))));
+    assertThat(first, is(futureOf(-1)));
+    assertThat(second, is(futureOf(-2)));
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void load_maximumBatchSize() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    LoadBatcher<Integer, Integer> batcher = newBatcher(loader, executor, 2);
+
+    batcher.load(1);
+    batcher.load(2);
+    assertThat(batcher.pending, is(nullValue()));
+    CompletableFuture<Integer> third = batcher.load(3);
+
+    executor.runAll();
+    assertThat(loader.batches, is(ImmutableList.of(
+        ImmutableSet.of(1, 2), ImmutableSet.of(3))));
+    assertThat(third, is(futureOf(-3)));
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void load_absent() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    loader.absent = true;
+
+    CompletableFuture<Integer> future = newBatcher(loader, executor, Integer.MAX_VALUE).load(1);
+    executor.runAll();
+    assertThat(future.join(), is(nullValue()));
+  }
+
+  @Test
+  public void load_failure() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    loader.failure = true;
+
+    CompletableFuture<Integer> future = newBatcher(loader, executor, Integer.MAX_VALUE).load(1);
+    executor.runAll();
+    assertThat(future.isCompletedExceptionally(), is(true));
+  }
+
+  @Test
+  public void load_schedulerFailure() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .coalesceLoads(1, TimeUnit.SECONDS, Integer.MAX_VALUE)
+        .scheduler((e, task, delay, unit) -> { throw new IllegalStateException(); })
+        .executor(executor);
+    LoadBatcher<Integer, Integer> batcher = new LoadBatcher<>(loader, builder);
+
+    CompletableFuture<Integer> future = batcher.load(1);
+    executor.runAll();
+    assertThat(future, is(futureOf(-1)));
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void load_rejected() {
+    LoadBatcher<Integer, Integer> batcher = newBatcher(new BulkLoader(), task -> {
+      throw new RejectedExecutionException();
+    }, 1);
+    try {
+      batcher.load(1);
+      Assert.fail();
+    } catch (RejectedExecutionException expected) {}
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void get_coalesced() {
+    BulkLoader loader = new BulkLoader();
+    QueuedExecutor executor = new QueuedExecutor();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalesceLoads(0, TimeUnit.NANOSECONDS, 10)
+        .executor(executor)
+        .recordStats()
+        .buildAsync(loader);
+    CompletableFuture<Integer> first = cache.get(1);
+    CompletableFuture<Integer> second = cache.get(2);
+    assertThat(cache.get(1), is(first));
+    executor.runAll();
+
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(1, 2))));
+    assertThat(first, is(futureOf(-1)));
+    assertThat(second, is(futureOf(-2)));
+    assertThat(cache.synchronous().getAllPresent(ImmutableSet.of(1, 2)),
+        is(ImmutableMap.of(1, -1, 2, -2)));
+    assertThat(cache.synchronous().stats().loadSuccessCount(), is(2L));
+    assertThat(cache.synchronous().stats().missCount(), is(2L));
+  }
+
+  @Test
+  public void get_coalesced_absent() {
+    BulkLoader loader = new BulkLoader();
+    loader.absent = true;
+    QueuedExecutor executor = new QueuedExecutor();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .coalesceLoads(0, TimeUnit.NANOSECONDS, 10)
+        .executor(executor)
+        .buildAsync(loader);
+    CompletableFuture<Integer> future = cache.get(1);
+    executor.runAll();
+
+    assertThat(future.join(), is(nullValue()));
+    assertThat(cache.synchronous().estimatedSize(), is(0L));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void buildAsync_noBulkLoader() {
+    Caffeine.newBuilder()
+        .coalesceLoads(0, TimeUnit.NANOSECONDS, 10)
+        .buildAsync(key -> key);
+  }
+
+  private static LoadBatcher<Integer, Integer> newBatcher(
+      BulkLoader loader, Executor executor, int maximumBatchSize) {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .coalesceLoads(0, TimeUnit.NANOSECONDS, maximumBatchSize)
+        .executor(executor);
+    return new LoadBatcher<>(loader, builder);
+  }
+}
@@ -42,7 +42,9 @@ import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Assert;
 import org.testng.annotations.Listeners;
@@ -62,6 +64,7 @@ import com.github.benmanes.caffeine.cache.testing.CacheSpec.Writer;
 import com.github.benmanes.caffeine.cache.testing.CacheValidationListener;
 import com.github.benmanes.caffeine.cache.testing.CheckNoWriter;
 import com.github.benmanes.caffeine.cache.testing.RemovalNotification;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -439,8 +442,8 @@ public final class LoadingCacheTest {
   }
 
   @Test(dataProvider = "caches")
-  @CacheSpec(population = Population.EMPTY, executor = CacheExecutor.THREADED,
-      removalListener = Listener.CONSUMING)
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
   public void refresh_invalidate(CacheContext context) {
     AtomicBoolean refresh = new AtomicBoolean();
     Integer key = context.absentKey();
@@ -453,11 +456,172 @@ public final class LoadingCacheTest {
 
     cache.put(key, original);
     cache.refresh(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
     cache.invalidate(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(0L));
+
+    refresh.set(true);
+    await().until(() -> context.consumedNotifications().size(), is(2));
+
+    assertThat(cache.getIfPresent(key), is(nullValue()));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.EXPLICIT));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.REPLACED));
+    assertThat(context, both(hasLoadSuccessCount(1)).and(hasLoadFailureCount(0)));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
+  public void refresh_conditionalRemove(CacheContext context) {
+    AtomicBoolean refresh = new AtomicBoolean();
+    Integer key = context.absentKey();
+    Integer original = 1;
+    Integer refreshed = 2;
+    LoadingCache<Integer, Integer> cache = context.build(k -> {
+      await().untilTrue(refresh);
+      return refreshed;
+    });
+
+    cache.put(key, original);
+    cache.refresh(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
+    assertThat(cache.asMap().remove(key, original), is(true));
+    assertThat(cache.policy().estimatedRefreshCount(), is(0L));
+
+    refresh.set(true);
+    await().until(() -> context.consumedNotifications().size(), is(2));
+
+    assertThat(cache.getIfPresent(key), is(nullValue()));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.EXPLICIT));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.REPLACED));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
+  public void refresh_computeNull(CacheContext context) {
+    AtomicBoolean refresh = new AtomicBoolean();
+    Integer key = context.absentKey();
+    Integer original = 1;
+    Integer refreshed = 2;
+    LoadingCache<Integer, Integer> cache = context.build(k -> {
+      await().untilTrue(refresh);
+      return refreshed;
+    });
+
+    cache.put(key, original);
+    cache.refresh(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
+    assertThat(cache.asMap().compute(key, (k, v) -> null), is(nullValue()));
+    assertThat(cache.policy().estimatedRefreshCount(), is(0L));
+
+    refresh.set(true);
+    await().until(() -> context.consumedNotifications().size(), is(2));
+    assertThat(cache.getIfPresent(key), is(nullValue()));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
+  public void refresh_put(CacheContext context) {
+    AtomicBoolean refresh = new AtomicBoolean();
+    Integer key = context.absentKey();
+    Integer original = 1;
+    Integer updated = 2;
+    Integer refreshed = 3;
+    LoadingCache<Integer, Integer> cache = context.build(k -> {
+      await().untilTrue(refresh);
+      return refreshed;
+    });
+
+    cache.put(key, original);
+    cache.refresh(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
+    cache.put(key, updated);
+    assertThat(cache.policy().estimatedRefreshCount(), is(0L));
+
+    refresh.set(true);
+    await().until(() -> context.consumedNotifications().size(), is(2));
+    assertThat(cache.getIfPresent(key), is(updated));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.DIRECT)
+  public void refresh_reentrant(CacheContext context) {
+    AtomicBoolean reentered = new AtomicBoolean();
+    Integer key = context.absentKey();
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    LoadingCache<Integer, Integer>[] cache = new LoadingCache[1];
+    cache[0] = context.build(k -> {
+      // the loader refreshes the same key, which must not run under the lock of the refresh map
+      if (reentered.compareAndSet(false, true)) {
+        cache[0].refresh(k);
+      }
+      return -k;
+    });
+
+    cache[0].put(key, key);
+    cache[0].refresh(key);
+    assertThat(cache[0].getIfPresent(key), is(-key));
+    assertThat(cache[0].policy().estimatedRefreshCount(), is(0L));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED)
+  public void refresh_concurrent(CacheContext context) {
+    AtomicBoolean refresh = new AtomicBoolean();
+    AtomicInteger reloads = new AtomicInteger();
+    Integer key = context.absentKey();
+    LoadingCache<Integer, Integer> cache = context.build(new CacheLoader<Integer, Integer>() {
+      @Override public Integer load(Integer k) {
+        await().untilTrue(refresh);
+        return -k;
+      }
+      @Override public CompletableFuture<Integer> asyncReload(
+          Integer k, Integer oldValue, Executor executor) {
+        reloads.incrementAndGet();
+        return CacheLoader.super.asyncReload(k, oldValue, executor);
+      }
+    });
+
+    cache.put(key, key);
+    ConcurrentTestHarness.timeTasks(10, () -> cache.refresh(key));
+    assertThat(reloads.get(), is(1));
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
+
+    refresh.set(true);
+    await().until(() -> cache.getIfPresent(key), is(-key));
+    assertThat(reloads.get(), is(1));
+  }
+
+  @Test(dataProvider = "caches")
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
+  public void refresh_join(CacheContext context) {
+    AtomicBoolean refresh = new AtomicBoolean();
+    AtomicInteger reloads = new AtomicInteger();
+    Integer key = context.absentKey();
+    Integer original = 1;
+    Integer refreshed = 2;
+    LoadingCache<Integer, Integer> cache = context.build(k -> {
+      reloads.incrementAndGet();
+      await().untilTrue(refresh);
+      return refreshed;
+    });
+
+    cache.put(key, original);
+    cache.refresh(key);
+    cache.refresh(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
 
     refresh.set(true);
     await().until(() -> cache.getIfPresent(key), is(refreshed));
-    await().until(() -> cache, hasRemovalNotifications(context, 1, RemovalCause.EXPLICIT));
+    await().until(() -> cache.policy().estimatedRefreshCount(), is(0L));
+
+    assertThat(reloads.get(), is(1));
+    await().until(() -> cache, hasRemovalNotifications(context, 1, RemovalCause.REPLACED));
     await().until(() -> context, both(hasLoadSuccessCount(1)).and(hasLoadFailureCount(0)));
   }
 
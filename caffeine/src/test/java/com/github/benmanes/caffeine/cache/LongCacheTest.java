@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class LongCacheTest {
+
+  @Test
+  public void getIfPresent() {
+    LongCache<String> cache = newCache(100);
+    assertThat(cache.getIfPresent(1L), is(nullValue()));
+
+    cache.put(1L, "a");
+    cache.put(Long.MIN_VALUE, "b");
+    assertThat(cache.getIfPresent(1L), is("a"));
+    assertThat(cache.getIfPresent(Long.MIN_VALUE), is("b"));
+    assertThat(cache.stats(), is(new CacheStats(2, 1, 0, 0, 0, 0, 0)));
+  }
+
+  @Test
+  public void put_replace() {
+    LongCache<String> cache = newCache(100);
+    cache.put(1L, "a");
+    cache.put(1L, "b");
+    assertThat(cache.getIfPresent(1L), is("b"));
+    assertThat(cache.estimatedSize(), is(1L));
+  }
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void put_nullValue() {
+    newCache(100).put(1L, null);
+  }
+
+  @Test
+  public void get() {
+    LongCache<String> cache = newCache(100);
+    assertThat(cache.get(1L, Long::toString), is("1"));
+    assertThat(cache.get(1L, key -> "other"), is("1"));
+    assertThat(cache.get(2L, key -> null), is(nullValue()));
+    assertThat(cache.estimatedSize(), is(1L));
+
+    CacheStats stats = cache.stats();
+    assertThat(stats.hitCount(), is(1L));
+    assertThat(stats.missCount(), is(2L));
+    assertThat(stats.loadSuccessCount(), is(1L));
+    assertThat(stats.loadFailureCount(), is(1L));
+  }
+
+  @Test
+  public void get_failure() {
+    LongCache<String> cache = newCache(100);
+    try {
+      cache.get(1L, key -> { throw new IllegalStateException(); });
+      Assert.fail();
+    } catch (IllegalStateException expected) {}
+    assertThat(cache.getIfPresent(1L), is(nullValue()));
+    assertThat(cache.stats().loadFailureCount(), is(1L));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void get_recursive() {
+    LongCache<String> cache = newCache(100);
+    cache.get(1L, key -> cache.get(1L, k -> "a"));
+  }
+
+  @Test
+  public void get_ticker() {
+    FakeTicker ticker = new FakeTicker();
+    LongCache<String> cache = Caffeine.newBuilder()
+        .maximumSize(100).ticker(ticker::read).recordStats().buildLong();
+    cache.get(1L, key -> {
+      ticker.advance(1, TimeUnit.SECONDS);
+      return "a";
+    });
+    assertThat(cache.stats().totalLoadTime(), is(TimeUnit.SECONDS.toNanos(1)));
+  }
+
+  @Test
+  public void getIfPresent_whileLocked() throws InterruptedException {
+    BoundedLongCache<String> cache = (BoundedLongCache<String>) LongCacheTest.<String>newCache(100);
+    cache.put(1L, "a");
+
+    BoundedLongCache.Segment<String> segment = cache.segmentFor(BoundedLongCache.hash(1L));
+    CountDownLatch locked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Thread writer = new Thread(() -> {
+      segment.lock();
+      try {
+        locked.countDown();
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        segment.unlock();
+      }
+    });
+    writer.start();
+    try {
+      locked.await();
+      for (int i = 0; i < (2 * BoundedLongCache.Segment.READ_BUFFER_SIZE); i++) {
+        assertThat(cache.getIfPresent(1L), is("a"));
+      }
+    } finally {
+      release.countDown();
+      writer.join();
+    }
+  }
+
+  @Test
+  public void invalidate() {
+    LongCache<String> cache = newCache(100);
+    for (long i = 0; i < 10; i++) {
+      cache.put(i, Long.toString(i));
+    }
+    cache.invalidate(5L);
+    cache.invalidate(100L);
+    assertThat(cache.getIfPresent(5L), is(nullValue()));
+    assertThat(cache.estimatedSize(), is(9L));
+
+    cache.put(5L, "5");
+    assertThat(cache.getIfPresent(5L), is("5"));
+
+    cache.invalidateAll();
+    assertThat(cache.estimatedSize(), is(0L));
+    for (long i = 0; i < 10; i++) {
+      assertThat(cache.getIfPresent(i), is(nullValue()));
+    }
+  }
+
+  @Test
+  public void evict_zero() {
+    LongCache<String> cache = newCache(0);
+    cache.put(1L, "a");
+    assertThat(cache.getIfPresent(1L), is(nullValue()));
+    assertThat(cache.stats().evictionCount(), is(1L));
+  }
+
+  @Test
+  public void evict_maximum() {
+    int maximum = 10_000;
+    LongCache<Long> cache = newCache(maximum);
+    for (long i = 0; i < (4 * maximum); i++) {
+      cache.put(i, i);
+      assertThat(cache.estimatedSize(), is(lessThanOrEqualTo((long) maximum)));
+    }
+    assertThat(cache.estimatedSize(), is((long) maximum));
+    assertThat(cache.stats().evictionCount(), is(3L * maximum));
+  }
+
+  @Test
+  public void evict_frequency() {
+    LongCache<Long> cache = newCache(100);
+    for (long i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    for (int i = 0; i < 10; i++) {
+      for (long key = 0; key < 50; key++) {
+        cache.getIfPresent(key);
+      }
+    }
+
+    // A scan of one-hit wonders should not flush out the frequently used entries
+    for (long i = 1_000; i < 2_000; i++) {
+      cache.put(i, i);
+    }
+    for (long key = 0; key < 50; key++) {
+      assertThat(cache.getIfPresent(key), is(key));
+    }
+  }
+
+  @Test
+  public void hash_segments() {
+    LongCache<Long> longCache = newCache(Long.MAX_VALUE);
+    BoundedLongCache<Long> cache = (BoundedLongCache<Long>) longCache;
+    assertThat(cache.segments.length, is(BoundedLongCache.MAXIMUM_SEGMENTS));
+    for (long i = 0; i < 1_000; i++) {
+      cache.put(i << 32, i);
+    }
+    for (long i = 0; i < 1_000; i++) {
+      assertThat(cache.getIfPresent(i << 32), is(i));
+    }
+    assertThat(cache.estimatedSize(), is(1_000L));
+  }
+
+  private static <V> LongCache<V> newCache(long maximumSize) {
+    return Caffeine.newBuilder().maximumSize(maximumSize).recordStats().buildLong();
+  }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.isOneOf;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class OffHeapCacheTest {
+  static final Serializer<String> serializer = new StringSerializer();
+
+  @Test
+  public void getIfPresent() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder().buildOffHeap(serializer);
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+
+    cache.put(1, "a");
+    assertThat(cache.getIfPresent(1), is("a"));
+    assertThat(cache.getIfPresent(1), is("a"));
+    assertThat(cache.estimatedSize(), is(1L));
+  }
+
+  @Test
+  public void getBuffer() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder().buildOffHeap(serializer);
+    assertThat(cache.getBuffer(1), is(nullValue()));
+
+    cache.put(1, "abc");
+    ByteBuffer buffer = cache.getBuffer(1);
+    assertThat(buffer.isDirect(), is(true));
+    assertThat(buffer.isReadOnly(), is(true));
+    assertThat(serializer.deserialize(buffer), is("abc"));
+    assertThat(cache.getBuffer(1).remaining(), is(3));
+
+    cache.invalidate(1);
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+  }
+
+  @Test
+  public void getBuffer_reused() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .buildOffHeap(serializer);
+    cache.put(1, "abc");
+    ByteBuffer buffer = cache.getBuffer(1);
+
+    cache.invalidate(1);
+    cache.put(2, "xyz");
+    assertThat(serializer.deserialize(buffer), is("xyz"));
+    assertThat(cache.getIfPresent(2), is("xyz"));
+  }
+
+  @Test(expectedExceptions = ReadOnlyBufferException.class)
+  public void getBuffer_readOnly() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder().buildOffHeap(serializer);
+    cache.put(1, "a");
+    cache.getBuffer(1).put((byte) 0);
+  }
+
+  @Test
+  public void get() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .recordStats().buildOffHeap(serializer);
+    assertThat(cache.get(1, Object::toString), is("1"));
+    assertThat(cache.get(1, key -> "other"), is("1"));
+    assertThat(cache.get(2, key -> null), is(nullValue()));
+    assertThat(cache.stats().hitCount(), is(1L));
+    assertThat(cache.stats().missCount(), is(2L));
+  }
+
+  @Test
+  public void put_replace() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder().buildOffHeap(serializer);
+    cache.put(1, "a");
+    cache.put(1, "b");
+    assertThat(cache.getIfPresent(1), is("b"));
+
+    cache.invalidateAll();
+    assertThat(cache.estimatedSize(), is(0L));
+  }
+
+  @Test
+  public void put_replace_reused() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .buildOffHeap(serializer);
+    cache.put(1, "abc");
+    ByteBuffer first = cache.getBuffer(1);
+    cache.put(1, "def");
+    cache.put(1, "ghi");
+    assertThat(serializer.deserialize(first), is("ghi"));
+    assertThat(cache.getIfPresent(1), is("ghi"));
+  }
+
+  @Test
+  public void put_failure_reused() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .buildOffHeap(new StringSerializer() {
+          @Override public void serialize(String value, ByteBuffer buffer) {
+            if (value.equals("fail")) {
+              buffer.put((byte) 'f');
+              throw new IllegalArgumentException();
+            }
+            super.serialize(value, buffer);
+          }
+        });
+    try {
+      cache.put(1, "fail");
+      Assert.fail();
+    } catch (IllegalArgumentException expected) {}
+
+    cache.put(2, "abcd");
+    ByteBuffer buffer = cache.getBuffer(2);
+    cache.put(3, "efgh");
+    assertThat(cache.getIfPresent(2), is("abcd"));
+    assertThat(cache.getIfPresent(3), is("efgh"));
+    assertThat(serializer.deserialize(buffer), is("abcd"));
+  }
+
+  @Test
+  public void removalListener_beforeReuse() {
+    List<String> removed = new ArrayList<>();
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(1)
+        .removalListener((Integer key, String value, RemovalCause cause) -> removed.add(value))
+        .buildOffHeap(serializer);
+    cache.put(1, "abc");
+    cache.put(2, "def");
+    cache.cleanUp();
+    cache.put(3, "ghi");
+    cache.cleanUp();
+    assertThat(removed.size(), is(2));
+    assertThat(cache.estimatedSize(), is(1L));
+    assertThat(removed, everyItem(isOneOf("abc", "def", "ghi")));
+  }
+
+  @Test(expectedExceptions = IllegalStateException.class)
+  public void put_wrongSize() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .buildOffHeap(new StringSerializer() {
+          @Override public int serializedSize(String value) {
+            return super.serializedSize(value) + 1;
+          }
+        });
+    cache.put(1, "a");
+  }
+
+  @Test
+  public void maximumWeight_byteSize() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumWeight(10)
+        .buildOffHeap(serializer);
+    cache.put(1, "abcd");
+    cache.put(2, "efgh");
+    assertThat(cache.policy().eviction().get().weightedSize().getAsLong(), is(8L));
+
+    cache.put(3, "ijkl");
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is(2L));
+    assertThat(cache.policy().eviction().get().weightedSize().getAsLong(), is(8L));
+  }
+
+  @Test
+  public void maximumWeight_weigher() {
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumWeight(10)
+        .weigher((Integer key, String value) -> 2 * value.length())
+        .buildOffHeap(serializer);
+    cache.put(1, "abcd");
+    assertThat(cache.policy().eviction().get().weightedSize().getAsLong(), is(8L));
+  }
+
+  @Test
+  public void removalListener() {
+    List<String> removed = new ArrayList<>();
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .removalListener((Integer key, String value, RemovalCause cause) -> removed.add(value))
+        .buildOffHeap(serializer);
+    cache.put(1, "a");
+    cache.put(1, "b");
+    cache.invalidate(1);
+    assertThat(removed, is(ImmutableList.of("a", "b")));
+  }
+
+  @Test
+  public void expireAfterWrite() {
+    FakeTicker ticker = new FakeTicker();
+    OffHeapCache<Integer, String> cache = Caffeine.newBuilder()
+        .expireAfterWrite(1, TimeUnit.MINUTES)
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .buildOffHeap(serializer);
+    cache.put(1, "a");
+    ticker.advance(2, TimeUnit.MINUTES);
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+  }
+
+  @Test
+  public void buildOffHeap_invalid() {
+    try {
+      Caffeine.newBuilder().buildOffHeap(null);
+      Assert.fail();
+    } catch (NullPointerException expected) {}
+
+    try {
+      Caffeine.newBuilder().weakValues().buildOffHeap(serializer);
+      Assert.fail();
+    } catch (IllegalStateException expected) {}
+
+    try {
+      Caffeine.newBuilder().refreshAfterWrite(1, TimeUnit.MINUTES).buildOffHeap(serializer);
+      Assert.fail();
+    } catch (IllegalStateException expected) {}
+
+    try {
+      Caffeine.newBuilder().weigher((k, v) -> 1).buildOffHeap(serializer);
+      Assert.fail();
+    } catch (IllegalStateException expected) {}
+  }
+
+  static class StringSerializer implements Serializer<String> {
+    @Override public int serializedSize(String value) {
+      return value.getBytes(StandardCharsets.UTF_8).length;
+    }
+    @Override public void serialize(String value, ByteBuffer buffer) {
+      buffer.put(value.getBytes(StandardCharsets.UTF_8));
+    }
+    @Override public String deserialize(ByteBuffer buffer) {
+      byte[] bytes = new byte[buffer.remaining()];
+      buffer.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  }
+}
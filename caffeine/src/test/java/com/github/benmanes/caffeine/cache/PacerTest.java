@@ -0,0 +1,145 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Test(singleThreaded = true)
+public final class PacerTest {
+  private static final long NOW = ThreadLocalRandom.current().nextLong();
+
+  @Mock Scheduler scheduler;
+  @Mock Executor executor;
+  @Mock Runnable command;
+  @Mock Future<?> future;
+
+  Pacer pacer;
+
+  @BeforeMethod
+  public void beforeMethod() {
+    MockitoAnnotations.initMocks(this);
+    pacer = new Pacer(scheduler);
+  }
+
+  @Test
+  public void schedule_initialize() {
+    long delay = ThreadLocalRandom.current().nextInt(1, (int) Pacer.TOLERANCE);
+    doReturnFuture();
+    pacer.schedule(executor, command, NOW, delay);
+
+    assertThat(pacer.future, is(sameInstance(future)));
+    assertThat(pacer.nextFireTime, is(NOW + Pacer.TOLERANCE));
+    verify(scheduler).schedule(executor, command, Pacer.TOLERANCE, TimeUnit.NANOSECONDS);
+  }
+
+  @Test
+  public void schedule_beyondTolerance() {
+    long delay = 2 * Pacer.TOLERANCE;
+    doReturnFuture();
+    pacer.schedule(executor, command, NOW, delay);
+
+    assertThat(pacer.nextFireTime, is(NOW + delay));
+    verify(scheduler).schedule(executor, command, delay, TimeUnit.NANOSECONDS);
+  }
+
+  @Test
+  public void schedule_sooner_withinTolerance() {
+    pacer.nextFireTime = NOW + 2 * Pacer.TOLERANCE;
+    pacer.future = future;
+
+    pacer.schedule(executor, command, NOW, 2 * Pacer.TOLERANCE - (Pacer.TOLERANCE / 2));
+    assertThat(pacer.future, is(sameInstance(future)));
+    verify(future, never()).cancel(false);
+    verifyNoMoreInteractions(scheduler);
+  }
+
+  @Test
+  public void schedule_later() {
+    pacer.nextFireTime = NOW + Pacer.TOLERANCE;
+    pacer.future = future;
+
+    pacer.schedule(executor, command, NOW, 3 * Pacer.TOLERANCE);
+    assertThat(pacer.nextFireTime, is(NOW + Pacer.TOLERANCE));
+    verifyNoMoreInteractions(scheduler, future);
+  }
+
+  @Test
+  public void schedule_sooner_beyondTolerance() {
+    pacer.nextFireTime = NOW + 4 * Pacer.TOLERANCE;
+    pacer.future = future;
+    doReturnFuture();
+
+    pacer.schedule(executor, command, NOW, 2 * Pacer.TOLERANCE);
+    assertThat(pacer.nextFireTime, is(NOW + 2 * Pacer.TOLERANCE));
+    verify(future).cancel(false);
+    verify(scheduler).schedule(executor, command, 2 * Pacer.TOLERANCE, TimeUnit.NANOSECONDS);
+  }
+
+  @Test
+  public void schedule_afterFired() {
+    pacer.nextFireTime = NOW - 1;
+    pacer.future = future;
+    doReturnFuture();
+
+    pacer.schedule(executor, command, NOW, 2 * Pacer.TOLERANCE);
+    verify(future, never()).cancel(false);
+    verify(scheduler).schedule(executor, command, 2 * Pacer.TOLERANCE, TimeUnit.NANOSECONDS);
+  }
+
+  @Test
+  public void cancel() {
+    pacer.nextFireTime = NOW;
+    pacer.future = future;
+    pacer.cancel();
+
+    verify(future).cancel(false);
+    assertThat(pacer.future, is(nullValue()));
+    assertThat(pacer.nextFireTime, is(0L));
+  }
+
+  @Test
+  public void cancel_notScheduled() {
+    pacer.cancel();
+    assertThat(pacer.future, is(nullValue()));
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private void doReturnFuture() {
+    when(scheduler.schedule(any(), any(), anyLong(), any())).thenReturn((Future) future);
+  }
+}
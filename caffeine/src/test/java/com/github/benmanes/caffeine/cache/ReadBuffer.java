@@ -51,6 +51,11 @@ public abstract class ReadBuffer<E> implements Buffer<E> {
     }
   }
 
+  /** Returns the maximum number of events that can be buffered. */
+  public int capacity() {
+    return BUFFER_SIZE;
+  }
+
   /** Returns the total number of events recorded. */
   public int recorded() {
     return writes();
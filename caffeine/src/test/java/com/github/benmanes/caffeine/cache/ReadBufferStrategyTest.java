@@ -0,0 +1,153 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+
+/**
+ * A test that the hit rate observed when using the {@link ReadBufferStrategy#BATCHED} strategy
+ * matches the simulator's, which replays the trace on a single thread with the maintenance work
+ * performed on the caller, regardless of the number of threads that access the cache, and that
+ * it records the reads that the {@link ReadBufferStrategy#STRIPED} strategy discards when the
+ * maintenance work falls behind.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ReadBufferStrategyTest {
+  static final int MAXIMUM_SIZE = 500;
+  static final int ITEMS = 10_000;
+  static final int REQUESTS = 400_000;
+  static final double TOLERANCE = 0.02;
+
+  final int[] trace = zipf(ITEMS, 0.9, REQUESTS);
+  double expectedHitRate;
+
+  @BeforeClass
+  public void beforeClass() {
+    expectedHitRate = simulatedHitRate();
+  }
+
+  @DataProvider(name = "threads")
+  public Object[][] providesThreads() {
+    return new Object[][] {{ 1 }, { 2 }, { 4 }};
+  }
+
+  @Test(dataProvider = "threads")
+  public void batched(int threads) {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .readBufferStrategy(ReadBufferStrategy.BATCHED)
+        .maximumSize(MAXIMUM_SIZE)
+        .recordStats()
+        .build();
+    replay(cache, threads);
+    assertThat(cache.stats().hitRate(), closeTo(expectedHitRate, TOLERANCE));
+  }
+
+  @Test
+  public void batched_sameThread() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .readBufferStrategy(ReadBufferStrategy.BATCHED)
+        .maximumSize(MAXIMUM_SIZE)
+        .executor(Runnable::run)
+        .recordStats()
+        .build();
+    replay(cache, 1);
+    assertThat(cache.stats().hitRate(), closeTo(expectedHitRate, TOLERANCE));
+  }
+
+  @Test
+  public void maintenanceDelayed() {
+    int reads = 500;
+    BoundedLocalCache<Integer, Integer> striped = delayedReads(ReadBufferStrategy.STRIPED, reads);
+    BoundedLocalCache<Integer, Integer> batched = delayedReads(ReadBufferStrategy.BATCHED, reads);
+    assertThat(striped.readBuffer.reads(), is(lessThan(reads)));
+    assertThat(batched.readBuffer.reads(), is(reads));
+  }
+
+  /** Returns the cache after recording the reads while its maintenance work was not performed. */
+  static BoundedLocalCache<Integer, Integer> delayedReads(ReadBufferStrategy strategy, int reads) {
+    List<Runnable> tasks = new ArrayList<>();
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .readBufferStrategy(strategy)
+        .executor(tasks::add)
+        .maximumSize(2)
+        .build();
+
+    // Populated to half of the maximum so that the reads are not skipped
+    cache.put(1, 1);
+    cache.cleanUp();
+    for (int i = 0; i < reads; i++) {
+      cache.getIfPresent(1);
+    }
+    cache.cleanUp();
+    return (BoundedLocalCache<Integer, Integer>) cache.asMap();
+  }
+
+  /** Returns the hit rate when the trace is replayed in the simulator's configuration. */
+  double simulatedHitRate() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .maximumSize(MAXIMUM_SIZE)
+        .executor(Runnable::run)
+        .recordStats()
+        .build();
+    replay(cache, 1);
+    return cache.stats().hitRate();
+  }
+
+  /** Replays the trace by interleaving the requests across the threads. */
+  void replay(Cache<Integer, Integer> cache, int threads) {
+    AtomicInteger ids = new AtomicInteger();
+    ConcurrentTestHarness.timeTasks(threads, () -> {
+      int id = ids.getAndIncrement();
+      for (int i = id; i < trace.length; i += threads) {
+        cache.get(trace[i], key -> key);
+      }
+    });
+  }
+
+  /** Returns a trace of the requests that follow a Zipf distribution. */
+  static int[] zipf(int items, double exponent, int requests) {
+    double[] cumulative = new double[items];
+    double sum = 0.0;
+    for (int i = 0; i < items; i++) {
+      sum += 1.0 / Math.pow(i + 1, exponent);
+      cumulative[i] = sum;
+    }
+
+    Random random = new Random(1);
+    int[] trace = new int[requests];
+    for (int i = 0; i < requests; i++) {
+      int index = Arrays.binarySearch(cumulative, sum * random.nextDouble());
+      trace[i] = (index >= 0) ? index : -(index + 1);
+    }
+    return trace;
+  }
+}
@@ -338,8 +338,9 @@ public final class RefreshAfterWriteTest {
   /* ---------------- invalidate -------------- */
 
   @Test(dataProvider = "caches")
-  @CacheSpec(population = Population.EMPTY, refreshAfterWrite = Expire.ONE_MINUTE,
-      executor = CacheExecutor.THREADED, removalListener = Listener.CONSUMING)
+  @CacheSpec(implementation = Implementation.Caffeine, population = Population.EMPTY,
+      refreshAfterWrite = Expire.ONE_MINUTE, executor = CacheExecutor.THREADED,
+      removalListener = Listener.CONSUMING)
   public void invalidate(CacheContext context) {
     AtomicBoolean refresh = new AtomicBoolean();
     Integer key = context.absentKey();
@@ -354,12 +355,17 @@ public final class RefreshAfterWriteTest {
     context.ticker().advance(2, TimeUnit.MINUTES);
     assertThat(cache.getIfPresent(key), is(original));
 
+    assertThat(cache.policy().estimatedRefreshCount(), is(1L));
+
     cache.invalidate(key);
+    assertThat(cache.policy().estimatedRefreshCount(), is(0L));
     refresh.set(true);
 
-    await().until(() -> cache.getIfPresent(key), is(refreshed));
-    await().until(() -> cache, hasRemovalNotifications(context, 1, RemovalCause.EXPLICIT));
-    await().until(() -> context, both(hasLoadSuccessCount(1)).and(hasLoadFailureCount(0)));
+    await().until(() -> context.consumedNotifications().size(), is(2));
+    assertThat(cache.getIfPresent(key), is(nullValue()));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.EXPLICIT));
+    assertThat(cache, hasRemovalNotifications(context, 1, RemovalCause.REPLACED));
+    assertThat(context, both(hasLoadSuccessCount(1)).and(hasLoadFailureCount(0)));
   }
 
   /* ---------------- Policy -------------- */
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.testing.IsFutureValue.futureOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class RefreshBatcherTest {
+
+  @Test
+  public void reload_batched() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    RefreshBatcher<Integer, Integer> batcher = newBatcher(loader, executor);
+
+    CompletableFuture<Integer> first = batcher.reload(1);
+    CompletableFuture<Integer> second = batcher.reload(2);
+    assertThat(batcher.reload(1), is(first));
+    assertThat(executor.tasks.size(), is(1));
+
+    executor.runAll();
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(1, 2))));
+    assertThat(first, is(futureOf(-1)));
+    assertThat(second, is(futureOf(-2)));
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void reload_absent() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    loader.absent = true;
+
+    CompletableFuture<Integer> future = newBatcher(loader, executor).reload(1);
+    executor.runAll();
+    assertThat(future.join(), is(nullValue()));
+  }
+
+  @Test
+  public void reload_failure() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    loader.failure = true;
+
+    CompletableFuture<Integer> future = newBatcher(loader, executor).reload(1);
+    executor.runAll();
+    assertThat(future.isCompletedExceptionally(), is(true));
+  }
+
+  @Test
+  public void reload_rejected() {
+    RefreshBatcher<Integer, Integer> batcher = newBatcher(new BulkLoader(), task -> {
+      throw new RejectedExecutionException();
+    });
+    try {
+      batcher.reload(1);
+      Assert.fail();
+    } catch (RejectedExecutionException expected) {}
+    assertThat(batcher.pending, is(nullValue()));
+  }
+
+  @Test
+  public void reload_schedulerFailure() {
+    QueuedExecutor executor = new QueuedExecutor();
+    BulkLoader loader = new BulkLoader();
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(1, TimeUnit.SECONDS)
+        .scheduler((e, task, delay, unit) -> { throw new IllegalStateException(); })
+        .executor(executor);
+    RefreshBatcher<Integer, Integer> batcher = new RefreshBatcher<>(loader, builder);
+
+    CompletableFuture<Integer> future = batcher.reload(1);
+    executor.runAll();
+    assertThat(future, is(futureOf(-1)));
+    assertThat(batcher.pending, is(nullValue()));
+
+    assertThat(batcher.reload(2), is(not(future)));
+    executor.runAll();
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(1), ImmutableSet.of(2))));
+  }
+
+  @Test
+  public void refreshAfterWrite_coalesced() {
+    FakeTicker ticker = new FakeTicker();
+    BulkLoader loader = new BulkLoader();
+    QueuedExecutor executor = new QueuedExecutor();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(0, TimeUnit.NANOSECONDS)
+        .executor(executor)
+        .ticker(ticker::read)
+        .build(loader);
+    for (int i = 0; i < 3; i++) {
+      cache.put(i, i);
+    }
+
+    ticker.advance(2, TimeUnit.MINUTES);
+    for (int i = 0; i < 3; i++) {
+      assertThat(cache.getIfPresent(i), is(i));
+    }
+    executor.runAll();
+
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(0, 1, 2))));
+    assertThat(cache.getAllPresent(ImmutableSet.of(0, 1, 2)),
+        is(ImmutableMap.of(0, 0, 1, -1, 2, -2)));
+  }
+
+  @Test
+  public void refreshAfterWrite_coalesced_async() {
+    FakeTicker ticker = new FakeTicker();
+    BulkLoader loader = new BulkLoader();
+    QueuedExecutor executor = new QueuedExecutor();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(0, TimeUnit.NANOSECONDS)
+        .executor(executor)
+        .ticker(ticker::read)
+        .buildAsync(loader);
+    for (int i = 1; i <= 2; i++) {
+      cache.put(i, CompletableFuture.completedFuture(i));
+    }
+    executor.runAll();
+
+    ticker.advance(2, TimeUnit.MINUTES);
+    for (int i = 1; i <= 2; i++) {
+      assertThat(cache.getIfPresent(i), is(futureOf(i)));
+    }
+    executor.runAll();
+
+    assertThat(loader.batches, is(ImmutableList.of(ImmutableSet.of(1, 2))));
+    assertThat(cache.synchronous().getAllPresent(ImmutableSet.of(1, 2)),
+        is(ImmutableMap.of(1, -1, 2, -2)));
+  }
+
+  private static RefreshBatcher<Integer, Integer> newBatcher(
+      BulkLoader loader, Executor executor) {
+    Caffeine<Object, Object> builder = Caffeine.newBuilder()
+        .refreshAfterWrite(1, TimeUnit.MINUTES)
+        .coalesceRefreshes(0, TimeUnit.NANOSECONDS)
+        .executor(executor);
+    return new RefreshBatcher<>(loader, builder);
+  }
+
+  static final class QueuedExecutor implements Executor {
+    final List<Runnable> tasks = new ArrayList<>();
+
+    @Override
+    public void execute(Runnable command) {
+      tasks.add(command);
+    }
+
+    void runAll() {
+      while (!tasks.isEmpty()) {
+        tasks.remove(0).run();
+      }
+    }
+  }
+
+  static final class BulkLoader implements CacheLoader<Integer, Integer> {
+    final List<Set<Integer>> batches = new ArrayList<>();
+    boolean failure;
+    boolean absent;
+
+    @Override
+    public Integer load(Integer key) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Map<Integer, Integer> loadAll(Iterable<? extends Integer> keys) {
+      if (failure) {
+        throw new IllegalStateException();
+      }
+      Map<Integer, Integer> result = new HashMap<>();
+      if (!absent) {
+        keys.forEach(key -> result.put(key, -key));
+      }
+      batches.add(ImmutableSet.copyOf(keys));
+      return result;
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static com.github.benmanes.caffeine.testing.IsFutureValue.futureOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class RefresherTest {
+  private static final CacheLoader<Integer, Integer> loader = key -> -key;
+
+  @Test
+  public void refreshAfterCreate() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher())
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(loader);
+    for (int i = 1; i <= 3; i++) {
+      cache.put(i, i);
+    }
+
+    ticker.advance(90, TimeUnit.SECONDS);
+    assertThat(cache.getAllPresent(ImmutableSet.of(1, 2, 3)),
+        is(ImmutableMap.of(1, 1, 2, 2, 3, 3)));
+    assertThat(cache.getAllPresent(ImmutableSet.of(1, 2, 3)),
+        is(ImmutableMap.of(1, -1, 2, 2, 3, 3)));
+
+    ticker.advance(1, TimeUnit.MINUTES);
+    cache.getAllPresent(ImmutableSet.of(1, 2, 3));
+    assertThat(cache.getAllPresent(ImmutableSet.of(1, 2, 3)),
+        is(ImmutableMap.of(1, -1, 2, -2, 3, 3)));
+  }
+
+  @Test
+  public void refreshAfterUpdate() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher() {
+          @Override public long refreshAfterUpdate(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return currentDuration;
+          }
+        })
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(loader);
+    cache.put(1, 1);
+
+    ticker.advance(30, TimeUnit.SECONDS);
+    cache.put(1, 2);
+
+    ticker.advance(45, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(2));
+    assertThat(cache.getIfPresent(1), is(-1));
+  }
+
+  @Test
+  public void refreshAfterRead() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher() {
+          @Override public long refreshAfterRead(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return TimeUnit.MINUTES.toNanos(1);
+          }
+        })
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(loader);
+    cache.put(1, 1);
+
+    ticker.advance(45, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(1));
+
+    ticker.advance(45, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(1));
+
+    ticker.advance(61, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(1));
+    assertThat(cache.getIfPresent(1), is(-1));
+  }
+
+  @Test
+  public void refreshAfterRead_neverRefresh() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new NeverRefresher() {
+          @Override public long refreshAfterRead(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return TimeUnit.MINUTES.toNanos(1);
+          }
+        })
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(loader);
+    cache.put(1, 1);
+    assertThat(cache.getIfPresent(1), is(1));
+
+    ticker.advance(61, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(1));
+    assertThat(cache.getIfPresent(1), is(-1));
+  }
+
+  @Test
+  public void refreshAfterUpdate_neverRefresh() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new NeverRefresher() {
+          @Override public long refreshAfterUpdate(Integer key, Integer value,
+              long currentTime, long currentDuration) {
+            return TimeUnit.MINUTES.toNanos(1);
+          }
+        })
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .build(loader);
+    cache.put(1, 1);
+    cache.put(1, 2);
+
+    ticker.advance(61, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(2));
+    assertThat(cache.getIfPresent(1), is(-1));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void refreshAfterCreate_negative() {
+    Refresher<Integer, Integer> refresher = (key, value, currentTime) -> -1L;
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(refresher)
+        .build(loader);
+    cache.put(1, 1);
+  }
+
+  @Test
+  public void refreshAfter_async() {
+    FakeTicker ticker = new FakeTicker();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher())
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .buildAsync(loader);
+    for (int i = 1; i <= 2; i++) {
+      cache.put(i, CompletableFuture.completedFuture(i));
+    }
+
+    ticker.advance(90, TimeUnit.SECONDS);
+    for (int i = 1; i <= 2; i++) {
+      assertThat(cache.getIfPresent(i), is(futureOf(i)));
+    }
+    assertThat(cache.getIfPresent(1), is(futureOf(-1)));
+    assertThat(cache.getIfPresent(2), is(futureOf(2)));
+  }
+
+  @Test
+  public void refreshAfter_incompleteFuture() {
+    FakeTicker ticker = new FakeTicker();
+    AsyncLoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher())
+        .executor(Runnable::run)
+        .ticker(ticker::read)
+        .buildAsync(loader);
+    CompletableFuture<Integer> future = new CompletableFuture<>();
+    cache.put(1, future);
+
+    ticker.advance(90, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(future));
+    future.complete(1);
+
+    ticker.advance(30, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(futureOf(1)));
+    ticker.advance(31, TimeUnit.SECONDS);
+    assertThat(cache.getIfPresent(1), is(futureOf(1)));
+    assertThat(cache.getIfPresent(1), is(futureOf(-1)));
+  }
+
+  @Test
+  public void policy() {
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .refreshAfter(new KeyedRefresher())
+        .build(loader);
+    assertThat(cache.policy().refreshAfterWrite(), is(Optional.empty()));
+  }
+
+  /** Does not refresh an entry after it is created. */
+  static class NeverRefresher implements Refresher<Integer, Integer> {
+    @Override
+    public long refreshAfterCreate(Integer key, Integer value, long currentTime) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /** Refreshes each entry after the number of minutes indicated by its key. */
+  static class KeyedRefresher implements Refresher<Integer, Integer> {
+    @Override
+    public long refreshAfterCreate(Integer key, Integer value, long currentTime) {
+      return TimeUnit.MINUTES.toNanos(Math.abs(key));
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.testing.Awaits;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class SchedulerTest {
+  private final Executor executor = Runnable::run;
+
+  @Test(expectedExceptions = NullPointerException.class)
+  public void disabledScheduler_null() {
+    Scheduler.disabledScheduler().schedule(executor, null, 1L, TimeUnit.MINUTES);
+  }
+
+  @Test
+  public void disabledScheduler() {
+    Future<?> future = Scheduler.disabledScheduler()
+        .schedule(executor, () -> {}, 1L, TimeUnit.MINUTES);
+    assertThat(future, is(DisabledFuture.INSTANCE));
+  }
+
+  @Test
+  public void guardedScheduler_idempotent() {
+    Scheduler scheduler = Scheduler.guardedScheduler(Scheduler.disabledScheduler());
+    assertThat(Scheduler.guardedScheduler(scheduler), is(sameInstance(scheduler)));
+  }
+
+  @Test
+  public void guardedScheduler_exception() {
+    Scheduler scheduler = Scheduler.guardedScheduler((executor, command, delay, unit) -> {
+      throw new IllegalStateException();
+    });
+    Future<?> future = scheduler.schedule(executor, () -> {}, 1L, TimeUnit.MINUTES);
+    assertThat(future, is(DisabledFuture.INSTANCE));
+  }
+
+  @Test
+  public void guardedScheduler_nullFuture() {
+    Scheduler scheduler = Scheduler.guardedScheduler((executor, command, delay, unit) -> null);
+    Future<?> future = scheduler.schedule(executor, () -> {}, 1L, TimeUnit.MINUTES);
+    assertThat(future, is(DisabledFuture.INSTANCE));
+  }
+
+  @Test
+  public void scheduledExecutorService_schedule() {
+    ScheduledExecutorService scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+    try {
+      AtomicBoolean executed = new AtomicBoolean();
+      Scheduler scheduler = Scheduler.forScheduledExecutorService(scheduledExecutor);
+      scheduler.schedule(executor, () -> executed.set(true), 1L, TimeUnit.NANOSECONDS);
+      Awaits.await().untilTrue(executed);
+    } finally {
+      scheduledExecutor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void scheduledExecutorService_shutdown() {
+    ScheduledExecutorService scheduledExecutor = new ScheduledThreadPoolExecutor(1);
+    scheduledExecutor.shutdown();
+
+    Scheduler scheduler = Scheduler.forScheduledExecutorService(scheduledExecutor);
+    Future<?> future = scheduler.schedule(executor, () -> {}, 1L, TimeUnit.NANOSECONDS);
+    assertThat(future, is(DisabledFuture.INSTANCE));
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Policy.Eviction;
+import com.github.benmanes.caffeine.cache.VictimCacheTest.MapVictimCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.testing.SerializableTester;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ShardedLocalCacheTest {
+
+  @Test
+  public void getIfPresent() {
+    Cache<Integer, Integer> cache = newCache(100);
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+
+    cache.put(1, 1);
+    cache.put(2, 2);
+    assertThat(cache.getIfPresent(1), is(1));
+    assertThat(cache.getIfPresent(2), is(2));
+    assertThat(cache.stats(), is(new CacheStats(2, 1, 0, 0, 0, 0, 0)));
+  }
+
+  @Test
+  public void getAllPresent() {
+    Cache<Integer, Integer> cache = newCache(100);
+    cache.putAll(ImmutableMap.of(1, 1, 2, 2, 3, 3));
+    assertThat(cache.getAllPresent(Arrays.asList(1, 3, 5)), is(ImmutableMap.of(1, 1, 3, 3)));
+  }
+
+  @Test
+  public void invalidate() {
+    Cache<Integer, Integer> cache = newCache(100);
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, i);
+    }
+    cache.invalidate(5);
+    cache.invalidateAll(Arrays.asList(6, 7));
+    assertThat(cache.estimatedSize(), is(7L));
+
+    cache.invalidateAll();
+    assertThat(cache.estimatedSize(), is(0L));
+    assertThat(cache.asMap().isEmpty(), is(true));
+  }
+
+  @Test
+  public void asMap() {
+    Cache<Integer, Integer> cache = newCache(100);
+    Map<Integer, Integer> expected = new HashMap<>();
+    for (int i = 0; i < 50; i++) {
+      cache.asMap().put(i, i);
+      expected.put(i, i);
+    }
+    assertThat(cache.asMap(), is(expected));
+    assertThat(cache.asMap().size(), is(50));
+    assertThat(cache.asMap().computeIfPresent(1, (k, v) -> v + 1), is(2));
+    assertThat(cache.asMap().remove(2, 2), is(true));
+
+    cache.asMap().entrySet().removeIf(entry -> entry.getKey() >= 10);
+    assertThat(cache.asMap().keySet(), is(ImmutableSet.of(0, 1, 3, 4, 5, 6, 7, 8, 9)));
+  }
+
+  @Test
+  public void evict_maximum() {
+    int maximum = 1_000;
+    Cache<Integer, Integer> cache = newCache(maximum);
+    for (int i = 0; i < (4 * maximum); i++) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is(lessThanOrEqualTo((long) maximum)));
+    assertThat(cache.stats().evictionCount(), is(4L * maximum - cache.estimatedSize()));
+  }
+
+  @Test
+  public void eviction_setMaximum() {
+    Cache<Integer, Integer> cache = newCache(101);
+    Eviction<Integer, Integer> eviction = cache.policy().eviction().get();
+    assertThat(eviction.getMaximum(), is(101L));
+
+    eviction.setMaximum(10);
+    assertThat(eviction.getMaximum(), is(10L));
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, i);
+    }
+    cache.cleanUp();
+    assertThat(cache.estimatedSize(), is(lessThanOrEqualTo(10L)));
+    assertThat(eviction.coldest(5).size(), is(5));
+    assertThat(eviction.hottest(Integer.MAX_VALUE).size(), is((int) cache.estimatedSize()));
+  }
+
+  @Test
+  public void expiration() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .shards(4).maximumSize(100).expireAfterWrite(1, TimeUnit.MINUTES).build();
+    Policy.Expiration<Integer, Integer> expiration = cache.policy().expireAfterWrite().get();
+    assertThat(expiration.getExpiresAfter(TimeUnit.MINUTES), is(1L));
+
+    expiration.setExpiresAfter(2, TimeUnit.MINUTES);
+    assertThat(expiration.getExpiresAfter(TimeUnit.MINUTES), is(2L));
+
+    cache.put(1, 1);
+    assertThat(expiration.ageOf(1, TimeUnit.MINUTES).getAsLong(), is(0L));
+    assertThat(expiration.oldest(10), is(ImmutableMap.of(1, 1)));
+  }
+
+  @Test
+  public void evict_weightExceedsShare() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .weigher((Integer key, Integer value) -> value)
+        .executor(Runnable::run)
+        .maximumWeight(100)
+        .shards(4)
+        .build();
+    cache.put(1, 50);
+    cache.cleanUp();
+    assertThat(cache.getIfPresent(1), is(nullValue()));
+
+    cache.put(2, 25);
+    cache.cleanUp();
+    assertThat(cache.getIfPresent(2), is(25));
+  }
+
+  @Test
+  public void victimCache_shared() {
+    MapVictimCache victims = new MapVictimCache();
+    ShardedLocalCache<Integer, String> cache = (ShardedLocalCache<Integer, String>)
+        Caffeine.newBuilder()
+            .executor(Runnable::run)
+            .victimCache(victims)
+            .maximumSize(4)
+            .shards(4)
+            .build();
+    for (int i = 0; i < 100; i++) {
+      cache.put(i, Integer.toString(i));
+    }
+    cache.cleanUp();
+    int retained = victims.map.size();
+    assertThat(retained > 0, is(true));
+
+    cache.shards[0].invalidateAll();
+    assertThat(victims.map.size(), is(retained));
+
+    cache.invalidateAll();
+    assertThat(victims.map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void serialize() {
+    Cache<Integer, Integer> cache = newCache(101);
+    cache.put(1, 1);
+
+    Cache<Integer, Integer> copy = SerializableTester.reserialize(cache);
+    assertThat(copy, is(instanceOf(ShardedLocalCache.class)));
+    assertThat(((ShardedLocalCache<?, ?>) copy).shards.length, is(4));
+    assertThat(copy.policy().eviction().get().getMaximum(), is(101L));
+    assertThat(copy.policy().isRecordingStats(), is(true));
+    assertThat(copy.estimatedSize(), is(0L));
+  }
+
+  @Test
+  public void serialize_weighted() {
+    Cache<Integer, Integer> cache = Caffeine.newBuilder()
+        .weigher(Weigher.singletonWeigher())
+        .maximumWeight(1_000)
+        .shards(8)
+        .build();
+    Cache<Integer, Integer> copy = SerializableTester.reserialize(cache);
+    assertThat(((ShardedLocalCache<?, ?>) copy).shards.length, is(8));
+    assertThat(copy.policy().eviction().get().isWeighted(), is(true));
+    assertThat(copy.policy().eviction().get().getMaximum(), is(1_000L));
+  }
+
+  private static Cache<Integer, Integer> newCache(long maximumSize) {
+    return Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .maximumSize(maximumSize)
+        .recordStats()
+        .shards(4)
+        .build();
+  }
+}
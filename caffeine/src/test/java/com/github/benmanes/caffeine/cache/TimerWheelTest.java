@@ -18,12 +18,15 @@ package com.github.benmanes.caffeine.cache;
 import static com.github.benmanes.caffeine.cache.TimerWheel.SPANS;
 import static java.util.stream.Collectors.toList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -221,6 +224,51 @@ public final class TimerWheelTest {
     assertThat(captor.getValue().getPreviousInVariableOrder(), is(not(nullValue())));
   }
 
+  @Test
+  public void getExpirationDelay_empty() {
+    assertThat(timerWheel.getExpirationDelay(), is(Long.MAX_VALUE));
+  }
+
+  @Test(dataProvider = "clock")
+  public void getExpirationDelay_nextBucket(long clock) {
+    timerWheel.nanos = clock;
+    timerWheel.schedule(new Timer(clock + 2 * SPANS[0]));
+
+    // the current bucket is empty, so the delay is until the start of the populated bucket
+    long ticks = (clock >>> TimerWheel.SHIFT[0]);
+    long expected = ((ticks + 2) << TimerWheel.SHIFT[0]) - clock;
+    assertThat(timerWheel.getExpirationDelay(), is(expected));
+    assertThat(expected, is(greaterThan(SPANS[0])));
+    assertThat(expected, is(lessThanOrEqualTo(2 * SPANS[0])));
+  }
+
+  @DataProvider(name = "clock")
+  public Object[][] providesClock() {
+    return new Object[][] {
+      { 0L }, { -SPANS[0] / 2 }, { -3 * SPANS[0] }, { Long.MIN_VALUE + SPANS[0] },
+      { Long.MAX_VALUE - SPANS[0] / 2 }, { Long.MAX_VALUE - 3 * SPANS[0] },
+    };
+  }
+
+  @Test(dataProvider = "fuzzySchedule")
+  public void getExpirationDelay_fuzzy(long clock, long nanos, long[] times) {
+    when(cache.evictEntry(any(), any(), anyLong())).thenReturn(true);
+    timerWheel.nanos = clock;
+
+    long earliest = Long.MAX_VALUE;
+    for (long timeout : times) {
+      earliest = Math.min(earliest, timeout - clock);
+      timerWheel.schedule(new Timer(timeout));
+    }
+
+    long delay = timerWheel.getExpirationDelay();
+    assertThat(delay, is(greaterThan(0L)));
+    assertThat(delay, is(lessThanOrEqualTo(Math.max(earliest, SPANS[0]))));
+
+    timerWheel.advance(clock + delay - 1);
+    verify(cache, never()).evictEntry(any(), any(), anyLong());
+  }
+
   @Test(dataProvider = "cascade")
   public void cascade(long nanos, long timeout, int span) {
     timerWheel.schedule(new Timer(timeout));
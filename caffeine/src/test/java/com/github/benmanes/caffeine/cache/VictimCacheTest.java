@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.OffHeapCacheTest.StringSerializer;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class VictimCacheTest {
+
+  @Test
+  public void evict_spills() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+    assertThat(victims.map.size(), is(1));
+
+    Integer key = victims.map.keySet().iterator().next();
+    assertThat(cache.asMap().containsKey(key), is(false));
+  }
+
+  @Test
+  public void getIfPresent_promotes() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+
+    Integer key = victims.map.keySet().iterator().next();
+    assertThat(cache.getIfPresent(key), is(key.toString()));
+    assertThat(cache.asMap().containsKey(key), is(true));
+    assertThat(victims.map.containsKey(key), is(false));
+    assertThat(cache.stats().hitCount(), is(1L));
+    assertThat(cache.stats().missCount(), is(0L));
+
+    assertThat(cache.getIfPresent(-1), is(nullValue()));
+    assertThat(cache.stats().missCount(), is(1L));
+  }
+
+  @Test
+  public void get_promotes() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+
+    Integer key = victims.map.keySet().iterator().next();
+    assertThat(cache.get(key, k -> { throw new AssertionError(); }), is(key.toString()));
+    assertThat(victims.map.containsKey(key), is(false));
+    assertThat(cache.stats().hitCount(), is(1L));
+    assertThat(cache.stats().loadSuccessCount(), is(0L));
+  }
+
+  @Test
+  public void loadingGet_promotes() {
+    AtomicInteger loads = new AtomicInteger();
+    MapVictimCache victims = new MapVictimCache();
+    LoadingCache<Integer, String> cache = Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .victimCache(victims)
+        .maximumSize(1)
+        .recordStats()
+        .build(key -> {
+          loads.incrementAndGet();
+          return key.toString();
+        });
+    populate(cache);
+
+    Integer key = victims.map.keySet().iterator().next();
+    assertThat(cache.get(key), is(key.toString()));
+    assertThat(loads.get(), is(0));
+    assertThat(cache.get(-1), is("-1"));
+    assertThat(loads.get(), is(1));
+  }
+
+  @Test
+  public void put_invalidatesVictim() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+
+    Integer key = victims.map.keySet().iterator().next();
+    cache.put(key, "new");
+    assertThat(victims.map.containsKey(key), is(false));
+  }
+
+  @Test
+  public void invalidate() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+
+    Integer key = victims.map.keySet().iterator().next();
+    cache.invalidate(key);
+    assertThat(victims.map.containsKey(key), is(false));
+    assertThat(cache.getIfPresent(key), is(nullValue()));
+  }
+
+  @Test
+  public void invalidate_afterRemoval() {
+    AtomicReference<Cache<Integer, String>> cacheRef = new AtomicReference<>();
+    List<Boolean> mapped = new ArrayList<>();
+    MapVictimCache victims = new MapVictimCache() {
+      @Override public void invalidate(Object key) {
+        mapped.add(cacheRef.get().asMap().containsKey(key));
+        super.invalidate(key);
+      }
+    };
+    Cache<Integer, String> cache = newCache(victims);
+    cacheRef.set(cache);
+    cache.put(1, "1");
+    cache.cleanUp();
+    mapped.clear();
+
+    cache.invalidate(1);
+    assertThat(mapped, contains(false));
+  }
+
+  @Test
+  public void invalidateAll() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    populate(cache);
+
+    cache.invalidateAll();
+    assertThat(victims.map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void explicitRemoval_notSpilled() {
+    MapVictimCache victims = new MapVictimCache();
+    Cache<Integer, String> cache = newCache(victims);
+    cache.put(1, "1");
+    cache.invalidate(1);
+    assertThat(victims.map.isEmpty(), is(true));
+  }
+
+  @Test
+  public void victimCache_failure() {
+    Cache<Integer, String> cache = newCache(new MapVictimCache() {
+      @Override public String remove(Object key) {
+        throw new IllegalStateException();
+      }
+      @Override public void put(Integer key, String value) {
+        throw new IllegalStateException();
+      }
+    });
+    populate(cache);
+    assertThat(cache.getIfPresent(-1), is(nullValue()));
+    assertThat(cache.estimatedSize(), is(1L));
+  }
+
+  @Test
+  public void disk() throws Exception {
+    Path directory = Files.createTempDirectory("victim");
+    VictimCache<Integer, String> victims = VictimCache.disk(
+        directory, 1024, new StringSerializer(), Runnable::run);
+    Cache<Integer, String> cache = newCache(victims);
+    for (int i = 0; i < 10; i++) {
+      cache.put(i, Integer.toString(i));
+    }
+    for (int i = 0; i < 10; i++) {
+      assertThat(cache.getIfPresent(i), is(Integer.toString(i)));
+    }
+    assertThat(cache.stats().hitCount(), is(10L));
+
+    cache.invalidateAll();
+    assertThat(Files.list(directory).count(), is(0L));
+    Files.delete(directory);
+  }
+
+  private static Cache<Integer, String> newCache(VictimCache<Integer, String> victims) {
+    return Caffeine.newBuilder()
+        .executor(Runnable::run)
+        .victimCache(victims)
+        .maximumSize(1)
+        .recordStats()
+        .build();
+  }
+
+  private static void populate(Cache<Integer, String> cache) {
+    cache.put(1, "1");
+    cache.put(2, "2");
+    cache.cleanUp();
+  }
+
+  static class MapVictimCache implements VictimCache<Integer, String> {
+    final Map<Integer, String> map = new HashMap<>();
+
+    @Override public String remove(Object key) {
+      return map.remove(key);
+    }
+    @Override public void put(Integer key, String value) {
+      map.put(key, value);
+    }
+    @Override public void invalidate(Object key) {
+      map.remove(key);
+    }
+    @Override public void invalidateAll() {
+      map.clear();
+    }
+  }
+}
@@ -51,7 +51,7 @@ public final class BufferTest {
       }
     });
     int recorded = buffer.recorded();
-    assertThat(recorded, is(ReadBuffer.BUFFER_SIZE));
+    assertThat(recorded, is(buffer.capacity()));
   }
 
   @Test(dataProvider = "buffers")
@@ -17,6 +17,7 @@ package com.github.benmanes.caffeine.cache.buffer;
 
 import java.util.function.Supplier;
 
+import com.github.benmanes.caffeine.cache.BatchedReadBuffer;
 import com.github.benmanes.caffeine.cache.ReadBuffer;
 
 /**
@@ -32,7 +33,8 @@ public enum BufferType {
   ManyToOne(ManyToOneBuffer::new),
   ManyToOne_spaced(ManyToOneSpacedBuffer::new),
   MpmcArray(MpmcArrayBuffer::new),
-  MpscCompound(MpscCompoundBuffer::new);
+  MpscCompound(MpscCompoundBuffer::new),
+  Batched(BatchedReadBuffer::new);
 
   private final Supplier<ReadBuffer<Boolean>> factory;
 
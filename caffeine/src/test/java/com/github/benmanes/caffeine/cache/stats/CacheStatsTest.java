@@ -16,6 +16,7 @@
 package com.github.benmanes.caffeine.cache.stats;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasToString;
 import static org.hamcrest.Matchers.is;
@@ -88,6 +89,20 @@ public final class CacheStatsTest {
     assertThat(sum, is(one.plus(two)));
   }
 
+  @Test
+  public void loadLatency() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(100);
+    CacheStats stats = new CacheStats(0, 0, 1, 0, 100, 0, 0, histogram.snapshot());
+    assertThat(stats.loadLatency().count(), is(1L));
+    assertThat(stats, is(not(equalTo(new CacheStats(0, 0, 1, 0, 100, 0, 0)))));
+    assertThat(stats, hasToString(containsString("loadLatency")));
+    assertThat(CacheStats.empty(), hasToString(not(containsString("loadLatency"))));
+
+    assertThat(stats.plus(stats).loadLatency().count(), is(2L));
+    assertThat(stats.minus(stats), is(CacheStats.empty()));
+  }
+
   private static void checkStats(CacheStats stats, long requestCount, long hitCount,
       double hitRate, long missCount, double missRate, long loadSuccessCount,
       long loadFailureCount, double loadExceptionRate, long loadCount, long totalLoadTime,
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.stats;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasToString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.testing.ConcurrentTestHarness;
+import com.google.common.testing.FakeTicker;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class LatencyHistogramTest {
+
+  @Test
+  public void buckets() {
+    assertThat(LatencyHistogram.BUCKETS, is(488));
+    assertThat(LatencyHistogram.highestValueOf(LatencyHistogram.BUCKETS - 1),
+        is(Long.MAX_VALUE));
+
+    long lowest = 0L;
+    for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+      long highest = LatencyHistogram.highestValueOf(i);
+      assertThat(LatencyHistogram.indexOf(lowest), is(i));
+      assertThat(LatencyHistogram.indexOf(highest), is(i));
+      if (highest != Long.MAX_VALUE) {
+        lowest = highest + 1;
+      }
+    }
+  }
+
+  @Test
+  public void precision() {
+    Random random = new Random(1);
+    for (int i = 0; i < 10_000; i++) {
+      long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+      long reported = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+      assertThat(reported, is(greaterThanOrEqualTo(value)));
+      assertThat(reported - value, is(lessThanOrEqualTo(value / 8)));
+    }
+  }
+
+  @Test
+  public void empty() {
+    LatencyStats stats = new LatencyHistogram().snapshot();
+    assertThat(stats.count(), is(0L));
+    assertThat(stats.p50(), is(0L));
+    assertThat(stats.p999(), is(0L));
+    assertThat(stats, is(equalTo(LatencyStats.empty())));
+    assertThat(stats.hashCode(), is(LatencyStats.empty().hashCode()));
+    assertThat(stats, hasToString(LatencyStats.empty().toString()));
+  }
+
+  @Test
+  public void percentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 1_000; i++) {
+      histogram.record(i);
+    }
+    histogram.record(-1);
+
+    LatencyStats stats = histogram.snapshot();
+    assertThat(stats.count(), is(1_001L));
+    assertThat(stats.percentile(0.0), is(0L));
+    assertThat(stats.p50(), is(both(greaterThanOrEqualTo(500L)).and(lessThanOrEqualTo(563L))));
+    assertThat(stats.p99(), is(both(greaterThanOrEqualTo(990L)).and(lessThanOrEqualTo(1114L))));
+    assertThat(stats.p999(), is(both(greaterThanOrEqualTo(999L)).and(lessThanOrEqualTo(1124L))));
+    assertThat(stats.percentile(1.0), is(1023L));
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void percentile_negative() {
+    LatencyStats.empty().percentile(-0.1);
+  }
+
+  @Test(expectedExceptions = IllegalArgumentException.class)
+  public void percentile_tooLarge() {
+    LatencyStats.empty().percentile(1.1);
+  }
+
+  @Test
+  public void plusMinus() {
+    LatencyHistogram one = new LatencyHistogram();
+    LatencyHistogram two = new LatencyHistogram();
+    one.record(10);
+    two.record(10);
+    two.record(1_000);
+
+    LatencyStats sum = one.snapshot().plus(two.snapshot());
+    assertThat(sum.count(), is(3L));
+    assertThat(sum.p50(), is(10L));
+    assertThat(sum, is(not(equalTo(two.snapshot()))));
+    assertThat(sum.plus(LatencyStats.empty()), is(sum));
+    assertThat(LatencyStats.empty().plus(sum), is(sum));
+
+    LatencyStats diff = two.snapshot().minus(one.snapshot());
+    assertThat(diff.count(), is(1L));
+    assertThat(diff.p50(), is(both(greaterThanOrEqualTo(1_000L)).and(lessThanOrEqualTo(1_023L))));
+    assertThat(one.snapshot().minus(two.snapshot()), is(LatencyStats.empty()));
+  }
+
+  @Test
+  public void concurrent() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    ConcurrentTestHarness.timeTasks(5, () -> histogram.record(100));
+    assertThat(histogram.snapshot().count(), is(5L));
+  }
+
+  @Test
+  public void cache() {
+    FakeTicker ticker = new FakeTicker();
+    LoadingCache<Integer, Integer> cache = Caffeine.newBuilder()
+        .recordStats(HistogramStatsCounter::new)
+        .ticker(ticker::read)
+        .build(key -> {
+          ticker.advance(key, TimeUnit.MILLISECONDS);
+          return key;
+        });
+    for (int i = 1; i <= 100; i++) {
+      cache.get(i);
+    }
+
+    LatencyStats loadLatency = cache.stats().loadLatency();
+    assertThat(loadLatency.count(), is(100L));
+    assertThat(loadLatency.p50(), is(both(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50)))
+        .and(lessThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(57)))));
+    assertThat(loadLatency.p99(), is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(99))));
+  }
+}
@@ -81,6 +81,22 @@ public final class StatsCounterTest {
     assertThat(counter.snapshot(), is(new CacheStats(5, 5, 5, 5, 10, 10, 50)));
   }
 
+  @Test
+  public void histogram() {
+    HistogramStatsCounter counter = new HistogramStatsCounter();
+    counter.recordHits(1);
+    counter.recordMisses(1);
+    counter.recordEviction();
+    counter.recordEviction(10);
+    counter.recordLoadSuccess(1);
+    counter.recordLoadFailure(1);
+    CacheStats expected = new CacheStats(1, 1, 1, 1, 2, 2, 10, counter.snapshot().loadLatency());
+    assertThat(counter.snapshot(), is(expected));
+    assertThat(counter.toString(), is(expected.toString()));
+    assertThat(counter.snapshot().loadLatency().count(), is(2L));
+    assertThat(counter.snapshot().loadLatency().p50(), is(1L));
+  }
+
   @Test
   public void guarded() {
     StatsCounter counter = StatsCounter.guardedStatsCounter(new ConcurrentStatsCounter());
@@ -20,6 +20,7 @@ import static java.util.Locale.US;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Set;
 
@@ -54,6 +55,11 @@ public class BasicSettings {
     return config().getInt("batch-size");
   }
 
+  public int parallelism() {
+    int parallelism = config().getInt("parallelism");
+    return (parallelism == 0) ? Runtime.getRuntime().availableProcessors() : parallelism;
+  }
+
   public Set<String> policies() {
     return config().getStringList("policies").stream()
         .map(String::toLowerCase)
@@ -79,6 +85,14 @@ public class BasicSettings {
     return config().getInt("maximum-size");
   }
 
+  public boolean isWeighted() {
+    return config().getBoolean("weighted");
+  }
+
+  public CaffeineSettings caffeine() {
+    return new CaffeineSettings();
+  }
+
   public boolean isFiles() {
     return config().getString("source").equals("files");
   }
@@ -117,6 +131,26 @@ public class BasicSettings {
     }
   }
 
+  public final class CaffeineSettings {
+    public Duration expireAfterWrite() {
+      return config().getDuration("caffeine.expire-after-write");
+    }
+    public Duration expireAfterAccess() {
+      return config().getDuration("caffeine.expire-after-access");
+    }
+    public Duration expireAfterVariable() {
+      return config().getDuration("caffeine.expire-after-variable");
+    }
+    public Duration refreshAfterWrite() {
+      return config().getDuration("caffeine.refresh-after-write");
+    }
+    /** Returns if any of the durations are set, which requires the events' times. */
+    public boolean isTimed() {
+      return !expireAfterWrite().isZero() || !expireAfterAccess().isZero()
+          || !expireAfterVariable().isZero() || !refreshAfterWrite().isZero();
+    }
+  }
+
   public final class TinyLfuSettings {
     public String sketch() {
       return config().getString("tiny-lfu.sketch");
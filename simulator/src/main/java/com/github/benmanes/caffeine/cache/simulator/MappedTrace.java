@@ -0,0 +1,232 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+
+/**
+ * A trace that was decoded once into a temporary file of fixed-width records, which is memory
+ * mapped so that it can be replayed by many policies concurrently. The events are shared through
+ * the operating system's page cache rather than being copied onto the Java heap, so a trace may
+ * exceed both the heap and the maximum length of an array.
+ * <p>
+ * A trace of keys stores only each event's key and replays it directly, without allocating. A
+ * trace of access events also stores the weight and time, for when the policies require them.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+final class MappedTrace implements AutoCloseable {
+  static final Logger logger = Logger.getLogger(MappedTrace.class.getName());
+  static final @Nullable Object UNSAFE = unsafe();
+  static final @Nullable Method INVOKE_CLEANER = invokeCleaner();
+
+  /** The size of a key's record. */
+  static final int KEY_BYTES = Long.BYTES;
+  /** The size of an access event's record: its key, weight, and time. */
+  static final int EVENT_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES;
+  /** The size of the buffer when writing the decoded events. */
+  static final int BUFFER_SIZE = 1 << 16;
+  /** The mask of the number of events replayed between checks for an interrupt. */
+  static final int INTERRUPT_CHECK_MASK = (1 << 16) - 1;
+
+  private final MappedByteBuffer[] segments;
+  private final boolean accessEvents;
+  private final long size;
+  private final Path file;
+
+  private MappedTrace(Path file, MappedByteBuffer[] segments, long size, boolean accessEvents) {
+    this.accessEvents = accessEvents;
+    this.segments = segments;
+    this.file = file;
+    this.size = size;
+  }
+
+  /** Returns the number of events in the trace. */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * Replays the trace's events with the policy. This method may be called concurrently, as each
+   * invocation reads through its own view of the shared segments, but must complete before the
+   * trace is closed.
+   *
+   * @throws CancellationException if the thread was interrupted during the replay
+   */
+  public void replay(Policy policy) {
+    long replayed = 0;
+    for (ByteBuffer segment : segments) {
+      ByteBuffer buffer = segment.duplicate();
+      while (buffer.hasRemaining()) {
+        if (((replayed++ & INTERRUPT_CHECK_MASK) == 0) && Thread.currentThread().isInterrupted()) {
+          throw new CancellationException("The replay was interrupted");
+        }
+        long key = buffer.getLong();
+        if (accessEvents) {
+          int weight = buffer.getInt();
+          long eventTime = buffer.getLong();
+          Policy.recordWeighted(policy, AccessEvent.forKeyWeightAndTime(key, weight, eventTime));
+        } else {
+          policy.record(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Unmaps the segments and deletes the backing file. The trace must not be replayed concurrently
+   * or afterwards, as the memory is no longer valid. If the runtime does not support releasing a
+   * mapping eagerly then the file is left until the virtual machine exits, as it cannot be
+   * deleted while mapped on some platforms.
+   */
+  @Override
+  public void close() throws IOException {
+    boolean unmapped = true;
+    for (MappedByteBuffer segment : segments) {
+      unmapped &= unmap(segment);
+    }
+    if (unmapped) {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  /**
+   * Returns a trace that contains only the keys, which are consumed by this method.
+   *
+   * @param keys the stream of keys to decode
+   * @return a memory mapped trace of the keys
+   * @throws IOException if the temporary file could not be written or mapped
+   */
+  public static MappedTrace decodeKeys(LongStream keys) throws IOException {
+    Path file = Files.createTempFile("trace", ".keys");
+    file.toFile().deleteOnExit();
+
+    long size = 0;
+    try (DataOutputStream output = newOutput(file)) {
+      for (PrimitiveIterator.OfLong i = keys.iterator(); i.hasNext();) {
+        output.writeLong(i.nextLong());
+        size++;
+      }
+    }
+    return new MappedTrace(file, map(file, size, KEY_BYTES), size, /* accessEvents */ false);
+  }
+
+  /**
+   * Returns a trace that contains the access events, which are consumed by this method.
+   *
+   * @param events the stream of events to decode
+   * @return a memory mapped trace of the events
+   * @throws IOException if the temporary file could not be written or mapped
+   */
+  public static MappedTrace decodeAccessEvents(Stream<AccessEvent> events) throws IOException {
+    Path file = Files.createTempFile("trace", ".events");
+    file.toFile().deleteOnExit();
+
+    long size = 0;
+    try (DataOutputStream output = newOutput(file)) {
+      for (Iterator<AccessEvent> i = events.iterator(); i.hasNext();) {
+        AccessEvent event = i.next();
+        output.writeLong(event.key());
+        output.writeInt(event.weight());
+        output.writeLong(event.eventTime());
+        size++;
+      }
+    }
+    return new MappedTrace(file, map(file, size, EVENT_BYTES), size, /* accessEvents */ true);
+  }
+
+  /** Returns a buffered stream that writes the decoded records to the file. */
+  private static DataOutputStream newOutput(Path file) throws IOException {
+    return new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+  }
+
+  /** Maps the file's records into segments, each of which is limited to 2GB. */
+  private static MappedByteBuffer[] map(Path file, long size, int recordBytes) throws IOException {
+    int recordsPerSegment = Integer.MAX_VALUE / recordBytes;
+    int count = (int) ((size + recordsPerSegment - 1) / recordsPerSegment);
+    MappedByteBuffer[] segments = new MappedByteBuffer[count];
+    try (FileChannel channel = FileChannel.open(file, READ)) {
+      for (int i = 0; i < count; i++) {
+        long start = (long) i * recordsPerSegment;
+        long length = Math.min(recordsPerSegment, size - start);
+        segments[i] = channel.map(MapMode.READ_ONLY, start * recordBytes, length * recordBytes);
+      }
+    }
+    return segments;
+  }
+
+  /** Releases the mapping eagerly, returning whether it was supported by the runtime. */
+  static boolean unmap(MappedByteBuffer buffer) {
+    if (INVOKE_CLEANER == null) {
+      return false;
+    }
+    try {
+      INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      return true;
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      logger.log(Level.WARNING, "Failed to unmap the trace's segment", e);
+      return false;
+    }
+  }
+
+  /** Returns {@code sun.misc.Unsafe} if available. */
+  static @Nullable Object unsafe() {
+    try {
+      Field field = Class.forName("sun.misc.Unsafe").getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      return field.get(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /** Returns {@code Unsafe.invokeCleaner(ByteBuffer)} if available (Java 9 and above). */
+  static @Nullable Method invokeCleaner() {
+    if (UNSAFE == null) {
+      return null;
+    }
+    try {
+      return UNSAFE.getClass().getMethod("invokeCleaner", ByteBuffer.class);
+    } catch (NoSuchMethodException | RuntimeException e) {
+      return null;
+    }
+  }
+}
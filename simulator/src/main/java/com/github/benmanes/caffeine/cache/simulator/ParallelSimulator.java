@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator;
+
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
+import com.github.benmanes.caffeine.cache.simulator.report.Reporter;
+import com.google.common.base.Stopwatch;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * A simulator that decodes the trace once and then replays it with each policy independently, on
+ * a fork-join pool. Unlike the {@link Simulator}, where every policy receives the same batch of
+ * events and so advances at the speed of the slowest one, a policy finishes as soon as it has
+ * replayed the trace and is reported as it completes. This is preferred for very large traces or
+ * when evaluating many policy configurations.
+ * <p>
+ * The configuration is the same as for the {@link Simulator}, with {@code parallelism} setting the
+ * number of policies that are replayed concurrently.
+ * <pre>{@code
+ *   ./gradlew simulator:parallelSimulate
+ * }</pre>
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class ParallelSimulator {
+
+  private ParallelSimulator() {}
+
+  public static void main(String[] args) throws Exception {
+    Config config = ConfigFactory.load().getConfig("caffeine.simulator");
+    BasicSettings settings = new BasicSettings(config);
+    Stopwatch stopwatch = Stopwatch.createStarted();
+
+    try (MappedTrace trace = decode(settings)) {
+      System.out.printf("Decoded %,d events in %s%n", trace.size(), stopwatch);
+      Reporter reporter = settings.report().format().create(config);
+      Set<Policy> policies = Registry.policies(settings);
+
+      ForkJoinPool pool = new ForkJoinPool(settings.parallelism());
+      try {
+        CompletionService<PolicyStats> completionService = new ExecutorCompletionService<>(pool);
+        for (Policy policy : policies) {
+          completionService.submit(() -> replay(trace, policy));
+        }
+        for (int i = 1; i <= policies.size(); i++) {
+          PolicyStats stats = completionService.take().get();
+          System.out.printf("Finished %s (%d of %d) in %s%n",
+              stats.name(), i, policies.size(), stopwatch);
+          reporter.add(stats);
+        }
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("A policy failed to replay the trace", e.getCause());
+      } finally {
+        // The replays must stop before the trace is unmapped
+        pool.shutdownNow();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      }
+      reporter.print();
+    }
+    System.out.println("Executed in " + stopwatch);
+  }
+
+  /**
+   * Returns the trace decoded from the configured source, retaining the events' weights and times
+   * only if the policies require them.
+   */
+  private static MappedTrace decode(BasicSettings settings) throws Exception {
+    if (Simulator.requiresAccessEvents(settings)) {
+      try (Stream<AccessEvent> events = Simulator.eventStream(settings)) {
+        return MappedTrace.decodeAccessEvents(events);
+      }
+    }
+    try (LongStream keys = Simulator.keyStream(settings)) {
+      return MappedTrace.decodeKeys(keys);
+    }
+  }
+
+  /** Replays the trace with the policy and returns its statistics. */
+  private static PolicyStats replay(MappedTrace trace, Policy policy) {
+    policy.stats().stopwatch().start();
+    try {
+      trace.replay(policy);
+    } finally {
+      policy.stats().stopwatch().stop();
+    }
+    policy.finished();
+    return policy.stats();
+  }
+}
@@ -18,14 +18,20 @@ package com.github.benmanes.caffeine.cache.simulator;
 import static com.github.benmanes.caffeine.cache.simulator.Simulator.Message.ERROR;
 import static com.github.benmanes.caffeine.cache.simulator.Simulator.Message.FINISH;
 import static com.github.benmanes.caffeine.cache.simulator.Simulator.Message.START;
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.stream.Collectors.toList;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.TraceFormat;
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyActor;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.github.benmanes.caffeine.cache.simulator.policy.Registry;
@@ -100,7 +106,22 @@ public final class Simulator extends AbstractActor {
 
   /** Broadcast the trace events to all of the policy actors. */
   private void broadcast() {
-    try (LongStream events = eventStream()) {
+    try {
+      if (requiresAccessEvents(settings)) {
+        broadcastAccessEvents();
+      } else {
+        broadcastKeys();
+      }
+      router.route(FINISH, self());
+    } catch (Exception e) {
+      context().system().log().error(e, "");
+      context().stop(self());
+    }
+  }
+
+  /** Broadcast the keys in primitive batches, as the policies do not use the weights or times. */
+  private void broadcastKeys() throws IOException {
+    try (LongStream events = keyStream(settings)) {
       LongArrayList batch = new LongArrayList(batchSize);
       for (PrimitiveIterator.OfLong i = events.iterator(); i.hasNext();) {
         batch.add(i.nextLong());
@@ -110,15 +131,31 @@ public final class Simulator extends AbstractActor {
         }
       }
       router.route(batch, self());
-      router.route(FINISH, self());
-    } catch (Exception e) {
-      context().system().log().error(e, "");
-      context().stop(self());
     }
   }
 
-  /** Returns a stream of trace events. */
-  private LongStream eventStream() throws IOException {
+  /** Broadcast the events with their weights and times. */
+  private void broadcastAccessEvents() throws IOException {
+    try (Stream<AccessEvent> events = eventStream(settings)) {
+      List<AccessEvent> batch = new ArrayList<>(batchSize);
+      for (Iterator<AccessEvent> i = events.iterator(); i.hasNext();) {
+        batch.add(i.next());
+        if (batch.size() == batchSize) {
+          router.route(batch, self());
+          batch = new ArrayList<>(batchSize);
+        }
+      }
+      router.route(batch, self());
+    }
+  }
+
+  /** Returns if the policies require the events' weights or times, rather than only their keys. */
+  static boolean requiresAccessEvents(BasicSettings settings) {
+    return settings.isWeighted() || settings.caffeine().isTimed();
+  }
+
+  /** Returns a stream of the trace's keys. */
+  static LongStream keyStream(BasicSettings settings) throws IOException {
     if (settings.isSynthetic()) {
       return Synthetic.generate(settings);
     }
@@ -127,6 +164,28 @@ public final class Simulator extends AbstractActor {
     return format.readFiles(filePaths).events();
   }
 
+  /**
+   * Returns a stream of trace events.
+   *
+   * @throws IllegalStateException if the weighted setting is used with a trace without sizes, or
+   *         an expiration or refresh duration is used with a trace without timestamps
+   */
+  static Stream<AccessEvent> eventStream(BasicSettings settings) throws IOException {
+    if (settings.isSynthetic()) {
+      checkState(!settings.isWeighted(), "A synthetic trace does not provide weights");
+      checkState(!settings.caffeine().isTimed(), "A synthetic trace does not provide timestamps");
+      return Synthetic.generate(settings).mapToObj(AccessEvent::forKey);
+    }
+    List<String> filePaths = settings.traceFiles().paths();
+    TraceFormat format = settings.traceFiles().format();
+    TraceReader reader = format.readFiles(filePaths);
+    checkState(!settings.isWeighted() || reader.isWeighted(),
+        "The %s trace format does not provide weights", format);
+    checkState(!settings.caffeine().isTimed() || reader.hasTimestamps(),
+        "The %s trace format does not provide timestamps for expiration or refresh", format);
+    return reader.accessEvents();
+  }
+
   /** Returns the actors to broadcast trace events to. */
   private List<Routee> makeRoutes() {
     return Registry.policies(settings).stream().map(policy -> {
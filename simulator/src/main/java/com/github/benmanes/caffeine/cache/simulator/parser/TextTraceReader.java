@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -45,4 +46,9 @@ public abstract class TextTraceReader extends AbstractTraceReader implements Tra
     return new BufferedReader(reader).lines().map(String::trim)
         .onClose(() -> Closeables.closeQuietly(input));
   }
+
+  /** Returns the number of nanoseconds represented by a decimal number of seconds. */
+  protected static long secondsToNanos(String seconds) {
+    return new BigDecimal(seconds).movePointRight(9).longValue();
+  }
 }
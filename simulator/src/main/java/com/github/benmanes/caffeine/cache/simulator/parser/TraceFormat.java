@@ -40,6 +40,7 @@ public enum TraceFormat {
   GRADLE(GradleTraceReader::new),
   LIRS(LirsTraceReader::new),
   UMASS_STORAGE(StorageTraceReader::new),
+  UMASS_STORAGE_SIZED(filePaths -> new StorageTraceReader(filePaths, /* sized */ true)),
   UMASS_YOUTUBE(YoutubeTraceReader::new),
   WIKIPEDIA(WikipediaTraceReader::new),
   CACHE2K(Cache2kTraceReader::new),
@@ -15,6 +15,9 @@ package com.github.benmanes.caffeine.cache.simulator.parser;
 
 import java.io.IOException;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 
 /**
  * A reader to an access trace.
@@ -33,4 +36,39 @@ public interface TraceReader {
    * @return a lazy stream of cache events
    */
   LongStream events() throws IOException;
+
+  /**
+   * Returns whether the events carry the size of each entry, as required when the maximum size is
+   * the total weight of the entries. A format that does not record the sizes, or that only records
+   * a fixed block size, uses a unit weight and should not advertise weights.
+   *
+   * @return if the events have weights
+   */
+  default boolean isWeighted() {
+    return false;
+  }
+
+  /**
+   * Returns whether the events carry the time that they occurred, as required to evaluate the
+   * expiration and refresh policies. A format without timestamps reports every event at time zero.
+   *
+   * @return if the events have timestamps
+   */
+  default boolean hasTimestamps() {
+    return false;
+  }
+
+  /**
+   * Creates a {@link Stream} that lazily reads the trace source, including the weight of each entry
+   * if the format provides it. By default every entry has a unit weight.
+   * <p>
+   * If timely disposal of underlying resources is required, the try-with-resources construct should
+   * be used to ensure that the stream's {@link java.util.stream.Stream#close close} method is
+   * invoked after the stream operations are completed.
+   *
+   * @return a lazy stream of cache events with their weights
+   */
+  default Stream<AccessEvent> accessEvents() throws IOException {
+    return events().mapToObj(AccessEvent::forKey);
+  }
 }
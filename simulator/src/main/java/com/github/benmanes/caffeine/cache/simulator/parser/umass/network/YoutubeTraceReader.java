@@ -18,8 +18,10 @@ package com.github.benmanes.caffeine.cache.simulator.parser.umass.network;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.TextTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 import com.google.common.hash.Hashing;
 
 /**
@@ -41,4 +43,19 @@ public final class YoutubeTraceReader extends TextTraceReader {
         .filter(array -> array[3].equals("GETVIDEO"))
         .mapToLong(array -> Hashing.murmur3_128().hashUnencodedChars(array[4]).asLong());
   }
+
+  @Override
+  public boolean hasTimestamps() {
+    return true;
+  }
+
+  @Override
+  public Stream<AccessEvent> accessEvents() throws IOException {
+    return lines()
+        .map(line -> line.split(" "))
+        .filter(array -> array[3].equals("GETVIDEO"))
+        .map(array -> AccessEvent.forKeyAndTime(
+            Hashing.murmur3_128().hashUnencodedChars(array[4]).asLong(),
+            secondsToNanos(array[0])));
+  }
 }
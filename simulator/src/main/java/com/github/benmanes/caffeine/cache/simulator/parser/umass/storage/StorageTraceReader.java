@@ -19,21 +19,34 @@ import java.io.IOException;
 import java.math.RoundingMode;
 import java.util.List;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.TextTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 import com.google.common.math.IntMath;
 
 /**
  * A reader for the trace files provided by the
- * <a href="http://traces.cs.umass.edu/index.php/Storage/Storage">UMass Trace Repository</a>.
+ * <a href="http://traces.cs.umass.edu/index.php/Storage/Storage">UMass Trace Repository</a>. By
+ * default each read request is expanded into an access of every 512 byte block that it spans. When
+ * sized, each read request is a single access of its starting block that is weighted by the
+ * request's size in bytes, which allows for evaluating a cache that is bounded by the total weight
+ * of its entries.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
 public final class StorageTraceReader extends TextTraceReader {
   static final int BLOCK_SIZE = 512;
 
+  private final boolean sized;
+
   public StorageTraceReader(List<String> filePaths) {
+    this(filePaths, /* sized */ false);
+  }
+
+  public StorageTraceReader(List<String> filePaths, boolean sized) {
     super(filePaths);
+    this.sized = sized;
   }
 
   @Override
@@ -45,11 +58,44 @@ public final class StorageTraceReader extends TextTraceReader {
       }
       long startBlock = Long.parseLong(array[1]);
       int size = Integer.parseInt(array[2]);
-      int sequence = IntMath.divide(size, BLOCK_SIZE, RoundingMode.UP);
+      int sequence = sized ? 1 : IntMath.divide(size, BLOCK_SIZE, RoundingMode.UP);
       char readWrite = Character.toLowerCase(array[3].charAt(0));
       return (readWrite == 'w')
           ? LongStream.empty()
           : LongStream.range(startBlock, startBlock + sequence);
     });
   }
+
+  @Override
+  public boolean isWeighted() {
+    return sized;
+  }
+
+  @Override
+  public boolean hasTimestamps() {
+    return true;
+  }
+
+  @Override
+  public Stream<AccessEvent> accessEvents() throws IOException {
+    return lines().flatMap(line -> {
+      String[] array = line.split(",", 5);
+      if (array.length <= 4) {
+        return Stream.empty();
+      }
+      long startBlock = Long.parseLong(array[1]);
+      int size = Integer.parseInt(array[2]);
+      int sequence = IntMath.divide(size, BLOCK_SIZE, RoundingMode.UP);
+      char readWrite = Character.toLowerCase(array[3].charAt(0));
+      if (readWrite == 'w') {
+        return Stream.empty();
+      }
+      long eventTime = secondsToNanos(array[4].trim());
+      if (sized) {
+        return Stream.of(AccessEvent.forKeyWeightAndTime(startBlock, size, eventTime));
+      }
+      return LongStream.range(startBlock, startBlock + sequence)
+          .mapToObj(block -> AccessEvent.forKeyAndTime(block, eventTime));
+    });
+  }
 }
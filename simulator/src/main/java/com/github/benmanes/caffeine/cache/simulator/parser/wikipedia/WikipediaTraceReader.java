@@ -19,12 +19,14 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.github.benmanes.caffeine.cache.simulator.parser.TextTraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 import com.google.common.hash.Hashing;
 
 /**
@@ -53,6 +55,28 @@ public final class WikipediaTraceReader extends TextTraceReader {
         .mapToLong(path -> Hashing.murmur3_128().hashUnencodedChars(path).asLong());
   }
 
+  @Override
+  public boolean hasTimestamps() {
+    return true;
+  }
+
+  @Override
+  public Stream<AccessEvent> accessEvents() throws IOException {
+    return lines()
+        .map(this::parseEvent)
+        .filter(Objects::nonNull);
+  }
+
+  /** Returns the event for the request or {@code null} if this request should be ignored. */
+  private @Nullable AccessEvent parseEvent(String line) {
+    String path = parseRequest(line);
+    if (path == null) {
+      return null;
+    }
+    long key = Hashing.murmur3_128().hashUnencodedChars(path).asLong();
+    return AccessEvent.forKeyAndTime(key, getTimestamp(line));
+  }
+
   /**
    * Returns the request's path or {@code null} if this request should be ignored. The input is
    * space deliminated with the following format,
@@ -82,6 +106,13 @@ public final class WikipediaTraceReader extends TextTraceReader {
     return line.charAt(line.length() - 1) == '-';
   }
 
+  /** Returns the request's timestamp, in nanoseconds. */
+  private long getTimestamp(String line) {
+    int start = line.indexOf(' ') + 1;
+    int end = line.indexOf(' ', start);
+    return secondsToNanos(line.substring(start, end));
+  }
+
   /** Returns the request URL. */
   private String getRequestUrl(String line) {
     int end = line.length() - 2;
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * The key, size, and time of an entry that was accessed in the trace.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+@Immutable
+public final class AccessEvent {
+  private final long key;
+  private final int weight;
+  private final long eventTime;
+
+  private AccessEvent(long key, int weight, long eventTime) {
+    this.key = key;
+    this.weight = weight;
+    this.eventTime = eventTime;
+  }
+
+  /** Returns the key. */
+  public long key() {
+    return key;
+  }
+
+  /** Returns the weight of the entry, such as its size in bytes, or 1 if the trace has no sizes. */
+  public int weight() {
+    return weight;
+  }
+
+  /**
+   * Returns the time that the entry was accessed, in nanoseconds, or 0 if the trace has no
+   * timestamps. The origin is defined by the trace, so only the elapsed time between events is
+   * meaningful.
+   */
+  public long eventTime() {
+    return eventTime;
+  }
+
+  /** Returns an event for the given key with a unit weight. */
+  public static AccessEvent forKey(long key) {
+    return new AccessEvent(key, 1, 0L);
+  }
+
+  /** Returns an event for the given key and weight. */
+  public static AccessEvent forKeyAndWeight(long key, int weight) {
+    return forKeyWeightAndTime(key, weight, 0L);
+  }
+
+  /** Returns an event for the given key, with a unit weight, that occurred at the given time. */
+  public static AccessEvent forKeyAndTime(long key, long eventTime) {
+    return forKeyWeightAndTime(key, 1, eventTime);
+  }
+
+  /** Returns an event for the given key and weight that occurred at the given time. */
+  public static AccessEvent forKeyWeightAndTime(long key, int weight, long eventTime) {
+    checkArgument(weight >= 0, "weight must be non-negative: %s", weight);
+    checkArgument(eventTime >= 0, "event time must be non-negative: %s", eventTime);
+    return new AccessEvent(key, weight, eventTime);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof AccessEvent)) {
+      return false;
+    }
+    AccessEvent event = (AccessEvent) o;
+    return (key == event.key) && (weight == event.weight) && (eventTime == event.eventTime);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * Long.hashCode(key) + weight) + Long.hashCode(eventTime);
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("key", key)
+        .add("weight", weight)
+        .add("eventTime", eventTime)
+        .toString();
+  }
+}
@@ -28,6 +28,30 @@ public interface Policy {
   /** Records that the entry was accessed. */
   void record(long key);
 
+  /**
+   * Records that the entry was accessed, along with its weight. By default the weight is ignored,
+   * so a policy that is bounded by the total weight of its entries must override this method.
+   */
+  default void record(AccessEvent event) {
+    record(event.key());
+  }
+
+  /**
+   * Records the event with the policy and attributes the event's weight to the hit or miss that
+   * the policy recorded for it.
+   */
+  static void recordWeighted(Policy policy, AccessEvent event) {
+    PolicyStats stats = policy.stats();
+    long hits = stats.hitCount();
+    long misses = stats.missCount();
+    policy.record(event);
+    if (stats.hitCount() > hits) {
+      stats.recordWeightedHit(event.weight());
+    } else if (stats.missCount() > misses) {
+      stats.recordWeightedMiss(event.weight());
+    }
+  }
+
   /** Indicates that the recording has completed. */
   default void finished() {}
 
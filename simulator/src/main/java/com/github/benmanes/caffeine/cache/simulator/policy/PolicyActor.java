@@ -19,6 +19,8 @@ import static com.github.benmanes.caffeine.cache.simulator.Simulator.Message.ERR
 import static com.github.benmanes.caffeine.cache.simulator.Simulator.Message.FINISH;
 import static java.util.Objects.requireNonNull;
 
+import java.util.List;
+
 import akka.actor.AbstractActor;
 import akka.dispatch.BoundedMessageQueueSemantics;
 import akka.dispatch.RequiresMessageQueue;
@@ -38,24 +40,42 @@ public final class PolicyActor extends AbstractActor
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public Receive createReceive() {
     return receiveBuilder()
-        .match(LongArrayList.class, this::process)
+        .match(LongArrayList.class, this::processKeys)
+        .match(List.class, this::process)
         .matchEquals(FINISH, msg -> finish())
         .build();
   }
 
-  private void process(LongArrayList events) {
+  private void processKeys(LongArrayList keys) {
+    PolicyStats stats = policy.stats();
+    try {
+      stats.stopwatch().start();
+      for (int i = 0; i < keys.size(); i++) {
+        policy.record(keys.getLong(i));
+      }
+    } catch (Exception e) {
+      sender().tell(ERROR, self());
+      context().system().log().error(e, "");
+    } finally {
+      stats.stopwatch().stop();
+    }
+  }
+
+  private void process(List<AccessEvent> events) {
+    PolicyStats stats = policy.stats();
     try {
-      policy.stats().stopwatch().start();
-      for (int i = 0; i < events.size(); i++) {
-        policy.record(events.getLong(i));
+      stats.stopwatch().start();
+      for (AccessEvent event : events) {
+        Policy.recordWeighted(policy, event);
       }
     } catch (Exception e) {
       sender().tell(ERROR, self());
       context().system().log().error(e, "");
     } finally {
-      policy.stats().stopwatch().stop();
+      stats.stopwatch().stop();
     }
   }
 
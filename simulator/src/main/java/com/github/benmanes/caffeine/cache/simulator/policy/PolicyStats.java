@@ -32,9 +32,13 @@ public final class PolicyStats {
   private long hitCount;
   private long missCount;
   private long evictionCount;
+  private long expirationCount;
+  private long refreshCount;
   private long admittedCount;
   private long rejectedCount;
   private long operationCount;
+  private long hitWeight;
+  private long missWeight;
 
   public PolicyStats(String name) {
     this.name = requireNonNull(name);
@@ -85,6 +89,26 @@ public final class PolicyStats {
     missCount += misses;
   }
 
+  public void recordWeightedHit(long weight) {
+    hitWeight += weight;
+  }
+
+  public long hitWeight() {
+    return hitWeight;
+  }
+
+  public void recordWeightedMiss(long weight) {
+    missWeight += weight;
+  }
+
+  public long missWeight() {
+    return missWeight;
+  }
+
+  public long requestWeight() {
+    return hitWeight + missWeight;
+  }
+
   public long evictionCount() {
     return evictionCount;
   }
@@ -97,6 +121,30 @@ public final class PolicyStats {
     evictionCount += evictions;
   }
 
+  public long expirationCount() {
+    return expirationCount;
+  }
+
+  public void recordExpiration() {
+    expirationCount++;
+  }
+
+  public void addExpirations(long expirations) {
+    expirationCount += expirations;
+  }
+
+  public long refreshCount() {
+    return refreshCount;
+  }
+
+  public void recordRefresh() {
+    refreshCount++;
+  }
+
+  public void addRefreshes(long refreshes) {
+    refreshCount += refreshes;
+  }
+
   public long requestCount() {
     return hitCount + missCount;
   }
@@ -122,6 +170,11 @@ public final class PolicyStats {
     return (requestCount == 0) ? 1.0 : (double) hitCount / requestCount;
   }
 
+  public double byteHitRate() {
+    long requestWeight = requestWeight();
+    return (requestWeight == 0) ? 1.0 : (double) hitWeight / requestWeight;
+  }
+
   public double missRate() {
     long requestCount = requestCount();
     return (requestCount == 0) ? 0.0 : (double) missCount / requestCount;
@@ -42,6 +42,7 @@ import com.github.benmanes.caffeine.cache.simulator.policy.linked.SegmentedLruPo
 import com.github.benmanes.caffeine.cache.simulator.policy.opt.ClairvoyantPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.opt.UnboundedPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.Cache2kPolicy;
+import com.github.benmanes.caffeine.cache.simulator.policy.product.CaffeineOffHeapPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.CaffeinePolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.CollisionPolicy;
 import com.github.benmanes.caffeine.cache.simulator.policy.product.Ehcache2Policy;
@@ -169,6 +170,7 @@ public final class Registry {
     factories.put("product.Ehcache2", Ehcache2Policy::policies);
     factories.put("product.Ehcache3", Ehcache3Policy::policies);
     factories.put("product.Caffeine", CaffeinePolicy::policies);
+    factories.put("product.CaffeineOffHeap", CaffeineOffHeapPolicy::policies);
     factories.put("product.Rapidoid", RapidoidPolicy::policies);
     factories.put("product.Collision", CollisionPolicy::policies);
     factories.put("product.ExpiringMap", ExpiringMapPolicy::policies);
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.policy.product;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.nio.ByteBuffer;
+import java.util.Set;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.OffHeapCache;
+import com.github.benmanes.caffeine.cache.Serializer;
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
+import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
+import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
+import com.google.common.collect.ImmutableSet;
+import com.typesafe.config.Config;
+
+/**
+ * Caffeine cache implementation that stores the values off-heap, for comparison with OHC.
+ *
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class CaffeineOffHeapPolicy implements Policy {
+  private final OffHeapCache<Long, Long> cache;
+  private final PolicyStats policyStats;
+
+  public CaffeineOffHeapPolicy(Config config) {
+    policyStats = new PolicyStats("product.CaffeineOffHeap");
+    BasicSettings settings = new BasicSettings(config);
+    cache = Caffeine.newBuilder()
+        .maximumSize(settings.maximumSize())
+        .executor(Runnable::run)
+        .recordStats()
+        .buildOffHeap(longSerializer);
+  }
+
+  /** Returns all variations of this policy based on the configuration parameters. */
+  public static Set<Policy> policies(Config config) {
+    return ImmutableSet.of(new CaffeineOffHeapPolicy(config));
+  }
+
+  @Override
+  public void record(long key) {
+    Object value = cache.getIfPresent(key);
+    if (value == null) {
+      cache.put(key, key);
+      policyStats.recordMiss();
+    } else {
+      policyStats.recordHit();
+    }
+  }
+
+  @Override
+  public PolicyStats stats() {
+    return policyStats;
+  }
+
+  @Override
+  public void finished() {
+    cache.cleanUp();
+    policyStats.addEvictions(cache.stats().evictionCount());
+    checkState(policyStats.hitCount() == cache.stats().hitCount());
+    checkState(policyStats.missCount() == cache.stats().missCount());
+  }
+
+  static final Serializer<Long> longSerializer = new Serializer<Long>() {
+    @Override public void serialize(Long value, ByteBuffer buffer) {
+      buffer.putLong(value);
+    }
+    @Override public Long deserialize(ByteBuffer buffer) {
+      return buffer.getLong();
+    }
+    @Override public int serializedSize(Long value) {
+      return Long.BYTES;
+    }
+  };
+}
@@ -15,58 +15,185 @@
  */
 package com.github.benmanes.caffeine.cache.simulator.policy.product;
 
+import static com.google.common.base.Preconditions.checkState;
+
+import java.time.Duration;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.github.benmanes.caffeine.cache.simulator.BasicSettings;
+import com.github.benmanes.caffeine.cache.simulator.BasicSettings.CaffeineSettings;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
 import com.github.benmanes.caffeine.cache.simulator.policy.Policy;
 import com.github.benmanes.caffeine.cache.simulator.policy.PolicyStats;
 import com.google.common.collect.ImmutableSet;
 import com.typesafe.config.Config;
 
 /**
- * Caffeine cache implementation.
+ * Caffeine cache implementation. If the trace is weighted then the cache is bounded by the total
+ * weight of its entries and a variant that uses {@link Caffeine#weightedAdmission()} is included.
+ * The expiration and refresh settings are evaluated against a ticker that follows the trace's
+ * timestamps.
  *
  * @author ben.manes@gmail.com (Ben Manes)
  */
 public final class CaffeinePolicy implements Policy {
-  private final Cache<Object, Object> cache;
+  private final Cache<Long, Integer> cache;
   private final PolicyStats policyStats;
-  private final int maximumSize;
+  private final TraceTicker ticker;
 
-  public CaffeinePolicy(Config config) {
-    policyStats = new PolicyStats("product.Caffeine");
+  public CaffeinePolicy(Config config, boolean weightedAdmission) {
     BasicSettings settings = new BasicSettings(config);
-    maximumSize = settings.maximumSize();
-    cache = Caffeine.newBuilder()
-        .initialCapacity(maximumSize)
-        .maximumSize(maximumSize)
+    policyStats = new PolicyStats(weightedAdmission
+        ? "product.Caffeine_WeightedAdmission"
+        : "product.Caffeine");
+    ticker = new TraceTicker();
+    Caffeine<Long, Integer> builder = Caffeine.newBuilder()
+        .initialCapacity(settings.maximumSize())
         .executor(Runnable::run)
-        .build();
+        .ticker(ticker)
+        .recordStats()
+        .removalListener((Long key, Integer weight, RemovalCause cause) -> onRemoval(cause));
+    if (settings.isWeighted()) {
+      builder.maximumWeight(settings.maximumSize()).weigher((Long key, Integer weight) -> weight);
+      if (weightedAdmission) {
+        builder.weightedAdmission();
+      }
+    } else {
+      builder.maximumSize(settings.maximumSize());
+    }
+    configureExpiration(builder, settings.caffeine());
+    if (settings.caffeine().refreshAfterWrite().isZero()) {
+      cache = builder.build();
+    } else {
+      cache = builder.build(new RefreshLoader());
+    }
+  }
+
+  /** Applies the expiration and refresh settings that are enabled. */
+  private static void configureExpiration(
+      Caffeine<Long, Integer> builder, CaffeineSettings settings) {
+    if (!settings.expireAfterWrite().isZero()) {
+      builder.expireAfterWrite(settings.expireAfterWrite().toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (!settings.expireAfterAccess().isZero()) {
+      builder.expireAfterAccess(settings.expireAfterAccess().toNanos(), TimeUnit.NANOSECONDS);
+    }
+    if (!settings.expireAfterVariable().isZero()) {
+      builder.expireAfter(new FixedExpiry(settings.expireAfterVariable()));
+    }
+    if (!settings.refreshAfterWrite().isZero()) {
+      builder.refreshAfterWrite(settings.refreshAfterWrite().toNanos(), TimeUnit.NANOSECONDS);
+    }
   }
 
   /** Returns all variations of this policy based on the configuration parameters. */
   public static Set<Policy> policies(Config config) {
-    return ImmutableSet.of(new CaffeinePolicy(config));
+    BasicSettings settings = new BasicSettings(config);
+    return settings.isWeighted()
+        ? ImmutableSet.of(new CaffeinePolicy(config, false), new CaffeinePolicy(config, true))
+        : ImmutableSet.of(new CaffeinePolicy(config, false));
   }
 
   @Override
   public void record(long key) {
-    Object value = cache.getIfPresent(key);
+    record(AccessEvent.forKey(key));
+  }
+
+  @Override
+  public void record(AccessEvent event) {
+    ticker.advanceTo(event.eventTime());
+    Integer value = cache.getIfPresent(event.key());
     if (value == null) {
-      if (cache.estimatedSize() == maximumSize) {
-        policyStats.recordEviction();
-      }
-      cache.put(key, key);
+      cache.put(event.key(), event.weight());
       policyStats.recordMiss();
     } else {
       policyStats.recordHit();
     }
   }
 
+  /** Records the eviction or expiration of an entry. */
+  private void onRemoval(RemovalCause cause) {
+    if (cause == RemovalCause.EXPIRED) {
+      policyStats.recordExpiration();
+    } else if (cause == RemovalCause.SIZE) {
+      policyStats.recordEviction();
+    }
+  }
+
   @Override
   public PolicyStats stats() {
     return policyStats;
   }
+
+  @Override
+  public void finished() {
+    cache.cleanUp();
+    checkState(policyStats.hitCount() == cache.stats().hitCount());
+    checkState(policyStats.missCount() == cache.stats().missCount());
+  }
+
+  /** A ticker that reports the time of the trace's most recent event. */
+  static final class TraceTicker implements Ticker {
+    private long nanos;
+
+    /** Moves the clock forward to the given time, ignoring events that are out of order. */
+    void advanceTo(long eventTime) {
+      nanos = Math.max(nanos, eventTime);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  /** An expiration policy that uses the same duration for every entry. */
+  static final class FixedExpiry implements Expiry<Long, Integer> {
+    private final long durationNanos;
+
+    FixedExpiry(Duration duration) {
+      this.durationNanos = duration.toNanos();
+    }
+
+    @Override
+    public long expireAfterCreate(Long key, Integer weight, long currentTime) {
+      return durationNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(Long key, Integer weight,
+        long currentTime, long currentDuration) {
+      return durationNanos;
+    }
+
+    @Override
+    public long expireAfterRead(Long key, Integer weight,
+        long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+
+  /**
+   * A loader that retains the entry's weight when refreshing. The policy only populates the cache
+   * explicitly, so a load is not expected and uses a unit weight.
+   */
+  final class RefreshLoader implements CacheLoader<Long, Integer> {
+    @Override
+    public Integer load(Long key) {
+      return 1;
+    }
+
+    @Override
+    public Integer reload(Long key, Integer weight) {
+      policyStats.recordRefresh();
+      return weight;
+    }
+  }
 }
@@ -44,10 +44,15 @@ public final class CsvReporter extends TextReporter {
       Object[] data = new Object[] {
           policyStats.name(),
           String.format("%.2f", 100 * policyStats.hitRate()),
+          (policyStats.requestWeight() == 0)
+              ? null
+              : String.format("%.2f", 100 * policyStats.byteHitRate()),
           policyStats.hitCount(),
           policyStats.missCount(),
           policyStats.requestCount(),
           policyStats.evictionCount(),
+          policyStats.expirationCount(),
+          policyStats.refreshCount(),
           String.format("%.2f", 100 * policyStats.admissionRate()),
           (policyStats.operationCount() == 0) ? null : policyStats.operationCount(),
           policyStats.stopwatch().elapsed(TimeUnit.MILLISECONDS)
@@ -42,10 +42,13 @@ public final class TableReporter extends TextReporter {
       data[i] = new String[] {
           policyStats.name(),
           String.format("%.2f %%", 100 * policyStats.hitRate()),
+          byteHitRate(policyStats),
           String.format("%,d", policyStats.hitCount()),
           String.format("%,d", policyStats.missCount()),
           String.format("%,d", policyStats.requestCount()),
           String.format("%,d", policyStats.evictionCount()),
+          String.format("%,d", policyStats.expirationCount()),
+          String.format("%,d", policyStats.refreshCount()),
           String.format("%.2f %%", 100 * policyStats.admissionRate()),
           steps(policyStats),
           policyStats.stopwatch().toString()
@@ -54,6 +57,12 @@ public final class TableReporter extends TextReporter {
     return FlipTable.of(headers(), data);
   }
 
+  private static String byteHitRate(PolicyStats policyStats) {
+    return (policyStats.requestWeight() == 0)
+        ? "?"
+        : String.format("%.2f %%", 100 * policyStats.byteHitRate());
+  }
+
   private static String steps(PolicyStats policyStats) {
     long operations = policyStats.operationCount();
     long complexity = (long) (100 * policyStats.complexity());
@@ -37,8 +37,8 @@ import com.typesafe.config.Config;
  */
 public abstract class TextReporter implements Reporter {
   private static final String[] HEADERS = {
-      "Policy", "Hit rate", "Hits", "Misses", "Requests",
-      "Evictions", "Admit rate", "Steps", "Time"};
+      "Policy", "Hit rate", "Byte hit rate", "Hits", "Misses", "Requests",
+      "Evictions", "Expirations", "Refreshes", "Admit rate", "Steps", "Time"};
 
   private final List<PolicyStats> results;
   private final BasicSettings settings;
@@ -87,12 +87,18 @@ public abstract class TextReporter implements Reporter {
         return Comparator.comparing(PolicyStats::name);
       case "hit rate":
         return Comparator.comparingDouble(PolicyStats::hitRate);
+      case "byte hit rate":
+        return Comparator.comparingDouble(PolicyStats::byteHitRate);
       case "hits":
         return Comparator.comparingLong(PolicyStats::hitCount);
       case "misses":
         return Comparator.comparingLong(PolicyStats::missCount);
       case "evictions":
         return Comparator.comparingLong(PolicyStats::evictionCount);
+      case "expirations":
+        return Comparator.comparingLong(PolicyStats::expirationCount);
+      case "refreshes":
+        return Comparator.comparingLong(PolicyStats::refreshCount);
       case "admit rate":
         return Comparator.comparingLong(PolicyStats::admissionCount);
       case "steps":
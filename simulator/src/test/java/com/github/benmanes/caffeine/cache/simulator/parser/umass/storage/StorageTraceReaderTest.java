@@ -0,0 +1,88 @@
+/*
+ * Copyright 2018 Ben Manes. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.benmanes.caffeine.cache.simulator.parser.umass.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceFormat;
+import com.github.benmanes.caffeine.cache.simulator.parser.TraceReader;
+import com.github.benmanes.caffeine.cache.simulator.policy.AccessEvent;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * @author ben.manes@gmail.com (Ben Manes)
+ */
+public final class StorageTraceReaderTest {
+  private Path file;
+
+  @BeforeClass
+  public void beforeClass() throws IOException {
+    file = Files.createTempFile("storage", ".trace");
+    Files.write(file, Arrays.asList(
+        "0,100,1024,r,1.5",
+        "0,200,512,w,2.0",
+        "1,300,700,R,3.0"), UTF_8);
+  }
+
+  @AfterClass
+  public void afterClass() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void blocks() throws IOException {
+    TraceReader reader = TraceFormat.UMASS_STORAGE.readFiles(paths());
+    assertThat(reader.isWeighted(), is(false));
+    assertThat(reader.events().boxed().collect(toList()), contains(100L, 101L, 300L, 301L));
+
+    List<AccessEvent> events = reader.accessEvents().collect(toList());
+    assertThat(events.stream().map(AccessEvent::weight).distinct().collect(toList()), contains(1));
+    assertThat(events.get(0).eventTime(), is(TimeUnit.MILLISECONDS.toNanos(1_500)));
+  }
+
+  @Test
+  public void sized() throws IOException {
+    TraceReader reader = TraceFormat.UMASS_STORAGE_SIZED.readFiles(paths());
+    assertThat(reader.isWeighted(), is(true));
+    assertThat(reader.hasTimestamps(), is(true));
+    assertThat(reader.events().boxed().collect(toList()), contains(100L, 300L));
+
+    List<AccessEvent> events = reader.accessEvents().collect(toList());
+    assertThat(events.stream().map(AccessEvent::key).collect(toList()), contains(100L, 300L));
+    assertThat(events.stream().map(AccessEvent::weight).collect(toList()), contains(1024, 700));
+    assertThat(events.stream().map(AccessEvent::eventTime).collect(toList()),
+        contains(TimeUnit.MILLISECONDS.toNanos(1_500), TimeUnit.SECONDS.toNanos(3)));
+  }
+
+  private List<String> paths() {
+    return ImmutableList.of(file.toString());
+  }
+}